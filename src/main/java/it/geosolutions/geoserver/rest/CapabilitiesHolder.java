@@ -0,0 +1,142 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import it.geosolutions.geoserver.rest.decoder.about.GSVersionDecoder;
+import it.geosolutions.geoserver.rest.http.HTTPTransport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Lazily fetches and keeps the {@link GeoServerCapabilities} of a GeoServer,
+ * optionally refreshing them once expired.
+ * <P>
+ * Shared by the reader and the publisher of a {@link GeoServerRESTManager}.
+ */
+final class CapabilitiesHolder {
+    private final static Logger LOGGER = LoggerFactory.getLogger(CapabilitiesHolder.class);
+
+    /**
+     * Time (ms) after which capabilities negotiated from a failed request are
+     * fetched again.
+     */
+    static final long RETRY_TTL = 30000;
+
+    private final HTTPTransport transport;
+
+    private final String baseurl;
+
+    private final String username;
+
+    private final String password;
+
+    private volatile long ttl;
+
+    private volatile GeoServerCapabilities capabilities;
+
+    CapabilitiesHolder(HTTPTransport transport, String baseurl, String username, String password) {
+        this.transport = transport;
+        this.baseurl = baseurl;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * @param ttl time (ms) after which the capabilities are fetched again, a
+     *        value &lt;= 0 means they never expire
+     */
+    void setTTL(long ttl) {
+        this.ttl = ttl;
+    }
+
+    long getTTL() {
+        return ttl;
+    }
+
+    void invalidate() {
+        capabilities = null;
+    }
+
+    GeoServerCapabilities get() {
+        GeoServerCapabilities current = capabilities;
+        if (current != null && !isExpired(current)) {
+            return current;
+        }
+        synchronized (this) {
+            current = capabilities;
+            if (current == null || isExpired(current)) {
+                current = fetch();
+            }
+            return current;
+        }
+    }
+
+    private boolean isExpired(GeoServerCapabilities current) {
+        return isExpired(current, ttl);
+    }
+
+    /**
+     * Capabilities negotiated from a failed request expire after
+     * {@link #RETRY_TTL} at most, the others after <TT>ttl</TT> (if &gt; 0).
+     */
+    static boolean isExpired(GeoServerCapabilities current, long ttl) {
+        long t = ttl;
+        if (current.isFailed() && (t <= 0 || t > RETRY_TTL)) {
+            t = RETRY_TTL;
+        }
+        return t > 0 && System.currentTimeMillis() - current.getFetchTime() > t;
+    }
+
+    /**
+     * Negotiates the capabilities from <TT>/rest/about/version.xml</TT>.
+     * <P>
+     * An unrecognized version (GeoServer 2.1, which does not publish it, or a
+     * version newer than the known ones) is kept as any other: it is
+     * negotiated again once expired or invalidated.
+     *
+     * @param xml the version document, null if the request failed
+     */
+    static GeoServerCapabilities negotiate(String xml) {
+        if (xml != null) {
+            return new GeoServerCapabilities(GSVersionDecoder.build(xml));
+        }
+        final GSVersionDecoder v = new GSVersionDecoder();
+        v.getGeoServer().setVersion(GSVersionDecoder.VERSION.UNRECOGNIZED.toString());
+        return new GeoServerCapabilities(v, true);
+    }
+
+    private GeoServerCapabilities fetch() {
+        final GeoServerCapabilities fetched = negotiate(transport.get(baseurl
+                + "/rest/about/version.xml", username, password));
+        if (fetched.isFailed() && LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Unable to read the version of " + baseurl + ", will negotiate it again in "
+                    + RETRY_TTL + "ms");
+        }
+        capabilities = fetched;
+        return fetched;
+    }
+}
@@ -0,0 +1,401 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.StoreType;
+import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
+import it.geosolutions.geoserver.rest.encoder.GSAbstractStoreEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSLayerEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSLayerGroupEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSNamespaceEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSResourceEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSWorkspaceEncoder;
+import it.geosolutions.geoserver.rest.encoder.coverage.GSCoverageEncoder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jdom.Element;
+
+/**
+ * A set of catalog objects to be created, along with the order they depend
+ * on each other; run it with a {@link ChangePlanExecutor}.
+ * <P>
+ * Each {@link Change} wraps the encoder the single object methods of the
+ * {@link GeoServerRESTPublisher} and the
+ * {@link it.geosolutions.geoserver.rest.manager.GeoServerRESTStoreManager store manager}
+ * already use. The natural dependencies are found by name when the changes
+ * are added, in any order:
+ * <UL>
+ * <LI>a store depends on its workspace (or namespace)</LI>
+ * <LI>a resource on its store</LI>
+ * <LI>a layer on the resource of the same workspace and name</LI>
+ * <LI>a layer group on its workspace and on the layers and groups it is made
+ * of (qualified names, or names in the workspace of the group; an unqualified
+ * name in a global group matches the layers of any workspace), or on the
+ * resources of the same name when the plan does not configure their layers</LI>
+ * </UL>
+ * Objects which are not part of the plan are assumed to exist. Other
+ * dependencies are declared with {@link Change#dependsOn(Change...)}.
+ */
+public class ChangePlan {
+
+    /**
+     * The kind of catalog object a change creates.
+     */
+    public enum Kind {
+        WORKSPACE, NAMESPACE, STORE, RESOURCE, LAYER, LAYERGROUP
+    }
+
+    /**
+     * A catalog object to be created.
+     */
+    public static final class Change {
+        private final Kind kind;
+
+        private final String workspace;
+
+        private final String store;
+
+        private final String name;
+
+        private final Object encoder;
+
+        private final Set<Change> dependencies = new LinkedHashSet<Change>();
+
+        private Change(Kind kind, String workspace, String store, String name, Object encoder) {
+            this.kind = kind;
+            this.workspace = workspace;
+            this.store = store;
+            this.name = name;
+            this.encoder = encoder;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the workspace of the object, null for global layer groups
+         */
+        public String getWorkspace() {
+            return workspace;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Declares that this change can only be applied once the given ones
+         * have been.
+         *
+         * @return this change
+         */
+        public Change dependsOn(Change... changes) {
+            for (Change change : changes) {
+                if (change == null || change == this)
+                    throw new IllegalArgumentException("Unable to add the dependency using "
+                            + change);
+                dependencies.add(change);
+            }
+            return this;
+        }
+
+        /**
+         * @return the changes this one explicitly depends on
+         */
+        public Set<Change> getDependencies() {
+            return Collections.unmodifiableSet(dependencies);
+        }
+
+        /**
+         * @return the key matching the dependencies of other changes
+         */
+        String key() {
+            switch (kind) {
+            case WORKSPACE:
+            case NAMESPACE:
+                return keyOf(Kind.WORKSPACE, name);
+            case STORE:
+                return keyOf(Kind.STORE, workspace, name);
+            case RESOURCE:
+                return keyOf(Kind.RESOURCE, workspace, name);
+            case LAYER:
+                return keyOf(Kind.LAYER, workspace, name);
+            default:
+                return keyOf(Kind.LAYERGROUP, workspace, name);
+            }
+        }
+
+        /**
+         * @return the key of the change this one depends on by name, null if none
+         */
+        String parentKey() {
+            switch (kind) {
+            case STORE:
+                return keyOf(Kind.WORKSPACE, workspace);
+            case RESOURCE:
+                return keyOf(Kind.STORE, workspace, store);
+            case LAYER:
+                return keyOf(Kind.RESOURCE, workspace, name);
+            case LAYERGROUP:
+                return workspace == null ? null : keyOf(Kind.WORKSPACE, workspace);
+            default:
+                return null;
+            }
+        }
+
+        /**
+         * Sends this change.
+         *
+         * @return true if the object has been created
+         */
+        boolean apply(GeoServerRESTManager manager) {
+            final GeoServerRESTPublisher publisher = manager.getPublisher();
+            switch (kind) {
+            case WORKSPACE:
+                return publisher.createWorkspace(name);
+            case NAMESPACE:
+                return publisher.createNamespace(name, ((GSNamespaceEncoder) encoder).getURI());
+            case STORE:
+                return manager.getStoreManager().create(workspace, (GSAbstractStoreEncoder) encoder);
+            case RESOURCE:
+                final GSResourceEncoder re = (GSResourceEncoder) encoder;
+                return publisher.createResource(workspace,
+                        re instanceof GSCoverageEncoder ? StoreType.COVERAGESTORES
+                                : StoreType.DATASTORES, store, re);
+            case LAYER:
+                return publisher.configureLayer(workspace, name, (GSLayerEncoder) encoder);
+            default:
+                return publisher.createLayerGroup(workspace, name, (GSLayerGroupEncoder) encoder);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + (workspace != null && kind != Kind.WORKSPACE
+                    && kind != Kind.NAMESPACE ? workspace + ":" : "")
+                    + (store != null ? store + "/" : "") + name;
+        }
+    }
+
+    private static String keyOf(Kind kind, String... names) {
+        final StringBuilder sb = new StringBuilder(kind.name());
+        for (String name : names) {
+            sb.append('/').append(name);
+        }
+        return sb.toString();
+    }
+
+    private final Map<String, Change> changes = new LinkedHashMap<String, Change>();
+
+    private Change add(Change change) {
+        if (change.name == null)
+            throw new IllegalArgumentException("Unable to add the change using a null name");
+        final String key = change.key();
+        if (changes.containsKey(key))
+            throw new IllegalArgumentException("Unable to add the change " + change
+                    + ": the plan already contains " + changes.get(key));
+        changes.put(key, change);
+        return change;
+    }
+
+    /**
+     * @param workspace the workspace to create
+     * @throws IllegalArgumentException if the encoder or its name are null,
+     *         or the plan already creates it
+     */
+    public Change workspace(GSWorkspaceEncoder workspace) throws IllegalArgumentException {
+        if (workspace == null)
+            throw new IllegalArgumentException("Unable to add the change using a null encoder");
+        return add(new Change(Kind.WORKSPACE, null, null, workspace.getName(), workspace));
+    }
+
+    /**
+     * Adds a namespace, along with the workspace GeoServer creates with it.
+     *
+     * @param namespace the namespace to create
+     * @throws IllegalArgumentException if the encoder or its prefix are null,
+     *         or the plan already creates the workspace
+     */
+    public Change namespace(GSNamespaceEncoder namespace) throws IllegalArgumentException {
+        if (namespace == null)
+            throw new IllegalArgumentException("Unable to add the change using a null encoder");
+        return add(new Change(Kind.NAMESPACE, null, null, namespace.getPrefix(), namespace));
+    }
+
+    /**
+     * @param workspace the workspace of the store
+     * @param store the store to create
+     * @throws IllegalArgumentException on null arguments or if the plan
+     *         already creates it
+     */
+    public Change store(String workspace, GSAbstractStoreEncoder store)
+            throws IllegalArgumentException {
+        if (workspace == null || store == null)
+            throw new IllegalArgumentException("Unable to add the change using a null argument");
+        return add(new Change(Kind.STORE, workspace, null, store.getName(), store));
+    }
+
+    /**
+     * @param workspace the workspace of the store
+     * @param store the name of the store, a datastore unless the resource is
+     *        a {@link GSCoverageEncoder coverage}
+     * @param resource the feature type or coverage to create
+     * @throws IllegalArgumentException on null arguments or if the plan
+     *         already creates it
+     */
+    public Change resource(String workspace, String store, GSResourceEncoder resource)
+            throws IllegalArgumentException {
+        if (workspace == null || store == null || resource == null)
+            throw new IllegalArgumentException("Unable to add the change using a null argument");
+        return add(new Change(Kind.RESOURCE, workspace, store, resource.getName(), resource));
+    }
+
+    /**
+     * @param workspace the workspace of the resource
+     * @param resourceName the name of the resource (and layer)
+     * @param layer the layer configuration
+     * @throws IllegalArgumentException on null arguments or if the plan
+     *         already configures it
+     */
+    public Change layer(String workspace, String resourceName, GSLayerEncoder layer)
+            throws IllegalArgumentException {
+        if (workspace == null || layer == null)
+            throw new IllegalArgumentException("Unable to add the change using a null argument");
+        return add(new Change(Kind.LAYER, workspace, null, resourceName, layer));
+    }
+
+    /**
+     * @param workspace the workspace of the group, null for a global one
+     * @param name the name of the group
+     * @param group the group to create
+     * @throws IllegalArgumentException on null arguments or if the plan
+     *         already creates it
+     */
+    public Change layerGroup(String workspace, String name, GSLayerGroupEncoder group)
+            throws IllegalArgumentException {
+        if (group == null)
+            throw new IllegalArgumentException("Unable to add the change using a null encoder");
+        return add(new Change(Kind.LAYERGROUP, workspace, null, name, group));
+    }
+
+    /**
+     * @return the changes, in the order they were added
+     */
+    public List<Change> getChanges() {
+        return new ArrayList<Change>(changes.values());
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * @return all the changes the given one depends on, by name or explicitly
+     */
+    Set<Change> getDependencies(Change change) {
+        final Set<Change> dependencies = new LinkedHashSet<Change>();
+        final String parentKey = change.parentKey();
+        if (parentKey != null) {
+            final Change parent = changes.get(parentKey);
+            if (parent != null)
+                dependencies.add(parent);
+        }
+        if (change.kind == Kind.LAYERGROUP) {
+            for (String member : members(change)) {
+                final int colon = member.indexOf(':');
+                final String workspace = colon > 0 ? member.substring(0, colon) : change.workspace;
+                final String name = member.substring(colon + 1);
+                boolean layer = false;
+                for (Change candidate : changes.values()) {
+                    if (candidate != change && isMember(candidate, workspace, name)) {
+                        dependencies.add(candidate);
+                        layer |= candidate.kind == Kind.LAYER;
+                    }
+                }
+                if (!layer) {
+                    // the layer is created along with its resource
+                    for (Change candidate : changes.values()) {
+                        if (candidate.kind == Kind.RESOURCE && name.equals(candidate.name)
+                                && (workspace == null || workspace.equals(candidate.workspace)))
+                            dependencies.add(candidate);
+                    }
+                }
+            }
+        }
+        for (Change dependency : change.dependencies) {
+            if (changes.get(dependency.key()) != dependency)
+                throw new IllegalArgumentException("Unable to plan " + change
+                        + ": it depends on " + dependency + " which is not part of the plan");
+            dependencies.add(dependency);
+        }
+        return dependencies;
+    }
+
+    /**
+     * @return the names of the layers and groups the given group is made of
+     */
+    private static List<String> members(Change group) {
+        final List<String> members = new ArrayList<String>();
+        final Element root = JDOMBuilder.buildElement(group.encoder.toString());
+        if (root == null)
+            return members;
+        // "layers" up to GeoServer 2.2, "publishables" later on
+        for (String tag : new String[] { "layers", "publishables" }) {
+            final Element publishables = root.getChild(tag);
+            if (publishables == null)
+                continue;
+            for (Object published : publishables.getChildren()) {
+                final String name = ((Element) published).getChildTextTrim("name");
+                if (name != null && !name.isEmpty())
+                    members.add(name);
+            }
+        }
+        return members;
+    }
+
+    /**
+     * @param workspace the workspace of the member, null for an unqualified
+     *        member of a global group
+     */
+    private static boolean isMember(Change candidate, String workspace, String name) {
+        if (!name.equals(candidate.name))
+            return false;
+        if (candidate.kind == Kind.LAYER)
+            return workspace == null || workspace.equals(candidate.workspace);
+        if (candidate.kind == Kind.LAYERGROUP)
+            return workspace == null ? candidate.workspace == null : workspace
+                    .equals(candidate.workspace);
+        return false;
+    }
+}
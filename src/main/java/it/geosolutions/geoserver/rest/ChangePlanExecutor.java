@@ -0,0 +1,318 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import it.geosolutions.geoserver.rest.ChangePlan.Change;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies a {@link ChangePlan}, level by level.
+ * <P>
+ * The changes are sorted by their dependencies: the first level holds the
+ * changes depending on nothing, each following level the changes depending
+ * only on the previous ones. The changes of a level are independent, so
+ * they are sent in parallel; the next level starts once the whole level is
+ * done.<BR>
+ * When a change fails, the changes depending on it (directly or not) are
+ * {@link Status#SKIPPED skipped}; the others are still applied.
+ */
+public class ChangePlanExecutor {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ChangePlanExecutor.class);
+
+    /** Default number of changes sent concurrently. */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    /**
+     * The outcome of a change.
+     */
+    public enum Status {
+        /** The object has been created. */
+        APPLIED,
+        /** The call returned false or threw. */
+        FAILED,
+        /** Not sent, since a change it depends on did not succeed. */
+        SKIPPED
+    }
+
+    /**
+     * The outcome of a plan.
+     */
+    public static final class Report {
+        private final List<List<Change>> levels;
+
+        private final Map<Change, Status> statuses = new IdentityHashMap<Change, Status>();
+
+        private final Map<Change, Throwable> errors = new IdentityHashMap<Change, Throwable>();
+
+        private long elapsed;
+
+        Report(List<List<Change>> levels) {
+            this.levels = levels;
+        }
+
+        /**
+         * @return the changes grouped by the level they were applied at
+         */
+        public List<List<Change>> getLevels() {
+            return Collections.unmodifiableList(levels);
+        }
+
+        /**
+         * @return the status of the given change, null if it is not part of the plan
+         */
+        public Status getStatus(Change change) {
+            return statuses.get(change);
+        }
+
+        /**
+         * @return the exception thrown applying the change, null if it did
+         *         not throw
+         */
+        public Throwable getError(Change change) {
+            return errors.get(change);
+        }
+
+        /**
+         * @return the changes having the given status, level by level
+         */
+        public List<Change> getChanges(Status status) {
+            final List<Change> changes = new ArrayList<Change>();
+            for (List<Change> level : levels) {
+                for (Change change : level) {
+                    if (statuses.get(change) == status)
+                        changes.add(change);
+                }
+            }
+            return changes;
+        }
+
+        /**
+         * @return true if all the changes were applied
+         */
+        public boolean isSuccessful() {
+            return !statuses.containsValue(Status.FAILED)
+                    && !statuses.containsValue(Status.SKIPPED);
+        }
+
+        /**
+         * @return the time (ms) spent applying the plan
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return levels.size() + " levels, " + getChanges(Status.APPLIED).size() + " applied, "
+                    + getChanges(Status.FAILED).size() + " failed, "
+                    + getChanges(Status.SKIPPED).size() + " skipped in " + elapsed + " ms";
+        }
+    }
+
+    private final GeoServerRESTManager manager;
+
+    private final int parallelism;
+
+    public ChangePlanExecutor(GeoServerRESTManager manager) {
+        this(manager, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param manager the manager whose publisher and store manager send the changes
+     * @param parallelism max number of changes sent concurrently
+     * @throws IllegalArgumentException if the manager is null or the parallelism is not positive
+     */
+    public ChangePlanExecutor(GeoServerRESTManager manager, int parallelism)
+            throws IllegalArgumentException {
+        if (manager == null)
+            throw new IllegalArgumentException("Unable to create the executor using a null manager");
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Unable to create the executor using parallelism "
+                    + parallelism);
+        this.manager = manager;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Sorts the changes of the given plan by their dependencies.
+     *
+     * @return the changes grouped by level, each one only depending on the
+     *         previous levels; a level keeps the order the changes were added
+     * @throws IllegalArgumentException if the plan contains a dependency
+     *         cycle, or depends on a change which is not part of it
+     */
+    public static List<List<Change>> sort(ChangePlan plan) throws IllegalArgumentException {
+        final List<Change> changes = plan.getChanges();
+        final Map<Change, Integer> order = new HashMap<Change, Integer>();
+        final Map<Change, Integer> pending = new HashMap<Change, Integer>();
+        final Map<Change, List<Change>> dependents = new HashMap<Change, List<Change>>();
+        List<Change> level = new ArrayList<Change>();
+        for (Change change : changes) {
+            final Set<Change> dependencies = plan.getDependencies(change);
+            order.put(change, order.size());
+            pending.put(change, dependencies.size());
+            if (dependencies.isEmpty())
+                level.add(change);
+            for (Change dependency : dependencies) {
+                List<Change> list = dependents.get(dependency);
+                if (list == null) {
+                    list = new ArrayList<Change>();
+                    dependents.put(dependency, list);
+                }
+                list.add(change);
+            }
+        }
+        final List<List<Change>> levels = new ArrayList<List<Change>>();
+        int sorted = 0;
+        while (!level.isEmpty()) {
+            levels.add(level);
+            sorted += level.size();
+            final List<Change> next = new ArrayList<Change>();
+            for (Change change : level) {
+                final List<Change> list = dependents.get(change);
+                if (list == null)
+                    continue;
+                for (Change dependent : list) {
+                    final int left = pending.get(dependent) - 1;
+                    pending.put(dependent, left);
+                    if (left == 0)
+                        next.add(dependent);
+                }
+            }
+            // keep the plan order within a level
+            Collections.sort(next, new Comparator<Change>() {
+                public int compare(Change o1, Change o2) {
+                    return order.get(o1) - order.get(o2);
+                }
+            });
+            level = next;
+        }
+        if (sorted < changes.size()) {
+            final List<Change> cycle = new ArrayList<Change>();
+            for (Change change : changes) {
+                if (pending.get(change) > 0)
+                    cycle.add(change);
+            }
+            throw new IllegalArgumentException("Unable to sort the plan: dependency cycle among "
+                    + cycle);
+        }
+        return levels;
+    }
+
+    /**
+     * Applies the given plan, blocking until it is done.
+     *
+     * @return the status of each change
+     * @throws IllegalArgumentException if the plan is null or can't be
+     *         {@link #sort(ChangePlan) sorted}
+     */
+    public Report execute(final ChangePlan plan) throws IllegalArgumentException {
+        if (plan == null)
+            throw new IllegalArgumentException("Unable to execute a null plan");
+        final long start = System.currentTimeMillis();
+        final Report report = new Report(sort(plan));
+        final ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        final Thread t = new Thread(r, "gs-plan-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        try {
+            for (List<Change> level : report.levels) {
+                final List<Change> sent = new ArrayList<Change>();
+                final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+                for (final Change change : level) {
+                    if (!dependenciesApplied(plan, report, change)) {
+                        report.statuses.put(change, Status.SKIPPED);
+                        if (LOGGER.isWarnEnabled())
+                            LOGGER.warn("Skipping " + change + ": a dependency was not applied");
+                        continue;
+                    }
+                    sent.add(change);
+                    tasks.add(new Callable<Boolean>() {
+                        public Boolean call() {
+                            return change.apply(manager);
+                        }
+                    });
+                }
+                final List<Future<Boolean>> results = executor.invokeAll(tasks);
+                for (int i = 0; i < sent.size(); i++) {
+                    final Change change = sent.get(i);
+                    Status status;
+                    try {
+                        status = results.get(i).get() ? Status.APPLIED : Status.FAILED;
+                    } catch (ExecutionException e) {
+                        status = Status.FAILED;
+                        report.errors.put(change, e.getCause());
+                    }
+                    if (status == Status.FAILED && LOGGER.isWarnEnabled())
+                        LOGGER.warn("Unable to apply " + change);
+                    report.statuses.put(change, status);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while executing the plan", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        report.elapsed = System.currentTimeMillis() - start;
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Plan executed: " + report);
+        return report;
+    }
+
+    private static boolean dependenciesApplied(ChangePlan plan, Report report, Change change) {
+        for (Change dependency : plan.getDependencies(change)) {
+            if (report.statuses.get(dependency) != Status.APPLIED)
+                return false;
+        }
+        return true;
+    }
+}
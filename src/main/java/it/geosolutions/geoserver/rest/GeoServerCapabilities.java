@@ -0,0 +1,139 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import it.geosolutions.geoserver.rest.decoder.RESTLayer;
+import it.geosolutions.geoserver.rest.decoder.RESTLayer21;
+import it.geosolutions.geoserver.rest.decoder.about.GSVersionDecoder;
+import it.geosolutions.geoserver.rest.decoder.about.GSVersionDecoder.GSAboutResource;
+import it.geosolutions.geoserver.rest.decoder.about.GSVersionDecoder.VERSION;
+import it.geosolutions.geoserver.rest.encoder.GSLayerEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSLayerEncoder21;
+import it.geosolutions.geoserver.rest.encoder.utils.ElementUtils;
+import it.geosolutions.geoserver.rest.http.HTTPResponseHandler;
+
+import org.jdom.Element;
+
+/**
+ * What the target GeoServer supports, as negotiated from its
+ * <TT>/rest/about/version.xml</TT>.
+ * <P>
+ * Fetched once by the {@link GeoServerRESTReader reader} (or shared by the
+ * components of a {@link GeoServerRESTManager manager}) and reused by all the
+ * version dependent code paths, i.e. choosing between the 2.1 and the current
+ * layer representation.
+ *
+ * @see GeoServerRESTReader#getCapabilities()
+ */
+public class GeoServerCapabilities {
+
+    private final GSVersionDecoder decoder;
+
+    private final VERSION version;
+
+    private final String versionString;
+
+    private final boolean failed;
+
+    private final long fetchTime;
+
+    /**
+     * @param version the decoded <TT>/rest/about/version.xml</TT>
+     */
+    public GeoServerCapabilities(GSVersionDecoder version) {
+        this(version, false);
+    }
+
+    /**
+     * @param version the decoded <TT>/rest/about/version.xml</TT>
+     * @param failed true if <TT>/rest/about/version.xml</TT> could not be
+     *        read, <TT>version</TT> being then unrecognized
+     */
+    GeoServerCapabilities(GSVersionDecoder version, boolean failed) {
+        this.decoder = version;
+        this.version = version.getVersion();
+        final Element element = ElementUtils.contains(version.getRoot(), GSAboutResource.VERSION);
+        this.versionString = element != null ? element.getTextTrim() : VERSION.UNRECOGNIZED.toString();
+        this.failed = failed;
+        this.fetchTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return the GeoServer version, {@link VERSION#UNRECOGNIZED} for
+     *         GeoServer 2.1 (which does not publish it)
+     */
+    public VERSION getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the decoded <TT>/rest/about/version.xml</TT>
+     */
+    public GSVersionDecoder getVersionDecoder() {
+        return decoder;
+    }
+
+    /**
+     * @return true if layers are represented as in GeoServer 2.1
+     */
+    public boolean isLayer21() {
+        return version == VERSION.UNRECOGNIZED;
+    }
+
+    /**
+     * @return the decoder to use for the layer representation
+     */
+    public HTTPResponseHandler<RESTLayer> getLayerDecoder() {
+        return isLayer21() ? RESTLayer21::build : RESTLayer::build;
+    }
+
+    /**
+     * @return a new {@link GSLayerEncoder21} or {@link GSLayerEncoder},
+     *         depending on the layer representation
+     */
+    public GSLayerEncoder createLayerEncoder() {
+        return isLayer21() ? new GSLayerEncoder21() : new GSLayerEncoder();
+    }
+
+    /**
+     * @return true if <TT>/rest/about/version.xml</TT> could not be read
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * @return when (ms since epoch) the capabilities were fetched
+     */
+    public long getFetchTime() {
+        return fetchTime;
+    }
+
+    @Override
+    public String toString() {
+        return "GeoServerCapabilities[version=" + versionString + "]";
+    }
+}
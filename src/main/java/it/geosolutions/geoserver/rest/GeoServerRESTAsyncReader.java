@@ -0,0 +1,511 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import it.geosolutions.geoserver.rest.decoder.RESTCoverage;
+import it.geosolutions.geoserver.rest.decoder.RESTCoverageList;
+import it.geosolutions.geoserver.rest.decoder.RESTCoverageStore;
+import it.geosolutions.geoserver.rest.decoder.RESTCoverageStoreList;
+import it.geosolutions.geoserver.rest.decoder.RESTDataStore;
+import it.geosolutions.geoserver.rest.decoder.RESTDataStoreList;
+import it.geosolutions.geoserver.rest.decoder.RESTFeatureType;
+import it.geosolutions.geoserver.rest.decoder.RESTFeatureTypeList;
+import it.geosolutions.geoserver.rest.decoder.RESTLayer;
+import it.geosolutions.geoserver.rest.decoder.RESTLayer21;
+import it.geosolutions.geoserver.rest.decoder.RESTLayerGroup;
+import it.geosolutions.geoserver.rest.decoder.RESTLayerGroupList;
+import it.geosolutions.geoserver.rest.decoder.RESTLayerList;
+import it.geosolutions.geoserver.rest.decoder.RESTNamespaceList;
+import it.geosolutions.geoserver.rest.decoder.RESTResource;
+import it.geosolutions.geoserver.rest.decoder.RESTStyle;
+import it.geosolutions.geoserver.rest.decoder.RESTStyleList;
+import it.geosolutions.geoserver.rest.decoder.RESTWorkspaceList;
+import it.geosolutions.geoserver.rest.decoder.about.GSVersionDecoder;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTransport;
+
+import java.net.URL;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Asynchronous facade over the GeoServer REST read API.
+ * <P>
+ * Each getter mirrors the {@link GeoServerRESTReader} one, but returns a
+ * {@link CompletableFuture} of the same decoder type, so many independent
+ * lookups can be overlapped without hand rolled thread pools. Requests are
+ * sent through {@link HTTPTransport#getAsync(String, String, String, Executor)};
+ * decoding and the completion of the returned futures run on the configured
+ * executor.
+ * <P>
+ * At most <TT>maxInFlight</TT> requests are sent concurrently: the exceeding
+ * ones are queued (without blocking the caller) and sent as soon as a running
+ * one completes.
+ * <P>
+ * As for the reader, a future is completed with <TT>null</TT> when the
+ * requested object can't be retrieved.
+ */
+public class GeoServerRESTAsyncReader {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(GeoServerRESTAsyncReader.class);
+
+    /** Default max number of concurrent requests. */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 32;
+
+    private final String baseurl;
+
+    private final String username;
+
+    private final String password;
+
+    private final HTTPTransport transport;
+
+    private final Executor executor;
+
+    private final Semaphore inFlight;
+
+    private final Queue<Runnable> pending = new ConcurrentLinkedQueue<Runnable>();
+
+    private volatile CompletableFuture<GeoServerCapabilities> capabilities;
+
+    private volatile long capabilitiesTTL;
+
+    /**
+     * Shared executor of the readers created with the default transport.
+     * <P>
+     * {@link CommonsHTTPTransport} blocks a thread for each request, so the
+     * common {@link java.util.concurrent.ForkJoinPool} (sized on the number of
+     * CPUs, and shared with unrelated tasks) would be starved well before
+     * {@link #DEFAULT_MAX_IN_FLIGHT} requests are running: a dedicated pool of
+     * that many daemon threads is used instead, idle threads being released
+     * after a minute.
+     */
+    private static final class DefaultExecutor {
+        private static final ThreadPoolExecutor INSTANCE = new ThreadPoolExecutor(
+                DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_IN_FLIGHT, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "geoserver-async-reader-"
+                                + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        static {
+            INSTANCE.allowCoreThreadTimeOut(true);
+        }
+    }
+
+    /**
+     * Creates an async reader using the default transport and
+     * {@link #DEFAULT_MAX_IN_FLIGHT}, with a shared pool of as many daemon
+     * threads since the default transport blocks a thread per request.
+     * <P>
+     * To overlap requests without a thread each, use a transport implementing
+     * {@link HTTPTransport#getAsync(String, String, String, Executor)} with
+     * non blocking I/O (i.e. <TT>JavaHTTPTransport</TT>, available on Java 11
+     * and later) through
+     * {@link #GeoServerRESTAsyncReader(URL, String, String, HTTPTransport, Executor, int)}.
+     *
+     * @param gsUrl the base GeoServer URL (e.g.: <TT>http://localhost:8080/geoserver</TT>)
+     * @param username username auth credential
+     * @param password password auth credential
+     */
+    public GeoServerRESTAsyncReader(URL gsUrl, String username, String password) {
+        this(gsUrl, username, password, CommonsHTTPTransport.getDefault(),
+                DefaultExecutor.INSTANCE, DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * @param gsUrl the base GeoServer URL (e.g.: <TT>http://localhost:8080/geoserver</TT>)
+     * @param username username auth credential
+     * @param password password auth credential
+     * @param transport the transport used for all the REST calls
+     * @param executor the executor used to decode the responses and complete the futures
+     * @param maxInFlight max number of concurrent requests
+     * @throws IllegalArgumentException on null arguments or not positive maxInFlight
+     */
+    public GeoServerRESTAsyncReader(URL gsUrl, String username, String password,
+            HTTPTransport transport, Executor executor, int maxInFlight)
+            throws IllegalArgumentException {
+        if (gsUrl == null || transport == null || executor == null)
+            throw new IllegalArgumentException("Unable to create the reader using a null argument");
+        if (maxInFlight <= 0)
+            throw new IllegalArgumentException("Unable to create the reader using maxInFlight "
+                    + maxInFlight);
+        this.baseurl = HTTPUtils.decurtSlash(gsUrl.toExternalForm());
+        this.username = username;
+        this.password = password;
+        this.transport = transport;
+        this.executor = executor;
+        this.inFlight = new Semaphore(maxInFlight);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getGeoserverVersion()
+     */
+    public CompletableFuture<GSVersionDecoder> getGeoserverVersion() {
+        return getCapabilities().thenApply(GeoServerCapabilities::getVersionDecoder);
+    }
+
+    /**
+     * Returns the capabilities of the target GeoServer, fetched on the first
+     * call and then reused (until expired, see {@link #setCapabilitiesTTL(long)}).
+     *
+     * @see GeoServerRESTReader#getCapabilities()
+     */
+    public CompletableFuture<GeoServerCapabilities> getCapabilities() {
+        CompletableFuture<GeoServerCapabilities> current = capabilities;
+        if (current == null || isExpired(current)) {
+            synchronized (this) {
+                current = capabilities;
+                if (current == null || isExpired(current)) {
+                    // a failed request is negotiated as by CapabilitiesHolder
+                    current = load("/rest/about/version.xml", CapabilitiesHolder::negotiate)
+                            .exceptionally(error -> CapabilitiesHolder.negotiate(null));
+                    capabilities = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    private boolean isExpired(CompletableFuture<GeoServerCapabilities> current) {
+        return current.isDone() && CapabilitiesHolder.isExpired(current.join(), capabilitiesTTL);
+    }
+
+    /**
+     * @see GeoServerRESTReader#setCapabilitiesTTL(long)
+     */
+    public void setCapabilitiesTTL(long ttl) {
+        capabilitiesTTL = ttl;
+    }
+
+    /**
+     * @see GeoServerRESTReader#refreshCapabilities()
+     */
+    public void refreshCapabilities() {
+        capabilities = null;
+    }
+
+    // ==========================================================================
+    // === STYLES
+    // ==========================================================================
+
+    /**
+     * @see GeoServerRESTReader#getStyles()
+     */
+    public CompletableFuture<RESTStyleList> getStyles() {
+        return load("/rest/styles.xml", RESTStyleList::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getStyles(String)
+     */
+    public CompletableFuture<RESTStyleList> getStyles(String workspace) {
+        return load("/rest/workspaces/" + workspace + "/styles.xml", RESTStyleList::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getStyle(String)
+     */
+    public CompletableFuture<RESTStyle> getStyle(String name) {
+        return getStyle(null, name);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getStyle(String, String)
+     */
+    public CompletableFuture<RESTStyle> getStyle(String workspace, String name) {
+        final StringBuilder url = new StringBuilder("/rest");
+        if (workspace != null)
+            url.append("/workspaces/").append(workspace);
+        try {
+            url.append("/styles/").append(URLEncoder.encode(name, "UTF-8")).append(".xml");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 not supported", e);
+        }
+        return load(url.toString(), RESTStyle::build);
+    }
+
+    // ==========================================================================
+    // === WORKSPACES and NAMESPACES
+    // ==========================================================================
+
+    /**
+     * @see GeoServerRESTReader#getWorkspaces()
+     */
+    public CompletableFuture<RESTWorkspaceList> getWorkspaces() {
+        return load("/rest/workspaces.xml", RESTWorkspaceList::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getNamespaces()
+     */
+    public CompletableFuture<RESTNamespaceList> getNamespaces() {
+        return load("/rest/namespaces.xml", RESTNamespaceList::build);
+    }
+
+    // ==========================================================================
+    // === DATASTORES and FEATURETYPES
+    // ==========================================================================
+
+    /**
+     * @see GeoServerRESTReader#getDatastores(String)
+     */
+    public CompletableFuture<RESTDataStoreList> getDatastores(String workspace) {
+        return load("/rest/workspaces/" + workspace + "/datastores.xml", RESTDataStoreList::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getDatastore(String, String)
+     */
+    public CompletableFuture<RESTDataStore> getDatastore(String workspace, String dsName) {
+        return load("/rest/workspaces/" + workspace + "/datastores/" + dsName + ".xml",
+                RESTDataStore::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getFeatureTypes(String)
+     */
+    public CompletableFuture<RESTFeatureTypeList> getFeatureTypes(String workspace) {
+        return load("/rest/workspaces/" + workspace + "/featuretypes.xml",
+                RESTFeatureTypeList::build);
+    }
+
+    /**
+     * Get detailed info about a FeatureType given its workspace and store.
+     */
+    public CompletableFuture<RESTFeatureType> getFeatureType(String workspace, String dsName,
+            String name) {
+        return load("/rest/workspaces/" + workspace + "/datastores/" + dsName + "/featuretypes/"
+                + name + ".xml", RESTFeatureType::build);
+    }
+
+    /**
+     * @return a future completed exceptionally if the layer is not a vector one
+     * @see GeoServerRESTReader#getFeatureType(RESTLayer)
+     */
+    public CompletableFuture<RESTFeatureType> getFeatureType(RESTLayer layer) {
+        if (layer.getType() != RESTLayer.Type.VECTOR)
+            return failed(new RuntimeException("Bad layer type for layer " + layer.getName()));
+        return loadFullURL(layer.getResourceUrl(), RESTFeatureType::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getResource(RESTLayer)
+     */
+    public CompletableFuture<RESTResource> getResource(RESTLayer layer) {
+        return loadFullURL(layer.getResourceUrl(), RESTResource::build);
+    }
+
+    // ==========================================================================
+    // === COVERAGESTORES and COVERAGES
+    // ==========================================================================
+
+    /**
+     * @see GeoServerRESTReader#getCoverageStores(String)
+     */
+    public CompletableFuture<RESTCoverageStoreList> getCoverageStores(String workspace) {
+        return load("/rest/workspaces/" + workspace + "/coveragestores.xml",
+                RESTCoverageStoreList::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getCoverageStore(String, String)
+     */
+    public CompletableFuture<RESTCoverageStore> getCoverageStore(String workspace, String csName) {
+        return load("/rest/workspaces/" + workspace + "/coveragestores/" + csName + ".xml",
+                RESTCoverageStore::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getCoverages(String, String)
+     */
+    public CompletableFuture<RESTCoverageList> getCoverages(String workspace, String csName) {
+        return load("/rest/workspaces/" + workspace + "/coveragestores/" + csName
+                + "/coverages.xml", RESTCoverageList::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getCoverage(String, String, String)
+     */
+    public CompletableFuture<RESTCoverage> getCoverage(String workspace, String store, String name) {
+        return load("/rest/workspaces/" + workspace + "/coveragestores/" + store + "/coverages/"
+                + name + ".xml", RESTCoverage::build);
+    }
+
+    /**
+     * @return a future completed exceptionally if the layer is not a raster one
+     * @see GeoServerRESTReader#getCoverage(RESTLayer)
+     */
+    public CompletableFuture<RESTCoverage> getCoverage(RESTLayer layer) {
+        if (layer.getType() != RESTLayer.Type.RASTER)
+            return failed(new RuntimeException("Bad layer type for layer " + layer.getName()));
+        return loadFullURL(layer.getResourceUrl(), RESTCoverage::build);
+    }
+
+    // ==========================================================================
+    // === LAYERS and LAYERGROUPS
+    // ==========================================================================
+
+    /**
+     * @see GeoServerRESTReader#getLayers()
+     */
+    public CompletableFuture<RESTLayerList> getLayers() {
+        return load("/rest/layers.xml", RESTLayerList::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getLayer(String)
+     */
+    public CompletableFuture<RESTLayer> getLayer(String name) {
+        return load("/rest/layers/" + name + ".xml", RESTLayer::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getLayer(String, String)
+     */
+    public CompletableFuture<RESTLayer> getLayer(String workspace, String name) {
+        if (workspace == null || workspace.isEmpty())
+            throw new IllegalArgumentException("Workspace may not be null");
+        if (name == null || name.isEmpty())
+            throw new IllegalArgumentException("Layername may not be null");
+        final String url = HTTPUtils.append("/rest/layers/", workspace, ":", name, ".xml")
+                .toString();
+        return getCapabilities().thenCompose(
+                c -> this.<RESTLayer> load(url, c.isLayer21() ? RESTLayer21::build : RESTLayer::build));
+    }
+
+    /**
+     * @see GeoServerRESTReader#getLayerGroups()
+     */
+    public CompletableFuture<RESTLayerGroupList> getLayerGroups() {
+        return getLayerGroups(null);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getLayerGroups(String)
+     */
+    public CompletableFuture<RESTLayerGroupList> getLayerGroups(String workspace) {
+        final String url = workspace == null ? "/rest/layergroups.xml" : "/rest/workspaces/"
+                + workspace + "/layergroups.xml";
+        return load(url, RESTLayerGroupList::build);
+    }
+
+    /**
+     * @see GeoServerRESTReader#getLayerGroup(String, String)
+     */
+    public CompletableFuture<RESTLayerGroup> getLayerGroup(String workspace, String name) {
+        final String url = workspace == null ? "/rest/layergroups/" + name + ".xml"
+                : "/rest/workspaces/" + workspace + "/layergroups/" + name + ".xml";
+        return load(url, RESTLayerGroup::build);
+    }
+
+    /**
+     * @return the number of requests queued waiting for a free slot
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * @return a future completed exceptionally with the given error, so that
+     *         callers get the errors the same way whatever their cause
+     */
+    private static <T> CompletableFuture<T> failed(Throwable error) {
+        final CompletableFuture<T> failed = new CompletableFuture<T>();
+        failed.completeExceptionally(error);
+        return failed;
+    }
+
+    private <T> CompletableFuture<T> load(String url, Function<String, ? extends T> decoder) {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Loading from REST path " + url);
+        }
+        return loadFullURL(baseurl + url, decoder);
+    }
+
+    private <T> CompletableFuture<T> loadFullURL(final String url,
+            final Function<String, ? extends T> decoder) {
+        final CompletableFuture<T> result = new CompletableFuture<T>();
+        pending.add(() -> {
+            CompletableFuture<String> response;
+            try {
+                response = transport.getAsync(url, username, password, executor);
+            } catch (RuntimeException e) {
+                response = new CompletableFuture<String>();
+                response.completeExceptionally(e);
+            }
+            response.thenApplyAsync(decoder, executor).whenComplete((value, error) -> {
+                release();
+                if (error != null) {
+                    result.completeExceptionally(error);
+                } else {
+                    result.complete(value);
+                }
+            });
+        });
+        dispatch();
+        return result;
+    }
+
+    private void release() {
+        inFlight.release();
+        dispatch();
+    }
+
+    /**
+     * Sends the queued requests while there are free slots; called each time
+     * a request is queued or completed, so none is left behind.
+     */
+    private void dispatch() {
+        while (!pending.isEmpty() && inFlight.tryAcquire()) {
+            final Runnable next = pending.poll();
+            if (next == null) {
+                inFlight.release();
+            } else {
+                next.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Publishes many datasets at once, running the {@link PublishJob jobs} as a
+ * pipeline of three {@link Stage stages} (store, resource, layer).
+ * <P>
+ * Each stage has its own pool of threads, so i.e. a few slow uploads can run
+ * while the resources and layers of the already uploaded datasets are
+ * configured. A stage accepts at most <TT>threads + queueSize</TT> jobs: when
+ * it is full the previous stage (or the caller, for the first one) blocks
+ * until a slot frees, so a batch of thousands of jobs never piles up in
+ * memory nor floods GeoServer.
+ * <P>
+ * A failed stage (a call returning false or throwing) stops its job, whose
+ * {@link Result} records the stage and the cause; the other jobs go on.
+ * <BR>
+ * Jobs sharing a store are not serialized: jobs uploading data into the
+ * same store should be in different batches.
+ */
+public class GeoServerRESTBatchPublisher {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(GeoServerRESTBatchPublisher.class);
+
+    /** Default number of threads of each stage. */
+    public static final int DEFAULT_THREADS = 4;
+
+    /** Default number of jobs waiting for each stage. */
+    public static final int DEFAULT_QUEUE_SIZE = 16;
+
+    /**
+     * The steps each job goes through, in order.
+     */
+    public enum Stage {
+        /** Store creation and data upload. */
+        STORE,
+        /** Feature type or coverage creation. */
+        RESOURCE,
+        /** Layer configuration. */
+        LAYER
+    }
+
+    /**
+     * The outcome of a single job.
+     */
+    public static final class Result {
+        private final PublishJob job;
+
+        private volatile Stage failedStage;
+
+        private volatile Throwable error;
+
+        private volatile long elapsed;
+
+        Result(PublishJob job) {
+            this.job = job;
+        }
+
+        public PublishJob getJob() {
+            return job;
+        }
+
+        /**
+         * @return true if all the stages of the job succeeded
+         */
+        public boolean isPublished() {
+            return failedStage == null;
+        }
+
+        /**
+         * @return the stage which failed, null if the job was published
+         */
+        public Stage getFailedStage() {
+            return failedStage;
+        }
+
+        /**
+         * @return the exception thrown by the failed stage, null if it
+         *         failed returning false (or the job was published)
+         */
+        public Throwable getError() {
+            return error;
+        }
+
+        /**
+         * @return the time (ms) spent running the stages of this job,
+         *         excluding the time it waited in the queues
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            return job + (isPublished() ? " published" : " failed at " + failedStage
+                    + (error != null ? ": " + error : ""));
+        }
+    }
+
+    /**
+     * Latency and throughput of a stage.
+     */
+    public static final class StageStatistics {
+        private final Stage stage;
+
+        private int count;
+
+        private int failures;
+
+        private long totalLatency;
+
+        private long maxLatency;
+
+        private long firstStart = -1;
+
+        private long lastEnd;
+
+        StageStatistics(Stage stage) {
+            this.stage = stage;
+        }
+
+        synchronized void record(long start, long end, boolean succeeded) {
+            final long latency = end - start;
+            count++;
+            if (!succeeded)
+                failures++;
+            totalLatency += latency;
+            maxLatency = Math.max(maxLatency, latency);
+            if (firstStart < 0 || start < firstStart)
+                firstStart = start;
+            lastEnd = Math.max(lastEnd, end);
+        }
+
+        public Stage getStage() {
+            return stage;
+        }
+
+        /**
+         * @return the number of jobs run by this stage
+         */
+        public synchronized int getCount() {
+            return count;
+        }
+
+        public synchronized int getFailures() {
+            return failures;
+        }
+
+        /**
+         * @return the mean time (ms) a job spent in this stage
+         */
+        public synchronized double getMeanLatency() {
+            return count == 0 ? 0 : totalLatency / (count * 1e6);
+        }
+
+        /**
+         * @return the max time (ms) a job spent in this stage
+         */
+        public synchronized double getMaxLatency() {
+            return maxLatency / 1e6;
+        }
+
+        /**
+         * @return the jobs run per second, between the start of the first
+         *         and the end of the last one
+         */
+        public synchronized double getThroughput() {
+            if (count == 0 || lastEnd <= firstStart)
+                return 0;
+            return count * 1e9 / (lastEnd - firstStart);
+        }
+
+        @Override
+        public synchronized String toString() {
+            return stage + ": " + count + " jobs (" + failures + " failed), mean "
+                    + String.format("%.1f", getMeanLatency()) + " ms, max "
+                    + String.format("%.1f", getMaxLatency()) + " ms, "
+                    + String.format("%.1f", getThroughput()) + " jobs/s";
+        }
+    }
+
+    /**
+     * The outcome of a batch.
+     */
+    public static final class Report {
+        private final List<Result> results;
+
+        private final Map<Stage, StageStatistics> statistics;
+
+        private final long elapsed;
+
+        Report(List<Result> results, Map<Stage, StageStatistics> statistics, long elapsed) {
+            this.results = Collections.unmodifiableList(results);
+            this.statistics = statistics;
+            this.elapsed = elapsed;
+        }
+
+        /**
+         * @return a result for each job, in the order the jobs were given
+         */
+        public List<Result> getResults() {
+            return results;
+        }
+
+        /**
+         * @return the results of the jobs which failed
+         */
+        public List<Result> getFailures() {
+            final List<Result> failures = new ArrayList<Result>();
+            for (Result result : results) {
+                if (!result.isPublished())
+                    failures.add(result);
+            }
+            return failures;
+        }
+
+        public int getPublishedCount() {
+            return results.size() - getFailures().size();
+        }
+
+        public StageStatistics getStatistics(Stage stage) {
+            return statistics.get(stage);
+        }
+
+        /**
+         * @return the wall clock time (ms) spent on the whole batch
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder().append(getPublishedCount()).append('/')
+                    .append(results.size()).append(" published in ").append(elapsed).append(" ms");
+            for (StageStatistics s : statistics.values()) {
+                sb.append("\n  ").append(s);
+            }
+            return sb.toString();
+        }
+    }
+
+    private final GeoServerRESTPublisher publisher;
+
+    private final Map<Stage, Integer> threads = new EnumMap<Stage, Integer>(Stage.class);
+
+    private final int queueSize;
+
+    /**
+     * Creates a batch publisher using {@link #DEFAULT_THREADS} for each stage
+     * and {@link #DEFAULT_QUEUE_SIZE}.
+     */
+    public GeoServerRESTBatchPublisher(GeoServerRESTPublisher publisher) {
+        this(publisher, DEFAULT_THREADS, DEFAULT_THREADS, DEFAULT_THREADS, DEFAULT_QUEUE_SIZE);
+    }
+
+    /**
+     * @param publisher the publisher sending the calls
+     * @param storeThreads the number of concurrent store creations (uploads)
+     * @param resourceThreads the number of concurrent resource creations
+     * @param layerThreads the number of concurrent layer configurations
+     * @param queueSize the number of jobs waiting for each stage, before
+     *        the previous one blocks
+     * @throws IllegalArgumentException if the publisher is null, the threads
+     *         are not positive or the queue size is negative
+     */
+    public GeoServerRESTBatchPublisher(GeoServerRESTPublisher publisher, int storeThreads,
+            int resourceThreads, int layerThreads, int queueSize) throws IllegalArgumentException {
+        if (publisher == null)
+            throw new IllegalArgumentException("Unable to create the batch publisher using a null publisher");
+        if (storeThreads <= 0 || resourceThreads <= 0 || layerThreads <= 0 || queueSize < 0)
+            throw new IllegalArgumentException("Unable to create the batch publisher using threads "
+                    + storeThreads + "/" + resourceThreads + "/" + layerThreads
+                    + " and queue size " + queueSize);
+        this.publisher = publisher;
+        this.threads.put(Stage.STORE, storeThreads);
+        this.threads.put(Stage.RESOURCE, resourceThreads);
+        this.threads.put(Stage.LAYER, layerThreads);
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * Runs the given jobs, blocking until all of them are done.
+     *
+     * @param jobs the datasets to publish
+     * @return the result of each job along with the stage statistics
+     * @throws IllegalArgumentException if jobs is null
+     */
+    public Report publish(List<PublishJob> jobs) throws IllegalArgumentException {
+        if (jobs == null)
+            throw new IllegalArgumentException("Unable to publish using a null job list");
+        return new Batch(jobs).run();
+    }
+
+    /**
+     * The state of a single {@link #publish(List)} call.
+     */
+    private final class Batch {
+        private final List<PublishJob> jobs;
+
+        private final Map<Stage, ExecutorService> executors = new EnumMap<Stage, ExecutorService>(
+                Stage.class);
+
+        private final Map<Stage, Semaphore> slots = new EnumMap<Stage, Semaphore>(Stage.class);
+
+        private final Map<Stage, StageStatistics> statistics = new EnumMap<Stage, StageStatistics>(
+                Stage.class);
+
+        private final CountDownLatch done;
+
+        Batch(List<PublishJob> jobs) {
+            this.jobs = jobs;
+            this.done = new CountDownLatch(jobs.size());
+            for (final Stage stage : Stage.values()) {
+                final int n = threads.get(stage);
+                executors.put(stage, Executors.newFixedThreadPool(n, new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        final Thread t = new Thread(r, "gs-publish-"
+                                + stage.name().toLowerCase() + "-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                }));
+                slots.put(stage, new Semaphore(n + queueSize));
+                statistics.put(stage, new StageStatistics(stage));
+            }
+        }
+
+        Report run() {
+            final long start = System.currentTimeMillis();
+            final List<Result> results = new ArrayList<Result>(jobs.size());
+            try {
+                for (PublishJob job : jobs) {
+                    final Result result = new Result(job);
+                    results.add(result);
+                    submit(job.hasStoreStage() ? Stage.STORE : Stage.RESOURCE, result);
+                }
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while publishing", e);
+            } finally {
+                for (ExecutorService executor : executors.values()) {
+                    executor.shutdownNow();
+                }
+            }
+            final Report report = new Report(results, statistics, System.currentTimeMillis()
+                    - start);
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Batch publishing done: " + report);
+            return report;
+        }
+
+        /**
+         * Hands the job to the given stage, waiting for a free slot.
+         */
+        private void submit(final Stage stage, final Result result) throws InterruptedException {
+            final Semaphore slot = slots.get(stage);
+            slot.acquire();
+            executors.get(stage).execute(new Runnable() {
+                public void run() {
+                    try {
+                        execute(stage, result);
+                    } finally {
+                        slot.release();
+                    }
+                }
+            });
+        }
+
+        private void execute(Stage stage, Result result) {
+            final PublishJob job = result.getJob();
+            boolean succeeded = false;
+            final long start = System.nanoTime();
+            try {
+                switch (stage) {
+                case STORE:
+                    succeeded = job.createStore(publisher);
+                    break;
+                case RESOURCE:
+                    succeeded = job.createResource(publisher);
+                    break;
+                default:
+                    succeeded = job.configureLayer(publisher);
+                }
+            } catch (Throwable e) {
+                // errors included, or the batch would wait for the job forever
+                result.error = e;
+            }
+            final long end = System.nanoTime();
+            statistics.get(stage).record(start, end, succeeded);
+            result.elapsed += (end - start) / 1000000;
+
+            if (!succeeded) {
+                result.failedStage = stage;
+                if (LOGGER.isWarnEnabled())
+                    LOGGER.warn("Unable to publish " + result);
+                done.countDown();
+            } else if (stage == Stage.LAYER) {
+                done.countDown();
+            } else {
+                try {
+                    submit(stage == Stage.STORE ? Stage.RESOURCE : Stage.LAYER, result);
+                } catch (InterruptedException e) {
+                    // the batch has been shut down
+                    Thread.currentThread().interrupt();
+                    result.failedStage = stage;
+                    result.error = e;
+                    done.countDown();
+                } catch (RuntimeException e) {
+                    result.failedStage = stage;
+                    result.error = e;
+                    done.countDown();
+                }
+            }
+        }
+    }
+}
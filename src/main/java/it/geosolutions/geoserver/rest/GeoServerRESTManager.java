@@ -24,6 +24,8 @@
  */
 package it.geosolutions.geoserver.rest;
 
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTransport;
 import it.geosolutions.geoserver.rest.manager.GeoServerRESTAbstractManager;
 import it.geosolutions.geoserver.rest.manager.GeoServerRESTStoreManager;
 import it.geosolutions.geoserver.rest.manager.GeoServerRESTStructuredGridCoverageReaderManager;
@@ -68,14 +70,30 @@ public class GeoServerRESTManager extends GeoServerRESTAbstractManager {
      */
     public GeoServerRESTManager(URL restURL, String username, String password)
             throws IllegalArgumentException {
-        super(restURL, username, password);
+        this(restURL, username, password, CommonsHTTPTransport.getDefault());
+    }
+
+    /**
+     * Indicates connection parameters to remote GeoServer instance and the
+     * transport shared by all the components.
+     * 
+     * @param restURL GeoServer REST API endpoint
+     * @param username GeoServer REST API authorized username
+     * @param password GeoServer REST API password for the former username
+     * @param transport the pooled transport used by all the components
+     * @throws IllegalArgumentException {@link GeoServerRESTAbstractManager#GeoServerRESTAbstractManager(URL, String, String, HTTPTransport)}
+     */
+    public GeoServerRESTManager(URL restURL, String username, String password,
+            HTTPTransport transport) throws IllegalArgumentException {
+        super(restURL, username, password, transport);
 
         // Internal publisher and reader, provide simple access methods.
-        publisher = new GeoServerRESTPublisher(restURL.toString(), username, password);
-        reader = new GeoServerRESTReader(restURL, username, password);
-        structuredGridCoverageReader = new GeoServerRESTStructuredGridCoverageReaderManager(restURL, username, password);
-        storeManager = new GeoServerRESTStoreManager(restURL, gsuser, gspass);
-        styleManager = new GeoServerRESTStyleManager(restURL, gsuser, gspass);
+        publisher = new GeoServerRESTPublisher(restURL.toString(), username, password, transport);
+        reader = new GeoServerRESTReader(restURL, username, password, transport);
+        publisher.setCapabilitiesHolder(reader.getCapabilitiesHolder());
+        structuredGridCoverageReader = new GeoServerRESTStructuredGridCoverageReaderManager(restURL, username, password, transport);
+        storeManager = new GeoServerRESTStoreManager(restURL, gsuser, gspass, transport);
+        styleManager = new GeoServerRESTStyleManager(restURL, gsuser, gspass, transport);
     }
 
     public GeoServerRESTPublisher getPublisher() {
@@ -86,6 +104,13 @@ public class GeoServerRESTManager extends GeoServerRESTAbstractManager {
         return reader;
     }
 
+    /**
+     * @return the capabilities of the GeoServer, shared by the reader and the publisher
+     */
+    public GeoServerCapabilities getCapabilities() {
+        return reader.getCapabilities();
+    }
+
     public GeoServerRESTStoreManager getStoreManager() {
         return storeManager;
     }
@@ -98,4 +123,15 @@ public class GeoServerRESTManager extends GeoServerRESTAbstractManager {
         return structuredGridCoverageReader;
     }
 
+    /**
+     * @return the transport shared by the reader, the publisher and the
+     *         managers; it is the JVM wide {@link CommonsHTTPTransport#getDefault()}
+     *         one unless given at construction time, whose
+     *         {@link HTTPTransport#shutdown()} does nothing. Shut down the
+     *         transports you provide once done with them.
+     */
+    public HTTPTransport getTransport() {
+        return transport;
+    }
+
 }
@@ -25,7 +25,9 @@
 package it.geosolutions.geoserver.rest;
 
 import it.geosolutions.geoserver.rest.decoder.RESTCoverage;
+import it.geosolutions.geoserver.rest.decoder.RESTCoverageList;
 import it.geosolutions.geoserver.rest.decoder.RESTCoverageStore;
+import it.geosolutions.geoserver.rest.decoder.RESTFeatureTypeList;
 import it.geosolutions.geoserver.rest.decoder.RESTStructuredCoverageGranulesList;
 import it.geosolutions.geoserver.rest.decoder.RESTStyleList;
 import it.geosolutions.geoserver.rest.decoder.utils.NameLinkElem;
@@ -39,6 +41,8 @@ import it.geosolutions.geoserver.rest.encoder.GSResourceEncoder.ProjectionPolicy
 import it.geosolutions.geoserver.rest.encoder.GSWorkspaceEncoder;
 import it.geosolutions.geoserver.rest.encoder.coverage.GSCoverageEncoder;
 import it.geosolutions.geoserver.rest.encoder.feature.GSFeatureTypeEncoder;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTransport;
 import it.geosolutions.geoserver.rest.manager.GeoServerRESTStructuredGridCoverageReaderManager;
 import it.geosolutions.geoserver.rest.manager.GeoServerRESTStructuredGridCoverageReaderManager.ConfigureCoveragesOption;
 import it.geosolutions.geoserver.rest.manager.GeoServerRESTStyleManager;
@@ -51,6 +55,11 @@ import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
 import org.apache.commons.httpclient.NameValuePair;
@@ -89,7 +98,21 @@ public class GeoServerRESTPublisher {
     private final String gspass;
 
 
+    /**
+     * Transport used for all the REST calls, possibly shared with other readers and managers.
+     */
+    private final HTTPTransport transport;
+
     private final GeoServerRESTStyleManager styleManager;
+
+    private CapabilitiesHolder capabilities;
+
+    /** The scope deferring the reloads, if any. */
+    private ReloadScope reloadScope;
+
+    /** The ledger of the uploaded files, if any. */
+    private volatile UploadLedger uploadLedger;
+
     /**
      * Creates a <TT>GeoServerRESTPublisher</TT> to connect against a GeoServer instance with the given URL and user credentials.
      * 
@@ -98,9 +121,26 @@ public class GeoServerRESTPublisher {
      * @param password auth credential
      */
     public GeoServerRESTPublisher(String restURL, String username, String password) {
+        this(restURL, username, password, CommonsHTTPTransport.getDefault());
+    }
+
+    /**
+     * Creates a <TT>GeoServerRESTPublisher</TT> to connect against a GeoServer instance with the given URL and user credentials,
+     * using the given (shared) transport.
+     * 
+     * @param restURL the base GeoServer URL (e.g.: <TT>http://localhost:8080/geoserver</TT>)
+     * @param username auth credential
+     * @param password auth credential
+     * @param transport the transport used for all the REST calls
+     */
+    public GeoServerRESTPublisher(String restURL, String username, String password,
+            HTTPTransport transport) {
+        if (transport == null)
+            throw new IllegalArgumentException("Unable to create the publisher using a null transport");
         this.restURL = HTTPUtils.decurtSlash(restURL);
         this.gsuser = username;
         this.gspass = password;
+        this.transport = transport;
 
         URL url = null;
         try {
@@ -108,7 +148,61 @@ public class GeoServerRESTPublisher {
         } catch (MalformedURLException ex) {
             LOGGER.error("Bad URL: Calls to GeoServer are going to fail" , ex);
         }
-        styleManager = new GeoServerRESTStyleManager(url, username, password);
+        styleManager = new GeoServerRESTStyleManager(url, username, password, transport);
+        capabilities = new CapabilitiesHolder(transport, this.restURL, username, password);
+    }
+
+    /**
+     * Returns the capabilities of the target GeoServer (fetched on first use),
+     * used i.e. to choose the layer representation.
+     * 
+     * @see GeoServerRESTReader#getCapabilities()
+     */
+    public GeoServerCapabilities getCapabilities() {
+        return capabilities.get();
+    }
+
+    /**
+     * Sets the ledger used to skip the uploads of unchanged files.
+     * <P>
+     * With a ledger, a {@link UploadMethod#FILE FILE} upload is not sent when
+     * the same content has already been uploaded to the same store with the
+     * same parameters (and the store and the resources it configured still
+     * exist), and the publish methods creating a resource after a skipped
+     * upload update it instead (so that publishing again an unchanged file
+     * only reconfigures its metadata).
+     * 
+     * @param ledger the ledger, null to always upload
+     * @see UploadLedger
+     */
+    public void setUploadLedger(UploadLedger ledger) {
+        this.uploadLedger = ledger;
+    }
+
+    public UploadLedger getUploadLedger() {
+        return uploadLedger;
+    }
+
+    /**
+     * Forgets the uploads to the given targets, once removed.
+     */
+    private void forgetUploads(String prefix) {
+        final UploadLedger ledger = uploadLedger;
+        if (ledger != null) {
+            try {
+                ledger.forget(prefix);
+            } catch (IOException e) {
+                if (LOGGER.isWarnEnabled())
+                    LOGGER.warn("Unable to save the upload ledger " + ledger.getFile(), e);
+            }
+        }
+    }
+
+    /**
+     * Shares the capabilities fetched by a reader talking to the same GeoServer.
+     */
+    void setCapabilitiesHolder(CapabilitiesHolder capabilities) {
+        this.capabilities = capabilities;
     }
 
     // ==========================================================================
@@ -166,7 +260,7 @@ public class GeoServerRESTPublisher {
         bkpenc.setIncludeData(includedata);
         bkpenc.setIncludeGwc(includegwc);
         bkpenc.setIncludeLog(includelog);
-        final String result = HTTPUtils.post(bkpUrl.toString(), bkpenc.toString(), "text/xml",
+        final String result = transport.post(bkpUrl.toString(), bkpenc.toString(), "text/xml",
                 gsuser, gspass);
 
         return result;
@@ -196,7 +290,7 @@ public class GeoServerRESTPublisher {
 
         final GSBackupEncoder bkpenc = new GSBackupEncoder(backupDir);
 
-        final String result = HTTPUtils.post(bkpUrl.toString(), bkpenc.toString(), "text/xml",
+        final String result = transport.post(bkpUrl.toString(), bkpenc.toString(), "text/xml",
                 gsuser, gspass);
 
         return result;
@@ -226,7 +320,7 @@ public class GeoServerRESTPublisher {
         final String sUrl = restURL + "/rest/workspaces";
         final GSWorkspaceEncoder wsenc = new GSWorkspaceEncoder(workspace);
         final String wsxml = wsenc.toString();
-        final String result = HTTPUtils.postXml(sUrl, wsxml, gsuser, gspass);
+        final String result = transport.postXml(sUrl, wsxml, gsuser, gspass);
         return result != null;
     }
 
@@ -264,7 +358,7 @@ public class GeoServerRESTPublisher {
         final String sUrl = restURL + "/rest/namespaces";
         final GSNamespaceEncoder nsenc = new GSNamespaceEncoder(prefix, uri);
         final String nsxml = nsenc.toString();
-        final String result = HTTPUtils.postXml(sUrl, nsxml, gsuser, gspass);
+        final String result = transport.postXml(sUrl, nsxml, gsuser, gspass);
         return result != null;
     }
 
@@ -282,7 +376,7 @@ public class GeoServerRESTPublisher {
         final String sUrl = restURL + "/rest/namespaces/" + encode(prefix);
         final GSNamespaceEncoder nsenc = new GSNamespaceEncoder(prefix, uri);
         final String nsxml = nsenc.toString();
-        final String result = HTTPUtils.put(sUrl, nsxml, "application/xml", gsuser, gspass);
+        final String result = transport.put(sUrl, nsxml, "application/xml", gsuser, gspass);
         return result != null;
     }
 
@@ -819,7 +913,30 @@ public class GeoServerRESTPublisher {
      * @throws IllegalArgumentException if any of the mandatory {@code workspace}, {@code dsType}, {@code storeName}, {@code method},
      *         {@code extension}, {@code mimeType} or {@code uri} parameters are {@code null}.
      */
-    private boolean createStore(String workspace, StoreType dsType, String storeName,
+    boolean createStore(String workspace, StoreType dsType, String storeName,
+            UploadMethod method, Enum extension, String mimeType, URI uri,
+            ParameterConfigure configure, NameValuePair... params) throws FileNotFoundException,
+            IllegalArgumentException {
+        return sendStore(workspace, dsType, storeName, method, extension, mimeType, uri,
+                configure, params) != StoreUpload.FAILED;
+    }
+
+    /**
+     * The outcome of {@link GeoServerRESTPublisher#sendStore sendStore}.
+     */
+    enum StoreUpload {
+        FAILED,
+        SENT,
+        /** Not uploaded, since unchanged according to the {@link UploadLedger}. */
+        SKIPPED
+    }
+
+    /**
+     * Same as {@link #createStore}, telling whether the upload has been
+     * skipped so that the resources can be updated instead of created, see
+     * {@link #createResource(String, StoreType, String, GSResourceEncoder, boolean)}.
+     */
+    StoreUpload sendStore(String workspace, StoreType dsType, String storeName,
             UploadMethod method, Enum extension, String mimeType, URI uri,
             ParameterConfigure configure, NameValuePair... params) throws FileNotFoundException,
             IllegalArgumentException {
@@ -830,6 +947,8 @@ public class GeoServerRESTPublisher {
         StringBuilder sbUrl = new StringBuilder(restURL).append("/rest/workspaces/")
                 .append(workspace).append("/").append(dsType).append("/").append(storeName)
                 .append("/").append(method).append(".").append(extension);
+        final String target = sbUrl.toString();
+        final String uploadTarget = uploadTarget(target, configure, params);
 
         if (configure != null) {
             sbUrl.append("?configure=").append(configure);
@@ -847,51 +966,161 @@ public class GeoServerRESTPublisher {
             final File file = new File(uri);
             if (!file.exists())
                 throw new FileNotFoundException("unable to locate file: " + file);
-            sentResult = HTTPUtils.put(sbUrl.toString(), file, mimeType, gsuser, gspass);
+            final UploadLedger ledger = uploadLedger;
+            String digest = null;
+            if (ledger != null) {
+                try {
+                    digest = ledger.digest(file);
+                } catch (IOException e) {
+                    if (LOGGER.isWarnEnabled())
+                        LOGGER.warn("Unable to hash " + file + ", uploading it", e);
+                }
+                if (ledger.contains(uploadTarget, digest)) {
+                    // the store may have been removed by another client
+                    final String storeUrl = HTTPUtils.append(restURL, "/rest/workspaces/",
+                            workspace, "/", dsType.toString(), "/", storeName, ".xml").toString();
+                    if (!transport.exists(storeUrl, gsuser, gspass)) {
+                        if (LOGGER.isInfoEnabled())
+                            LOGGER.info("Store " + storeName + " no longer exists, uploading "
+                                    + file);
+                        forgetUploads(target);
+                    } else if (!existsConfigured(workspace, dsType, storeName, file, configure,
+                            params)) {
+                        // and so may have been what the upload configured
+                        if (LOGGER.isInfoEnabled())
+                            LOGGER.info("The resources configured from " + file
+                                    + " no longer exist, uploading it");
+                    } else {
+                        if (LOGGER.isInfoEnabled())
+                            LOGGER.info("Not uploading unchanged file " + file + " to "
+                                    + uploadTarget);
+                        return StoreUpload.SKIPPED;
+                    }
+                }
+            }
+            sentResult = transport.put(sbUrl.toString(), file, mimeType, gsuser, gspass);
+            if (sentResult != null && digest != null) {
+                try {
+                    ledger.record(uploadTarget, digest);
+                } catch (IOException e) {
+                    if (LOGGER.isWarnEnabled())
+                        LOGGER.warn("Unable to save the upload ledger " + ledger.getFile(), e);
+                }
+            }
         } else if (method.equals(UploadMethod.EXTERNAL)) {
-            sentResult = HTTPUtils.put(sbUrl.toString(), uri.toString(), mimeType, gsuser, gspass);
+            sentResult = transport.put(sbUrl.toString(), uri.toString(), mimeType, gsuser, gspass);
         } else if (method.equals(UploadMethod.URL)) {
             // TODO check
-            sentResult = HTTPUtils.put(sbUrl.toString(), uri.toString(), mimeType, gsuser, gspass);
+            sentResult = transport.put(sbUrl.toString(), uri.toString(), mimeType, gsuser, gspass);
         }
 
         if (sentResult != null) {
             if (LOGGER.isInfoEnabled())
                 LOGGER.info("Store successfully created using ( " + uri + " )");
-            return true;
+            return StoreUpload.SENT;
         } else {
             if (LOGGER.isErrorEnabled())
                 LOGGER.error("Error in creating store using: " + uri);
-            return false;
+            return StoreUpload.FAILED;
         }
 
     }
 
     /**
-     * Upload and publish vector data, and automatically create the associated DataStore if needed.
-     * 
-     * Note that this is same as {@link #createStore} but specific for vector data (that is, {@code dsType} being {@link DataStoreType#DATASTORES}).
-     * 
-     * @param workspace workspace where data will be published.
-     * @param storeName DataStore name. Will be created if doesn't exist.
-     * @param method Publication method. See {@link UploadMethod}.
-     * @param extension Dataset format. One of {@link DataStoreExtension}.
-     * @param mimeType Dataset MIME type.
-     * @param uri The data location. A local path for {@link UploadMethod#FILE}, a server path for {@link UploadMethod#EXTERNAL}, or a URL for
-     *        {@link UploadMethod#URL}.
-     * @param configure Indicate if associated feature types will be automatically configured. See {@link ParameterConfigure}.
-     * @param params Other parameters to be included in request, such as "update" or "charset". See GeoServer REST documentation for details: <a href=
-     *        "http://docs.geoserver.org/latest/en/user/restconfig/rest-config-api.html#id2" >dataStore operations</a>.
-     * @return {@code true} if the store was successfully created.
-     * @throws FileNotFoundException if local file does not exist when using the {@link UploadMethod#FILE} method.
-     * @throws IllegalArgumentException if any of the mandatory {@code workspace}, {@code storeName}, {@code method}, {@code extension},
-     *         {@code mimeType} or {@code uri} parameters are {@code null}.
+     * Returns the key of an upload in the {@link UploadLedger}: the upload URL
+     * followed by its sorted parameters, which select what is configured from
+     * the uploaded data.
      */
-    private boolean createDataStore(String workspace, String storeName, UploadMethod method,
-            DataStoreExtension extension, String mimeType, URI uri, ParameterConfigure configure,
-            NameValuePair... params) throws FileNotFoundException, IllegalArgumentException {
-        return createStore(workspace, StoreType.DATASTORES, storeName, method, extension, mimeType,
-                uri, configure, params);
+    private static String uploadTarget(String target, ParameterConfigure configure,
+            NameValuePair... params) {
+        if (configure == null) {
+            // parameters are only sent along with configure
+            return target;
+        }
+        final List<String> query = new ArrayList<String>();
+        if (params != (NameValuePair[]) null) {
+            for (NameValuePair param : params) {
+                if (param != null && param.getName() != null && !param.getName().isEmpty()
+                        && param.getValue() != null && !param.getValue().isEmpty()) {
+                    query.add(param.getName() + "=" + param.getValue());
+                }
+            }
+        }
+        Collections.sort(query);
+        final StringBuilder sb = new StringBuilder(target).append("?configure=").append(configure);
+        for (String param : query) {
+            sb.append("&").append(param);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Checks that the resources configured by an upload still exist, as they
+     * may have been removed (keeping their store) by another client.
+     * <P>
+     * Nothing is configured by {@link ParameterConfigure#NONE} uploads, whose
+     * resources are created (or updated) by the following {@link #createResource} call.
+     * Otherwise the named coverage (see the <TT>coverageName</TT> parameter)
+     * or, for zipped shapefiles, the feature types of the zipped <TT>.shp</TT>
+     * files (any of them for {@link ParameterConfigure#FIRST}) have to exist;
+     * in the other cases the store has to hold at least a resource.
+     */
+    private boolean existsConfigured(String workspace, StoreType dsType, String storeName,
+            File file, ParameterConfigure configure, NameValuePair... params) {
+        if (configure == ParameterConfigure.NONE) {
+            return true;
+        }
+        final String storeUrl = HTTPUtils.append(restURL, "/rest/workspaces/", workspace, "/",
+                dsType.toString(), "/", storeName, "/").toString();
+        if (dsType == StoreType.COVERAGESTORES && params != (NameValuePair[]) null) {
+            for (NameValuePair param : params) {
+                if (param != null && "coverageName".equals(param.getName())
+                        && param.getValue() != null && !param.getValue().isEmpty()) {
+                    return transport.exists(storeUrl + "coverages/" + param.getValue() + ".xml",
+                            gsuser, gspass);
+                }
+            }
+        }
+        final String response = transport.get(storeUrl + dsType.getTypeNameWithFormat(Format.XML),
+                gsuser, gspass);
+        if (response == null) {
+            return false;
+        }
+        final List<String> names = dsType == StoreType.DATASTORES ? RESTFeatureTypeList.build(
+                response).getNames() : RESTCoverageList.build(response).getNames();
+        if (dsType == StoreType.DATASTORES && file.getName().toLowerCase().endsWith(".zip")) {
+            final List<String> shapefiles = new ArrayList<String>();
+            ZipFile zip = null;
+            try {
+                zip = new ZipFile(file);
+                for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries
+                        .hasMoreElements();) {
+                    final String entry = entries.nextElement().getName();
+                    if (entry.toLowerCase().endsWith(".shp")) {
+                        shapefiles.add(FilenameUtils.getBaseName(entry));
+                    }
+                }
+            } catch (IOException e) {
+                if (LOGGER.isWarnEnabled())
+                    LOGGER.warn("Unable to list the shapefiles of " + file, e);
+                return false;
+            } finally {
+                if (zip != null) {
+                    try {
+                        zip.close();
+                    } catch (IOException e) {
+                        // nothing to do
+                    }
+                }
+            }
+            if (!shapefiles.isEmpty()) {
+                if (configure == ParameterConfigure.ALL) {
+                    return names.containsAll(shapefiles);
+                }
+                return !Collections.disjoint(names, shapefiles);
+            }
+        }
+        return !names.isEmpty();
     }
 
     /**
@@ -938,7 +1167,7 @@ public class GeoServerRESTPublisher {
             GSPostGISDatastoreEncoder datastoreEncoder) {
         String sUrl = restURL + "/rest/workspaces/" + workspace + "/datastores/";
         String xml = datastoreEncoder.toString();
-        String result = HTTPUtils.postXml(sUrl, xml, gsuser, gspass);
+        String result = transport.postXml(sUrl, xml, gsuser, gspass);
         return result != null;
     }
 
@@ -955,7 +1184,7 @@ public class GeoServerRESTPublisher {
         fte.setTitle(layername);
         fte.setName(layername);
         fte.setSRS(srs); // srs=null?"EPSG:4326":srs);
-        final GSLayerEncoder layerEncoder = new GSLayerEncoder();
+        final GSLayerEncoder layerEncoder = getCapabilities().createLayerEncoder();
         layerEncoder.setDefaultStyle(defaultStyle);
         return publishDBLayer(workspace, storename, fte, layerEncoder);
     }
@@ -990,7 +1219,7 @@ public class GeoServerRESTPublisher {
             return false;
         }
 
-        String configuredResult = HTTPUtils.postXml(postUrl.toString(), ftypeXml, this.gsuser,
+        String configuredResult = transport.postXml(postUrl.toString(), ftypeXml, this.gsuser,
                 this.gspass);
         boolean published = configuredResult != null;
         boolean configured = false;
@@ -1121,10 +1350,11 @@ public class GeoServerRESTPublisher {
         default:
             mimeType = null;
         }
-        if (!createDataStore(workspace,
+        final StoreUpload upload = sendStore(workspace, StoreType.DATASTORES,
                 (storeName != null) ? storeName : FilenameUtils.getBaseName(shapefile.toString()),
                 method, DataStoreExtension.SHP, mimeType, shapefile, ParameterConfigure.NONE,
-                storeParams)) {
+                storeParams);
+        if (upload == StoreUpload.FAILED) {
             LOGGER.error("Unable to create data store for shapefile: " + shapefile);
             return false;
         }
@@ -1146,13 +1376,14 @@ public class GeoServerRESTPublisher {
         }
         featureTypeEncoder.setProjectionPolicy(policy);
 
-        if (!createResource(workspace, StoreType.DATASTORES, storeName, featureTypeEncoder)) {
+        if (!createResource(workspace, StoreType.DATASTORES, storeName, featureTypeEncoder,
+                upload == StoreUpload.SKIPPED)) {
             LOGGER.error("Unable to create a coverage store for coverage: " + shapefile);
             return false;
         }
 
         // config layer props (style, ...)
-        final GSLayerEncoder layerEncoder = new GSLayerEncoder();
+        final GSLayerEncoder layerEncoder = getCapabilities().createLayerEncoder();
         if (defaultStyle != null && !defaultStyle.isEmpty())
             layerEncoder.setDefaultStyle(defaultStyle);
 
@@ -1589,11 +1820,12 @@ public class GeoServerRESTPublisher {
                 || srs == null || policy == null || defaultStyle == null)
             throw new IllegalArgumentException("Unable to run: null parameter");
 
-        if (!createCoverageStore(
-                workspace,
+        final StoreUpload upload = sendStore(
+                workspace, StoreType.COVERAGESTORES,
                 (storeName != null) ? storeName : FilenameUtils.getBaseName(geotiff
                         .getAbsolutePath()), UploadMethod.FILE, CoverageStoreExtension.GEOTIFF,
-                "image/geotiff", geotiff.toURI(), ParameterConfigure.NONE, (NameValuePair[]) null)) {
+                "image/geotiff", geotiff.toURI(), ParameterConfigure.NONE, (NameValuePair[]) null);
+        if (upload == StoreUpload.FAILED) {
             LOGGER.error("Unable to create coverage store for coverage: " + geotiff);
             return false;
         }
@@ -1608,13 +1840,14 @@ public class GeoServerRESTPublisher {
             coverageEncoder.setLatLonBoundingBox(bbox[0], bbox[1], bbox[2], bbox[3], DEFAULT_CRS);
         }
 
-        if (!createCoverage(workspace, storeName, coverageEncoder)) {
+        if (!createResource(workspace, StoreType.COVERAGESTORES, storeName, coverageEncoder,
+                upload == StoreUpload.SKIPPED)) {
             LOGGER.error("Unable to create a coverage store for coverage: " + geotiff);
             return false;
         }
 
         // config layer props (style, ...)
-        final GSLayerEncoder layerEncoder = new GSLayerEncoder();
+        final GSLayerEncoder layerEncoder = getCapabilities().createLayerEncoder();
         layerEncoder.setDefaultStyle(defaultStyle);
 
         return configureLayer(workspace, coverageName, layerEncoder);
@@ -1649,7 +1882,7 @@ public class GeoServerRESTPublisher {
         coverageEncoder.setProjectionPolicy(policy);
 
         // config layer props (style, ...)
-        final GSLayerEncoder layerEncoder = new GSLayerEncoder();
+        final GSLayerEncoder layerEncoder = getCapabilities().createLayerEncoder();
         layerEncoder.setDefaultStyle(defaultStyle);
 
         return publishExternalGeoTIFF(workspace, storeName, geotiff, coverageEncoder, layerEncoder) != null ? true
@@ -1702,7 +1935,7 @@ public class GeoServerRESTPublisher {
         if (configureLayer(workspace, coverageName, layerEncoder)) {
             GeoServerRESTReader reader;
             try {
-                reader = new GeoServerRESTReader(this.restURL, this.gsuser, this.gspass);
+                reader = new GeoServerRESTReader(this.restURL, this.gsuser, this.gspass, transport);
                 return reader.getCoverageStore(workspace, storeName);
             } catch (MalformedURLException e) {
                 LOGGER.error(e.getMessage(), e);
@@ -1818,7 +2051,7 @@ public class GeoServerRESTPublisher {
         String sUrl = restURL + "/rest/workspaces/" + workspace + "/coveragestores/" + storeName
                 + "/external.imagemosaic?configure=" + configure.toString() + "&update="
                 + update.toString();
-        String sendResult = HTTPUtils.put(sUrl, mosaicDir.toURI().toString(), "text/plain", gsuser,
+        String sendResult = transport.put(sUrl, mosaicDir.toURI().toString(), "text/plain", gsuser,
                 gspass);
         return RESTCoverageStore.build(sendResult);
     }
@@ -1844,7 +2077,7 @@ public class GeoServerRESTPublisher {
         final String name = FilenameUtils.getBaseName(mosaicDir.getName());
         coverageEncoder.setName(name);
 
-        final GSLayerEncoder layerEncoder = new GSLayerEncoder();
+        final GSLayerEncoder layerEncoder = getCapabilities().createLayerEncoder();
         layerEncoder.setDefaultStyle(defaultStyle);
 
         return publishExternalMosaic(workspace, storeName, mosaicDir, coverageEncoder, layerEncoder);
@@ -1946,7 +2179,7 @@ public class GeoServerRESTPublisher {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Going to delete " + "/rest/layers/" + fqLayerName);
             }
-            boolean layerDeleted = HTTPUtils
+            boolean layerDeleted = transport
                     .delete(deleteLayerUrl.toExternalForm(), gsuser, gspass);
             if (!layerDeleted) {
                 LOGGER.warn("Could not delete layer '" + fqLayerName + "'");
@@ -1959,7 +2192,7 @@ public class GeoServerRESTPublisher {
                 LOGGER.debug("Going to delete " + "/rest/workspaces/" + workspace
                         + "/coveragestores/" + storename + "/coverages/" + layerName);
             }
-            boolean covDeleted = HTTPUtils.delete(deleteCovUrl.toExternalForm(), gsuser, gspass);
+            boolean covDeleted = transport.delete(deleteCovUrl.toExternalForm(), gsuser, gspass);
             if (!covDeleted) {
                 LOGGER.warn("Could not delete coverage " + workspace + ":" + storename + "/"
                         + layerName + ", but layer was deleted.");
@@ -2005,7 +2238,7 @@ public class GeoServerRESTPublisher {
             }
             // delete related layer
             URL deleteLayerUrl = new URL(restURL + "/rest/layers/" + fqLayerName);
-            boolean layerDeleted = HTTPUtils
+            boolean layerDeleted = transport
                     .delete(deleteLayerUrl.toExternalForm(), gsuser, gspass);
             if (!layerDeleted) {
                 LOGGER.warn("Could not delete layer '" + fqLayerName + "'");
@@ -2014,7 +2247,7 @@ public class GeoServerRESTPublisher {
             // delete the coverage
             URL deleteFtUrl = new URL(restURL + "/rest/workspaces/" + workspace + "/datastores/"
                     + storename + "/featuretypes/" + layerName);
-            boolean ftDeleted = HTTPUtils.delete(deleteFtUrl.toExternalForm(), gsuser, gspass);
+            boolean ftDeleted = transport.delete(deleteFtUrl.toExternalForm(), gsuser, gspass);
             if (!ftDeleted) {
                 LOGGER.warn("Could not delete featuretype " + workspace + ":" + storename + "/"
                         + layerName + ", but layer was deleted.");
@@ -2143,11 +2376,13 @@ public class GeoServerRESTPublisher {
 
             final URL deleteStore = new URL(url.toString());
 
-            boolean deleted = HTTPUtils.delete(deleteStore.toExternalForm(), gsuser, gspass);
+            boolean deleted = transport.delete(deleteStore.toExternalForm(), gsuser, gspass);
             if (!deleted) {
                 LOGGER.warn("Could not delete store " + workspace + ":" + storename);
             } else {
                 LOGGER.info("Store successfully deleted " + workspace + ":" + storename);
+                forgetUploads(restURL + "/rest/workspaces/" + workspace + "/" + type + "/"
+                        + storename + "/");
             }
 
             return deleted;
@@ -2196,11 +2431,12 @@ public class GeoServerRESTPublisher {
             deleteStylesForWorkspace(workspace); // !!! workaround
 
             final URL deleteUrl = new URL(url.toString());
-            boolean deleted = HTTPUtils.delete(deleteUrl.toExternalForm(), gsuser, gspass);
+            boolean deleted = transport.delete(deleteUrl.toExternalForm(), gsuser, gspass);
             if (!deleted) {
                 LOGGER.warn("Could not delete Workspace " + workspace);
             } else {
                 LOGGER.info("Workspace successfully deleted " + workspace);
+                forgetUploads(restURL + "/rest/workspaces/" + workspace + "/");
             }
 
             return deleted;
@@ -2241,7 +2477,7 @@ public class GeoServerRESTPublisher {
 
         try {
             URL deleteUrl = new URL(url);
-            boolean deleted = HTTPUtils.delete(deleteUrl.toExternalForm(), gsuser, gspass);
+            boolean deleted = transport.delete(deleteUrl.toExternalForm(), gsuser, gspass);
             if (!deleted) {
                 if (LOGGER.isWarnEnabled())
                     LOGGER.warn("Could not delete layergroup " + name);
@@ -2301,7 +2537,7 @@ public class GeoServerRESTPublisher {
 
         final String url = restURL + "/rest/layers/" + fqLayerName;
 
-        boolean result = HTTPUtils.delete(url, gsuser, gspass);
+        boolean result = transport.delete(url, gsuser, gspass);
         if (result) {
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("Layer successfully removed: " + fqLayerName);
@@ -2319,6 +2555,35 @@ public class GeoServerRESTPublisher {
     // ==========================================================================
 
     /**
+     * Opens a scope deferring the reloads requested through this publisher
+     * until it is closed, which then sends each distinct store reload once
+     * (or a single global reload).
+     * 
+     * @return the scope, to be closed once the bulk operation completes
+     * @see ReloadScope
+     */
+    public synchronized ReloadScope deferReloads() {
+        reloadScope = new ReloadScope(this, reloadScope);
+        return reloadScope;
+    }
+
+    /**
+     * Restores the scope open before the given one, if the latter is the
+     * current one.
+     */
+    synchronized void endReloadScope(ReloadScope scope, ReloadScope outer) {
+        if (reloadScope == scope)
+            reloadScope = outer;
+    }
+
+    private synchronized ReloadScope getReloadScope() {
+        return reloadScope;
+    }
+
+    /**
+     * Reloads the given store, forcing GeoServer to read it again.
+     * <P>
+     * Only recorded while a {@link #deferReloads() reload scope} is open.
      * 
      * /workspaces/<ws>/datastores/<ds>.xml /workspaces/<ws>/coveragestores/<ds>.xml
      * 
@@ -2332,9 +2597,21 @@ public class GeoServerRESTPublisher {
      */
     public boolean reloadStore(String workspace, final String storeName, StoreType storeType)
             throws IllegalArgumentException, MalformedURLException {
+        final ReloadScope scope = getReloadScope();
+        if (scope != null && scope.deferStore(workspace, storeName, storeType))
+            return true;
+        return doReloadStore(workspace, storeName, storeType);
+    }
+
+    /**
+     * Reloads the given store, even if a reload scope is open (i.e. sending
+     * the reloads deferred by a scope being closed).
+     */
+    boolean doReloadStore(String workspace, String storeName, StoreType storeType)
+            throws IllegalArgumentException, MalformedURLException {
         final String url = HTTPUtils.append(this.restURL, "/rest/workspaces/", workspace, "/",
                 storeType.toString(), "/", storeName, ".xml").toString();
-        final String store = HTTPUtils.get(url, this.gsuser, this.gspass);
+        final String store = transport.get(url, this.gsuser, this.gspass);
 
         if (store != null) {
             String storeTag = storeType.getTypeName();
@@ -2353,22 +2630,36 @@ public class GeoServerRESTPublisher {
             int start = store.indexOf(startTag);
             String endTag = "</" + storeTag + ">";
             int stop = store.indexOf(endTag) + endTag.length();
-            return HTTPUtils.putXml(url, store.subSequence(0, start) + store.substring(stop),
-                    this.gsuser, this.gspass) != null ? true : false;
+            // the body matches the server state by design, always send it
+            final String body = store.subSequence(0, start) + store.substring(stop);
+            return transport.putXmlUnconditionally(url, body, this.gsuser, this.gspass) != null ? true
+                    : false;
         } else
             return false;
     }
 
     /**
      * Reload the target geoserver configuration
+     * <P>
+     * Only recorded while a {@link #deferReloads() reload scope} is open.
      * 
      * @return true if success
      * 
      * @see <a href="http://docs.geoserver.org/stable/en/user/restconfig/rest-config-api.html">GeoServer REST Config API</a>
      */
     public boolean reload() {
+        final ReloadScope scope = getReloadScope();
+        if (scope != null && scope.deferGlobal())
+            return true;
+        return doReload();
+    }
+
+    /**
+     * Reloads the configuration, even if a reload scope is open.
+     */
+    boolean doReload() {
         String sUrl = restURL + "/rest/reload";
-        String result = HTTPUtils.post(sUrl, "", "text/plain", gsuser, gspass);
+        String result = transport.post(sUrl, "", "text/plain", gsuser, gspass);
         return result != null;
     }
 
@@ -2381,7 +2672,7 @@ public class GeoServerRESTPublisher {
      */
     public boolean reset() {
         String sUrl = restURL + "/rest/reset";
-        String result = HTTPUtils.post(sUrl, "", "text/plain", gsuser, gspass);
+        String result = transport.post(sUrl, "", "text/plain", gsuser, gspass);
         return result != null;
     }
 
@@ -2416,7 +2707,7 @@ public class GeoServerRESTPublisher {
         final String url = restURL + "/rest/layers/" + fqLayerName;
 
         String layerXml = layer.toString();
-        String sendResult = HTTPUtils.putXml(url, layerXml, gsuser, gspass);
+        String sendResult = transport.putXml(url, layerXml, gsuser, gspass);
         if (sendResult != null) {
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("Layer successfully configured: " + fqLayerName);
@@ -2459,7 +2750,7 @@ public class GeoServerRESTPublisher {
 
         group.setName(name);
 
-        String sendResult = HTTPUtils.postXml(url, group.toString(), gsuser, gspass);
+        String sendResult = transport.postXml(url, group.toString(), gsuser, gspass);
         if (sendResult != null) {
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("LayerGroup successfully configured: " + name);
@@ -2499,7 +2790,7 @@ public class GeoServerRESTPublisher {
             url += "/workspaces/" + workspace + "/layergroups/" + name;
         }
 
-        String sendResult = HTTPUtils.putXml(url, group.toString(), gsuser, gspass);
+        String sendResult = transport.putXml(url, group.toString(), gsuser, gspass);
         if (sendResult != null) {
             if (LOGGER.isInfoEnabled()) {
                 LOGGER.info("LayerGroup successfully configured: " + name);
@@ -2544,7 +2835,7 @@ public class GeoServerRESTPublisher {
         // retrieve coverage name
         GeoServerRESTReader reader;
         try {
-            reader = new GeoServerRESTReader(restURL, gsuser, gspass);
+            reader = new GeoServerRESTReader(restURL, gsuser, gspass, transport);
         } catch (MalformedURLException e) {
             if (LOGGER.isErrorEnabled())
                 LOGGER.error(e.getLocalizedMessage(), e);
@@ -2580,7 +2871,7 @@ public class GeoServerRESTPublisher {
                 + "/coverages/" + coverageName + ".xml";
 
         final String xmlBody = ce.toString();
-        final String sendResult = HTTPUtils.putXml(url, xmlBody, gsuser, gspass);
+        final String sendResult = transport.putXml(url, xmlBody, gsuser, gspass);
         if (sendResult != null) {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug("Coverage successfully configured " + wsname + ":" + csname + ":"
@@ -2635,8 +2926,21 @@ public class GeoServerRESTPublisher {
      * @return true if success
      * @throws IllegalArgumentException if arguments are null or empty
      */
-    private boolean createResource(String workspace, StoreType dsType, String storeName,
+    boolean createResource(String workspace, StoreType dsType, String storeName,
             GSResourceEncoder re) throws IllegalArgumentException {
+        return createResource(workspace, dsType, storeName, re, false);
+    }
+
+    /**
+     * Creates a resource, or updates it if the upload of its data has just
+     * been skipped and it still exists (when its existence can't be checked,
+     * i.e. on authentication or server errors, it is created).
+     * 
+     * @param uploadSkipped true if the upload of the store data has been
+     *        skipped, see {@link StoreUpload#SKIPPED}
+     */
+    boolean createResource(String workspace, StoreType dsType, String storeName,
+            GSResourceEncoder re, boolean uploadSkipped) throws IllegalArgumentException {
         if (workspace == null || dsType == null || storeName == null || re == null) {
             throw new IllegalArgumentException("Null argument");
         }
@@ -2651,7 +2955,16 @@ public class GeoServerRESTPublisher {
         }
 
         final String xmlBody = re.toString();
-        final String sendResult = HTTPUtils.postXml(sbUrl.toString(), xmlBody, gsuser, gspass);
+        final String sendResult;
+        final String resourceUrl = new StringBuilder(restURL).append("/rest/workspaces/")
+                .append(workspace).append("/").append(dsType).append("/").append(storeName)
+                .append("/").append(dsType.getTypeName().toLowerCase()).append("/")
+                .append(resourceName).append(".xml").toString();
+        if (uploadSkipped && existsResource(resourceUrl)) {
+            sendResult = transport.putXml(resourceUrl, xmlBody, gsuser, gspass);
+        } else {
+            sendResult = transport.postXml(sbUrl.toString(), xmlBody, gsuser, gspass);
+        }
         if (sendResult != null) {
             if (LOGGER.isDebugEnabled()) {
                 LOGGER.debug(dsType + " successfully created " + workspace + ":" + storeName + ":"
@@ -2666,6 +2979,16 @@ public class GeoServerRESTPublisher {
         return sendResult != null;
     }
 
+    private boolean existsResource(String resourceUrl) {
+        try {
+            return transport.exists(resourceUrl, gsuser, gspass);
+        } catch (RuntimeException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Unable to check " + resourceUrl + ", creating it", e);
+            return false;
+        }
+    }
+
     /**
      * Appends ".DUMMY" to any string containing a dot (<i>sic</i>).
      */
@@ -2756,7 +3079,7 @@ public class GeoServerRESTPublisher {
             String path) {
         try {
             GeoServerRESTStructuredGridCoverageReaderManager manager = new GeoServerRESTStructuredGridCoverageReaderManager(
-                    new URL(restURL), gsuser, gspass);
+                    new URL(restURL), gsuser, gspass, transport);
             return manager.harvestExternal(workspace, coverageStore, format, path);
         } catch (IllegalArgumentException e) {
             if (LOGGER.isInfoEnabled()) {
@@ -2844,7 +3167,7 @@ public class GeoServerRESTPublisher {
         String sUrl = ss.toString();
 
         // POST request
-        String result = HTTPUtils.put(sUrl, zipFile, "application/zip", gsuser, gspass);
+        String result = transport.put(sUrl, zipFile, "application/zip", gsuser, gspass);
         return result != null;
     }
 
@@ -2865,7 +3188,7 @@ public class GeoServerRESTPublisher {
             String granuleId) {
         try {
             GeoServerRESTStructuredGridCoverageReaderManager manager = new GeoServerRESTStructuredGridCoverageReaderManager(
-                    new URL(restURL), gsuser, gspass);
+                    new URL(restURL), gsuser, gspass, transport);
             return manager.removeGranuleById(workspace, coverageStore, coverage, granuleId);
         } catch (IllegalArgumentException e) {
             if (LOGGER.isInfoEnabled()) {
@@ -2896,7 +3219,7 @@ public class GeoServerRESTPublisher {
             String coverage, String filter) throws UnsupportedEncodingException {
         try {
             GeoServerRESTStructuredGridCoverageReaderManager manager = new GeoServerRESTStructuredGridCoverageReaderManager(
-                    new URL(restURL), gsuser, gspass);
+                    new URL(restURL), gsuser, gspass, transport);
             return manager.removeGranulesByCQL(workspace, coverageStore, coverage, filter);
         } catch (IllegalArgumentException e) {
             if (LOGGER.isInfoEnabled()) {
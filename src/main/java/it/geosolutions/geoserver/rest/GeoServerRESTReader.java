@@ -34,7 +34,6 @@ import it.geosolutions.geoserver.rest.decoder.RESTDataStoreList;
 import it.geosolutions.geoserver.rest.decoder.RESTFeatureType;
 import it.geosolutions.geoserver.rest.decoder.RESTFeatureTypeList;
 import it.geosolutions.geoserver.rest.decoder.RESTLayer;
-import it.geosolutions.geoserver.rest.decoder.RESTLayer21;
 import it.geosolutions.geoserver.rest.decoder.RESTLayerGroup;
 import it.geosolutions.geoserver.rest.decoder.RESTLayerGroupList;
 import it.geosolutions.geoserver.rest.decoder.RESTLayerList;
@@ -51,6 +50,9 @@ import it.geosolutions.geoserver.rest.decoder.RESTWmsStore;
 import it.geosolutions.geoserver.rest.decoder.RESTWmsStoreList;
 import it.geosolutions.geoserver.rest.decoder.RESTWorkspaceList;
 import it.geosolutions.geoserver.rest.decoder.about.GSVersionDecoder;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPResponseHandler;
+import it.geosolutions.geoserver.rest.http.HTTPTransport;
 import it.geosolutions.geoserver.rest.manager.GeoServerRESTStructuredGridCoverageReaderManager;
 import it.geosolutions.geoserver.rest.manager.GeoServerRESTStyleManager;
 
@@ -71,6 +73,11 @@ import org.slf4j.LoggerFactory;
  * Connect to a GeoServer instance to read its data.
  * <BR>Info are returned as <TT>Strings</TT> or, for complex data, as XML elements
  * wrapped in proper parsers (e.g.: {@link RESTLayer}, {@link RESTCoverageStore}, ...).
+ * <P>
+ * Decoded objects, and the not found answers of the <TT>exists*</TT> methods,
+ * can be cached using a
+ * {@link it.geosolutions.geoserver.rest.http.CachingHTTPTransport CachingHTTPTransport},
+ * shared with the publisher so that its writes invalidate the cache.
  *
  * @author ETj (etj at geo-solutions.it)
  */
@@ -84,6 +91,10 @@ public class GeoServerRESTReader {
 
     private GeoServerRESTStyleManager styleManager;
 
+    private HTTPTransport transport;
+
+    private CapabilitiesHolder capabilities;
+
     /**
      * Creates a <TT>GeoServerRESTReader</TT> for a given GeoServer instance and
      * no auth credentials.
@@ -132,35 +143,87 @@ public class GeoServerRESTReader {
         baseurl = init(gsUrl, username, password);
     }
 
+    /**
+     * Creates a <TT>GeoServerRESTReader</TT> for a given GeoServer instance
+     * with the given auth credentials, using the given (shared) transport.
+     *
+     * @param gsUrl the base GeoServer URL (e.g.: <TT>http://localhost:8080/geoserver</TT>)
+     * @param username username auth credential
+     * @param password password auth credential
+     * @param transport the transport used for all the REST calls
+     */
+    public GeoServerRESTReader(String gsUrl, String username, String password, HTTPTransport transport)
+            throws MalformedURLException {
+        baseurl = init(new URL(gsUrl), username, password, transport);
+    }
+
+    /**
+     * Creates a <TT>GeoServerRESTReader</TT> for a given GeoServer instance
+     * with the given auth credentials, using the given (shared) transport.
+     *
+     * @param gsUrl the base GeoServer URL (e.g.: <TT>http://localhost:8080/geoserver</TT>)
+     * @param username username auth credential
+     * @param password password auth credential
+     * @param transport the transport used for all the REST calls
+     */
+    public GeoServerRESTReader(URL gsUrl, String username, String password, HTTPTransport transport) {
+        baseurl = init(gsUrl, username, password, transport);
+    }
+
     private String init(String gsUrl, String username, String password) throws MalformedURLException {
         return init(new URL(gsUrl), username, password);
     }
 
     private String init(URL gsUrl, String username, String password) {
+        return init(gsUrl, username, password, CommonsHTTPTransport.getDefault());
+    }
+
+    private String init(URL gsUrl, String username, String password, HTTPTransport transport) {
+        if (transport == null)
+            throw new IllegalArgumentException("Unable to create the reader using a null transport");
         String restUrl = gsUrl.toExternalForm();
         String cleanUrl = restUrl.endsWith("/") ?
                             restUrl.substring(0, restUrl.length()-1) :
                             restUrl;
         this.username = username;
         this.password = password;
+        this.transport = transport;
+        this.capabilities = new CapabilitiesHolder(transport, cleanUrl, username, password);
 
-        styleManager = new GeoServerRESTStyleManager(gsUrl, username, password);
+        styleManager = new GeoServerRESTStyleManager(gsUrl, username, password, transport);
 
         return cleanUrl;
     }
 
     private String load(String url) {
         LOGGER.info("Loading from REST path " + url);
-        String response = HTTPUtils.get(baseurl + url, username, password);
+        String response = transport.get(baseurl + url, username, password);
         return response;
     }
 
     private String loadFullURL(String url) {
         LOGGER.info("Loading from REST path " + url);
-        String response = HTTPUtils.get(url, username, password);
+        String response = transport.get(url, username, password);
         return response;
     }
 
+    /**
+     * Loads the given REST path, passing the response stream straight to the
+     * decoder.
+     *
+     * @param url the REST path, i.e. <TT>/rest/layers/topp:states.xml</TT>
+     * @param decoder the response handler, i.e. <TT>RESTLayer::build</TT>
+     * @return the decoded response, null on errors
+     */
+    public <T> T load(String url, HTTPResponseHandler<T> decoder) {
+        return loadFullURL(baseurl + url, decoder);
+    }
+
+    private <T> T loadFullURL(String url, HTTPResponseHandler<T> decoder) {
+        LOGGER.info("Loading from REST path " + url);
+        return transport.get(url, username, password, decoder);
+    }
+
     /**
      * Check if a GeoServer instance is running at the given URL.
      * <BR>
@@ -174,22 +237,43 @@ public class GeoServerRESTReader {
      * @return true if a GeoServer instance was found at the configured URL.
      */
     public boolean existGeoserver() {
-        return HTTPUtils.httpPing(baseurl + "/rest/", username, password);
+        return transport.httpPing(baseurl + "/rest/", username, password);
     }
     
     /**
-     * Return the version of the target GeoServer
+     * Return the version of the target GeoServer, as negotiated by
+     * {@link #getCapabilities()}.
      */
     public GSVersionDecoder getGeoserverVersion() {
-        final String url = "/rest/about/version.xml";
-        String xml = load(url);
-        if (xml == null) {
-            GSVersionDecoder v = new GSVersionDecoder();
-            v.getGeoServer().setVersion(GSVersionDecoder.VERSION.UNRECOGNIZED.toString());
-            return v;
-        } else {
-            return GSVersionDecoder.build(load(url));
-        }
+        return getCapabilities().getVersionDecoder();
+    }
+
+    /**
+     * Returns the capabilities of the target GeoServer, fetched on the first
+     * call and then reused (until expired, see {@link #setCapabilitiesTTL(long)}).
+     */
+    public GeoServerCapabilities getCapabilities() {
+        return capabilities.get();
+    }
+
+    /**
+     * @param ttl time (ms) after which the capabilities are fetched again, a
+     *        value &lt;= 0 (the default) means they are fetched only once
+     */
+    public void setCapabilitiesTTL(long ttl) {
+        capabilities.setTTL(ttl);
+    }
+
+    /**
+     * Forces the capabilities to be fetched again on the next use, i.e. after
+     * a GeoServer upgrade.
+     */
+    public void refreshCapabilities() {
+        capabilities.invalidate();
+    }
+
+    CapabilitiesHolder getCapabilitiesHolder() {
+        return capabilities;
     }
 
     //==========================================================================
@@ -289,7 +373,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving DS list from " + url);
         }
-        return RESTDataStoreList.build(load(url));
+        return load(url, RESTDataStoreList::build);
     }
 
     /**
@@ -304,9 +388,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving DS from " + url);
         }
-        String response = load(url);
-//        System.out.println("DATASTORE " + workspace+":"+dsName+"\n"+response);
-        return RESTDataStore.build(response);
+        return load(url, RESTDataStore::build);
     }
 
     /**
@@ -321,8 +403,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving DS from fullurl " + url);
         }
-        String response = loadFullURL(url);
-        return RESTDataStore.build(response);
+        return loadFullURL(url, RESTDataStore::build);
     }
     
     /**
@@ -347,13 +428,44 @@ public class GeoServerRESTReader {
     public boolean existsDatastore(String workspace, String dsName, boolean quietOnNotFound){
         String url = baseurl + "/rest/workspaces/" + workspace + "/datastores/" + dsName + ".xml";
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     //==========================================================================
     //=== FEATURETYPES
     //==========================================================================
 
+    /**
+     * Get list of featureTypes of a DataStore.
+     *
+     * @param workspace The name of the workspace
+     * @param dsName The name of the DataStore
+     * @return FeatureTypes list as a {@link RESTFeatureTypeList}
+     */
+    public RESTFeatureTypeList getFeatureTypes(String workspace, String dsName) {
+        String url = "/rest/workspaces/" + workspace + "/datastores/" + dsName + "/featuretypes.xml";
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("### Retrieving FTs from " + url);
+        }
+        return load(url, RESTFeatureTypeList::build);
+    }
+
+    /**
+     * Get detailed info about a given FeatureType.
+     *
+     * @param workspace The name of the workspace
+     * @param dsName The name of the DataStore
+     * @param name The name of the FeatureType
+     * @return FeatureType details as a {@link RESTFeatureType}
+     */
+    public RESTFeatureType getFeatureType(String workspace, String dsName, String name) {
+        String url = "/rest/workspaces/" + workspace + "/datastores/" + dsName + "/featuretypes/" + name + ".xml";
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("### Retrieving FT from " + url);
+        }
+        return load(url, RESTFeatureType::build);
+    }
+
     /**
      * Get detailed info about a FeatureType given the Layer where it's published with.
      *
@@ -365,8 +477,7 @@ public class GeoServerRESTReader {
         if(layer.getType() != RESTLayer.Type.VECTOR)
             throw new RuntimeException("Bad layer type for layer " + layer.getName());
 
-        String response = loadFullURL(layer.getResourceUrl());
-        return RESTFeatureType.build(response);
+        return loadFullURL(layer.getResourceUrl(), RESTFeatureType::build);
     }
 
     /**
@@ -393,7 +504,7 @@ public class GeoServerRESTReader {
     public boolean existsFeatureType(String workspace, String dsName, String ftName, boolean quietOnNotFound){
         String url = baseurl + "/rest/workspaces/" + workspace + "/datastores/" + dsName + "/featuretypes/" + ftName +".xml";
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     //==========================================================================
@@ -412,7 +523,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving CS list from " + url);
         }
-        return RESTCoverageStoreList.build(load(url));
+        return load(url, RESTCoverageStoreList::build);
     }
 
     /**
@@ -427,7 +538,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving CS from " + url);
         }
-        return RESTCoverageStore.build(load(url));
+        return load(url, RESTCoverageStore::build);
     }
     
     /**
@@ -442,8 +553,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving CS from fullurl " + url);
         }
-        String response = loadFullURL(url);
-        return RESTCoverageStore.build(response);
+        return loadFullURL(url, RESTCoverageStore::build);
     }
     
     /**
@@ -457,7 +567,7 @@ public class GeoServerRESTReader {
     public boolean existsCoveragestore(String workspace, String csName, boolean quietOnNotFound){
         String url = baseurl + "/rest/workspaces/" + workspace + "/coveragestores/" + csName + ".xml";
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     /**
@@ -488,7 +598,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving Covs from " + url);
         }
-        return RESTCoverageList.build(load(url));
+        return load(url, RESTCoverageList::build);
     }
     
     /**
@@ -504,7 +614,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving Coverage from " + url);
         }
-        return RESTCoverage.build(load(url));
+        return load(url, RESTCoverage::build);
     }
     
     /**
@@ -519,7 +629,7 @@ public class GeoServerRESTReader {
     public boolean existsCoverage(String workspace, String store, String name, boolean quietOnNotFound){
         String url = baseurl + "/rest/workspaces/" + workspace + "/coveragestores/" + store + "/coverages/"+name+".xml";
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     /**
@@ -544,8 +654,7 @@ public class GeoServerRESTReader {
         if(layer.getType() != RESTLayer.Type.RASTER)
             throw new RuntimeException("Bad layer type for layer " + layer.getName());
 
-        String response = loadFullURL(layer.getResourceUrl());
-        return RESTCoverage.build(response);
+        return loadFullURL(layer.getResourceUrl(), RESTCoverage::build);
     }
 
     //==========================================================================
@@ -564,7 +673,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving CS list from " + url);
         }
-        return RESTWmsStoreList.build(load(url));
+        return load(url, RESTWmsStoreList::build);
     }
     
     /**
@@ -579,7 +688,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving CS from " + url);
         }
-        return RESTWmsStore.build(load(url));
+        return load(url, RESTWmsStore::build);
     }
     
     /**
@@ -593,8 +702,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving CS from fullurl " + url);
         }
-        String response = loadFullURL(url);
-        return RESTWmsStore.build(response);
+        return loadFullURL(url, RESTWmsStore::build);
     }
 
     /**
@@ -608,7 +716,7 @@ public class GeoServerRESTReader {
     public boolean existsWmsstore(String workspace, String wsName, boolean quietOnNotFound){
         String url = baseurl + "/rest/workspaces/" + workspace + "/wmsstores/" + wsName + ".xml";
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     /**
@@ -638,7 +746,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving Wmss from " + url);
         }
-        return RESTWmsList.build(load(url));
+        return load(url, RESTWmsList::build);
     }
     
     /**
@@ -654,7 +762,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving Wmss from " + url);
         }
-        return RESTWms.build(load(url));
+        return load(url, RESTWms::build);
     }
     
     /**
@@ -669,7 +777,7 @@ public class GeoServerRESTReader {
     public boolean existsWms(String workspace, String store, String name, boolean quietOnNotFound){
         String url = baseurl + "/rest/workspaces/" + workspace + "/wmsstores/" + store + "/wmslayers/"+name+".xml";
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
     
     /**
@@ -691,8 +799,7 @@ public class GeoServerRESTReader {
      * @return Wms details as a {@link RESTWms}
      */
     public RESTWms getWms(RESTLayer layer) {
-        String response = loadFullURL(layer.getResourceUrl());
-        return RESTWms.build(response);
+        return loadFullURL(layer.getResourceUrl(), RESTWms::build);
     }
     
     //==========================================================================
@@ -705,8 +812,7 @@ public class GeoServerRESTReader {
      * @return Resource details as a {@link RESTResource}
      */
     public RESTResource getResource(RESTLayer layer) {
-        String response = loadFullURL(layer.getResourceUrl());
-        return RESTResource.build(response);
+        return loadFullURL(layer.getResourceUrl(), RESTResource::build);
     }
 
     //==========================================================================
@@ -730,7 +836,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving layergroups from " + url);
         }
-        return RESTLayerGroupList.build(load(url));
+        return load(url, RESTLayerGroupList::build);
     }
 
     /**
@@ -751,7 +857,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving layergroup from " + url);
         }
-        return RESTLayerGroup.build(load(url));
+        return load(url, RESTLayerGroup::build);
     }
     
     /**
@@ -789,7 +895,7 @@ public class GeoServerRESTReader {
             url = baseurl + "/rest/workspaces/" + workspace + "/layergroups/" + name + ".xml";
         }  
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     /**
@@ -817,7 +923,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving layers from " + url);
         }
-        return RESTLayerList.build(load(url));
+        return load(url, RESTLayerList::build);
     }
 	
 	/**
@@ -830,7 +936,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving featuretypes from " + url);
         }
-        return RESTFeatureTypeList.build(load(url));
+        return load(url, RESTFeatureTypeList::build);
     }
 
     /**
@@ -846,7 +952,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving layer from " + url);
         }
-        return RESTLayer.build(load(url));
+        return load(url, RESTLayer::build);
     }
 
     /**
@@ -866,14 +972,7 @@ public class GeoServerRESTReader {
             LOGGER.debug("### Retrieving layer from " + url);
         }
         
-		RESTLayer layer = null;
-		if (this.getGeoserverVersion().getVersion()
-				.equals(GSVersionDecoder.VERSION.UNRECOGNIZED)) {
-			layer = RESTLayer21.build(load(url));
-		} else {
-			layer = RESTLayer.build(load(url));
-		}
-		return layer;
+        return load(url, getCapabilities().getLayerDecoder());
     }
     
     /**
@@ -892,7 +991,7 @@ public class GeoServerRESTReader {
             url = baseurl + "/rest/layers/" + workspace + ":" + name + ".xml";
         }  
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     /**
@@ -926,7 +1025,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Getting namespace from " + url);
         }
-        return RESTNamespace.build(load(url));
+        return load(url, RESTNamespace::build);
     }
     
     /**
@@ -939,7 +1038,7 @@ public class GeoServerRESTReader {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving namespaces from " + url);
         }
-        return RESTNamespaceList.build(load(url));
+        return load(url, RESTNamespaceList::build);
     }
 
     /**
@@ -970,7 +1069,7 @@ public class GeoServerRESTReader {
         }
         String url = baseurl + "/rest/namespaces/" + prefix + ".xml";
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     /**
@@ -998,7 +1097,7 @@ public class GeoServerRESTReader {
             LOGGER.debug("### Retrieving workspaces from " + url);
         }
         
-        return RESTWorkspaceList.build(load(url));
+        return load(url, RESTWorkspaceList::build);
     }
 
     /**
@@ -1032,7 +1131,7 @@ public class GeoServerRESTReader {
         }
         String url = baseurl + "/rest/workspaces/" + prefix + ".xml";
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     /**
@@ -1068,7 +1167,7 @@ public class GeoServerRESTReader {
             UnsupportedEncodingException {
         try {
             GeoServerRESTStructuredGridCoverageReaderManager manager = 
-                new GeoServerRESTStructuredGridCoverageReaderManager(new URL(baseurl), username, password);
+                new GeoServerRESTStructuredGridCoverageReaderManager(new URL(baseurl), username, password, transport);
             return manager.getGranuleById(workspace, coverageStore, coverage, id);
         } catch (IllegalArgumentException e) {
             if(LOGGER.isInfoEnabled()){
@@ -1097,7 +1196,7 @@ public class GeoServerRESTReader {
         String url = baseurl + "/rest/workspaces/" + workspace + "/coveragestores/" + coverageStore
                 + "/coverages/" + coverage + "/index/granules/" + id + ".xml";
         String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-        return HTTPUtils.exists(composed, username, password);
+        return transport.exists(composed, username, password);
     }
 
     /**
@@ -1129,7 +1228,7 @@ public class GeoServerRESTReader {
      public RESTStructuredCoverageIndexSchema getGranuleIndexSchema(final String workspace, String coverageStore, String coverage) throws MalformedURLException {
          try {
              GeoServerRESTStructuredGridCoverageReaderManager manager = 
-                 new GeoServerRESTStructuredGridCoverageReaderManager(new URL(baseurl), username, password);
+                 new GeoServerRESTStructuredGridCoverageReaderManager(new URL(baseurl), username, password, transport);
              return manager.getGranuleIndexSchema(workspace, coverageStore, coverage);
          } catch (IllegalArgumentException e) {
              if(LOGGER.isInfoEnabled()){
@@ -1162,7 +1261,7 @@ public class GeoServerRESTReader {
              throws MalformedURLException, UnsupportedEncodingException {
          try {
              GeoServerRESTStructuredGridCoverageReaderManager manager = 
-                 new GeoServerRESTStructuredGridCoverageReaderManager(new URL(baseurl), username, password);
+                 new GeoServerRESTStructuredGridCoverageReaderManager(new URL(baseurl), username, password, transport);
              return manager.getGranules(workspace, coverageStore, coverage, filter, offset, limit);
          } catch (IllegalArgumentException e) {
              if(LOGGER.isInfoEnabled()){
@@ -25,35 +25,25 @@
 
 package it.geosolutions.geoserver.rest;
 
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPResponseHandler;
+
 import java.io.File;
-import java.io.IOException;
-import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
-import java.net.ConnectException;
-import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
 
-import org.apache.commons.httpclient.Credentials;
-import org.apache.commons.httpclient.HttpClient;
-import org.apache.commons.httpclient.HttpConnectionManager;
-import org.apache.commons.httpclient.HttpStatus;
-import org.apache.commons.httpclient.UsernamePasswordCredentials;
-import org.apache.commons.httpclient.auth.AuthScope;
-import org.apache.commons.httpclient.methods.DeleteMethod;
-import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
 import org.apache.commons.httpclient.methods.FileRequestEntity;
-import org.apache.commons.httpclient.methods.GetMethod;
-import org.apache.commons.httpclient.methods.PostMethod;
-import org.apache.commons.httpclient.methods.PutMethod;
 import org.apache.commons.httpclient.methods.RequestEntity;
 import org.apache.commons.httpclient.methods.StringRequestEntity;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Low level HTTP utilities.
+ * <P>
+ * All the calls are delegated to the shared {@link CommonsHTTPTransport#getDefault()
+ * default transport}, so that pooled connections are reused across calls.
  */
 public class HTTPUtils {
     private static final Logger LOGGER = LoggerFactory.getLogger(HTTPUtils.class);
@@ -82,39 +72,22 @@ public class HTTPUtils {
      * @throws MalformedURLException
      */
     public static String get(String url, String username, String pw) {
+        return CommonsHTTPTransport.getDefault().get(url, username, pw);
+    }
 
-        GetMethod httpMethod = null;
-        HttpClient client = new HttpClient();
-        HttpConnectionManager connectionManager = client.getHttpConnectionManager();
-        try {
-            setAuth(client, url, username, pw);
-            httpMethod = new GetMethod(url);
-            connectionManager.getParams().setConnectionTimeout(5000);
-            int status = client.executeMethod(httpMethod);
-            if (status == HttpStatus.SC_OK) {
-                InputStream is = httpMethod.getResponseBodyAsStream();
-                String response = IOUtils.toString(is);
-                IOUtils.closeQuietly(is);
-                if (response.trim().length() == 0) { // sometime gs rest fails
-                    LOGGER.warn("ResponseBody is empty");
-                    return null;
-                } else {
-                    return response;
-                }
-            } else {
-                LOGGER.info("(" + status + ") " + HttpStatus.getStatusText(status) + " -- " + url);
-            }
-        } catch (ConnectException e) {
-            LOGGER.info("Couldn't connect to [" + url + "]");
-        } catch (IOException e) {
-            LOGGER.info("Error talking to [" + url + "]", e);
-        } finally {
-            if (httpMethod != null)
-                httpMethod.releaseConnection();
-            connectionManager.closeIdleConnections(0);
-        }
-
-        return null;
+    /**
+     * Performs an HTTP GET on the given URL, passing the response stream to
+     * the given handler (i.e. a decoder <TT>build</TT> method) as it is read.
+     * 
+     * @param url The URL where to connect to.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @param handler the handler decoding the response body
+     * @return the value returned by the handler if the HTTP response code was
+     *         200 (OK), <TT>null</TT> otherwise.
+     */
+    public static <T> T get(String url, String username, String pw, HTTPResponseHandler<T> handler) {
+        return CommonsHTTPTransport.getDefault().get(url, username, pw, handler);
     }
 
     /**
@@ -189,7 +162,7 @@ public class HTTPUtils {
      * @return the HTTP response or <TT>null</TT> on errors.
      */
     public static String put(String url, RequestEntity requestEntity, String username, String pw) {
-        return send(new PutMethod(url), url, requestEntity, username, pw);
+        return CommonsHTTPTransport.getDefault().put(url, requestEntity, username, pw);
     }
 
     /**
@@ -264,101 +237,11 @@ public class HTTPUtils {
      * @return the HTTP response or <TT>null</TT> on errors.
      */
     public static String post(String url, RequestEntity requestEntity, String username, String pw) {
-        return send(new PostMethod(url), url, requestEntity, username, pw);
-    }
-
-    /**
-     * Send an HTTP request (PUT or POST) to a server. <BR>
-     * Basic auth is used if both username and pw are not null.
-     * <P>
-     * Only
-     * <UL>
-     * <LI>200: OK</LI>
-     * <LI>201: ACCEPTED</LI>
-     * <LI>202: CREATED</LI>
-     * </UL>
-     * are accepted as successful codes; in these cases the response string will
-     * be returned.
-     * 
-     * @return the HTTP response or <TT>null</TT> on errors.
-     */
-    private static String send(final EntityEnclosingMethod httpMethod, String url,
-                               RequestEntity requestEntity, String username, String pw) {
-        HttpClient client = new HttpClient();
-        HttpConnectionManager connectionManager = client.getHttpConnectionManager();
-        try {
-            setAuth(client, url, username, pw);
-            connectionManager.getParams().setConnectionTimeout(5000);
-            if (requestEntity != null)
-                httpMethod.setRequestEntity(requestEntity);
-            int status = client.executeMethod(httpMethod);
-
-            switch (status) {
-            case HttpURLConnection.HTTP_OK:
-            case HttpURLConnection.HTTP_CREATED:
-            case HttpURLConnection.HTTP_ACCEPTED:
-                String response = IOUtils.toString(httpMethod.getResponseBodyAsStream());
-                // LOGGER.info("================= POST " + url);
-                if (LOGGER.isInfoEnabled())
-                    LOGGER.info("HTTP " + httpMethod.getStatusText() + ": " + response);
-                return response;
-            default:
-                LOGGER.warn("Bad response: code[" + status + "]" + " msg[" + httpMethod.getStatusText() + "]"
-                            + " url[" + url + "]" + " method[" + httpMethod.getClass().getSimpleName()
-                            + "]: " + IOUtils.toString(httpMethod.getResponseBodyAsStream()));
-                return null;
-            }
-        } catch (ConnectException e) {
-            LOGGER.info("Couldn't connect to [" + url + "]");
-            return null;
-        } catch (IOException e) {
-            LOGGER.error("Error talking to " + url + " : " + e.getLocalizedMessage());
-            return null;
-        } finally {
-            if (httpMethod != null)
-                httpMethod.releaseConnection();
-            connectionManager.closeIdleConnections(0);
-        }
+        return CommonsHTTPTransport.getDefault().post(url, requestEntity, username, pw);
     }
 
     public static boolean delete(String url, final String user, final String pw) {
-
-        DeleteMethod httpMethod = null;
-        HttpClient client = new HttpClient();
-        HttpConnectionManager connectionManager = client.getHttpConnectionManager();
-        try {
-            setAuth(client, url, user, pw);
-            httpMethod = new DeleteMethod(url);
-            connectionManager.getParams().setConnectionTimeout(5000);
-            int status = client.executeMethod(httpMethod);
-            String response = "";
-            if (status == HttpStatus.SC_OK) {
-                InputStream is = httpMethod.getResponseBodyAsStream();
-                response = IOUtils.toString(is);
-                IOUtils.closeQuietly(is);
-                if (response.trim().equals("")) { 
-                    if (LOGGER.isTraceEnabled())
-                        LOGGER.trace("ResponseBody is empty (this may be not an error since we just performed a DELETE call)");
-                    return true;
-                }
-                if (LOGGER.isDebugEnabled())
-                    LOGGER.debug("(" + status + ") " + httpMethod.getStatusText() + " -- " + url);
-                return true;
-            } else {
-                LOGGER.info("(" + status + ") " + httpMethod.getStatusText() + " -- " + url);
-                LOGGER.info("Response: '" + response + "'");
-            }
-        } catch (ConnectException e) {
-            LOGGER.info("Couldn't connect to [" + url + "]");
-        } catch (IOException e) {
-            LOGGER.info("Error talking to [" + url + "]", e);
-        } finally {
-            if (httpMethod != null)
-                httpMethod.releaseConnection();
-            connectionManager.closeIdleConnections(0);
-        }
-
-        return false;
+        return CommonsHTTPTransport.getDefault().delete(url, user, pw);
     }
 
     /**
@@ -369,31 +252,7 @@ public class HTTPUtils {
     }
 
     public static boolean httpPing(String url, String username, String pw) {
-
-        GetMethod httpMethod = null;
-        HttpClient client = new HttpClient();
-        HttpConnectionManager connectionManager = client.getHttpConnectionManager();
-        try {
-            setAuth(client, url, username, pw);
-            httpMethod = new GetMethod(url);
-            connectionManager.getParams().setConnectionTimeout(2000);
-            int status = client.executeMethod(httpMethod);
-            if (status != HttpStatus.SC_OK) {
-                LOGGER.warn("PING failed at '" + url + "': (" + status + ") " + httpMethod.getStatusText());
-                return false;
-            } else {
-                return true;
-            }
-        } catch (ConnectException e) {
-            return false;
-        } catch (IOException e) {
-            LOGGER.error(e.getLocalizedMessage(),e);
-            return false;
-        } finally {
-            if (httpMethod != null)
-                httpMethod.releaseConnection();
-            connectionManager.closeIdleConnections(0);
-        }
+        return CommonsHTTPTransport.getDefault().httpPing(url, username, pw);
     }
 
     /**
@@ -406,51 +265,7 @@ public class HTTPUtils {
      * @throws RuntimeException on unhandled status or exceptions.
      */
     public static boolean exists(String url, String username, String pw) {
-
-        GetMethod httpMethod = null;
-        HttpClient client = new HttpClient();
-        HttpConnectionManager connectionManager = client.getHttpConnectionManager();
-        try {
-            setAuth(client, url, username, pw);
-            httpMethod = new GetMethod(url);
-            connectionManager.getParams().setConnectionTimeout(2000);
-            int status = client.executeMethod(httpMethod);
-            switch (status) {
-            case HttpStatus.SC_OK:
-                return true;
-            case HttpStatus.SC_NOT_FOUND:
-                return false;
-            default:
-                throw new RuntimeException("Unhandled response status at '" + url + "': (" + status + ") "
-                                           + httpMethod.getStatusText());
-            }
-        } catch (ConnectException e) {
-            throw new RuntimeException(e);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        } finally {
-            if (httpMethod != null)
-                httpMethod.releaseConnection();
-            connectionManager.closeIdleConnections(0);
-        }
-    }
-
-    private static void setAuth(HttpClient client, String url, String username, String pw)
-        throws MalformedURLException {
-        URL u = new URL(url);
-        if (username != null && pw != null) {
-            Credentials defaultcreds = new UsernamePasswordCredentials(username, pw);
-            client.getState().setCredentials(new AuthScope(u.getHost(), u.getPort()), defaultcreds);
-            client.getParams().setAuthenticationPreemptive(true); // GS2 by
-                                                                  // default
-                                                                  // always
-                                                                  // requires
-                                                                  // authentication
-        } else {
-            if (LOGGER.isDebugEnabled()) {
-                LOGGER.debug("Not setting credentials to access to " + url);
-            }
-        }
+        return CommonsHTTPTransport.getDefault().exists(url, username, pw);
     }
 
     /**
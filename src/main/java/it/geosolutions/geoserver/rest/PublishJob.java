@@ -0,0 +1,229 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.CoverageStoreExtension;
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.DataStoreExtension;
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.ParameterConfigure;
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.StoreType;
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.StoreUpload;
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.UploadMethod;
+import it.geosolutions.geoserver.rest.encoder.GSLayerEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSResourceEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSResourceEncoder.ProjectionPolicy;
+import it.geosolutions.geoserver.rest.encoder.coverage.GSCoverageEncoder;
+import it.geosolutions.geoserver.rest.encoder.feature.GSFeatureTypeEncoder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.net.URI;
+
+import org.apache.commons.httpclient.NameValuePair;
+
+/**
+ * A dataset to be published by a {@link GeoServerRESTBatchPublisher}.
+ * <P>
+ * A job describes the three calls the single dataset methods of the
+ * {@link GeoServerRESTPublisher} (i.e. <TT>publishShp</TT>,
+ * <TT>publishGeoTIFF</TT>, <TT>publishDBLayer</TT>) send one after the
+ * other: the store creation (with the data upload), the resource (feature
+ * type or coverage) creation and the layer configuration. Use the static
+ * factories to build them.
+ */
+public final class PublishJob {
+
+    private final String workspace;
+
+    private final StoreType storeType;
+
+    private final String storeName;
+
+    private final UploadMethod method;
+
+    private final Enum<?> extension;
+
+    private final String mimeType;
+
+    private final URI uri;
+
+    private final NameValuePair[] storeParams;
+
+    private final GSResourceEncoder resource;
+
+    private final GSLayerEncoder layer;
+
+    private final String defaultStyle;
+
+    /** Set by the store stage, read by the resource stage (on another thread). */
+    private volatile boolean uploadSkipped;
+
+    private PublishJob(String workspace, StoreType storeType, String storeName,
+            UploadMethod method, Enum<?> extension, String mimeType, URI uri,
+            NameValuePair[] storeParams, GSResourceEncoder resource, GSLayerEncoder layer,
+            String defaultStyle) throws IllegalArgumentException {
+        if (workspace == null || storeName == null || resource == null)
+            throw new IllegalArgumentException("Unable to create the job using a null argument");
+        if (resource.getName() == null)
+            throw new IllegalArgumentException("Unable to create the job using an unnamed resource encoder");
+        this.workspace = workspace;
+        this.storeType = storeType;
+        this.storeName = storeName;
+        this.method = method;
+        this.extension = extension;
+        this.mimeType = mimeType;
+        this.uri = uri;
+        this.storeParams = storeParams;
+        this.resource = resource;
+        this.layer = layer;
+        this.defaultStyle = defaultStyle;
+    }
+
+    /**
+     * Uploads a zipped shapefile, as
+     * {@link GeoServerRESTPublisher#publishShp(String, String, String, File, String, String)}
+     * does.
+     *
+     * @param workspace the name of the workspace to use
+     * @param storeName the name of the store to create
+     * @param layerName the name of the layer to configure
+     * @param zipFile the zipped shapefile
+     * @param srs the srs, forced using {@link ProjectionPolicy#FORCE_DECLARED}
+     * @param defaultStyle the default style to set (can be null)
+     * @throws IllegalArgumentException if any of the mandatory arguments are null
+     */
+    public static PublishJob shapefile(String workspace, String storeName, String layerName,
+            File zipFile, String srs, String defaultStyle) throws IllegalArgumentException {
+        if (zipFile == null || srs == null || layerName == null)
+            throw new IllegalArgumentException("Unable to create the job using a null argument");
+        final GSFeatureTypeEncoder fte = new GSFeatureTypeEncoder();
+        fte.setName(layerName);
+        fte.setTitle(layerName);
+        fte.setSRS(srs);
+        fte.setProjectionPolicy(ProjectionPolicy.FORCE_DECLARED);
+        return new PublishJob(workspace, StoreType.DATASTORES, storeName, UploadMethod.FILE,
+                DataStoreExtension.SHP, "application/zip", zipFile.toURI(), null, fte, null,
+                defaultStyle);
+    }
+
+    /**
+     * Uploads a GeoTIFF, as
+     * {@link GeoServerRESTPublisher#publishGeoTIFF(String, String, String, File, String, ProjectionPolicy, String, double[])}
+     * does.
+     *
+     * @param workspace the name of the workspace to use
+     * @param storeName the name of the coverage store to create
+     * @param coverageName the name of the coverage to configure
+     * @param geotiff the file to upload
+     * @param srs the native CRS
+     * @param policy projection policy
+     * @param defaultStyle the default style to set (can be null)
+     * @param bbox the envelope in EPSG:4326 as [Xmin, Ymin, Xmax, Ymax] (can be null)
+     * @throws IllegalArgumentException if any of the mandatory arguments are null
+     */
+    public static PublishJob geoTIFF(String workspace, String storeName, String coverageName,
+            File geotiff, String srs, ProjectionPolicy policy, String defaultStyle, double[] bbox)
+            throws IllegalArgumentException {
+        if (geotiff == null || srs == null || policy == null || coverageName == null)
+            throw new IllegalArgumentException("Unable to create the job using a null argument");
+        final GSCoverageEncoder ce = new GSCoverageEncoder();
+        ce.setName(coverageName);
+        ce.setTitle(coverageName);
+        ce.setSRS(srs);
+        ce.setProjectionPolicy(policy);
+        if (bbox != null && bbox.length == 4) {
+            ce.setLatLonBoundingBox(bbox[0], bbox[1], bbox[2], bbox[3],
+                    GeoServerRESTPublisher.DEFAULT_CRS);
+        }
+        return new PublishJob(workspace, StoreType.COVERAGESTORES, storeName, UploadMethod.FILE,
+                CoverageStoreExtension.GEOTIFF, "image/geotiff", geotiff.toURI(), null, ce, null,
+                defaultStyle);
+    }
+
+    /**
+     * Publishes a table of an existing datastore, as
+     * {@link GeoServerRESTPublisher#publishDBLayer(String, String, GSFeatureTypeEncoder, GSLayerEncoder)}
+     * does: the store stage is skipped.
+     *
+     * @param workspace the workspace of the datastore
+     * @param storeName the existing datastore
+     * @param fte the feature type configuration
+     * @param layer the layer configuration (can be null)
+     * @throws IllegalArgumentException if any of the mandatory arguments are null
+     */
+    public static PublishJob dbLayer(String workspace, String storeName,
+            GSFeatureTypeEncoder fte, GSLayerEncoder layer) throws IllegalArgumentException {
+        return new PublishJob(workspace, StoreType.DATASTORES, storeName, null, null, null, null,
+                null, fte, layer, null);
+    }
+
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    public String getStoreName() {
+        return storeName;
+    }
+
+    /**
+     * @return the name of the published resource (and layer)
+     */
+    public String getName() {
+        return resource.getName();
+    }
+
+    /**
+     * @return true if the store has to be created (and the data uploaded)
+     */
+    public boolean hasStoreStage() {
+        return uri != null;
+    }
+
+    boolean createStore(GeoServerRESTPublisher publisher) throws FileNotFoundException {
+        final StoreUpload upload = publisher.sendStore(workspace, storeType, storeName, method,
+                extension, mimeType, uri, ParameterConfigure.NONE, storeParams);
+        uploadSkipped = upload == StoreUpload.SKIPPED;
+        return upload != StoreUpload.FAILED;
+    }
+
+    boolean createResource(GeoServerRESTPublisher publisher) {
+        return publisher.createResource(workspace, storeType, storeName, resource, uploadSkipped);
+    }
+
+    boolean configureLayer(GeoServerRESTPublisher publisher) {
+        GSLayerEncoder encoder = layer;
+        if (encoder == null) {
+            encoder = publisher.getCapabilities().createLayerEncoder();
+            if (defaultStyle != null && !defaultStyle.isEmpty())
+                encoder.setDefaultStyle(defaultStyle);
+        }
+        return publisher.configureLayer(workspace, getName(), encoder);
+    }
+
+    @Override
+    public String toString() {
+        return workspace + ":" + storeName + "/" + getName();
+    }
+}
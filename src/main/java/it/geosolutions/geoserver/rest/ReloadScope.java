@@ -0,0 +1,332 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.StoreType;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Defers the catalog reloads requested through a publisher until the scope
+ * is closed, so that a bulk job reloading the same stores many times pays
+ * for each store once:
+ *
+ * <PRE>
+ * try (ReloadScope scope = publisher.deferReloads()) {
+ *     for (...) {
+ *         publisher.reloadStore(workspace, store, StoreType.DATASTORES);
+ *     }
+ * }
+ * </PRE>
+ *
+ * While the scope is open, {@link GeoServerRESTPublisher#reloadStore} and
+ * {@link GeoServerRESTPublisher#reload()} (called by any thread on that
+ * publisher) only record the request and return <TT>true</TT>. On close the
+ * recorded stores are reloaded once each, in parallel; a single global
+ * {@link GeoServerRESTPublisher#reload() reload} is sent instead when it was
+ * requested, or when the number of stores reaches the
+ * {@link #setGlobalThreshold(int) threshold}.
+ * <P>
+ * Scopes can be nested: an inner scope hands its requests over to the outer
+ * one, applied when the latter is closed.
+ */
+public final class ReloadScope implements AutoCloseable {
+
+    private final static Logger LOGGER = LoggerFactory.getLogger(ReloadScope.class);
+
+    /** Default number of stores from which a global reload is sent instead. */
+    public static final int DEFAULT_GLOBAL_THRESHOLD = 20;
+
+    /** Default number of store reloads sent concurrently. */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    /**
+     * A store to be reloaded.
+     */
+    public static final class Store {
+        private final String workspace;
+
+        private final String name;
+
+        private final StoreType type;
+
+        Store(String workspace, String name, StoreType type) {
+            this.workspace = workspace;
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getWorkspace() {
+            return workspace;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public StoreType getType() {
+            return type;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Store))
+                return false;
+            final Store other = (Store) obj;
+            return workspace.equals(other.workspace) && name.equals(other.name)
+                    && type == other.type;
+        }
+
+        @Override
+        public int hashCode() {
+            return (workspace.hashCode() * 31 + name.hashCode()) * 31 + type.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return workspace + ":" + name + " (" + type + ")";
+        }
+    }
+
+    private final GeoServerRESTPublisher publisher;
+
+    private final ReloadScope outer;
+
+    private final Set<Store> stores = new LinkedHashSet<Store>();
+
+    private boolean global;
+
+    private boolean closed;
+
+    private int requests;
+
+    private int globalThreshold = DEFAULT_GLOBAL_THRESHOLD;
+
+    private int parallelism = DEFAULT_PARALLELISM;
+
+    private final List<Store> failures = new ArrayList<Store>();
+
+    private boolean globalFailed;
+
+    ReloadScope(GeoServerRESTPublisher publisher, ReloadScope outer) {
+        this.publisher = publisher;
+        this.outer = outer;
+    }
+
+    /**
+     * @param threshold the number of stores from which a single global
+     *        reload is sent on close, instead of a reload per store
+     * @throws IllegalArgumentException if the threshold is not positive
+     */
+    public synchronized void setGlobalThreshold(int threshold) throws IllegalArgumentException {
+        if (threshold <= 0)
+            throw new IllegalArgumentException("Unable to set the threshold to " + threshold);
+        this.globalThreshold = threshold;
+    }
+
+    /**
+     * @param parallelism the number of store reloads sent concurrently on close
+     * @throws IllegalArgumentException if the parallelism is not positive
+     */
+    public synchronized void setParallelism(int parallelism) throws IllegalArgumentException {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Unable to set the parallelism to " + parallelism);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Records a store reload.
+     *
+     * @return false if the scope is already closed, so the reload has to be
+     *         sent right away
+     */
+    synchronized boolean deferStore(String workspace, String storeName, StoreType type) {
+        if (closed)
+            return false;
+        requests++;
+        stores.add(new Store(workspace, storeName, type));
+        return true;
+    }
+
+    /**
+     * Records a global reload.
+     *
+     * @return false if the scope is already closed, so the reload has to be
+     *         sent right away
+     */
+    synchronized boolean deferGlobal() {
+        if (closed)
+            return false;
+        requests++;
+        global = true;
+        return true;
+    }
+
+    /**
+     * Takes over the reloads recorded by a closed inner scope.
+     *
+     * @return false if this scope is closed too, so the inner one has to
+     *         send them
+     */
+    private synchronized boolean merge(Set<Store> dirty, boolean globalRequested, int count) {
+        if (closed)
+            return false;
+        requests += count;
+        stores.addAll(dirty);
+        global |= globalRequested;
+        return true;
+    }
+
+    /**
+     * @return the number of reloads recorded so far
+     */
+    public synchronized int getRequestCount() {
+        return requests;
+    }
+
+    /**
+     * @return the distinct stores recorded so far
+     */
+    public synchronized Set<Store> getStores() {
+        return Collections.unmodifiableSet(new LinkedHashSet<Store>(stores));
+    }
+
+    /**
+     * @return true if a global reload has been requested
+     */
+    public synchronized boolean isGlobal() {
+        return global;
+    }
+
+    /**
+     * @return the stores whose reload failed on close
+     */
+    public synchronized List<Store> getFailures() {
+        return Collections.unmodifiableList(new ArrayList<Store>(failures));
+    }
+
+    /**
+     * @return true if all the reloads sent on close succeeded (or nothing
+     *         was to be sent)
+     */
+    public synchronized boolean isSuccessful() {
+        return failures.isEmpty() && !globalFailed;
+    }
+
+    /**
+     * Stops deferring the reloads and sends the recorded ones (or hands them
+     * over to the outer scope).
+     */
+    public void close() {
+        final Set<Store> dirty;
+        final boolean globalRequested;
+        final int count;
+        synchronized (this) {
+            if (closed)
+                return;
+            closed = true;
+            dirty = new LinkedHashSet<Store>(stores);
+            globalRequested = global;
+            count = requests;
+        }
+        publisher.endReloadScope(this, outer);
+        if (outer != null && outer.merge(dirty, globalRequested, count)) {
+            return;
+        }
+        if (globalRequested || dirty.size() >= globalThreshold) {
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Reloading the catalog once for " + count + " deferred reloads");
+            final boolean reloaded = publisher.doReload();
+            synchronized (this) {
+                globalFailed = !reloaded;
+            }
+        } else if (!dirty.isEmpty()) {
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Reloading " + dirty.size() + " stores for " + count
+                        + " deferred reloads");
+            reloadStores(dirty);
+        }
+    }
+
+    private void reloadStores(Set<Store> dirty) {
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Math.min(parallelism, dirty.size()), new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        final Thread t = new Thread(r, "gs-reload-" + count.incrementAndGet());
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        try {
+            final List<Store> sent = new ArrayList<Store>(dirty);
+            final List<Callable<Boolean>> tasks = new ArrayList<Callable<Boolean>>();
+            for (final Store store : sent) {
+                tasks.add(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        return publisher.doReloadStore(store.workspace, store.name, store.type);
+                    }
+                });
+            }
+            final List<Future<Boolean>> results = executor.invokeAll(tasks);
+            for (int i = 0; i < sent.size(); i++) {
+                boolean reloaded;
+                try {
+                    reloaded = results.get(i).get();
+                } catch (ExecutionException e) {
+                    if (LOGGER.isWarnEnabled())
+                        LOGGER.warn("Unable to reload " + sent.get(i), e.getCause());
+                    reloaded = false;
+                }
+                if (!reloaded) {
+                    synchronized (this) {
+                        failures.add(sent.get(i));
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while reloading the stores", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
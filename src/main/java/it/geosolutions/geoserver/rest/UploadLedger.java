@@ -0,0 +1,302 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Remembers the content of the files uploaded by a
+ * {@link GeoServerRESTPublisher} (see
+ * {@link GeoServerRESTPublisher#setUploadLedger(UploadLedger)}), so that
+ * publishing again an unchanged file into the same store does not send it
+ * again: with a ledger, the {@link GeoServerRESTPublisher.UploadMethod#FILE
+ * FILE} uploads of <TT>publishShp</TT>, <TT>publishGeoTIFF</TT>,
+ * <TT>publishWorldImage</TT> and <TT>publishImageMosaic</TT> are skipped
+ * when the ledger records the same digest for the same target store and
+ * upload parameters (<TT>configure</TT>, <TT>coverageName</TT>...), and the
+ * resources the upload configured still exist.
+ * <P>
+ * Files are hashed in chunks of {@link #DEFAULT_CHUNK_SIZE} bytes, each one
+ * memory mapped and digested (SHA-256) on the configured executor; the
+ * digest of the file is the SHA-256 of its length and of the chunk digests.
+ * Digests computed with different chunk sizes do not match.
+ * <P>
+ * The ledger is saved to a text file, a journal to which a
+ * <TT>digest target</TT> line is appended on each recorded upload (the last
+ * line of a target winning); the file is compacted, replacing it atomically,
+ * when loaded with outdated lines and when uploads are forgotten.
+ * <P>
+ * The publisher forgets the uploads of the stores and workspaces it removes,
+ * and those of the stores removed by other clients once it finds them missing
+ * before skipping an upload; use {@link #forget(String)} to force an upload.
+ */
+public class UploadLedger {
+
+    /** Default size (bytes) of the chunks hashed in parallel. */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    private static final String HEADER = "# geoserver-manager upload ledger, chunk size ";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final File file;
+
+    private final Executor executor;
+
+    private final int chunkSize;
+
+    /** digest by target, sorted to keep the saved file stable */
+    private final Map<String, String> uploads = new TreeMap<String, String>();
+
+    /**
+     * Loads (or creates) the ledger saved to the given file, hashing on the
+     * common {@link ForkJoinPool} with {@link #DEFAULT_CHUNK_SIZE}.
+     *
+     * @throws IOException if the file exists and can't be read
+     */
+    public UploadLedger(File file) throws IllegalArgumentException, IOException {
+        this(file, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param file the file the ledger is saved to, loaded if it exists and is not empty
+     * @param executor the executor hashing the chunks
+     * @param chunkSize the size (bytes) of the chunks hashed in parallel
+     * @throws IllegalArgumentException on null arguments or not positive chunk size
+     * @throws IOException if the file exists and can't be read
+     */
+    public UploadLedger(File file, Executor executor, int chunkSize)
+            throws IllegalArgumentException, IOException {
+        if (file == null || executor == null)
+            throw new IllegalArgumentException("Unable to create the ledger using a null argument");
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("Unable to create the ledger using chunk size "
+                    + chunkSize);
+        this.file = file;
+        this.executor = executor;
+        this.chunkSize = chunkSize;
+        if (file.length() > 0 && !load()) {
+            save();
+        }
+    }
+
+    /**
+     * @return false if the file has to be compacted
+     */
+    private boolean load() throws IOException {
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(
+                file), UTF8));
+        try {
+            final String header = in.readLine();
+            if (header == null || !header.startsWith(HEADER))
+                throw new IOException("Not an upload ledger: " + file);
+            if (!header.substring(HEADER.length()).trim().equals(String.valueOf(chunkSize))) {
+                // digests computed with another chunk size: useless
+                return false;
+            }
+            int lines = 0;
+            String line;
+            while ((line = in.readLine()) != null) {
+                final int space = line.indexOf(' ');
+                if (space <= 0)
+                    throw new IOException("Malformed upload ledger line: " + line);
+                uploads.put(line.substring(space + 1), line.substring(0, space));
+                lines++;
+            }
+            return lines == uploads.size();
+        } finally {
+            in.close();
+        }
+    }
+
+    private void append(String target, String digest) throws IOException {
+        final boolean created = file.length() == 0;
+        final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(
+                file, true), UTF8));
+        try {
+            if (created) {
+                out.write(HEADER + chunkSize);
+                out.newLine();
+            }
+            out.write(digest + " " + target);
+            out.newLine();
+        } finally {
+            out.close();
+        }
+    }
+
+    private void save() throws IOException {
+        final File dir = file.getAbsoluteFile().getParentFile();
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            final BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(tmp), UTF8));
+            try {
+                out.write(HEADER + chunkSize);
+                out.newLine();
+                for (Map.Entry<String, String> upload : uploads.entrySet()) {
+                    out.write(upload.getValue() + " " + upload.getKey());
+                    out.newLine();
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    /**
+     * Computes the digest of the given file.
+     *
+     * @return the hex digest
+     * @throws IOException if the file can't be read
+     */
+    public String digest(File data) throws IOException {
+        final RandomAccessFile raf = new RandomAccessFile(data, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            final long length = channel.size();
+            final List<CompletableFuture<byte[]>> chunks = new ArrayList<CompletableFuture<byte[]>>();
+            for (long position = 0; position < length; position += chunkSize) {
+                final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY,
+                        position, Math.min(chunkSize, length - position));
+                chunks.add(CompletableFuture.supplyAsync(() -> {
+                    final MessageDigest digest = sha256();
+                    digest.update(buffer);
+                    return digest.digest();
+                }, executor));
+            }
+            final MessageDigest digest = sha256();
+            for (int i = 0; i < 8; i++) {
+                digest.update((byte) (length >>> (56 - 8 * i)));
+            }
+            for (CompletableFuture<byte[]> chunk : chunks) {
+                digest.update(chunk.join());
+            }
+            return String.format("%064x", new BigInteger(1, digest.digest()));
+        } catch (CompletionException e) {
+            throw new IOException("Unable to hash " + data, e.getCause());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @param target the upload URL, followed by its sorted parameters
+     * @param digest the digest of the file to upload
+     * @return true if the same content has already been uploaded to the target
+     */
+    public synchronized boolean contains(String target, String digest) {
+        return digest != null && digest.equals(uploads.get(target));
+    }
+
+    /**
+     * Records a successful upload, appending it to the ledger file.
+     *
+     * @throws IOException if the ledger can't be saved
+     */
+    public synchronized void record(String target, String digest) throws IOException {
+        if (target == null || digest == null)
+            throw new IllegalArgumentException("Unable to record an upload using a null argument");
+        if (!digest.equals(uploads.put(target, digest))) {
+            append(target, digest);
+        }
+    }
+
+    /**
+     * Forgets the uploads whose target starts with the given prefix (i.e. the
+     * URL of a removed store or workspace), compacting the ledger file.
+     *
+     * @return the number of uploads forgotten
+     * @throws IOException if the ledger can't be saved
+     */
+    public synchronized int forget(String prefix) throws IOException {
+        int removed = 0;
+        final Iterator<String> it = uploads.keySet().iterator();
+        while (it.hasNext()) {
+            if (it.next().startsWith(prefix)) {
+                it.remove();
+                removed++;
+            }
+        }
+        if (removed > 0) {
+            save();
+        }
+        return removed;
+    }
+
+    /**
+     * @return the number of recorded uploads
+     */
+    public synchronized int size() {
+        return uploads.size();
+    }
+
+    public File getFile() {
+        return file;
+    }
+}
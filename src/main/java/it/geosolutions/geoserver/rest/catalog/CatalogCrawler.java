@@ -0,0 +1,607 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import it.geosolutions.geoserver.rest.GeoServerRESTReader;
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+import it.geosolutions.geoserver.rest.decoder.RESTBoundingBox;
+import it.geosolutions.geoserver.rest.decoder.RESTCoverage;
+import it.geosolutions.geoserver.rest.decoder.RESTCoverageStore;
+import it.geosolutions.geoserver.rest.decoder.RESTDataStore;
+import it.geosolutions.geoserver.rest.decoder.RESTFeatureType;
+import it.geosolutions.geoserver.rest.decoder.RESTLayer;
+import it.geosolutions.geoserver.rest.decoder.RESTLayerGroup;
+import it.geosolutions.geoserver.rest.decoder.RESTLayerList;
+import it.geosolutions.geoserver.rest.decoder.RESTPublished;
+import it.geosolutions.geoserver.rest.decoder.RESTPublishedList;
+import it.geosolutions.geoserver.rest.decoder.RESTResource;
+import it.geosolutions.geoserver.rest.decoder.RESTStyleList;
+import it.geosolutions.geoserver.rest.decoder.RESTWms;
+import it.geosolutions.geoserver.rest.decoder.RESTWmsStore;
+import it.geosolutions.geoserver.rest.decoder.RESTWorkspaceList.RESTShortWorkspace;
+import it.geosolutions.geoserver.rest.decoder.utils.NameLinkElem;
+import it.geosolutions.geoserver.rest.http.HTTPResponseHandler;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads a whole GeoServer catalog into a {@link CatalogSnapshot}, fanning out
+ * the {@link GeoServerRESTReader reader} calls over a bounded number of
+ * threads.
+ * <P>
+ * The crawl walks:
+ * <UL>
+ * <LI>the workspaces, and for each of them its data, coverage and wms stores,
+ * their resources, its styles and its layer groups</LI>
+ * <LI>the global styles and layer groups</LI>
+ * <LI>the layers</LI>
+ * </UL>
+ * Each object is read as soon as its containing list is, so up to
+ * <TT>parallelism</TT> REST calls are in flight at any time; the transport
+ * used by the reader should allow as many connections per host.<BR>
+ * Objects which can't be read are reported in the {@link CrawlReport} of the
+ * snapshot and the crawl goes on with the others.
+ * <P>
+ * Once a snapshot is available, {@link #sync(CatalogSnapshot, Type...)}
+ * updates it incrementally: all the lists are read again, but the details are
+ * only decoded for the objects which were not in the previous snapshot or
+ * whose representation changed.
+ */
+public class CatalogCrawler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CatalogCrawler.class);
+
+    /** Default number of concurrent REST calls. */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    private final GeoServerRESTReader reader;
+
+    private final int parallelism;
+
+    /**
+     * Crawls using the default parallelism.
+     */
+    public CatalogCrawler(GeoServerRESTReader reader) {
+        this(reader, DEFAULT_PARALLELISM);
+    }
+
+    /**
+     * @param reader the reader used to walk the catalog
+     * @param parallelism the max number of concurrent REST calls
+     * @throws IllegalArgumentException if the reader is null or parallelism not positive
+     */
+    public CatalogCrawler(GeoServerRESTReader reader, int parallelism) throws IllegalArgumentException {
+        if (reader == null)
+            throw new IllegalArgumentException("Unable to crawl using a null reader");
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Unable to crawl using parallelism " + parallelism);
+        this.reader = reader;
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Reads the whole catalog.
+     *
+     * @return the catalog snapshot, see {@link CatalogSnapshot#getReport()}
+     *         for the crawl errors
+     * @throws InterruptedException if interrupted while waiting for the crawl
+     *         (the pending calls are cancelled)
+     */
+    public CatalogSnapshot crawl() throws InterruptedException {
+        return run(new Crawl(null, EnumSet.noneOf(Type.class)));
+    }
+
+    /**
+     * Updates a previous snapshot, reading the list endpoints (i.e.
+     * <TT>getLayers</TT>, <TT>getDatastores</TT>, <TT>getCoverages</TT>,
+     * <TT>getStyles</TT>) and comparing their names with the previous ones:
+     * <UL>
+     * <LI>the details of the objects not in the previous snapshot are read
+     * ({@link CatalogDiff.Kind#ADDED added})</LI>
+     * <LI>the objects no longer listed are dropped, along with their children
+     * ({@link CatalogDiff.Kind#REMOVED removed})</LI>
+     * <LI>the other objects are copied from the previous snapshot, unless
+     * their type is in <TT>revalidated</TT>: their representation is then read
+     * again and its SHA-256 compared with the {@link CatalogNode#getDigest()
+     * digest} of the previous node. Only the objects whose digest changed are
+     * decoded and compared ({@link CatalogDiff.Kind#MODIFIED modified}), the
+     * others are copied.</LI>
+     * </UL>
+     * GeoServer lists only carry names, so changes to the details of objects
+     * which are not revalidated are not detected: without any
+     * <TT>revalidated</TT> type no {@link CatalogDiff.Kind#MODIFIED modified}
+     * change is ever reported.<BR>
+     * Checking an object still costs a GET: when the transport of the reader
+     * answers conditional GETs (see
+     * {@link it.geosolutions.geoserver.rest.http.CachingHTTPTransport}) the
+     * unchanged objects are answered by a <TT>304 Not Modified</TT> without
+     * body.<BR>
+     * The objects which can't be read (i.e. a list failing with a timeout)
+     * are copied from the previous snapshot, so that errors do not show up as
+     * removals.
+     *
+     * @param previous the snapshot to update
+     * @param revalidated the types whose representations are checked for
+     *        changes
+     * @return the changes, along with the new snapshot
+     * @throws IllegalArgumentException if the previous snapshot is null
+     * @throws InterruptedException if interrupted while waiting for the crawl
+     */
+    public CatalogDiff sync(CatalogSnapshot previous, Type... revalidated)
+            throws IllegalArgumentException, InterruptedException {
+        if (previous == null)
+            throw new IllegalArgumentException("Unable to sync a null snapshot");
+        final EnumSet<Type> types = EnumSet.noneOf(Type.class);
+        types.addAll(Arrays.asList(revalidated));
+        final CatalogDiff diff = CatalogDiff.compare(previous, run(new Crawl(previous, types)));
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Catalog synchronized: " + diff);
+        return diff;
+    }
+
+    private CatalogSnapshot run(Crawl crawl) throws InterruptedException {
+        try {
+            crawl.start();
+            return crawl.await();
+        } finally {
+            crawl.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * The state of a running crawl.
+     */
+    private final class Crawl {
+
+        private final ExecutorService executor = Executors.newFixedThreadPool(parallelism,
+                new ThreadFactory() {
+                    private final AtomicInteger count = new AtomicInteger();
+
+                    public Thread newThread(Runnable r) {
+                        final Thread thread = new Thread(r, "catalog-crawler-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+
+        private final Queue<CatalogNode> nodes = new ConcurrentLinkedQueue<CatalogNode>();
+
+        private final Queue<CrawlReport.Error> errors = new ConcurrentLinkedQueue<CrawlReport.Error>();
+
+        private final AtomicLong requests = new AtomicLong();
+
+        private final AtomicInteger reused = new AtomicInteger();
+
+        /** The snapshot being updated, null for a full crawl. */
+        private final CatalogSnapshot previous;
+
+        private final Set<Type> revalidated;
+
+        /** Submitted but not completed calls; the crawl is over when it drops to 0. */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private final long startTime = System.currentTimeMillis();
+
+        Crawl(CatalogSnapshot previous, Set<Type> revalidated) {
+            this.previous = previous;
+            this.revalidated = revalidated;
+        }
+
+        /**
+         * Reads a list; on errors the previous content of the list is kept.
+         */
+        private <T> void list(final String href, final Supplier<T> call, final Consumer<T> then) {
+            fetch(href, call, then, () -> {
+                if (previous != null) {
+                    final String prefix = href + "/";
+                    for (CatalogNode node : previous.getNodes()) {
+                        if (node.getHref().startsWith(prefix)) {
+                            reuse(node);
+                        }
+                    }
+                }
+            });
+        }
+
+        /**
+         * Reads the details of an object, unless already in the previous
+         * snapshot and not revalidated; the representation is only decoded
+         * when its digest differs from the previous one. On errors the
+         * previous node is kept.
+         */
+        private <T> void detail(final String href, final Type type, final HTTPResponseHandler<T> decoder,
+                final Function<T, CatalogNode> build) {
+            final CatalogNode node = previous == null ? null : previous.getByHref(href);
+            if (node != null && !revalidated.contains(type)) {
+                reuse(node);
+                return;
+            }
+            fetch(href, () -> reader.load(href + ".xml", Representation::read), representation -> {
+                if (node != null && representation.digest.equals(node.getDigest())) {
+                    reuse(node);
+                    return;
+                }
+                final T value;
+                try {
+                    value = decoder.handleResponse(new ByteArrayInputStream(representation.content));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                if (value == null) {
+                    error(href, "Unable to decode the catalog object");
+                    if (node != null) {
+                        reuse(node);
+                    }
+                } else {
+                    add(build.apply(value).withDigest(representation.digest));
+                }
+            }, () -> {
+                if (node != null) {
+                    reuse(node);
+                }
+            });
+        }
+
+        private void reuse(CatalogNode node) {
+            reused.incrementAndGet();
+            nodes.add(node);
+        }
+
+        /**
+         * Calls the reader on a crawler thread, passing the (not null) result
+         * to the given consumer, which may fetch the children, or running
+         * <TT>onError</TT> on failure.
+         */
+        private <T> void fetch(final String href, final Supplier<T> call, final Consumer<T> then,
+                final Runnable onError) {
+            pending.incrementAndGet();
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        requests.incrementAndGet();
+                        final T value = call.get();
+                        if (value == null) {
+                            error(href, "Unable to read the catalog object");
+                            onError.run();
+                        } else {
+                            then.accept(value);
+                        }
+                    } catch (RuntimeException e) {
+                        error(href, e.getMessage() != null ? e.getMessage() : e.toString());
+                        onError.run();
+                    } finally {
+                        if (pending.decrementAndGet() == 0) {
+                            done.countDown();
+                        }
+                    }
+                }
+            });
+        }
+
+        private void error(String href, String message) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Unable to crawl '" + href + "': " + message);
+            errors.add(new CrawlReport.Error(href, message));
+        }
+
+        private void add(CatalogNode node) {
+            nodes.add(node);
+        }
+
+        void start() {
+            // hold the crawl open while submitting the roots
+            pending.incrementAndGet();
+            list("/rest/workspaces", reader::getWorkspaces, list -> {
+                for (RESTShortWorkspace ws : list) {
+                    final String workspace = ws.getName();
+                    add(node(Type.WORKSPACE, null, workspace, workspaceHref(workspace), null));
+                    crawlWorkspace(workspace);
+                }
+            });
+            list("/rest/styles", reader::getStyles, list -> addStyles(null, list));
+            list("/rest/layergroups", reader::getLayerGroups, list -> {
+                for (NameLinkElem group : list) {
+                    crawlLayerGroup(null, group.getName());
+                }
+            });
+            list("/rest/layers", reader::getLayers, list -> {
+                for (NameLinkElem layer : list) {
+                    crawlLayer(layer.getName());
+                }
+            });
+            if (pending.decrementAndGet() == 0) {
+                done.countDown();
+            }
+        }
+
+        private void crawlWorkspace(final String ws) {
+            final String wsHref = workspaceHref(ws);
+            list(wsHref + "/datastores", () -> reader.getDatastores(ws), list -> {
+                for (NameLinkElem store : list) {
+                    final String ds = store.getName();
+                    final String dsHref = wsHref + "/datastores/" + ds;
+                    detail(dsHref, Type.DATASTORE, RESTDataStore::build, detail -> with(
+                            node(Type.DATASTORE, ws, ds, dsHref, wsHref), CatalogNode.TYPE_PROPERTY,
+                            detail.getStoreType(), CatalogNode.ENABLED_PROPERTY, String.valueOf(detail.isEnabled())));
+                    list(dsHref + "/featuretypes", () -> reader.getFeatureTypes(ws, ds), resources -> {
+                        for (NameLinkElem resource : resources) {
+                            final String name = resource.getName();
+                            detail(dsHref + "/featuretypes/" + name, Type.FEATURETYPE, RESTFeatureType::build,
+                                    detail -> resourceNode(Type.FEATURETYPE, ws, dsHref + "/featuretypes/"
+                                            + name, dsHref, detail));
+                        }
+                    });
+                }
+            });
+            list(wsHref + "/coveragestores", () -> reader.getCoverageStores(ws), list -> {
+                for (NameLinkElem store : list) {
+                    final String cs = store.getName();
+                    final String csHref = wsHref + "/coveragestores/" + cs;
+                    detail(csHref, Type.COVERAGESTORE, RESTCoverageStore::build, detail -> with(
+                            node(Type.COVERAGESTORE, ws, cs, csHref, wsHref), CatalogNode.TYPE_PROPERTY,
+                            detail.getType()));
+                    list(csHref + "/coverages", () -> reader.getCoverages(ws, cs), resources -> {
+                        for (NameLinkElem resource : resources) {
+                            final String name = resource.getName();
+                            detail(csHref + "/coverages/" + name, Type.COVERAGE, RESTCoverage::build,
+                                    detail -> resourceNode(Type.COVERAGE, ws, csHref + "/coverages/"
+                                            + name, csHref, detail));
+                        }
+                    });
+                }
+            });
+            list(wsHref + "/wmsstores", () -> reader.getWmsStores(ws), list -> {
+                for (NameLinkElem store : list) {
+                    final String wms = store.getName();
+                    final String wmsHref = wsHref + "/wmsstores/" + wms;
+                    detail(wmsHref, Type.WMSSTORE, RESTWmsStore::build, detail -> with(
+                            node(Type.WMSSTORE, ws, wms, wmsHref, wsHref), CatalogNode.TYPE_PROPERTY,
+                            detail.getType(), CatalogNode.ENABLED_PROPERTY, String.valueOf(detail.getEnabled())));
+                    list(wmsHref + "/wmslayers", () -> reader.getWms(ws, wms), resources -> {
+                        for (NameLinkElem resource : resources) {
+                            final String name = resource.getName();
+                            detail(wmsHref + "/wmslayers/" + name, Type.WMSLAYER, RESTWms::build,
+                                    detail -> resourceNode(Type.WMSLAYER, ws, wmsHref + "/wmslayers/"
+                                            + name, wmsHref, detail));
+                        }
+                    });
+                }
+            });
+            list(wsHref + "/styles", () -> reader.getStyles(ws), list -> addStyles(ws, list));
+            list(wsHref + "/layergroups", () -> reader.getLayerGroups(ws), list -> {
+                for (NameLinkElem group : list) {
+                    crawlLayerGroup(ws, group.getName());
+                }
+            });
+        }
+
+        private void addStyles(String ws, RESTStyleList list) {
+            for (NameLinkElem style : list) {
+                add(node(Type.STYLE, ws, style.getName(), styleHref(ws, style.getName()),
+                        ws == null ? null : workspaceHref(ws)));
+            }
+        }
+
+        private void crawlLayer(final String qualifiedName) {
+            final int colon = qualifiedName.indexOf(':');
+            final String ws = colon < 0 ? null : qualifiedName.substring(0, colon);
+            final String name = qualifiedName.substring(colon + 1);
+            final String href = "/rest/layers/" + qualifiedName;
+            final HTTPResponseHandler<? extends RESTLayer> decoder = ws == null ? RESTLayer::build
+                    : reader.getCapabilities().getLayerDecoder();
+            detail(href, Type.LAYER, decoder, layer -> {
+                final List<String> references = new ArrayList<String>();
+                references.add(CatalogSnapshot.toHref(layer.getResourceUrl()));
+                if (layer.getDefaultStyle() != null) {
+                    references.add(styleHref(layer.getDefaultStyleWorkspace(), layer.getDefaultStyle()));
+                }
+                final RESTStyleList styles = layer.getStyles();
+                if (styles != null) {
+                    for (NameLinkElem style : styles) {
+                        references.add(styleHref(style.getWorkspace(), style.getName()));
+                    }
+                }
+                final Map<String, String> properties = new HashMap<String, String>();
+                put(properties, CatalogNode.TYPE_PROPERTY, layer.getTypeString());
+                put(properties, CatalogNode.ENABLED_PROPERTY, String.valueOf(layer.getEnabled()));
+                return new CatalogNode(Type.LAYER, ws, name, href, ws == null ? null : workspaceHref(ws),
+                        properties, references, null);
+            });
+        }
+
+        private void crawlLayerGroup(final String ws, final String name) {
+            final String href = (ws == null ? "/rest" : workspaceHref(ws)) + "/layergroups/" + name;
+            detail(href, Type.LAYERGROUP, RESTLayerGroup::build, group -> {
+                final List<String> references = new ArrayList<String>();
+                final RESTPublishedList published = group.getPublishedList();
+                if (published != null) {
+                    for (RESTPublished item : published) {
+                        references.add("layerGroup".equals(item.getType()) ? layerGroupHref(item.getName())
+                                : "/rest/layers/" + item.getName());
+                    }
+                } else {
+                    final RESTLayerList layers = group.getLayerList();
+                    if (layers != null) {
+                        for (NameLinkElem layer : layers) {
+                            references.add("/rest/layers/" + layer.getName());
+                        }
+                    }
+                }
+                final Map<String, String> properties = new HashMap<String, String>();
+                put(properties, CatalogNode.TITLE_PROPERTY, group.getTitle());
+                put(properties, CatalogNode.ABSTRACT_PROPERTY, group.getAbstract());
+                double[] bbox = null;
+                try {
+                    put(properties, CatalogNode.CRS_PROPERTY, group.getCRS());
+                    bbox = new double[] { group.getMinX(), group.getMinY(), group.getMaxX(), group.getMaxY() };
+                } catch (RuntimeException e) {
+                    // no bounds
+                }
+                return new CatalogNode(Type.LAYERGROUP, ws, name, href, ws == null ? null : workspaceHref(ws),
+                        properties, references, bbox);
+            });
+        }
+
+        CatalogSnapshot await() throws InterruptedException {
+            done.await();
+            final long elapsed = System.currentTimeMillis() - startTime;
+            final CrawlReport report = new CrawlReport(startTime, elapsed, requests.get(), nodes.size(),
+                    reused.get(), new ArrayList<CrawlReport.Error>(errors));
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Catalog crawled: " + report);
+            return new CatalogSnapshot(nodes, report);
+        }
+    }
+
+    /**
+     * The raw representation of a catalog object, read by a stateless handler
+     * so that a caching transport can answer it from a conditional GET.
+     */
+    private static final class Representation {
+        private final byte[] content;
+
+        private final String digest;
+
+        private Representation(byte[] content) {
+            this.content = content;
+            try {
+                final MessageDigest sha = MessageDigest.getInstance("SHA-256");
+                this.digest = new BigInteger(1, sha.digest(content)).toString(16);
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException("SHA-256 not available", e);
+            }
+        }
+
+        static Representation read(InputStream body) throws IOException {
+            return new Representation(IOUtils.toByteArray(body));
+        }
+    }
+
+    private static CatalogNode node(Type type, String ws, String name, String href, String parentHref) {
+        return new CatalogNode(type, ws, name, href, parentHref, new HashMap<String, String>(),
+                new ArrayList<String>(), null);
+    }
+
+    /**
+     * @return a copy of the given node with the given (key, value) properties
+     */
+    private static CatalogNode with(CatalogNode node, String... properties) {
+        final Map<String, String> map = new HashMap<String, String>(node.getProperties());
+        for (int i = 0; i < properties.length; i += 2) {
+            put(map, properties[i], properties[i + 1]);
+        }
+        return new CatalogNode(node.getType(), node.getWorkspace(), node.getName(), node.getHref(),
+                node.getParentHref(), map, node.getReferences(), node.getBoundingBox(), node.getDigest());
+    }
+
+    private static CatalogNode resourceNode(Type type, String ws, String href, String storeHref,
+            RESTResource resource) {
+        final Map<String, String> properties = new HashMap<String, String>();
+        put(properties, CatalogNode.TITLE_PROPERTY, resource.getTitle());
+        put(properties, CatalogNode.ABSTRACT_PROPERTY, resource.getAbstract());
+        final List<String> keywords = resource.getKeywords();
+        if (keywords != null && !keywords.isEmpty()) {
+            final StringBuilder sb = new StringBuilder();
+            for (String keyword : keywords) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(keyword);
+            }
+            properties.put(CatalogNode.KEYWORDS_PROPERTY, sb.toString());
+        }
+        put(properties, CatalogNode.CRS_PROPERTY, resource.getSRS());
+        double[] bbox = null;
+        final RESTBoundingBox latLon = resource.getLatLonBoundingBox();
+        if (latLon != null) {
+            bbox = new double[] { latLon.getMinX(), latLon.getMinY(), latLon.getMaxX(), latLon.getMaxY() };
+        }
+        final String name = href.substring(href.lastIndexOf('/') + 1);
+        return new CatalogNode(type, ws, name, href, storeHref, properties, new ArrayList<String>(), bbox);
+    }
+
+    private static void put(Map<String, String> properties, String key, String value) {
+        if (value != null) {
+            properties.put(key, value);
+        }
+    }
+
+    static String workspaceHref(String ws) {
+        return "/rest/workspaces/" + ws;
+    }
+
+    /**
+     * @param ws the style workspace, null if global or if the name is prefixed
+     */
+    static String styleHref(String ws, String name) {
+        final int colon = name.indexOf(':');
+        if (colon >= 0) {
+            ws = name.substring(0, colon);
+            name = name.substring(colon + 1);
+        }
+        return (ws == null ? "/rest" : workspaceHref(ws)) + "/styles/" + name;
+    }
+
+    static String layerGroupHref(String name) {
+        final int colon = name.indexOf(':');
+        if (colon >= 0) {
+            return workspaceHref(name.substring(0, colon)) + "/layergroups/" + name.substring(colon + 1);
+        }
+        return "/rest/layergroups/" + name;
+    }
+}
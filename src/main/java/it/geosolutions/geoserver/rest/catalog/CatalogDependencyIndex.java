@@ -0,0 +1,146 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reverse dependency index of a {@link CatalogSnapshot}, telling what depends
+ * on a catalog object before deleting or updating it:
+ * <UL>
+ * <LI>style &rarr; the layers using it, as default or extra style</LI>
+ * <LI>store &rarr; its resources; resource &rarr; the layers publishing it</LI>
+ * <LI>layer (or layer group) &rarr; the layer groups containing it</LI>
+ * <LI>workspace &rarr; the objects it contains</LI>
+ * </UL>
+ * The index is built once from the node references and parent links, so
+ * lookups do not need any REST call.
+ */
+public final class CatalogDependencyIndex {
+
+    private final CatalogSnapshot snapshot;
+
+    private final Map<String, List<CatalogNode>> dependents = new HashMap<String, List<CatalogNode>>();
+
+    /**
+     * @param snapshot the snapshot to index
+     * @throws IllegalArgumentException if the snapshot is null
+     */
+    public CatalogDependencyIndex(CatalogSnapshot snapshot) throws IllegalArgumentException {
+        if (snapshot == null)
+            throw new IllegalArgumentException("Unable to index a null snapshot");
+        this.snapshot = snapshot;
+        for (CatalogNode node : snapshot.getNodes()) {
+            if (node.getParentHref() != null) {
+                add(node.getParentHref(), node);
+            }
+            for (String reference : new LinkedHashSet<String>(node.getReferences())) {
+                add(reference, node);
+            }
+        }
+        for (Map.Entry<String, List<CatalogNode>> entry : dependents.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+    }
+
+    private void add(String href, CatalogNode dependent) {
+        List<CatalogNode> list = dependents.get(href);
+        if (list == null) {
+            list = new ArrayList<CatalogNode>(2);
+            dependents.put(href, list);
+        }
+        list.add(dependent);
+    }
+
+    /**
+     * @param href the href (or REST URL) of a catalog object, which may be
+     *        missing from the snapshot (i.e. a style which could not be read)
+     * @return the objects directly depending on it, sorted by href
+     */
+    public List<CatalogNode> getDependents(String href) {
+        final List<CatalogNode> list = dependents.get(CatalogSnapshot.toHref(href));
+        return list == null ? Collections.<CatalogNode> emptyList() : list;
+    }
+
+    /**
+     * @return the objects directly depending on the given one, sorted by href
+     */
+    public List<CatalogNode> getDependents(CatalogNode node) {
+        return getDependents(node.getHref());
+    }
+
+    /**
+     * @return the objects of the given type directly depending on the given
+     *         one (i.e. the layers using a style)
+     */
+    public List<CatalogNode> getDependents(CatalogNode node, Type type) {
+        final List<CatalogNode> list = new ArrayList<CatalogNode>();
+        for (CatalogNode dependent : getDependents(node)) {
+            if (dependent.getType() == type) {
+                list.add(dependent);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Impact analysis: the objects depending, directly or not, on the given
+     * one (i.e. for a store its resources, their layers and the layer groups
+     * containing them).
+     *
+     * @return the dependent objects, nearest first
+     */
+    public List<CatalogNode> getImpact(CatalogNode node) {
+        final Set<CatalogNode> impact = new LinkedHashSet<CatalogNode>();
+        final Deque<CatalogNode> queue = new ArrayDeque<CatalogNode>();
+        queue.add(node);
+        while (!queue.isEmpty()) {
+            for (CatalogNode dependent : getDependents(queue.poll())) {
+                if (!dependent.equals(node) && impact.add(dependent)) {
+                    queue.add(dependent);
+                }
+            }
+        }
+        return new ArrayList<CatalogNode>(impact);
+    }
+
+    /**
+     * @return the snapshot this index was built from
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+}
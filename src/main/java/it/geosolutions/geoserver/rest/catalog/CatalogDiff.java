@@ -0,0 +1,168 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The differences between two {@link CatalogSnapshot}s, as a list of typed
+ * changes sorted by href.
+ *
+ * @see #compare(CatalogSnapshot, CatalogSnapshot)
+ * @see CatalogCrawler#sync(CatalogSnapshot, CatalogNode.Type...)
+ */
+public final class CatalogDiff {
+
+    /**
+     * The kinds of changes.
+     */
+    public enum Kind {
+        ADDED, REMOVED, MODIFIED
+    }
+
+    /**
+     * A changed catalog object.
+     */
+    public static final class Change {
+        private final Kind kind;
+
+        private final CatalogNode before;
+
+        private final CatalogNode after;
+
+        Change(Kind kind, CatalogNode before, CatalogNode after) {
+            this.kind = kind;
+            this.before = before;
+            this.after = after;
+        }
+
+        public Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the node in the previous snapshot, null if added
+         */
+        public CatalogNode getBefore() {
+            return before;
+        }
+
+        /**
+         * @return the node in the new snapshot, null if removed
+         */
+        public CatalogNode getAfter() {
+            return after;
+        }
+
+        /**
+         * @return the node (after the change, or before if removed)
+         */
+        public CatalogNode getNode() {
+            return after != null ? after : before;
+        }
+
+        @Override
+        public String toString() {
+            return kind + " " + getNode();
+        }
+    }
+
+    private final CatalogSnapshot snapshot;
+
+    private final List<Change> changes;
+
+    private CatalogDiff(CatalogSnapshot snapshot, List<Change> changes) {
+        this.snapshot = snapshot;
+        this.changes = Collections.unmodifiableList(changes);
+    }
+
+    /**
+     * Compares two snapshots.
+     *
+     * @param from the previous snapshot, null if none (everything is added)
+     * @param to the new snapshot
+     * @return the changes needed to turn <TT>from</TT> into <TT>to</TT>
+     */
+    public static CatalogDiff compare(CatalogSnapshot from, CatalogSnapshot to) {
+        final List<Change> changes = new ArrayList<Change>();
+        for (CatalogNode after : to.getNodes()) {
+            final CatalogNode before = from == null ? null : from.getByHref(after.getHref());
+            if (before == null) {
+                changes.add(new Change(Kind.ADDED, null, after));
+            } else if (!before.equals(after)) {
+                changes.add(new Change(Kind.MODIFIED, before, after));
+            }
+        }
+        if (from != null) {
+            for (CatalogNode before : from.getNodes()) {
+                if (to.getByHref(before.getHref()) == null) {
+                    changes.add(new Change(Kind.REMOVED, before, null));
+                }
+            }
+        }
+        Collections.sort(changes, (c1, c2) -> c1.getNode().getHref().compareTo(c2.getNode().getHref()));
+        return new CatalogDiff(to, changes);
+    }
+
+    /**
+     * @return the new snapshot
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return all the changes, sorted by href
+     */
+    public List<Change> getChanges() {
+        return changes;
+    }
+
+    /**
+     * @return the changes of the given kind, sorted by href
+     */
+    public List<Change> getChanges(Kind kind) {
+        final List<Change> list = new ArrayList<Change>();
+        for (Change change : changes) {
+            if (change.getKind() == kind) {
+                list.add(change);
+            }
+        }
+        return list;
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogDiff[added=" + getChanges(Kind.ADDED).size() + ", removed="
+                + getChanges(Kind.REMOVED).size() + ", modified=" + getChanges(Kind.MODIFIED).size() + "]";
+    }
+}
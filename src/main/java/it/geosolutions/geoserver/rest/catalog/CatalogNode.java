@@ -0,0 +1,233 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable catalog object of a {@link CatalogSnapshot}.
+ * <P>
+ * Each node is identified by its <B>href</B>, the path of its REST resource
+ * without base URL and extension (i.e.
+ * <TT>/rest/workspaces/topp/datastores/states</TT>), and links to:
+ * <UL>
+ * <LI>its parent (i.e. the store of a resource, the workspace of a store or of
+ * a layer), see {@link #getParentHref()}</LI>
+ * <LI>the objects it depends on (i.e. the resource and the styles of a layer,
+ * the layers of a layer group), see {@link #getReferences()}</LI>
+ * </UL>
+ * A few summary properties are kept as strings, see the <TT>*_PROPERTY</TT>
+ * names, along with the {@link #getDigest() digest} of the representation
+ * they were decoded from.
+ */
+public final class CatalogNode {
+
+    /**
+     * The kinds of catalog objects.
+     */
+    public enum Type {
+        WORKSPACE, STYLE, DATASTORE, COVERAGESTORE, WMSSTORE, FEATURETYPE, COVERAGE, WMSLAYER, LAYER, LAYERGROUP;
+
+        /**
+         * @return true for feature types, coverages and wms layers
+         */
+        public boolean isResource() {
+            return this == FEATURETYPE || this == COVERAGE || this == WMSLAYER;
+        }
+
+        /**
+         * @return true for data, coverage and wms stores
+         */
+        public boolean isStore() {
+            return this == DATASTORE || this == COVERAGESTORE || this == WMSSTORE;
+        }
+    }
+
+    public static final String TITLE_PROPERTY = "title";
+
+    public static final String ABSTRACT_PROPERTY = "abstract";
+
+    /** Comma separated keywords. */
+    public static final String KEYWORDS_PROPERTY = "keywords";
+
+    /** The declared SRS of resources, the CRS of the layer group bounds. */
+    public static final String CRS_PROPERTY = "crs";
+
+    /** The store type, or the layer type (i.e. VECTOR). */
+    public static final String TYPE_PROPERTY = "type";
+
+    public static final String ENABLED_PROPERTY = "enabled";
+
+    private final Type type;
+
+    private final String workspace;
+
+    private final String name;
+
+    private final String href;
+
+    private final String parentHref;
+
+    private final Map<String, String> properties;
+
+    private final List<String> references;
+
+    private final double[] bbox;
+
+    private final String digest;
+
+    /**
+     * @param bbox the lat/lon bounding box as minx, miny, maxx, maxy, or null
+     */
+    CatalogNode(Type type, String workspace, String name, String href, String parentHref,
+            Map<String, String> properties, List<String> references, double[] bbox) {
+        this(type, workspace, name, href, parentHref, properties, references, bbox, null);
+    }
+
+    /**
+     * @param digest the digest of the REST representation, or null
+     */
+    CatalogNode(Type type, String workspace, String name, String href, String parentHref,
+            Map<String, String> properties, List<String> references, double[] bbox, String digest) {
+        this.type = type;
+        this.workspace = workspace;
+        this.name = name;
+        this.href = href;
+        this.parentHref = parentHref;
+        this.properties = Collections.unmodifiableMap(properties);
+        this.references = Collections.unmodifiableList(references);
+        this.bbox = bbox == null ? null : bbox.clone();
+        this.digest = digest;
+    }
+
+    /**
+     * @return a copy of this node holding the given digest
+     */
+    CatalogNode withDigest(String digest) {
+        return new CatalogNode(type, workspace, name, href, parentHref, properties, references, bbox,
+                digest);
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * @return the workspace name, null for global objects
+     */
+    public String getWorkspace() {
+        return workspace;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the name prefixed by the workspace (i.e. <TT>topp:states</TT>)
+     *         for objects belonging to a workspace, the name otherwise
+     */
+    public String getQualifiedName() {
+        return qualify(workspace, name);
+    }
+
+    static String qualify(String workspace, String name) {
+        return workspace == null || name.indexOf(':') >= 0 ? name : workspace + ":" + name;
+    }
+
+    public String getHref() {
+        return href;
+    }
+
+    /**
+     * @return the href of the parent node, null for top level nodes
+     */
+    public String getParentHref() {
+        return parentHref;
+    }
+
+    /**
+     * @return the hrefs of the nodes this one depends on
+     */
+    public List<String> getReferences() {
+        return references;
+    }
+
+    public String getProperty(String key) {
+        return properties.get(key);
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return the lat/lon bounding box as <TT>{minx, miny, maxx, maxy}</TT>,
+     *         null if unknown
+     */
+    public double[] getBoundingBox() {
+        return bbox == null ? null : bbox.clone();
+    }
+
+    /**
+     * @return the SHA-256 of the REST representation this node was decoded
+     *         from, null for the nodes only known from a list (workspaces,
+     *         styles). It is not compared by {@link #equals(Object)}.
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof CatalogNode))
+            return false;
+        final CatalogNode other = (CatalogNode) obj;
+        return type == other.type && href.equals(other.href) && equal(workspace, other.workspace)
+                && name.equals(other.name) && equal(parentHref, other.parentHref)
+                && properties.equals(other.properties) && references.equals(other.references)
+                && Arrays.equals(bbox, other.bbox);
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public int hashCode() {
+        return href.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return type + "[" + href + "]";
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A query over the layers of a catalog, run by a {@link CatalogQueryEngine}.
+ * <P>
+ * Each attribute matches any of its values, while the attributes and the
+ * keywords must all match, i.e. all the enabled vector layers in EPSG:3857
+ * with keyword <TT>roads</TT> in workspace <TT>topp</TT>:
+ *
+ * <PRE>
+ * {@code
+ * new CatalogQuery().workspace("topp").type("VECTOR").enabled(true)
+ *         .crs("EPSG:3857").keyword("roads");
+ * }
+ * </PRE>
+ *
+ * Values are compared ignoring case.
+ */
+public class CatalogQuery {
+
+    /**
+     * The attributes of a layer which can be queried.
+     */
+    public enum Attribute {
+        /** The layer workspace. */
+        WORKSPACE,
+        /** The layer type (i.e. VECTOR, RASTER). */
+        TYPE,
+        /** Whether the layer is enabled (true or false). */
+        ENABLED,
+        /** The declared SRS of the layer resource. */
+        CRS,
+        /** The type of the store of the layer resource (i.e. Shapefile, GeoTIFF). */
+        STORE_TYPE,
+        /** A keyword of the layer resource. */
+        KEYWORD
+    }
+
+    private final Map<Attribute, Set<String>> values = new EnumMap<Attribute, Set<String>>(Attribute.class);
+
+    private final Set<String> keywords = new LinkedHashSet<String>();
+
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private CatalogQuery any(Attribute attribute, String... values) {
+        Set<String> set = this.values.get(attribute);
+        if (set == null) {
+            set = new LinkedHashSet<String>();
+            this.values.put(attribute, set);
+        }
+        for (String value : values) {
+            if (value == null)
+                throw new IllegalArgumentException("Unable to query a null " + attribute);
+            set.add(normalize(value));
+        }
+        return this;
+    }
+
+    /**
+     * Matches the layers of any of the given workspaces.
+     */
+    public CatalogQuery workspace(String... workspaces) {
+        return any(Attribute.WORKSPACE, workspaces);
+    }
+
+    /**
+     * Matches the layers of any of the given types (i.e. VECTOR).
+     */
+    public CatalogQuery type(String... types) {
+        return any(Attribute.TYPE, types);
+    }
+
+    public CatalogQuery enabled(boolean enabled) {
+        values.remove(Attribute.ENABLED);
+        return any(Attribute.ENABLED, String.valueOf(enabled));
+    }
+
+    /**
+     * Matches the layers whose resource has any of the given SRS (i.e.
+     * <TT>EPSG:3857</TT>).
+     */
+    public CatalogQuery crs(String... crs) {
+        return any(Attribute.CRS, crs);
+    }
+
+    /**
+     * Matches the layers whose resource store has any of the given types.
+     */
+    public CatalogQuery storeType(String... storeTypes) {
+        return any(Attribute.STORE_TYPE, storeTypes);
+    }
+
+    /**
+     * Matches the layers whose resource has all the given keywords.
+     */
+    public CatalogQuery keyword(String... keywords) {
+        for (String keyword : keywords) {
+            if (keyword == null)
+                throw new IllegalArgumentException("Unable to query a null keyword");
+            this.keywords.add(normalize(keyword));
+        }
+        return this;
+    }
+
+    /**
+     * @return the (normalized) accepted values of each attribute, keywords
+     *         excluded
+     */
+    Map<Attribute, Set<String>> getValues() {
+        return values;
+    }
+
+    /**
+     * @return the (normalized) required keywords
+     */
+    List<String> getKeywords() {
+        return Collections.unmodifiableList(new ArrayList<String>(keywords));
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder("CatalogQuery[");
+        for (Map.Entry<Attribute, Set<String>> entry : values.entrySet()) {
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append(", ");
+        }
+        if (!keywords.isEmpty()) {
+            sb.append(Attribute.KEYWORD).append('=').append(Arrays.toString(keywords.toArray()));
+        }
+        return sb.append(']').toString();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+import it.geosolutions.geoserver.rest.catalog.CatalogQuery.Attribute;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Answers {@link CatalogQuery queries} over the layers of a
+ * {@link CatalogSnapshot} locally, without GeoServer round trips.
+ * <P>
+ * On creation the attributes of each layer are collected from the layer
+ * itself (type, enabled), its resource (SRS, keywords) and the resource store
+ * (store type), and a hash index is built for each attribute, mapping each
+ * (normalized) value to the set of matching layers as a {@link BitSet};
+ * keywords are indexed the same way, as an inverted index. A query is then
+ * the intersection (and union, within an attribute) of a few bit sets.
+ */
+public final class CatalogQueryEngine {
+
+    private final CatalogSnapshot snapshot;
+
+    private final CatalogNode[] layers;
+
+    private final Map<Attribute, Map<String, BitSet>> indexes = new EnumMap<Attribute, Map<String, BitSet>>(
+            Attribute.class);
+
+    /**
+     * @param snapshot the snapshot to index
+     * @throws IllegalArgumentException if the snapshot is null
+     */
+    public CatalogQueryEngine(CatalogSnapshot snapshot) throws IllegalArgumentException {
+        if (snapshot == null)
+            throw new IllegalArgumentException("Unable to query a null snapshot");
+        this.snapshot = snapshot;
+        final List<CatalogNode> list = snapshot.getNodes(Type.LAYER);
+        layers = list.toArray(new CatalogNode[list.size()]);
+        for (Attribute attribute : Attribute.values()) {
+            indexes.put(attribute, new HashMap<String, BitSet>());
+        }
+        for (int i = 0; i < layers.length; i++) {
+            final CatalogNode layer = layers[i];
+            index(Attribute.WORKSPACE, layer.getWorkspace(), i);
+            index(Attribute.TYPE, layer.getProperty(CatalogNode.TYPE_PROPERTY), i);
+            index(Attribute.ENABLED, layer.getProperty(CatalogNode.ENABLED_PROPERTY), i);
+            final CatalogNode resource = resource(layer);
+            if (resource != null) {
+                index(Attribute.CRS, resource.getProperty(CatalogNode.CRS_PROPERTY), i);
+                final String keywords = resource.getProperty(CatalogNode.KEYWORDS_PROPERTY);
+                if (keywords != null) {
+                    for (String keyword : keywords.split(",")) {
+                        index(Attribute.KEYWORD, keyword, i);
+                    }
+                }
+                final CatalogNode store = snapshot.getParent(resource);
+                if (store != null) {
+                    index(Attribute.STORE_TYPE, store.getProperty(CatalogNode.TYPE_PROPERTY), i);
+                }
+            }
+        }
+    }
+
+    private CatalogNode resource(CatalogNode layer) {
+        for (CatalogNode reference : snapshot.getReferences(layer)) {
+            if (reference.getType().isResource()) {
+                return reference;
+            }
+        }
+        return null;
+    }
+
+    private void index(Attribute attribute, String value, int layer) {
+        if (value == null || value.trim().isEmpty()) {
+            return;
+        }
+        final Map<String, BitSet> index = indexes.get(attribute);
+        final String key = CatalogQuery.normalize(value);
+        BitSet bits = index.get(key);
+        if (bits == null) {
+            bits = new BitSet(layers.length);
+            index.put(key, bits);
+        }
+        bits.set(layer);
+    }
+
+    /**
+     * @return the snapshot this engine queries
+     */
+    public CatalogSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return the layers matching the query, sorted by href
+     */
+    public List<CatalogNode> find(CatalogQuery query) {
+        final BitSet bits = match(query);
+        final List<CatalogNode> result = new ArrayList<CatalogNode>(bits.cardinality());
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            result.add(layers[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return the number of layers matching the query
+     */
+    public int count(CatalogQuery query) {
+        return match(query).cardinality();
+    }
+
+    private BitSet match(CatalogQuery query) {
+        if (query == null)
+            throw new IllegalArgumentException("Unable to run a null query");
+        final BitSet result = new BitSet(layers.length);
+        result.set(0, layers.length);
+        for (Map.Entry<Attribute, Set<String>> entry : query.getValues().entrySet()) {
+            final Map<String, BitSet> index = indexes.get(entry.getKey());
+            final BitSet any = new BitSet(layers.length);
+            for (String value : entry.getValue()) {
+                final BitSet bits = index.get(value);
+                if (bits != null) {
+                    any.or(bits);
+                }
+            }
+            result.and(any);
+        }
+        final Map<String, BitSet> keywords = indexes.get(Attribute.KEYWORD);
+        for (String keyword : query.getKeywords()) {
+            final BitSet bits = keywords.get(keyword);
+            if (bits == null) {
+                result.clear();
+                break;
+            }
+            result.and(bits);
+        }
+        return result;
+    }
+
+    /**
+     * @return the (normalized) values of an attribute along with the number
+     *         of layers having them, sorted by value
+     */
+    public Map<String, Integer> getValues(Attribute attribute) {
+        final Map<String, Integer> values = new TreeMap<String, Integer>();
+        for (Map.Entry<String, BitSet> entry : indexes.get(attribute).entrySet()) {
+            values.put(entry.getKey(), entry.getValue().cardinality());
+        }
+        return Collections.unmodifiableMap(values);
+    }
+}
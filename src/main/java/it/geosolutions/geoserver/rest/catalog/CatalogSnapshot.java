@@ -0,0 +1,252 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable, in-memory picture of a GeoServer catalog, as read by a
+ * {@link CatalogCrawler}.
+ * <P>
+ * Nodes can be looked up by href (see {@link #getByHref(String)}, accepting
+ * the full URLs found in the REST representations as well) and by type and
+ * name; parent/child links and references are resolved through the snapshot.
+ * <BR>
+ * Nodes are kept sorted by href, so that two snapshots of the same catalog
+ * iterate in the same order.
+ */
+public final class CatalogSnapshot {
+
+    private static final String REST = "/rest/";
+
+    private static final Comparator<CatalogNode> BY_HREF = new Comparator<CatalogNode>() {
+        public int compare(CatalogNode o1, CatalogNode o2) {
+            return o1.getHref().compareTo(o2.getHref());
+        }
+    };
+
+    private final Map<String, CatalogNode> byHref;
+
+    private final Map<String, List<CatalogNode>> children;
+
+    private final Map<Type, Map<String, CatalogNode>> byName;
+
+    private final Map<Type, List<CatalogNode>> byType;
+
+    private final CrawlReport report;
+
+    /**
+     * @param nodes the catalog nodes, in any order; duplicated hrefs are
+     *        collapsed on the last one
+     * @param report the report of the crawl producing the nodes, may be null
+     */
+    CatalogSnapshot(Collection<CatalogNode> nodes, CrawlReport report) {
+        final List<CatalogNode> sorted = new ArrayList<CatalogNode>(nodes);
+        Collections.sort(sorted, BY_HREF);
+        final Map<String, CatalogNode> byHref = new LinkedHashMap<String, CatalogNode>();
+        for (CatalogNode node : sorted) {
+            byHref.put(node.getHref(), node);
+        }
+        final Map<String, List<CatalogNode>> children = new HashMap<String, List<CatalogNode>>();
+        final Map<Type, Map<String, CatalogNode>> byName = new EnumMap<Type, Map<String, CatalogNode>>(Type.class);
+        final Map<Type, List<CatalogNode>> byType = new EnumMap<Type, List<CatalogNode>>(Type.class);
+        for (Type type : Type.values()) {
+            byName.put(type, new HashMap<String, CatalogNode>());
+            byType.put(type, new ArrayList<CatalogNode>());
+        }
+        for (CatalogNode node : byHref.values()) {
+            if (node.getParentHref() != null) {
+                List<CatalogNode> siblings = children.get(node.getParentHref());
+                if (siblings == null) {
+                    siblings = new ArrayList<CatalogNode>();
+                    children.put(node.getParentHref(), siblings);
+                }
+                siblings.add(node);
+            }
+            byType.get(node.getType()).add(node);
+            byName.get(node.getType()).put(nameKey(node), node);
+        }
+        for (Map.Entry<String, List<CatalogNode>> entry : children.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        for (Map.Entry<Type, List<CatalogNode>> entry : byType.entrySet()) {
+            entry.setValue(Collections.unmodifiableList(entry.getValue()));
+        }
+        this.byHref = Collections.unmodifiableMap(byHref);
+        this.children = children;
+        this.byName = byName;
+        this.byType = byType;
+        this.report = report;
+    }
+
+    /**
+     * Resources share their names with their layers: the store is part of
+     * their key so that same named resources of different stores are kept.
+     */
+    private static String nameKey(CatalogNode node) {
+        if (node.getType().isResource()) {
+            return storeName(node) + "/" + node.getQualifiedName();
+        }
+        return node.getQualifiedName();
+    }
+
+    private static String storeName(CatalogNode node) {
+        final String parent = node.getParentHref();
+        return parent == null ? "" : parent.substring(parent.lastIndexOf('/') + 1);
+    }
+
+    /**
+     * Converts a REST URL or path (i.e.
+     * <TT>http://localhost:8080/geoserver/rest/workspaces/topp.xml?quietOnNotFound=true</TT>)
+     * into a snapshot href (i.e. <TT>/rest/workspaces/topp</TT>).
+     *
+     * @return the href, or the given string if not a REST URL
+     */
+    public static String toHref(String url) {
+        if (url == null) {
+            return null;
+        }
+        String href = url;
+        final int rest = href.indexOf(REST);
+        if (rest > 0) {
+            href = href.substring(rest);
+        }
+        final int query = href.indexOf('?');
+        if (query >= 0) {
+            href = href.substring(0, query);
+        }
+        final int slash = href.lastIndexOf('/');
+        final int dot = href.lastIndexOf('.');
+        if (dot > slash && isExtension(href.substring(dot + 1))) {
+            href = href.substring(0, dot);
+        }
+        return href;
+    }
+
+    private static boolean isExtension(String extension) {
+        return extension.equals("xml") || extension.equals("json") || extension.equals("html");
+    }
+
+    /**
+     * @return the node with the given href (or REST URL), null if missing
+     */
+    public CatalogNode getByHref(String href) {
+        return byHref.get(toHref(href));
+    }
+
+    /**
+     * Looks up a node by name.<BR>
+     * Resources are only found by {@link #getResource(Type, String, String, String)}.
+     *
+     * @param type the node type
+     * @param workspace the workspace, null for global objects; ignored if the
+     *        name is already prefixed (i.e. <TT>topp:states</TT>)
+     * @param name the object name
+     * @return the node, null if missing
+     */
+    public CatalogNode get(Type type, String workspace, String name) {
+        return byName.get(type).get(CatalogNode.qualify(workspace, name));
+    }
+
+    /**
+     * @return the resource of the given type, store and name, null if missing
+     */
+    public CatalogNode getResource(Type type, String workspace, String store, String name) {
+        return byName.get(type).get(store + "/" + CatalogNode.qualify(workspace, name));
+    }
+
+    /**
+     * @return all the nodes, sorted by href
+     */
+    public Collection<CatalogNode> getNodes() {
+        return byHref.values();
+    }
+
+    /**
+     * @return the nodes of the given type, sorted by href
+     */
+    public List<CatalogNode> getNodes(Type type) {
+        return byType.get(type);
+    }
+
+    public int size() {
+        return byHref.size();
+    }
+
+    /**
+     * @return the parent of the given node, null for top level nodes or if the
+     *         parent could not be read
+     */
+    public CatalogNode getParent(CatalogNode node) {
+        return node.getParentHref() == null ? null : byHref.get(node.getParentHref());
+    }
+
+    /**
+     * @return the children of the given node, sorted by href
+     */
+    public List<CatalogNode> getChildren(CatalogNode node) {
+        final List<CatalogNode> list = children.get(node.getHref());
+        return list == null ? Collections.<CatalogNode> emptyList() : list;
+    }
+
+    /**
+     * @return the nodes referenced by the given one which are part of this
+     *         snapshot
+     */
+    public List<CatalogNode> getReferences(CatalogNode node) {
+        final List<CatalogNode> list = new ArrayList<CatalogNode>(node.getReferences().size());
+        for (String href : node.getReferences()) {
+            final CatalogNode reference = byHref.get(href);
+            if (reference != null) {
+                list.add(reference);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @return the report of the crawl producing this snapshot, null if not
+     *         available
+     */
+    public CrawlReport getReport() {
+        return report;
+    }
+
+    @Override
+    public String toString() {
+        return "CatalogSnapshot[nodes=" + byHref.size() + "]";
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves and loads {@link CatalogSnapshot}s to and from a compact binary file,
+ * so that a service can start from its last snapshot and
+ * {@link CatalogCrawler#sync(CatalogSnapshot, Type...) sync} it in the
+ * background instead of crawling the whole catalog.
+ * <P>
+ * All the strings (names, hrefs, property keys and values) are stored once
+ * in a string table and referenced by index, since the same workspace,
+ * store and style names recur across thousands of nodes. The file is
+ * memory mapped on load.
+ * <P>
+ * Layout (big endian):
+ * <PRE>
+ * int magic, int version
+ * long startTime, long elapsed, long requests, int reused     (crawl report)
+ * int strings, { int length, byte[length] UTF-8 }*
+ * int nodes, { byte type, int workspace, int name, int href, int parent, int digest,
+ *              int properties, { int key, int value }*,
+ *              int references, { int href }*,
+ *              byte hasBBox, [ double minx, miny, maxx, maxy ] }*
+ * int errors, { int href, int message }*
+ * </PRE>
+ * String indexes are -1 for null values. Version 1 files, without digests,
+ * are still read.
+ */
+public final class CatalogSnapshotFile {
+
+    private static final int MAGIC = 0x47534353; // GSCS
+
+    private static final int VERSION = 2;
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private CatalogSnapshotFile() {
+    }
+
+    /**
+     * Writes the snapshot to the given file, replacing it atomically (the
+     * snapshot is written to a temporary file first).
+     *
+     * @throws IllegalArgumentException if snapshot or file are null
+     * @throws IOException on write errors
+     */
+    public static void write(CatalogSnapshot snapshot, File file) throws IllegalArgumentException,
+            IOException {
+        if (snapshot == null || file == null)
+            throw new IllegalArgumentException("Unable to write a snapshot using null arguments");
+
+        // string table, in order of first use
+        final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+        for (CatalogNode node : snapshot.getNodes()) {
+            intern(strings, node.getWorkspace());
+            intern(strings, node.getName());
+            intern(strings, node.getHref());
+            intern(strings, node.getParentHref());
+            intern(strings, node.getDigest());
+            for (Map.Entry<String, String> property : node.getProperties().entrySet()) {
+                intern(strings, property.getKey());
+                intern(strings, property.getValue());
+            }
+            for (String reference : node.getReferences()) {
+                intern(strings, reference);
+            }
+        }
+        final CrawlReport report = snapshot.getReport();
+        final List<CrawlReport.Error> errors = report == null ? new ArrayList<CrawlReport.Error>()
+                : report.getErrors();
+        for (CrawlReport.Error error : errors) {
+            intern(strings, error.getHref());
+            intern(strings, error.getMessage());
+        }
+
+        final File dir = file.getAbsoluteFile().getParentFile();
+        final File tmp = File.createTempFile(file.getName(), ".tmp", dir);
+        try {
+            final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                    new FileOutputStream(tmp), 65536));
+            try {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(report == null ? 0 : report.getStartTime());
+                out.writeLong(report == null ? 0 : report.getElapsed());
+                out.writeLong(report == null ? 0 : report.getRequestCount());
+                out.writeInt(report == null ? 0 : report.getReusedCount());
+                out.writeInt(strings.size());
+                for (String string : strings.keySet()) {
+                    final byte[] bytes = string.getBytes(UTF8);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                }
+                out.writeInt(snapshot.size());
+                for (CatalogNode node : snapshot.getNodes()) {
+                    out.writeByte(node.getType().ordinal());
+                    out.writeInt(index(strings, node.getWorkspace()));
+                    out.writeInt(index(strings, node.getName()));
+                    out.writeInt(index(strings, node.getHref()));
+                    out.writeInt(index(strings, node.getParentHref()));
+                    out.writeInt(index(strings, node.getDigest()));
+                    out.writeInt(node.getProperties().size());
+                    for (Map.Entry<String, String> property : node.getProperties().entrySet()) {
+                        out.writeInt(index(strings, property.getKey()));
+                        out.writeInt(index(strings, property.getValue()));
+                    }
+                    out.writeInt(node.getReferences().size());
+                    for (String reference : node.getReferences()) {
+                        out.writeInt(index(strings, reference));
+                    }
+                    final double[] bbox = node.getBoundingBox();
+                    out.writeBoolean(bbox != null);
+                    if (bbox != null) {
+                        for (double value : bbox) {
+                            out.writeDouble(value);
+                        }
+                    }
+                }
+                out.writeInt(errors.size());
+                for (CrawlReport.Error error : errors) {
+                    out.writeInt(index(strings, error.getHref()));
+                    out.writeInt(index(strings, error.getMessage()));
+                }
+            } finally {
+                out.close();
+            }
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private static void intern(Map<String, Integer> strings, String string) {
+        if (string != null && !strings.containsKey(string)) {
+            strings.put(string, strings.size());
+        }
+    }
+
+    private static int index(Map<String, Integer> strings, String string) {
+        return string == null ? -1 : strings.get(string);
+    }
+
+    /**
+     * Loads a snapshot written by {@link #write(CatalogSnapshot, File)}.
+     *
+     * @return the snapshot; its report is the one of the crawl which
+     *         produced it
+     * @throws IllegalArgumentException if the file is null
+     * @throws IOException on read errors or if the file is not a (supported)
+     *         snapshot
+     */
+    public static CatalogSnapshot read(File file) throws IllegalArgumentException, IOException {
+        if (file == null)
+            throw new IllegalArgumentException("Unable to read a snapshot from a null file");
+        final ByteBuffer buffer;
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // the mapping stays valid once the channel is closed
+            buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+        } finally {
+            raf.close();
+        }
+        try {
+            return read(buffer);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated catalog snapshot: " + file, e);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted catalog snapshot: " + file, e);
+        }
+    }
+
+    private static CatalogSnapshot read(ByteBuffer buffer) throws IOException {
+        if (buffer.getInt() != MAGIC)
+            throw new IOException("Not a catalog snapshot");
+        final int version = buffer.getInt();
+        if (version != 1 && version != VERSION)
+            throw new IOException("Unsupported catalog snapshot version: " + version);
+        final long startTime = buffer.getLong();
+        final long elapsed = buffer.getLong();
+        final long requests = buffer.getLong();
+        final int reused = buffer.getInt();
+
+        final String[] strings = new String[buffer.getInt()];
+        for (int i = 0; i < strings.length; i++) {
+            final byte[] bytes = new byte[buffer.getInt()];
+            buffer.get(bytes);
+            strings[i] = new String(bytes, UTF8);
+        }
+
+        final Type[] types = Type.values();
+        final int count = buffer.getInt();
+        final List<CatalogNode> nodes = new ArrayList<CatalogNode>(count);
+        for (int i = 0; i < count; i++) {
+            final Type type = types[buffer.get()];
+            final String workspace = string(strings, buffer.getInt());
+            final String name = string(strings, buffer.getInt());
+            final String href = string(strings, buffer.getInt());
+            final String parent = string(strings, buffer.getInt());
+            final String digest = version == 1 ? null : string(strings, buffer.getInt());
+            final int propertyCount = buffer.getInt();
+            final Map<String, String> properties = new HashMap<String, String>(propertyCount * 2);
+            for (int p = 0; p < propertyCount; p++) {
+                properties.put(string(strings, buffer.getInt()), string(strings, buffer.getInt()));
+            }
+            final int referenceCount = buffer.getInt();
+            final List<String> references = new ArrayList<String>(referenceCount);
+            for (int r = 0; r < referenceCount; r++) {
+                references.add(string(strings, buffer.getInt()));
+            }
+            double[] bbox = null;
+            if (buffer.get() != 0) {
+                bbox = new double[] { buffer.getDouble(), buffer.getDouble(), buffer.getDouble(),
+                        buffer.getDouble() };
+            }
+            nodes.add(new CatalogNode(type, workspace, name, href, parent, properties, references, bbox,
+                    digest));
+        }
+
+        final int errorCount = buffer.getInt();
+        final List<CrawlReport.Error> errors = new ArrayList<CrawlReport.Error>(errorCount);
+        for (int i = 0; i < errorCount; i++) {
+            errors.add(new CrawlReport.Error(string(strings, buffer.getInt()), string(strings,
+                    buffer.getInt())));
+        }
+        return new CatalogSnapshot(nodes, new CrawlReport(startTime, elapsed, requests, count, reused,
+                errors));
+    }
+
+    private static String string(String[] strings, int index) {
+        return index < 0 ? null : strings[index];
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Read only spatial index over the lat/lon bounding boxes of a
+ * {@link CatalogSnapshot}, answering bbox intersection and nearest neighbour
+ * queries without scanning the whole catalog.
+ * <P>
+ * The index is a packed R-tree, bulk loaded using the Sort-Tile-Recursive
+ * algorithm: each level is sorted by x into vertical slices, each slice is
+ * sorted by y and consecutive runs of <TT>nodeSize</TT> entries are packed
+ * into a parent. All the boxes are kept in a single <TT>double[]</TT> (leaves
+ * first, root last), so queries only walk primitive arrays.
+ * <P>
+ * Indexed nodes are the ones with a bounding box (resources and layer
+ * groups) and the layers, using the box of the resource they publish.
+ * Coordinates are compared as planar lon/lat; boxes crossing the
+ * antimeridian are not supported.
+ */
+public final class CatalogSpatialIndex {
+
+    /** Default max number of children of a tree node. */
+    public static final int DEFAULT_NODE_SIZE = 16;
+
+    private final CatalogNode[] items;
+
+    private final int nodeSize;
+
+    /** minx, miny, maxx, maxy of each tree position. */
+    private final double[] boxes;
+
+    /** The item of a leaf position, the first child position of the others. */
+    private final int[] indices;
+
+    /** The end (exclusive) position of each level, the leaves being level 0. */
+    private final int[] levelEnds;
+
+    /**
+     * Indexes the given snapshot using the default node size.
+     */
+    public CatalogSpatialIndex(CatalogSnapshot snapshot) {
+        this(snapshot, DEFAULT_NODE_SIZE);
+    }
+
+    /**
+     * @param snapshot the snapshot to index
+     * @param nodeSize the max number of children of a tree node
+     * @throws IllegalArgumentException if the snapshot is null or nodeSize is
+     *         lower than 2
+     */
+    public CatalogSpatialIndex(CatalogSnapshot snapshot, int nodeSize) throws IllegalArgumentException {
+        if (snapshot == null)
+            throw new IllegalArgumentException("Unable to index a null snapshot");
+        if (nodeSize < 2)
+            throw new IllegalArgumentException("Unable to index using node size " + nodeSize);
+        this.nodeSize = nodeSize;
+
+        final List<CatalogNode> nodes = new ArrayList<CatalogNode>();
+        final List<double[]> nodeBoxes = new ArrayList<double[]>();
+        for (CatalogNode node : snapshot.getNodes()) {
+            final double[] bbox = boundingBox(snapshot, node);
+            if (bbox != null && bbox[0] <= bbox[2] && bbox[1] <= bbox[3]) {
+                nodes.add(node);
+                nodeBoxes.add(bbox);
+            }
+        }
+        items = nodes.toArray(new CatalogNode[nodes.size()]);
+
+        final int n = items.length;
+        final List<Integer> ends = new ArrayList<Integer>();
+        int count = n;
+        int total = n;
+        ends.add(total);
+        while (count > 1) {
+            count = (count + nodeSize - 1) / nodeSize;
+            total += count;
+            ends.add(total);
+        }
+        levelEnds = new int[ends.size()];
+        for (int i = 0; i < levelEnds.length; i++) {
+            levelEnds[i] = ends.get(i);
+        }
+        boxes = new double[total * 4];
+        indices = new int[total];
+        for (int i = 0; i < n; i++) {
+            System.arraycopy(nodeBoxes.get(i), 0, boxes, i * 4, 4);
+            indices[i] = i;
+        }
+
+        int start = 0;
+        for (int level = 0; level < levelEnds.length - 1; level++) {
+            final int end = levelEnds[level];
+            sortTileRecursive(start, end);
+            int parent = end;
+            for (int child = start; child < end; child += nodeSize) {
+                final int last = Math.min(child + nodeSize, end);
+                double minx = Double.POSITIVE_INFINITY, miny = Double.POSITIVE_INFINITY;
+                double maxx = Double.NEGATIVE_INFINITY, maxy = Double.NEGATIVE_INFINITY;
+                for (int i = child; i < last; i++) {
+                    minx = Math.min(minx, boxes[i * 4]);
+                    miny = Math.min(miny, boxes[i * 4 + 1]);
+                    maxx = Math.max(maxx, boxes[i * 4 + 2]);
+                    maxy = Math.max(maxy, boxes[i * 4 + 3]);
+                }
+                boxes[parent * 4] = minx;
+                boxes[parent * 4 + 1] = miny;
+                boxes[parent * 4 + 2] = maxx;
+                boxes[parent * 4 + 3] = maxy;
+                indices[parent] = child;
+                parent++;
+            }
+            start = end;
+        }
+    }
+
+    private static double[] boundingBox(CatalogSnapshot snapshot, CatalogNode node) {
+        final double[] bbox = node.getBoundingBox();
+        if (bbox != null || node.getType() != CatalogNode.Type.LAYER) {
+            return bbox;
+        }
+        for (CatalogNode reference : snapshot.getReferences(node)) {
+            if (reference.getType().isResource()) {
+                return reference.getBoundingBox();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sorts the positions [start, end) in STR order: by x center, then by y
+     * center within each vertical slice.
+     */
+    private void sortTileRecursive(int start, int end) {
+        final int count = end - start;
+        if (count <= nodeSize) {
+            return;
+        }
+        final Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = start + i;
+        }
+        Arrays.sort(order, new CenterComparator(0));
+        final int parents = (count + nodeSize - 1) / nodeSize;
+        final int slices = (int) Math.ceil(Math.sqrt(parents));
+        final int sliceSize = slices * nodeSize;
+        final Comparator<Integer> byY = new CenterComparator(1);
+        for (int i = 0; i < count; i += sliceSize) {
+            Arrays.sort(order, i, Math.min(i + sliceSize, count), byY);
+        }
+        final double[] sortedBoxes = new double[count * 4];
+        final int[] sortedIndices = new int[count];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(boxes, order[i] * 4, sortedBoxes, i * 4, 4);
+            sortedIndices[i] = indices[order[i]];
+        }
+        System.arraycopy(sortedBoxes, 0, boxes, start * 4, count * 4);
+        System.arraycopy(sortedIndices, 0, indices, start, count);
+    }
+
+    private final class CenterComparator implements Comparator<Integer> {
+        private final int axis;
+
+        CenterComparator(int axis) {
+            this.axis = axis;
+        }
+
+        public int compare(Integer p1, Integer p2) {
+            return Double.compare(boxes[p1 * 4 + axis] + boxes[p1 * 4 + axis + 2],
+                    boxes[p2 * 4 + axis] + boxes[p2 * 4 + axis + 2]);
+        }
+    }
+
+    /**
+     * @return the number of indexed nodes
+     */
+    public int size() {
+        return items.length;
+    }
+
+    private int root() {
+        return indices.length - 1;
+    }
+
+    /**
+     * @return the end (exclusive) of the children of the given (not leaf)
+     *         position
+     */
+    private int childrenEnd(int position) {
+        final int first = indices[position];
+        int level = 0;
+        while (levelEnds[level] <= first) {
+            level++;
+        }
+        return Math.min(first + nodeSize, levelEnds[level]);
+    }
+
+    /**
+     * Finds the nodes whose bounding box intersects (or touches) the given
+     * one.
+     *
+     * @return the matching nodes, in no particular order
+     */
+    public List<CatalogNode> intersects(double minx, double miny, double maxx, double maxy) {
+        if (items.length == 0) {
+            return Collections.emptyList();
+        }
+        final List<CatalogNode> result = new ArrayList<CatalogNode>();
+        final int[] stack = new int[levelEnds.length * nodeSize + 1];
+        int size = 0;
+        stack[size++] = root();
+        while (size > 0) {
+            final int position = stack[--size];
+            final int b = position * 4;
+            if (boxes[b] > maxx || boxes[b + 1] > maxy || boxes[b + 2] < minx || boxes[b + 3] < miny) {
+                continue;
+            }
+            if (position < items.length) {
+                result.add(items[indices[position]]);
+            } else {
+                final int end = childrenEnd(position);
+                for (int child = indices[position]; child < end; child++) {
+                    stack[size++] = child;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Finds the nodes closest to the given point, by distance between the
+     * point and their bounding box (0 for boxes containing it).
+     *
+     * @param k the max number of nodes to return
+     * @return up to k nodes, nearest first
+     */
+    public List<CatalogNode> nearest(double x, double y, int k) {
+        final List<CatalogNode> result = new ArrayList<CatalogNode>(Math.min(k, items.length));
+        if (items.length == 0 || k <= 0) {
+            return result;
+        }
+        final Heap heap = new Heap();
+        heap.push(distance(root(), x, y), root());
+        while (heap.size > 0 && result.size() < k) {
+            final int position = heap.pop();
+            if (position < items.length) {
+                result.add(items[indices[position]]);
+            } else {
+                final int end = childrenEnd(position);
+                for (int child = indices[position]; child < end; child++) {
+                    heap.push(distance(child, x, y), child);
+                }
+            }
+        }
+        return result;
+    }
+
+    private double distance(int position, double x, double y) {
+        final int b = position * 4;
+        final double dx = x < boxes[b] ? boxes[b] - x : x > boxes[b + 2] ? x - boxes[b + 2] : 0;
+        final double dy = y < boxes[b + 1] ? boxes[b + 1] - y : y > boxes[b + 3] ? y - boxes[b + 3] : 0;
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * Min binary heap of positions keyed by distance.
+     */
+    private static final class Heap {
+        private double[] keys = new double[64];
+
+        private int[] values = new int[64];
+
+        private int size;
+
+        void push(double key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                final int parent = (i - 1) >> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                keys[i] = keys[parent];
+                values[i] = values[parent];
+                i = parent;
+            }
+            keys[i] = key;
+            values[i] = value;
+        }
+
+        int pop() {
+            final int top = values[0];
+            final double key = keys[--size];
+            final int value = values[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (keys[child] >= key) {
+                    break;
+                }
+                keys[i] = keys[child];
+                values[i] = values[child];
+                i = child;
+            }
+            keys[i] = key;
+            values[i] = value;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Throughput and errors of a catalog crawl.
+ */
+public final class CrawlReport {
+
+    /**
+     * A catalog object which could not be read.
+     */
+    public static final class Error {
+        private final String href;
+
+        private final String message;
+
+        Error(String href, String message) {
+            this.href = href;
+            this.message = message;
+        }
+
+        /**
+         * @return the href of the REST resource which could not be read
+         */
+        public String getHref() {
+            return href;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            return href + ": " + message;
+        }
+    }
+
+    private final long startTime;
+
+    private final long elapsed;
+
+    private final long requestCount;
+
+    private final int nodeCount;
+
+    private final int reusedCount;
+
+    private final List<Error> errors;
+
+    CrawlReport(long startTime, long elapsed, long requestCount, int nodeCount, int reusedCount,
+            List<Error> errors) {
+        this.startTime = startTime;
+        this.elapsed = elapsed;
+        this.requestCount = requestCount;
+        this.nodeCount = nodeCount;
+        this.reusedCount = reusedCount;
+        this.errors = Collections.unmodifiableList(new ArrayList<Error>(errors));
+    }
+
+    /**
+     * @return the time (ms since the epoch) the crawl started
+     */
+    public long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * @return the crawl duration (ms)
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return the number of REST calls performed
+     */
+    public long getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * @return the number of catalog objects read
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * @return the number of catalog objects copied from the previous snapshot
+     *         by an incremental sync, without reading their details
+     */
+    public int getReusedCount() {
+        return reusedCount;
+    }
+
+    /**
+     * @return the REST calls per second
+     */
+    public double getThroughput() {
+        return elapsed == 0 ? requestCount * 1000d : requestCount * 1000d / elapsed;
+    }
+
+    /**
+     * @return the objects which could not be read, whose children (if any)
+     *         are missing from the snapshot
+     */
+    public List<Error> getErrors() {
+        return errors;
+    }
+
+    @Override
+    public String toString() {
+        return "CrawlReport[nodes=" + nodeCount + ", reused=" + reusedCount + ", requests=" + requestCount + ", elapsed=" + elapsed
+                + "ms, throughput=" + String.format("%.1f", getThroughput()) + "/s, errors="
+                + errors.size() + "]";
+    }
+}
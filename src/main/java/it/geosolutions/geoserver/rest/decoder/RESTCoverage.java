@@ -27,6 +27,7 @@ package it.geosolutions.geoserver.rest.decoder;
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 import it.geosolutions.geoserver.rest.encoder.feature.FeatureTypeAttribute;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -159,6 +160,12 @@ public class RESTCoverage extends RESTResource {
         return elem == null? null : new RESTCoverage(elem);
 	}
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTCoverage build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTCoverage(elem);
+    }
+
 	public RESTCoverage(Element resource) {
 		super(resource);
 	}
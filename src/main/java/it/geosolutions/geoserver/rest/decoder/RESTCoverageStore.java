@@ -27,6 +27,8 @@ package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 
+import java.io.InputStream;
+
 import org.jdom.Element;
 
 /**
@@ -79,6 +81,12 @@ public class RESTCoverageStore {
             return null;
     }
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTCoverageStore build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTCoverageStore(elem);
+    }
+
     public String getName() {
         return cs.getChildText("name");
     }
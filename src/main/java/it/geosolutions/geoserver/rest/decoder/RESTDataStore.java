@@ -27,6 +27,7 @@ package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -106,6 +107,12 @@ public class RESTDataStore {
         }
     }
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTDataStore build(InputStream xml) {
+        Element elem = JDOMBuilder.buildElement(xml);
+        return elem == null ? null : new RESTDataStore(elem);
+    }
+
     protected RESTDataStore(Element dsElem) {
         this.dsElem = dsElem;
     }
@@ -28,6 +28,8 @@ package it.geosolutions.geoserver.rest.decoder;
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 import it.geosolutions.geoserver.rest.decoder.utils.NameLinkElem;
 
+import java.io.InputStream;
+
 import org.jdom.Element;
 
 /**
@@ -42,6 +44,12 @@ public class RESTDataStoreList extends RESTAbstractList<NameLinkElem> {
         return elem == null? null : new RESTDataStoreList(elem);
 	}
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTDataStoreList build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTDataStoreList(elem);
+    }
+
     protected RESTDataStoreList(Element list) {
         super(list);
     }
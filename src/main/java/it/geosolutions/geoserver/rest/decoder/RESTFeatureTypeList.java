@@ -28,6 +28,8 @@ package it.geosolutions.geoserver.rest.decoder;
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 import it.geosolutions.geoserver.rest.decoder.utils.NameLinkElem;
 
+import java.io.InputStream;
+
 import org.jdom.Element;
 
 /**
@@ -56,6 +58,12 @@ public class RESTFeatureTypeList extends RESTAbstractList<NameLinkElem> {
         return elem == null? null : new RESTFeatureTypeList(elem);
 	}
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTFeatureTypeList build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTFeatureTypeList(elem);
+    }
+
     protected RESTFeatureTypeList(Element list) {
         super(list);
     }
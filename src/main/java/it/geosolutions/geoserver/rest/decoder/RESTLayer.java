@@ -25,6 +25,7 @@
 
 package it.geosolutions.geoserver.rest.decoder;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -123,6 +124,12 @@ public class RESTLayer {
             return null;
 	}
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTLayer build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTLayer(elem);
+    }
+
 	public RESTLayer(Element layerElem) {
 		this.layerElem = layerElem;
 	}
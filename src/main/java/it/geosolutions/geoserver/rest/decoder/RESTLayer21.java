@@ -3,6 +3,7 @@ package it.geosolutions.geoserver.rest.decoder;
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 import it.geosolutions.geoserver.rest.encoder.authorityurl.GSAuthorityURLInfoEncoder;
 import it.geosolutions.geoserver.rest.encoder.identifier.GSIdentifierInfoEncoder;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -68,6 +69,12 @@ public class RESTLayer21 extends RESTLayer{
         else
             return null;
 	}
+
+	/** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+	public static RESTLayer21 build(InputStream response) {
+		Element elem = JDOMBuilder.buildElement(response);
+		return elem == null ? null : new RESTLayer21(elem);
+	}
 	
 	/**
 	 * Decodes the advertised property from the Geoserver Layer
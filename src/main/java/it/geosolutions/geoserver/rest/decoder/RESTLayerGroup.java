@@ -27,6 +27,8 @@ package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 
+import java.io.InputStream;
+
 import org.jdom.Element;
 
 /**
@@ -84,6 +86,12 @@ public class RESTLayerGroup {
         return elem == null? null : new RESTLayerGroup(elem);
 	}
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTLayerGroup build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTLayerGroup(elem);
+    }
+
 	public RESTLayerGroup(Element layerElem) {
 		this.rootElem = layerElem;
 	}
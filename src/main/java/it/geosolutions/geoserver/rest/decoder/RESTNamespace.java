@@ -26,6 +26,7 @@ package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 
+import java.io.InputStream;
 import java.net.URI;
 
 import org.jdom.Element;
@@ -70,6 +71,12 @@ public class RESTNamespace {
         else
             return null;
 	}
+
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTNamespace build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTNamespace(elem);
+    }
     
     /**
      * Create a RESTNamespace from a XML element.
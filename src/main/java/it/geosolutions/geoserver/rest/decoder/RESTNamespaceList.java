@@ -27,6 +27,7 @@ package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -55,6 +56,12 @@ public class RESTNamespaceList implements Iterable<RESTNamespaceList.RESTShortNa
             return null;
 	}
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTNamespaceList build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTNamespaceList(elem);
+    }
+
     protected RESTNamespaceList(Element wslistroot) {
         List<Element> tmpList = new ArrayList<Element>();
         for (Element wselem : (List<Element>) wslistroot.getChildren("namespace")) {
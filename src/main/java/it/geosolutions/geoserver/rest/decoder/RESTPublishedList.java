@@ -27,6 +27,8 @@ package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 
+import java.io.InputStream;
+
 import org.jdom.Element;
 
 
@@ -56,6 +58,12 @@ public class RESTPublishedList extends RESTAbstractList<RESTPublished> {
         return elem == null ? null : new RESTPublishedList(elem);
     }
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTPublishedList build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTPublishedList(elem);
+    }
+
     protected RESTPublishedList(Element list) {
         super(list);
     }
@@ -32,6 +32,7 @@ import it.geosolutions.geoserver.rest.encoder.feature.GSAttributeEncoder;
 import it.geosolutions.geoserver.rest.encoder.metadatalink.GSMetadataLinkInfoEncoder;
 import it.geosolutions.geoserver.rest.encoder.metadatalink.ResourceMetadataLinkInfo;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -55,6 +56,12 @@ public class RESTResource {
         return elem == null ? null : new RESTCoverage(elem);
     }
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTResource build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTResource(elem);
+    }
+
     public RESTResource(Element resource) {
         this.rootElem = resource;
     }
@@ -114,6 +121,13 @@ public class RESTResource {
     	return rootElem.getChildText("nativeCRS");
     }
 
+    /**
+     * @return the declared SRS (i.e. <TT>EPSG:4326</TT>)
+     */
+    public String getSRS() {
+        return rootElem.getChildText("srs");
+    }
+
 	public RESTBoundingBox getNativeBoundingBox() {
 		RESTBoundingBox bbox = null;
 		Element bboxElement = rootElem.getChild("nativeBoundingBox");
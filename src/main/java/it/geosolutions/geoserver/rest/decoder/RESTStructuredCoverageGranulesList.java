@@ -26,6 +26,7 @@ package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -133,6 +134,12 @@ public class RESTStructuredCoverageGranulesList implements Iterable<RESTStructur
             return null;
         }
     }
+
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTStructuredCoverageGranulesList build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTStructuredCoverageGranulesList(elem);
+    }
     
     public int size() {
         return granulesList.size();
@@ -26,6 +26,7 @@ package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -136,6 +137,12 @@ public class RESTStructuredCoverageIndexSchema implements Iterable<RESTStructure
             return null;
         }
     }
+
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTStructuredCoverageIndexSchema build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTStructuredCoverageIndexSchema(elem);
+    }
     
     public int size() {
         return attributeList.size();
@@ -25,6 +25,9 @@
 package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
+
+import java.io.InputStream;
+
 import org.jdom.Element;
 
 /**
@@ -48,6 +51,12 @@ public class RESTStyle {
         }
     }
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTStyle build(InputStream xml) {
+        Element elem = JDOMBuilder.buildElement(xml);
+        return elem == null ? null : new RESTStyle(elem);
+    }
+
     protected RESTStyle(Element elem) {
         this.elem = elem;
     }
@@ -27,6 +27,8 @@ package it.geosolutions.geoserver.rest.decoder;
 
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 
+import java.io.InputStream;
+
 import org.jdom.Element;
 
 /**
@@ -86,6 +88,12 @@ public class RESTWmsStore {
             return null;
     }
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTWmsStore build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTWmsStore(elem);
+    }
+
     public String getName() {
         return cs.getChildText("name");
     }
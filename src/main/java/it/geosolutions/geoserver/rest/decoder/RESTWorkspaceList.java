@@ -28,6 +28,7 @@ package it.geosolutions.geoserver.rest.decoder;
 import it.geosolutions.geoserver.rest.decoder.utils.JDOMBuilder;
 import it.geosolutions.geoserver.rest.decoder.utils.NameLinkElem;
 
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
@@ -56,6 +57,12 @@ public class RESTWorkspaceList implements Iterable<RESTWorkspaceList.RESTShortWo
             return null;
 	}
 
+    /** Streaming {@link #build(String)}, see {@link JDOMBuilder#buildElement(InputStream)}. */
+    public static RESTWorkspaceList build(InputStream response) {
+        Element elem = JDOMBuilder.buildElement(response);
+        return elem == null ? null : new RESTWorkspaceList(elem);
+    }
+
     protected RESTWorkspaceList(Element wslistroot) {
         List<Element> tmpList = new ArrayList<Element>();
         for (Element wselem : (List<Element>) wslistroot.getChildren("workspace")) {
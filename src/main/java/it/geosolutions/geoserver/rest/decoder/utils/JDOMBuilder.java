@@ -26,6 +26,7 @@
 package it.geosolutions.geoserver.rest.decoder.utils;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.StringReader;
 
 import org.jdom.Document;
@@ -60,4 +61,33 @@ public class JDOMBuilder {
 		return null;
     }
 
+    /**
+     * Parses the document while it is read from the given stream, so that the
+     * raw response is never buffered as a whole.
+     * <P>
+     * The <TT>build(InputStream)</TT> methods of the decoders are built on
+     * this one: they return the decoder of the parsed element, or
+     * <TT>null</TT> if the stream is null or can't be parsed, and can be used
+     * as {@link it.geosolutions.geoserver.rest.http.HTTPResponseHandler}s.
+     * 
+     * @param response the stream to parse, may be null; not closed by this method
+     * @return the root element or <TT>null</TT> if the stream can't be parsed
+     */
+    public static Element buildElement(InputStream response) {
+        if(response == null)
+            return null;
+
+        try{
+			SAXBuilder builder = new SAXBuilder();
+			Document doc = builder.build(response);
+			return  doc.getRootElement();
+		} catch (JDOMException ex) {
+			LOGGER.warn("Ex parsing response", ex);
+		} catch (IOException ex) {
+			LOGGER.warn("Ex loading response", ex);
+		}
+
+		return null;
+    }
+
 }
@@ -42,4 +42,12 @@ public class NameLinkElem {
             return elem.getChildText("name");
         }
 
+        /**
+         * @return the workspace of the referenced object, if given (i.e. in
+         *         the style references of a layer)
+         */
+        public String getWorkspace() {
+            return elem.getChildText("workspace");
+        }
+
 }
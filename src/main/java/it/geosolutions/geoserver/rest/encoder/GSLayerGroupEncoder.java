@@ -94,7 +94,8 @@ public class GSLayerGroupEncoder extends PropertyXMLEncoder {
     protected void addToRoot(Element ... elements) {
         for (Element e : elements) {
             if (e != null) {
-                getRoot().addContent(e);
+                // detached first, so that the encoder can be serialized again
+                getRoot().addContent(e.detach());
             }
         }
     }
@@ -0,0 +1,472 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * {@link HTTPTransport} decorator caching the decoded catalog objects read
+ * through it, so that repeated lookups (i.e. <TT>getLayer</TT>,
+ * <TT>getStyle</TT>, <TT>getFeatureType</TT>) do not pay a REST round trip
+ * and an XML parse each time.
+ * <P>
+ * Entries are keyed by URL (and credentials), expire after a TTL and the least
+ * recently used ones are evicted once the max size is reached. An entry is
+ * only reused by a handler which can share the value of the one which
+ * produced it (i.e. the same decoder, see {@link HTTPResponseHandler}).<BR>
+ * Cached objects are shared by the callers, which should treat them as read
+ * only.
+ * <P>
+ * The not found answers of {@link #exists(String, String, String)} are also
+ * cached, for a shorter time (see {@link #setNegativeTTL(long)}), since the
+ * same missing resources are usually probed many times before being created.
+ * <P>
+ * Every PUT, POST and DELETE sent through this transport (i.e. by a
+ * {@link it.geosolutions.geoserver.rest.GeoServerRESTPublisher publisher} or
+ * a manager sharing it) invalidates the affected entries, see
+ * {@link #invalidate(String)}. Changes made by other clients are only seen
+ * once the entries expire.
+ */
+public class CachingHTTPTransport implements HTTPTransport {
+
+    /** Default max number of cached objects. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /** Default time (ms) a cached object is considered valid. */
+    public static final long DEFAULT_TTL = 60000;
+
+    /** Default time (ms) a not found answer is considered valid. */
+    public static final long DEFAULT_NEGATIVE_TTL = 5000;
+
+    private static final String REST = "/rest/";
+
+    private static final class Entry {
+        /** See {@link HandlerIdentity}. */
+        private final Object handler;
+
+        private final Object value;
+
+        private final long expiresAt;
+
+        Entry(Object handler, Object value, long expiresAt) {
+            this.handler = handler;
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final HTTPTransport delegate;
+
+    private final long ttl;
+
+    private volatile long negativeTTL = DEFAULT_NEGATIVE_TTL;
+
+    private final Map<String, Entry> entries;
+
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    /** Incremented on each invalidation, to avoid caching objects read before a write. */
+    private long generation;
+
+    /**
+     * Decorates the given transport using the default settings.
+     */
+    public CachingHTTPTransport(HTTPTransport delegate) {
+        this(delegate, DEFAULT_MAX_ENTRIES, DEFAULT_TTL);
+    }
+
+    /**
+     * @param delegate the decorated transport
+     * @param maxEntries max number of cached objects
+     * @param ttl time (ms) a cached object is considered valid
+     * @throws IllegalArgumentException if the delegate is null or the settings are not positive
+     */
+    public CachingHTTPTransport(HTTPTransport delegate, final int maxEntries, long ttl)
+            throws IllegalArgumentException {
+        if (delegate == null)
+            throw new IllegalArgumentException("Unable to create the cache using a null transport");
+        if (maxEntries <= 0 || ttl <= 0)
+            throw new IllegalArgumentException("Unable to create the cache using size " + maxEntries
+                    + " and ttl " + ttl);
+        this.delegate = delegate;
+        this.ttl = ttl;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachingHTTPTransport.Entry> eldest) {
+                if (size() > maxEntries) {
+                    statistics.evicted();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the decorated transport
+     */
+    public HTTPTransport getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the time (ms) a not found answer is considered valid
+     */
+    public long getNegativeTTL() {
+        return negativeTTL;
+    }
+
+    /**
+     * @param negativeTTL the time (ms) a not found answer is considered valid,
+     *        0 to disable the caching of not found answers
+     * @throws IllegalArgumentException if negative
+     */
+    public void setNegativeTTL(long negativeTTL) throws IllegalArgumentException {
+        if (negativeTTL < 0)
+            throw new IllegalArgumentException("Unable to set a negative ttl: " + negativeTTL);
+        this.negativeTTL = negativeTTL;
+    }
+
+    /**
+     * @return hits, misses and evictions (by size or TTL)
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            generation++;
+            entries.clear();
+        }
+    }
+
+    /**
+     * Removes the entries affected by a write to the given URL:
+     * <UL>
+     * <LI>the written resource and its children, along with its siblings and
+     * the list containing it (i.e. writing
+     * <TT>/rest/workspaces/ws/datastores/ds/featuretypes/ft</TT> invalidates
+     * everything under <TT>/rest/workspaces/ws/datastores/ds/featuretypes</TT>)
+     * </LI>
+     * <LI>the layers and layer groups, when the written resource belongs to a
+     * workspace (i.e. a store deleted recursively removes its layers)</LI>
+     * <LI>the matching namespace when writing a workspace, and the other way
+     * round, since GeoServer keeps them paired</LI>
+     * <LI>everything, for writes not addressed to a catalog resource (i.e.
+     * <TT>/rest/reload</TT>)</LI>
+     * </UL>
+     *
+     * @param url the URL written
+     */
+    public void invalidate(String url) {
+        final List<String> prefixes = invalidationPrefixes(url);
+        synchronized (entries) {
+            generation++;
+            if (prefixes.isEmpty()) {
+                entries.clear();
+                return;
+            }
+            final Iterator<String> it = entries.keySet().iterator();
+            while (it.hasNext()) {
+                final String key = it.next();
+                for (String prefix : prefixes) {
+                    if (key.startsWith(prefix)) {
+                        it.remove();
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the key prefixes to invalidate after a write to the given URL,
+     *         an empty list if the whole cache has to be cleared
+     */
+    static List<String> invalidationPrefixes(String url) {
+        final List<String> prefixes = new ArrayList<String>();
+        final int rest = url.indexOf(REST);
+        if (rest < 0) {
+            return prefixes;
+        }
+        final String base = url.substring(0, rest);
+        String path = url.substring(rest);
+        final int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        final int slash = path.lastIndexOf('/');
+        final int dot = path.lastIndexOf('.');
+        if (dot > slash) {
+            path = path.substring(0, dot);
+        }
+        final String[] segments = path.substring(REST.length()).split("/");
+        if (segments.length == 0 || segments[0].isEmpty()) {
+            return prefixes;
+        }
+        if (segments.length == 1) {
+            // a top level collection (i.e. /rest/workspaces, /rest/reload)
+            if (!isCatalogCollection(segments[0])) {
+                return prefixes;
+            }
+            prefixes.add(base + path);
+        } else {
+            prefixes.add(base + path.substring(0, path.lastIndexOf('/')));
+        }
+        if (segments[0].equals("workspaces") && segments.length > 2 && segments[2].endsWith("stores")) {
+            // i.e. a file upload or a recursive delete: the store list and the
+            // workspace wide resource lists change as well
+            final String workspace = base + REST + "workspaces/" + segments[1] + "/";
+            prefixes.add(workspace + segments[2] + ".");
+            prefixes.add(workspace + "featuretypes");
+            prefixes.add(workspace + "coverages");
+        }
+        if (segments[0].equals("workspaces") || segments[0].equals("namespaces")) {
+            final String paired = segments[0].equals("workspaces") ? "namespaces" : "workspaces";
+            prefixes.add(base + REST + paired + (segments.length > 1 ? "/" + segments[1] : ""));
+            prefixes.add(base + REST + "layers");
+            prefixes.add(base + REST + "layergroups");
+        }
+        return prefixes;
+    }
+
+    private static boolean isCatalogCollection(String name) {
+        return name.equals("workspaces") || name.equals("namespaces") || name.equals("styles")
+                || name.equals("layers") || name.equals("layergroups");
+    }
+
+    /**
+     * @return the key of an entry, holding the SHA-256 of the credentials (see
+     *         {@link CoalescingHTTPTransport}) so that a wrong password is not
+     *         served the objects read with the right one
+     */
+    private static String key(String url, String username, String pw) {
+        return url + '\u0000' + CoalescingHTTPTransport.credentials(username, pw);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T lookup(String key, Object handler) {
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+            if (entry != null) {
+                if (entry.expiresAt < System.currentTimeMillis()) {
+                    entries.remove(key);
+                    statistics.evicted();
+                } else if (entry.handler.equals(handler)) {
+                    statistics.hit();
+                    return (T) entry.value;
+                }
+            }
+        }
+        statistics.miss();
+        return null;
+    }
+
+    private static String stripQuery(String url) {
+        final int query = url.indexOf('?');
+        return query < 0 ? url : url.substring(0, query);
+    }
+
+    private long generation() {
+        synchronized (entries) {
+            return generation;
+        }
+    }
+
+    private void store(String key, long generation, Object handler, Object value) {
+        store(key, generation, handler, value, ttl);
+    }
+
+    private void store(String key, long generation, Object handler, Object value, long ttl) {
+        if (value == null) {
+            return;
+        }
+        synchronized (entries) {
+            if (generation == this.generation) {
+                entries.put(key, new Entry(handler, value, System.currentTimeMillis() + ttl));
+            }
+        }
+    }
+
+    public String get(String url, String username, String pw) {
+        final String key = key(url, username, pw);
+        final String cached = lookup(key, String.class);
+        if (cached != null) {
+            return cached;
+        }
+        final long gen = generation();
+        final String value = delegate.get(url, username, pw);
+        store(key, gen, String.class, value);
+        return value;
+    }
+
+    public <T> T get(String url, String username, String pw, HTTPResponseHandler<T> handler) {
+        final String key = key(url, username, pw);
+        final Object identity = HandlerIdentity.of(handler);
+        final T cached = lookup(key, identity);
+        if (cached != null) {
+            return cached;
+        }
+        final long gen = generation();
+        final T value = delegate.get(url, username, pw, handler);
+        store(key, gen, identity, value);
+        return value;
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync(String url, String username, String pw,
+            Executor executor) {
+        final String key = key(url, username, pw);
+        final String cached = lookup(key, String.class);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        final long gen = generation();
+        return delegate.getAsync(url, username, pw, executor).thenApply(value -> {
+            store(key, gen, String.class, value);
+            return value;
+        });
+    }
+
+    public String put(String url, File file, String contentType, String username, String pw) {
+        try {
+            return delegate.put(url, file, contentType, username, pw);
+        } finally {
+            invalidate(url);
+        }
+    }
+
+    public String put(String url, String content, String contentType, String username, String pw) {
+        try {
+            return delegate.put(url, content, contentType, username, pw);
+        } finally {
+            invalidate(url);
+        }
+    }
+
+    public String putXml(String url, String content, String username, String pw) {
+        try {
+            return delegate.putXml(url, content, username, pw);
+        } finally {
+            invalidate(url);
+        }
+    }
+
+    @Override
+    public String putXmlUnconditionally(String url, String content, String username, String pw) {
+        try {
+            return delegate.putXmlUnconditionally(url, content, username, pw);
+        } finally {
+            invalidate(url);
+        }
+    }
+
+    public String post(String url, File file, String contentType, String username, String pw) {
+        try {
+            return delegate.post(url, file, contentType, username, pw);
+        } finally {
+            invalidate(url);
+        }
+    }
+
+    public String post(String url, String content, String contentType, String username, String pw) {
+        try {
+            return delegate.post(url, content, contentType, username, pw);
+        } finally {
+            invalidate(url);
+        }
+    }
+
+    public String postXml(String url, String content, String username, String pw) {
+        try {
+            return delegate.postXml(url, content, username, pw);
+        } finally {
+            invalidate(url);
+        }
+    }
+
+    public boolean delete(String url, String username, String pw) {
+        try {
+            return delegate.delete(url, username, pw);
+        } finally {
+            invalidate(url);
+        }
+    }
+
+    public boolean httpPing(String url, String username, String pw) {
+        return delegate.httpPing(url, username, pw);
+    }
+
+    /**
+     * Not found answers are cached for {@link #getNegativeTTL()} ms, ignoring
+     * the query string (i.e. <TT>quietOnNotFound</TT>); found ones are always
+     * checked on the server.
+     */
+    public boolean exists(String url, String username, String pw) {
+        final long negativeTTL = this.negativeTTL;
+        if (negativeTTL == 0) {
+            return delegate.exists(url, username, pw);
+        }
+        final String key = key(stripQuery(url), username, pw);
+        if (lookup(key, Boolean.class) != null) {
+            return false;
+        }
+        final long gen = generation();
+        final boolean exists = delegate.exists(url, username, pw);
+        if (!exists) {
+            store(key, gen, Boolean.class, Boolean.FALSE, negativeTTL);
+        }
+        return exists;
+    }
+
+    public HTTPTransportMetrics getMetrics() {
+        return delegate.getMetrics();
+    }
+
+    /**
+     * Clears the cache and shuts down the decorated transport.
+     */
+    public void shutdown() {
+        clear();
+        delegate.shutdown();
+    }
+}
@@ -0,0 +1,339 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link HTTPTransport} decorator protecting the callers from a slow or broken
+ * GeoServer node.
+ * <P>
+ * A circuit is kept for each GeoServer, keyed by base URL (the URL part
+ * preceding <TT>/rest</TT>):
+ * <UL>
+ * <LI><B>closed</B>: requests go through; after <TT>failureThreshold</TT>
+ * consecutive failures (connection errors, timeouts or 502, 503 and 504
+ * answers, as reported by the delegate {@link HTTPTransportListener events})
+ * the circuit opens. Other server errors (i.e. a 500 on a malformed request)
+ * come from a node which is up, and reset the count as successes do</LI>
+ * <LI><B>open</B>: requests fail immediately with a
+ * {@link CircuitOpenException}; once <TT>openTimeout</TT> is elapsed the
+ * circuit becomes half-open</LI>
+ * <LI><B>half-open</B>: the first caller pings <TT>/rest/</TT> (as
+ * {@link it.geosolutions.geoserver.rest.GeoServerRESTReader#existGeoserver()}
+ * does), closing the circuit on success or opening it again on failure,
+ * while the other callers keep failing fast</LI>
+ * </UL>
+ */
+public class CircuitBreakerTransport implements HTTPTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CircuitBreakerTransport.class);
+
+    /** Default number of consecutive failures opening the circuit. */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+
+    /** Default time (ms) the circuit stays open before probing GeoServer. */
+    public static final long DEFAULT_OPEN_TIMEOUT = 30000;
+
+    /**
+     * The states of a circuit.
+     */
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private static final class Circuit {
+        private State state = State.CLOSED;
+
+        private int failures;
+
+        private long openedAt;
+    }
+
+    private final HTTPTransport delegate;
+
+    private final int failureThreshold;
+
+    private final long openTimeout;
+
+    private final Map<String, Circuit> circuits = new ConcurrentHashMap<String, Circuit>();
+
+    private final HTTPTransportListener listener = new HTTPTransportListener() {
+        public void requestSucceeded(String url) {
+            final Circuit circuit = circuit(baseURL(url));
+            synchronized (circuit) {
+                circuit.failures = 0;
+            }
+        }
+
+        public void requestFailed(String url, int status, Throwable cause) {
+            if (!isNodeFailure(status)) {
+                requestSucceeded(url);
+                return;
+            }
+            final String baseURL = baseURL(url);
+            final Circuit circuit = circuit(baseURL);
+            synchronized (circuit) {
+                if (circuit.state == State.CLOSED && ++circuit.failures >= failureThreshold) {
+                    open(baseURL, circuit);
+                }
+            }
+        }
+    };
+
+    /**
+     * @param status the response status, -1 if no response was received
+     * @return true if the status shows that the node is down or overloaded,
+     *         rather than failing a single request
+     */
+    static boolean isNodeFailure(int status) {
+        return status < 0 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Decorates the given transport using the default settings.
+     */
+    public CircuitBreakerTransport(HTTPTransport delegate) {
+        this(delegate, DEFAULT_FAILURE_THRESHOLD, DEFAULT_OPEN_TIMEOUT);
+    }
+
+    /**
+     * @param delegate the decorated transport
+     * @param failureThreshold number of consecutive failures opening the circuit
+     * @param openTimeout time (ms) the circuit stays open before probing GeoServer
+     * @throws IllegalArgumentException if the delegate is null or the settings are not positive
+     */
+    public CircuitBreakerTransport(HTTPTransport delegate, int failureThreshold, long openTimeout)
+            throws IllegalArgumentException {
+        if (delegate == null)
+            throw new IllegalArgumentException("Unable to create the circuit breaker using a null transport");
+        if (failureThreshold <= 0 || openTimeout <= 0)
+            throw new IllegalArgumentException("Unable to create the circuit breaker using threshold "
+                    + failureThreshold + " and timeout " + openTimeout);
+        this.delegate = delegate;
+        this.failureThreshold = failureThreshold;
+        this.openTimeout = openTimeout;
+        delegate.getMetrics().addListener(listener);
+    }
+
+    /**
+     * @return the decorated transport
+     */
+    public HTTPTransport getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @param url any URL of the GeoServer, or its base URL
+     * @return the state of the circuit of the GeoServer
+     */
+    public State getState(String url) {
+        final Circuit circuit = circuits.get(baseURL(url));
+        if (circuit == null) {
+            return State.CLOSED;
+        }
+        synchronized (circuit) {
+            return circuit.state;
+        }
+    }
+
+    /**
+     * @param url any URL of the GeoServer
+     * @return the base URL of the GeoServer, used as circuit key
+     */
+    public static String baseURL(String url) {
+        int idx = url.indexOf("/rest/");
+        if (idx < 0 && url.endsWith("/rest")) {
+            idx = url.length() - 5;
+        }
+        if (idx >= 0) {
+            return url.substring(0, idx);
+        }
+        try {
+            final URL u = new URL(url);
+            return u.getProtocol() + "://" + u.getAuthority();
+        } catch (MalformedURLException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Lets the request go through if the circuit is closed, probes GeoServer
+     * if the circuit can be half-opened by the calling thread.
+     *
+     * @throws CircuitOpenException if the circuit is (or is kept) open
+     */
+    private void guard(String url, String username, String pw) throws CircuitOpenException {
+        final String baseURL = baseURL(url);
+        final Circuit circuit = circuit(baseURL);
+        synchronized (circuit) {
+            switch (circuit.state) {
+            case CLOSED:
+                return;
+            case OPEN:
+                if (System.currentTimeMillis() - circuit.openedAt < openTimeout) {
+                    throw new CircuitOpenException(baseURL);
+                }
+                circuit.state = State.HALF_OPEN;
+                break;
+            default:
+                throw new CircuitOpenException(baseURL);
+            }
+        }
+        // this thread is the one in charge of probing
+        boolean alive = false;
+        try {
+            alive = delegate.httpPing(baseURL + "/rest/", username, pw);
+        } finally {
+            // a failing probe (even throwing) must not leave the circuit half open
+            synchronized (circuit) {
+                if (alive) {
+                    if (LOGGER.isInfoEnabled())
+                        LOGGER.info("GeoServer at " + baseURL + " is back, closing the circuit");
+                    circuit.state = State.CLOSED;
+                    circuit.failures = 0;
+                } else {
+                    open(baseURL, circuit);
+                }
+            }
+        }
+        if (!alive) {
+            throw new CircuitOpenException(baseURL);
+        }
+    }
+
+    private Circuit circuit(String baseURL) {
+        return circuits.computeIfAbsent(baseURL, k -> new Circuit());
+    }
+
+    private void open(String baseURL, Circuit circuit) {
+        LOGGER.warn("GeoServer at " + baseURL + " is not responding, opening the circuit for "
+                + openTimeout + "ms");
+        circuit.state = State.OPEN;
+        circuit.openedAt = System.currentTimeMillis();
+    }
+
+    public String get(String url, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.get(url, username, pw);
+    }
+
+    public <T> T get(String url, String username, String pw, HTTPResponseHandler<T> handler) {
+        guard(url, username, pw);
+        return delegate.get(url, username, pw, handler);
+    }
+
+    /**
+     * @return a future completed exceptionally with a
+     *         {@link CircuitOpenException} if the circuit is open
+     */
+    @Override
+    public CompletableFuture<String> getAsync(String url, String username, String pw,
+            Executor executor) {
+        try {
+            guard(url, username, pw);
+        } catch (CircuitOpenException e) {
+            final CompletableFuture<String> failed = new CompletableFuture<String>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+        return delegate.getAsync(url, username, pw, executor);
+    }
+
+    public String put(String url, File file, String contentType, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.put(url, file, contentType, username, pw);
+    }
+
+    public String put(String url, String content, String contentType, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.put(url, content, contentType, username, pw);
+    }
+
+    public String putXml(String url, String content, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.putXml(url, content, username, pw);
+    }
+
+    @Override
+    public String putXmlUnconditionally(String url, String content, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.putXmlUnconditionally(url, content, username, pw);
+    }
+
+    public String post(String url, File file, String contentType, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.post(url, file, contentType, username, pw);
+    }
+
+    public String post(String url, String content, String contentType, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.post(url, content, contentType, username, pw);
+    }
+
+    public String postXml(String url, String content, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.postXml(url, content, username, pw);
+    }
+
+    public boolean delete(String url, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.delete(url, username, pw);
+    }
+
+    /**
+     * Pings are never blocked, so that callers can check whether GeoServer is
+     * back on their own.
+     */
+    public boolean httpPing(String url, String username, String pw) {
+        return delegate.httpPing(url, username, pw);
+    }
+
+    public boolean exists(String url, String username, String pw) {
+        guard(url, username, pw);
+        return delegate.exists(url, username, pw);
+    }
+
+    public HTTPTransportMetrics getMetrics() {
+        return delegate.getMetrics();
+    }
+
+    /**
+     * Shuts down the decorated transport too.
+     */
+    public void shutdown() {
+        delegate.getMetrics().removeListener(listener);
+        delegate.shutdown();
+    }
+}
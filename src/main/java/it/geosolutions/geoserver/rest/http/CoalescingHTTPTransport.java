@@ -0,0 +1,267 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link HTTPTransport} decorator coalescing identical concurrent GETs
+ * (single flight).
+ * <P>
+ * While a GET for a given URL, username and password is in flight, the
+ * callers asking for the same URL with the same credentials (and a handler
+ * which can share its value, see {@link HTTPResponseHandler}) wait for it and
+ * share its result instead of sending their own request; this cuts the load on GeoServer during bursts, i.e. many
+ * threads asking for <TT>/rest/workspaces.xml</TT> at once.<BR>
+ * Results are not kept once the request completes, see
+ * {@link CachingHTTPTransport} for that. As for the cache, the shared decoded
+ * objects should be treated as read only.
+ * <P>
+ * A waiting caller honours its {@link Deadline}, getting <TT>null</TT> if the
+ * shared request does not complete in time. Writes are not coalesced.
+ */
+public class CoalescingHTTPTransport implements HTTPTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CoalescingHTTPTransport.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final HTTPTransport delegate;
+
+    private final Map<List<Object>, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<List<Object>, CompletableFuture<Object>>();
+
+    private final AtomicLong coalesced = new AtomicLong();
+
+    /**
+     * @param delegate the decorated transport
+     * @throws IllegalArgumentException if the delegate is null
+     */
+    public CoalescingHTTPTransport(HTTPTransport delegate) throws IllegalArgumentException {
+        if (delegate == null)
+            throw new IllegalArgumentException("Unable to coalesce requests using a null transport");
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return the decorated transport
+     */
+    public HTTPTransport getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the number of GETs which shared the result of another in flight GET
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return the number of distinct GETs currently in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return the SHA-256 of the given credentials, to key the requests
+     *         without holding the plaintext password
+     */
+    static String credentials(String username, String pw) {
+        final String credentials = (username == null ? "" : username) + '\u0000'
+                + (pw == null ? "" : pw);
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return new BigInteger(1, digest.digest(credentials.getBytes(UTF8))).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @param handler the identity of the handler, see {@link HandlerIdentity}
+     * @return the key of a GET, holding the SHA-256 of the credentials
+     */
+    private static List<Object> key(String url, String username, String pw, Object handler) {
+        return Arrays.asList(url, credentials(username, pw), handler);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(List<Object> key, String url, Call<T> call) {
+        final CompletableFuture<Object> flight = new CompletableFuture<Object>();
+        final CompletableFuture<Object> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            return (T) await(leader, url);
+        }
+        try {
+            final T value = call.execute();
+            inFlight.remove(key, flight);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        } catch (Error e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static Object await(CompletableFuture<Object> flight, String url) {
+        final Deadline deadline = Deadline.current();
+        try {
+            if (deadline == null) {
+                return flight.get();
+            }
+            return flight.get(Math.max(deadline.remaining(), 0), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        } catch (TimeoutException e) {
+            if (LOGGER.isWarnEnabled())
+                LOGGER.warn("Deadline expired waiting for the in flight GET of '" + url + "'");
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+    }
+
+    private interface Call<T> {
+        T execute();
+    }
+
+    public String get(final String url, final String username, final String pw) {
+        return coalesce(key(url, username, pw, String.class), url, () -> delegate.get(url, username, pw));
+    }
+
+    public <T> T get(final String url, final String username, final String pw,
+            final HTTPResponseHandler<T> handler) {
+        return coalesce(key(url, username, pw, HandlerIdentity.of(handler)), url,
+                () -> delegate.get(url, username, pw, handler));
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync(String url, String username, String pw,
+            Executor executor) {
+        final List<Object> key = key(url, username, pw, CompletableFuture.class);
+        final CompletableFuture<Object> flight = new CompletableFuture<Object>();
+        final CompletableFuture<Object> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.incrementAndGet();
+            // a dependent future, so that a caller cancelling it does not affect the others
+            return leader.thenApply(value -> (String) value);
+        }
+        try {
+            delegate.getAsync(url, username, pw, executor).whenComplete((value, error) -> {
+                inFlight.remove(key, flight);
+                if (error != null) {
+                    flight.completeExceptionally(error);
+                } else {
+                    flight.complete(value);
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.remove(key, flight);
+            flight.completeExceptionally(e);
+        }
+        return flight.thenApply(value -> (String) value);
+    }
+
+    public String put(String url, File file, String contentType, String username, String pw) {
+        return delegate.put(url, file, contentType, username, pw);
+    }
+
+    public String put(String url, String content, String contentType, String username, String pw) {
+        return delegate.put(url, content, contentType, username, pw);
+    }
+
+    public String putXml(String url, String content, String username, String pw) {
+        return delegate.putXml(url, content, username, pw);
+    }
+
+    @Override
+    public String putXmlUnconditionally(String url, String content, String username, String pw) {
+        return delegate.putXmlUnconditionally(url, content, username, pw);
+    }
+
+    public String post(String url, File file, String contentType, String username, String pw) {
+        return delegate.post(url, file, contentType, username, pw);
+    }
+
+    public String post(String url, String content, String contentType, String username, String pw) {
+        return delegate.post(url, content, contentType, username, pw);
+    }
+
+    public String postXml(String url, String content, String username, String pw) {
+        return delegate.postXml(url, content, username, pw);
+    }
+
+    public boolean delete(String url, String username, String pw) {
+        return delegate.delete(url, username, pw);
+    }
+
+    public boolean httpPing(String url, String username, String pw) {
+        return delegate.httpPing(url, username, pw);
+    }
+
+    public boolean exists(String url, String username, String pw) {
+        return delegate.exists(url, username, pw);
+    }
+
+    public HTTPTransportMetrics getMetrics() {
+        return delegate.getMetrics();
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
@@ -0,0 +1,691 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import it.geosolutions.geoserver.rest.http.TimeoutProfile.Operation;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+
+import org.apache.commons.httpclient.ConnectionPoolTimeoutException;
+import org.apache.commons.httpclient.Header;
+import org.apache.commons.httpclient.HostConfiguration;
+import org.apache.commons.httpclient.HttpClient;
+import org.apache.commons.httpclient.HttpConnection;
+import org.apache.commons.httpclient.HttpMethod;
+import org.apache.commons.httpclient.HttpState;
+import org.apache.commons.httpclient.HttpStatus;
+import org.apache.commons.httpclient.MultiThreadedHttpConnectionManager;
+import org.apache.commons.httpclient.UsernamePasswordCredentials;
+import org.apache.commons.httpclient.auth.AuthScope;
+import org.apache.commons.httpclient.methods.DeleteMethod;
+import org.apache.commons.httpclient.methods.EntityEnclosingMethod;
+import org.apache.commons.httpclient.methods.FileRequestEntity;
+import org.apache.commons.httpclient.methods.GetMethod;
+import org.apache.commons.httpclient.methods.HeadMethod;
+import org.apache.commons.httpclient.methods.PostMethod;
+import org.apache.commons.httpclient.methods.PutMethod;
+import org.apache.commons.httpclient.methods.RequestEntity;
+import org.apache.commons.httpclient.methods.StringRequestEntity;
+import org.apache.commons.httpclient.params.HttpConnectionManagerParams;
+import org.apache.commons.httpclient.params.HttpConnectionParams;
+import org.apache.commons.httpclient.util.IdleConnectionTimeoutThread;
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Default {@link HTTPTransport} implementation, backed by commons-httpclient
+ * 3.1 and a pooled {@link MultiThreadedHttpConnectionManager}.
+ * <P>
+ * A single instance is meant to be shared by the
+ * {@link it.geosolutions.geoserver.rest.GeoServerRESTReader reader}, the
+ * {@link it.geosolutions.geoserver.rest.GeoServerRESTPublisher publisher} and
+ * all the <i>Foo</i>Manager classes talking to the same GeoServer, so that
+ * sockets are reused across calls instead of paying the TCP (and TLS) setup on
+ * every request.<BR>
+ * Credentials are passed on each call and kept in a per-call
+ * {@link HttpState}, so the same transport can serve different users.
+ * <P>
+ * GET responses are requested compressed (<TT>gzip</TT> or <TT>deflate</TT>)
+ * and decoded while they are read, see {@link #getMetrics()}.
+ * <P>
+ * Failed requests are retried according to the {@link #getRetryPolicy() retry
+ * policy}, by default only idempotent ones and at most
+ * {@link RetryPolicy#DEFAULT_MAX_ATTEMPTS} times.
+ * <P>
+ * The connection timeout given at construction time is used unless the class
+ * of operation has its own one; both the connection and the read timeouts
+ * depend on the class of operation (see {@link #getTimeoutProfile()}) and on
+ * the current {@link Deadline}, if any.
+ * <P>
+ * Idle connections are evicted by a daemon thread; call {@link #shutdown()}
+ * to release the pool when the transport is no longer needed (except for the
+ * shared {@link #getDefault() default} one, which is never shut down).
+ */
+public class CommonsHTTPTransport implements HTTPTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CommonsHTTPTransport.class);
+
+    /** Default max number of pooled connections towards a single host. */
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 20;
+
+    /** Default max number of pooled connections. */
+    public static final int DEFAULT_MAX_TOTAL_CONNECTIONS = 100;
+
+    /** Default time (ms) after which an unused pooled connection is closed. */
+    public static final long DEFAULT_IDLE_TIMEOUT = 60000;
+
+    private static CommonsHTTPTransport defaultTransport;
+
+    /**
+     * Reads the whole body as a String, mapping empty bodies to <TT>null</TT>.
+     */
+    private static final HTTPResponseHandler<String> STRING_HANDLER = new HTTPResponseHandler<String>() {
+        public String handleResponse(InputStream body) throws IOException {
+            String response = IOUtils.toString(body);
+            if (response.trim().length() == 0) { // sometime gs rest fails
+                LOGGER.warn("ResponseBody is empty");
+                return null;
+            }
+            return response;
+        }
+    };
+
+    private final MultiThreadedHttpConnectionManager connectionManager;
+
+    private final HttpClient client;
+
+    private final IdleConnectionTimeoutThread idleConnectionEvictor;
+
+    private final HTTPTransportMetrics metrics = new HTTPTransportMetrics();
+
+    private volatile HTTPResponseCache responseCache;
+
+    private volatile RetryPolicy retryPolicy = new RetryPolicy();
+
+    private volatile TimeoutProfile timeoutProfile = TimeoutProfile.DEFAULT;
+
+    /**
+     * Creates a transport using the default pool settings.
+     */
+    public CommonsHTTPTransport() {
+        this(DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_MAX_TOTAL_CONNECTIONS,
+                DEFAULT_CONNECTION_TIMEOUT, DEFAULT_IDLE_TIMEOUT, true);
+    }
+
+    /**
+     * @param maxConnectionsPerHost max number of pooled connections towards a single host
+     * @param maxTotalConnections max number of pooled connections
+     * @param connectionTimeout connection timeout (ms)
+     * @param idleTimeout time (ms) after which an unused connection is closed,
+     *        a value &lt;= 0 disables idle eviction
+     * @param staleCheck whether pooled connections are checked before being reused
+     * @throws IllegalArgumentException if the pool sizes are not positive
+     */
+    public CommonsHTTPTransport(int maxConnectionsPerHost, int maxTotalConnections,
+            int connectionTimeout, long idleTimeout, boolean staleCheck)
+            throws IllegalArgumentException {
+        if (maxConnectionsPerHost <= 0 || maxTotalConnections <= 0) {
+            throw new IllegalArgumentException("Unable to create the transport using pool size "
+                    + maxConnectionsPerHost + "/" + maxTotalConnections);
+        }
+        connectionManager = new MultiThreadedHttpConnectionManager() {
+            @Override
+            public HttpConnection getConnectionWithTimeout(HostConfiguration hostConfiguration,
+                    long timeout) throws ConnectionPoolTimeoutException {
+                final HttpConnection connection = super.getConnectionWithTimeout(
+                        hostConfiguration, timeout);
+                // the connection timeout of the call, see retry()
+                connection.getParams().setConnectionTimeout(
+                        hostConfiguration.getParams().getIntParameter(
+                                HttpConnectionParams.CONNECTION_TIMEOUT,
+                                getParams().getConnectionTimeout()));
+                return connection;
+            }
+        };
+        final HttpConnectionManagerParams params = connectionManager.getParams();
+        params.setDefaultMaxConnectionsPerHost(maxConnectionsPerHost);
+        params.setMaxTotalConnections(maxTotalConnections);
+        params.setConnectionTimeout(connectionTimeout);
+        params.setStaleCheckingEnabled(staleCheck);
+        client = new HttpClient(connectionManager);
+
+        if (idleTimeout > 0) {
+            idleConnectionEvictor = new IdleConnectionTimeoutThread();
+            idleConnectionEvictor.setName("geoserver-manager-idle-connection-evictor");
+            idleConnectionEvictor.setConnectionTimeout(idleTimeout);
+            idleConnectionEvictor.setTimeoutInterval(Math.max(1000, idleTimeout / 2));
+            idleConnectionEvictor.addConnectionManager(connectionManager);
+            idleConnectionEvictor.start();
+        } else {
+            idleConnectionEvictor = null;
+        }
+    }
+
+    /**
+     * @return the transport shared by the callers which do not provide their
+     *         own one (i.e. the static {@link it.geosolutions.geoserver.rest.HTTPUtils} methods);
+     *         its {@link #shutdown()} does nothing, as it would break all of them
+     */
+    public static synchronized CommonsHTTPTransport getDefault() {
+        if (defaultTransport == null) {
+            defaultTransport = new CommonsHTTPTransport();
+        }
+        return defaultTransport;
+    }
+
+    /**
+     * @return the traffic counters of this transport
+     */
+    public HTTPTransportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the policy used to retry the failed requests
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * @param retryPolicy the policy used to retry the failed requests, use
+     *        {@link RetryPolicy#NONE} to disable retries
+     * @throws IllegalArgumentException if the policy is null
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) throws IllegalArgumentException {
+        if (retryPolicy == null)
+            throw new IllegalArgumentException("Unable to use a null retry policy");
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return the timeouts used for each class of operation
+     */
+    public TimeoutProfile getTimeoutProfile() {
+        return timeoutProfile;
+    }
+
+    /**
+     * @param timeoutProfile the timeouts to use for each class of operation
+     * @throws IllegalArgumentException if the profile is null
+     */
+    public void setTimeoutProfile(TimeoutProfile timeoutProfile) throws IllegalArgumentException {
+        if (timeoutProfile == null)
+            throw new IllegalArgumentException("Unable to use a null timeout profile");
+        this.timeoutProfile = timeoutProfile;
+    }
+
+    /**
+     * @return the cache used to revalidate GET responses, <TT>null</TT> if
+     *         responses are not cached
+     */
+    public HTTPResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Enables (or disables, passing <TT>null</TT>) the conditional GET of
+     * the resources already downloaded through this transport.
+     *
+     * @param responseCache the cache to use, may be null
+     */
+    public void setResponseCache(HTTPResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    /**
+     * Performs an HTTP GET on the given URL. <BR>
+     * Basic auth is used if both username and pw are not null.
+     *
+     * @param url The URL where to connect to.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @return The HTTP response as a String if the HTTP response code was 200
+     *         (OK), <TT>null</TT> otherwise.
+     */
+    public String get(String url, String username, String pw) {
+        return get(url, username, pw, STRING_HANDLER);
+    }
+
+    public <T> T get(String url, String username, String pw, HTTPResponseHandler<T> handler) {
+        GetMethod httpMethod = null;
+        try {
+            httpMethod = new GetMethod(url);
+            httpMethod.setRequestHeader("Accept-Encoding", HTTPTransportMetrics.ACCEPT_ENCODING);
+            final HTTPResponseCache cache = responseCache;
+            final HTTPResponseCache.Entry cached = cache != null ? cache.lookup(url, username) : null;
+            if (cached != null) {
+                if (cached.getETag() != null)
+                    httpMethod.setRequestHeader("If-None-Match", cached.getETag());
+                if (cached.getLastModified() != null)
+                    httpMethod.setRequestHeader("If-Modified-Since", cached.getLastModified());
+            }
+            int status = execute(httpMethod, url, username, pw, Operation.METADATA_READ);
+            if (status == HttpStatus.SC_NOT_MODIFIED && cached != null) {
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("Not modified, using the cached response -- " + url);
+                return cache.revalidated(url, username, cached, handler);
+            } else if (status == HttpStatus.SC_OK) {
+                InputStream is = metrics.decode(httpMethod.getResponseBodyAsStream(),
+                        headerValue(httpMethod, "Content-Encoding"));
+                if (is == null) {
+                    LOGGER.warn("ResponseBody is empty");
+                    return null;
+                }
+                try {
+                    if (cache == null)
+                        return handler.handleResponse(is);
+                    return cache.store(url, username, headerValue(httpMethod, "ETag"),
+                            headerValue(httpMethod, "Last-Modified"), IOUtils.toByteArray(is), handler);
+                } finally {
+                    IOUtils.closeQuietly(is);
+                }
+            } else {
+                LOGGER.info("(" + status + ") " + HttpStatus.getStatusText(status) + " -- " + url);
+            }
+        } catch (ConnectException e) {
+            LOGGER.info("Couldn't connect to [" + url + "]");
+        } catch (IOException e) {
+            LOGGER.info("Error talking to [" + url + "]", e);
+        } finally {
+            if (httpMethod != null)
+                httpMethod.releaseConnection();
+        }
+
+        return null;
+    }
+
+    /**
+     * PUTs a File to the given URL.
+     *
+     * @see #put(String, RequestEntity, String, String)
+     */
+    public String put(String url, File file, String contentType, String username, String pw) {
+        return put(url, new FileRequestEntity(file, contentType), username, pw);
+    }
+
+    /**
+     * PUTs a String to the given URL.
+     *
+     * @see #put(String, RequestEntity, String, String)
+     */
+    public String put(String url, String content, String contentType, String username, String pw) {
+        try {
+            return put(url, new StringRequestEntity(content, contentType, null), username, pw);
+        } catch (UnsupportedEncodingException ex) {
+            LOGGER.error("Cannot PUT " + url, ex);
+            return null;
+        }
+    }
+
+    /**
+     * PUTs a String representing an XML document to the given URL.
+     *
+     * @see #put(String, RequestEntity, String, String)
+     */
+    public String putXml(String url, String content, String username, String pw) {
+        return put(url, content, "text/xml", username, pw);
+    }
+
+    /**
+     * Performs a PUT to the given URL. <BR>
+     * Basic auth is used if both username and pw are not null.
+     *
+     * @param url The URL where to connect to.
+     * @param requestEntity The request to be sent.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @return the HTTP response or <TT>null</TT> on errors.
+     */
+    public String put(String url, RequestEntity requestEntity, String username, String pw) {
+        return send(new PutMethod(url), url, requestEntity, username, pw);
+    }
+
+    /**
+     * POSTs a File to the given URL.
+     *
+     * @see #post(String, RequestEntity, String, String)
+     */
+    public String post(String url, File file, String contentType, String username, String pw) {
+        return post(url, new FileRequestEntity(file, contentType), username, pw);
+    }
+
+    /**
+     * POSTs a String to the given URL.
+     *
+     * @see #post(String, RequestEntity, String, String)
+     */
+    public String post(String url, String content, String contentType, String username, String pw) {
+        try {
+            return post(url, new StringRequestEntity(content, contentType, null), username, pw);
+        } catch (UnsupportedEncodingException ex) {
+            LOGGER.error("Cannot POST " + url, ex);
+            return null;
+        }
+    }
+
+    /**
+     * POSTs a String representing an XML document to the given URL.
+     *
+     * @see #post(String, RequestEntity, String, String)
+     */
+    public String postXml(String url, String content, String username, String pw) {
+        return post(url, content, "text/xml", username, pw);
+    }
+
+    /**
+     * Performs a POST to the given URL. <BR>
+     * Basic auth is used if both username and pw are not null.
+     *
+     * @param url The URL where to connect to.
+     * @param requestEntity The request to be sent.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @return the HTTP response or <TT>null</TT> on errors.
+     */
+    public String post(String url, RequestEntity requestEntity, String username, String pw) {
+        return send(new PostMethod(url), url, requestEntity, username, pw);
+    }
+
+    /**
+     * Send an HTTP request (PUT or POST) to a server. <BR>
+     * Basic auth is used if both username and pw are not null.
+     * <P>
+     * Only
+     * <UL>
+     * <LI>200: OK</LI>
+     * <LI>201: ACCEPTED</LI>
+     * <LI>202: CREATED</LI>
+     * </UL>
+     * are accepted as successful codes; in these cases the response string will
+     * be returned.
+     *
+     * @return the HTTP response or <TT>null</TT> on errors.
+     */
+    private String send(final EntityEnclosingMethod httpMethod, String url,
+            RequestEntity requestEntity, String username, String pw) {
+        try {
+            if (requestEntity != null)
+                httpMethod.setRequestEntity(requestEntity);
+            int status = execute(httpMethod, url, username, pw,
+                    requestEntity instanceof FileRequestEntity ? Operation.BULK_UPLOAD
+                            : Operation.METADATA_WRITE);
+
+            switch (status) {
+            case HttpURLConnection.HTTP_OK:
+            case HttpURLConnection.HTTP_CREATED:
+            case HttpURLConnection.HTTP_ACCEPTED:
+                String response = IOUtils.toString(httpMethod.getResponseBodyAsStream());
+                if (LOGGER.isInfoEnabled())
+                    LOGGER.info("HTTP " + httpMethod.getStatusText() + ": " + response);
+                return response;
+            default:
+                LOGGER.warn("Bad response: code[" + status + "]" + " msg[" + httpMethod.getStatusText() + "]"
+                        + " url[" + url + "]" + " method[" + httpMethod.getClass().getSimpleName()
+                        + "]: " + IOUtils.toString(httpMethod.getResponseBodyAsStream()));
+                return null;
+            }
+        } catch (ConnectException e) {
+            LOGGER.info("Couldn't connect to [" + url + "]");
+            return null;
+        } catch (IOException e) {
+            LOGGER.error("Error talking to " + url + " : " + e.getLocalizedMessage());
+            return null;
+        } finally {
+            httpMethod.releaseConnection();
+        }
+    }
+
+    /**
+     * Performs an HTTP DELETE on the given URL. <BR>
+     * Basic auth is used if both username and pw are not null.
+     *
+     * @return true if the server response was an HTTP_OK
+     */
+    public boolean delete(String url, final String user, final String pw) {
+        DeleteMethod httpMethod = null;
+        try {
+            httpMethod = new DeleteMethod(url);
+            int status = execute(httpMethod, url, user, pw, Operation.METADATA_WRITE);
+            String response = "";
+            if (status == HttpStatus.SC_OK) {
+                InputStream is = httpMethod.getResponseBodyAsStream();
+                response = IOUtils.toString(is);
+                IOUtils.closeQuietly(is);
+                if (response.trim().equals("")) {
+                    if (LOGGER.isTraceEnabled())
+                        LOGGER.trace("ResponseBody is empty (this may be not an error since we just performed a DELETE call)");
+                    return true;
+                }
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("(" + status + ") " + httpMethod.getStatusText() + " -- " + url);
+                return true;
+            } else {
+                LOGGER.info("(" + status + ") " + httpMethod.getStatusText() + " -- " + url);
+                LOGGER.info("Response: '" + response + "'");
+            }
+        } catch (ConnectException e) {
+            LOGGER.info("Couldn't connect to [" + url + "]");
+        } catch (IOException e) {
+            LOGGER.info("Error talking to [" + url + "]", e);
+        } finally {
+            if (httpMethod != null)
+                httpMethod.releaseConnection();
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if the server response was an HTTP_OK
+     */
+    public boolean httpPing(String url, String username, String pw) {
+        GetMethod httpMethod = null;
+        try {
+            httpMethod = new GetMethod(url);
+            int status = execute(httpMethod, url, username, pw, Operation.PING, RetryPolicy.NONE);
+            if (status != HttpStatus.SC_OK) {
+                LOGGER.warn("PING failed at '" + url + "': (" + status + ") " + httpMethod.getStatusText());
+                return false;
+            } else {
+                return true;
+            }
+        } catch (ConnectException e) {
+            return false;
+        } catch (IOException e) {
+            LOGGER.error(e.getLocalizedMessage(), e);
+            return false;
+        } finally {
+            if (httpMethod != null)
+                httpMethod.releaseConnection();
+        }
+    }
+
+    /**
+     * Used to query for REST resources.
+     * <P>
+     * A HEAD request is sent, so no representation is downloaded; a GET is
+     * only issued when the server does not support HEAD on the given
+     * resource (405 or 501).
+     *
+     * @param url The URL of the REST resource to query about.
+     * @param username
+     * @param pw
+     * @return true on 200, false on 404.
+     * @throws RuntimeException on unhandled status or exceptions.
+     */
+    public boolean exists(String url, String username, String pw) {
+        int status = probe(new HeadMethod(url), url, username, pw);
+        if (status == HttpStatus.SC_METHOD_NOT_ALLOWED || status == HttpStatus.SC_NOT_IMPLEMENTED) {
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("HEAD not supported at '" + url + "', falling back to GET");
+            status = probe(new GetMethod(url), url, username, pw);
+        }
+        switch (status) {
+        case HttpStatus.SC_OK:
+            return true;
+        case HttpStatus.SC_NOT_FOUND:
+            return false;
+        default:
+            throw new RuntimeException("Unhandled response status at '" + url + "': (" + status + ") "
+                    + HttpStatus.getStatusText(status));
+        }
+    }
+
+    private int probe(HttpMethod httpMethod, String url, String username, String pw) {
+        try {
+            return execute(httpMethod, url, username, pw, Operation.PING);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            httpMethod.releaseConnection();
+        }
+    }
+
+    /**
+     * Releases all the pooled connections and stops the idle connection
+     * evictor. The transport can't be used after this call.
+     * <P>
+     * Does nothing on the {@link #getDefault() default} transport, which is
+     * shared by the whole JVM.
+     */
+    public void shutdown() {
+        synchronized (CommonsHTTPTransport.class) {
+            if (this == defaultTransport) {
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("Not shutting down the shared default transport");
+                return;
+            }
+        }
+        if (idleConnectionEvictor != null) {
+            idleConnectionEvictor.shutdown();
+        }
+        connectionManager.shutdown();
+    }
+
+    /**
+     * Executes the method on the pooled client using a per-call
+     * {@link HttpState} holding the (optional) credentials, with the read
+     * timeout of the given class of operation, retrying it as allowed by the
+     * current {@link RetryPolicy}.
+     */
+    private int execute(HttpMethod httpMethod, String url, String username, String pw,
+            Operation operation) throws IOException {
+        return execute(httpMethod, url, username, pw, operation, retryPolicy);
+    }
+
+    private int execute(HttpMethod httpMethod, String url, String username, String pw,
+            Operation operation, RetryPolicy policy) throws IOException {
+        final int status;
+        try {
+            status = retry(httpMethod, url, username, pw, operation, policy);
+        } catch (IOException e) {
+            metrics.failed(url, -1, e);
+            throw e;
+        }
+        if (status >= HttpStatus.SC_INTERNAL_SERVER_ERROR) {
+            metrics.failed(url, status, null);
+        } else {
+            metrics.succeeded(url);
+        }
+        return status;
+    }
+
+    private int retry(HttpMethod httpMethod, String url, String username, String pw,
+            Operation operation, RetryPolicy policy) throws IOException {
+        final HttpState state = new HttpState();
+        setAuth(state, httpMethod, url, username, pw);
+        final TimeoutProfile profile = timeoutProfile;
+        for (int attempt = 1;; attempt++) {
+            // the deadline (if any) shrinks at each attempt
+            httpMethod.getParams().setSoTimeout(profile.getTimeout(operation));
+            // the host is taken from the method, only the parameters are used
+            final HostConfiguration host = new HostConfiguration();
+            host.getParams().setIntParameter(HttpConnectionParams.CONNECTION_TIMEOUT,
+                    profile.getConnectTimeout(operation, connectionManager.getParams()
+                            .getConnectionTimeout()));
+            final int status;
+            try {
+                status = client.executeMethod(host, httpMethod, state);
+            } catch (IOException e) {
+                if (!policy.canRetry(httpMethod.getName(), attempt))
+                    throw e;
+                httpMethod.releaseConnection();
+                backoff(policy.getDelay(attempt, null), attempt, url, e.getLocalizedMessage());
+                continue;
+            }
+            if (!policy.isRetryable(status) || !policy.canRetry(httpMethod.getName(), attempt))
+                return status;
+            final long delay = policy.getDelay(attempt, headerValue(httpMethod, "Retry-After"));
+            if (delay < 0)
+                return status;
+            httpMethod.releaseConnection();
+            backoff(delay, attempt, url, "(" + status + ") " + HttpStatus.getStatusText(status));
+        }
+    }
+
+    private void backoff(long delay, int attempt, String url, String cause) throws IOException {
+        Deadline.checkDelay(delay);
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Attempt " + attempt + " failed at '" + url + "': " + cause + ", retrying in "
+                    + delay + "ms");
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while retrying " + url);
+        }
+        metrics.retried();
+    }
+
+    private static String headerValue(HttpMethod httpMethod, String name) {
+        final Header header = httpMethod.getResponseHeader(name);
+        return header != null ? header.getValue() : null;
+    }
+
+    private static void setAuth(HttpState state, HttpMethod httpMethod, String url,
+            String username, String pw) throws MalformedURLException {
+        URL u = new URL(url);
+        if (username != null && pw != null) {
+            state.setCredentials(new AuthScope(u.getHost(), u.getPort()),
+                    new UsernamePasswordCredentials(username, pw));
+            // GS2 by default always requires authentication
+            httpMethod.getHostAuthState().setPreemptive();
+        } else {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Not setting credentials to access to " + url);
+            }
+        }
+    }
+}
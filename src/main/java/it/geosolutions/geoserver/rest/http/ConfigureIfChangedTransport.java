@@ -0,0 +1,437 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.io.File;
+import java.io.StringReader;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jdom.Attribute;
+import org.jdom.Document;
+import org.jdom.Element;
+import org.jdom.input.SAXBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link HTTPTransport} decorator implementing a "configure if changed" mode:
+ * XML PUTs (i.e. sent by <TT>configureLayer</TT>, <TT>configureCoverage</TT>,
+ * <TT>updateStyle</TT> or <TT>GeoServerRESTStoreManager.update</TT>) are only
+ * sent when they would change the server state.
+ * <P>
+ * Before a PUT the current representation of the target resource is read and
+ * projected onto the elements of the outgoing document (GeoServer answers
+ * with many more elements than an encoder sends); both are canonicalized
+ * (whitespace and element order of unrelated siblings do not matter) and
+ * compared by hash. When they match the PUT is skipped and the server
+ * representation is returned in place of the PUT response
+ * ({@link #wasSkipped()} tells the two apart). Style bodies are compared as a
+ * whole with the <TT>.sld</TT> representation.
+ * <P>
+ * The server representation is read before each PUT, so changes made by
+ * other clients are always corrected; decorate a {@link CommonsHTTPTransport}
+ * having a {@link HTTPResponseCache} to read it with conditional GETs, which
+ * spare the download of unchanged representations.
+ * <P>
+ * File uploads, POSTs and DELETEs are sent unconditionally, as well as the
+ * {@link #putXmlUnconditionally(String, String, String, String)} PUTs (i.e.
+ * the store reloads, whose body matches the server state by design).
+ */
+public class ConfigureIfChangedTransport implements HTTPTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfigureIfChangedTransport.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String ATOM = "http://www.w3.org/2005/Atom";
+
+    private static final ThreadLocal<Boolean> SKIPPED = new ThreadLocal<Boolean>();
+
+    private final HTTPTransport delegate;
+
+    private final AtomicLong sent = new AtomicLong();
+
+    private final AtomicLong skipped = new AtomicLong();
+
+
+    /**
+     * @param delegate the decorated transport
+     * @throws IllegalArgumentException if the delegate is null
+     */
+    public ConfigureIfChangedTransport(HTTPTransport delegate) throws IllegalArgumentException {
+        if (delegate == null)
+            throw new IllegalArgumentException("Unable to create the transport using a null delegate");
+        this.delegate = delegate;
+    }
+
+    /**
+     * @return the decorated transport
+     */
+    public HTTPTransport getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @return the number of PUTs actually sent
+     */
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    /**
+     * @return the number of PUTs skipped since they matched the server state
+     */
+    public long getSkippedCount() {
+        return skipped.get();
+    }
+
+    /**
+     * @return true if the last XML PUT issued by the current thread through a
+     *         {@link ConfigureIfChangedTransport} was skipped, false if it was
+     *         sent (or none was issued)
+     */
+    public static boolean wasSkipped() {
+        return Boolean.TRUE.equals(SKIPPED.get());
+    }
+
+    /**
+     * Sends the given XML PUT unless the server state already matches it.
+     */
+    private String putIfChanged(String url, String content, String contentType,
+            String username, String pw) {
+        final Element outgoing = parse(content);
+        if (outgoing == null) {
+            return send(url, content, contentType, username, pw);
+        }
+        final boolean style = isStyleBody(contentType);
+        // always read: the resource may have been changed by another client
+        final String body = delegate.get(currentURL(url, style), username, pw);
+        final Element current = parse(body);
+        if (current != null) {
+            final String hash = hash(canonical(outgoing));
+            final String currentHash = hash(style ? canonical(current) : canonical(project(
+                    outgoing, current)));
+            if (hash.equals(currentHash)) {
+                return skip(url, body);
+            }
+        }
+        return send(url, content, contentType, username, pw);
+    }
+
+    /**
+     * @return the server representation, answered in place of the PUT response
+     */
+    private String skip(String url, String body) {
+        SKIPPED.set(Boolean.TRUE);
+        skipped.incrementAndGet();
+        if (LOGGER.isDebugEnabled())
+            LOGGER.debug("Not sending unchanged PUT " + url);
+        return body;
+    }
+
+    private String send(String url, String content, String contentType, String username,
+            String pw) {
+        SKIPPED.remove();
+        sent.incrementAndGet();
+        return delegate.put(url, content, contentType, username, pw);
+    }
+
+    private static boolean isStyleBody(String contentType) {
+        return contentType != null
+                && (contentType.contains("sld") || contentType.contains("se+xml"));
+    }
+
+    private static boolean isXml(String contentType) {
+        return contentType != null && contentType.contains("xml");
+    }
+
+    /**
+     * @return the URL of the current representation of the resource PUT to
+     *         the given URL
+     */
+    static String currentURL(String url, boolean style) {
+        String path = url;
+        final int query = path.indexOf('?');
+        if (query >= 0) {
+            path = path.substring(0, query);
+        }
+        if (style) {
+            return path.endsWith(".sld") ? path : path + ".sld";
+        }
+        return path.endsWith(".xml") ? path : path + ".xml";
+    }
+
+    private static Element parse(String xml) {
+        if (xml == null || xml.isEmpty()) {
+            return null;
+        }
+        try {
+            final SAXBuilder builder = new SAXBuilder();
+            builder.setExpandEntities(false);
+            final Document document = builder.build(new StringReader(xml));
+            return document.getRootElement();
+        } catch (Exception e) {
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("Unable to parse the document, comparison skipped", e);
+            return null;
+        }
+    }
+
+    private static String hash(String canonical) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return new BigInteger(1, digest.digest(canonical.getBytes(UTF8))).toString(16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * @return the key pairing the elements of two documents: name and attributes
+     */
+    private static String signature(Element element) {
+        final StringBuilder sb = new StringBuilder(element.getQualifiedName());
+        final List<String> attributes = new ArrayList<String>();
+        for (Object o : element.getAttributes()) {
+            final Attribute attribute = (Attribute) o;
+            attributes.add(attribute.getQualifiedName() + "=" + attribute.getValue());
+        }
+        Collections.sort(attributes);
+        for (String attribute : attributes) {
+            sb.append(' ').append(attribute);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return true for the empty elements (i.e. <TT>&lt;styles /&gt;</TT>),
+     *         which clear the server value
+     */
+    private static boolean isEmpty(Element element) {
+        return element.getChildren().isEmpty() && element.getAttributes().isEmpty()
+                && element.getTextTrim().isEmpty();
+    }
+
+    /**
+     * @return true for the atom links GeoServer adds to the references
+     */
+    private static boolean isLink(Element element) {
+        return ATOM.equals(element.getNamespaceURI());
+    }
+
+    /**
+     * @return the children of a server element, but its atom links
+     */
+    private static List<Element> content(Element current) {
+        final List<Element> content = new ArrayList<Element>();
+        for (Object child : current.getChildren()) {
+            if (!isLink((Element) child))
+                content.add((Element) child);
+        }
+        return content;
+    }
+
+    /**
+     * Canonical form of an element: signature, then either the trimmed text
+     * (leaves) or the children (whose text is ignored).
+     */
+    static String canonical(Element element) {
+        final StringBuilder sb = new StringBuilder();
+        canonical(element, sb);
+        return sb.toString();
+    }
+
+    private static void canonical(Element element, StringBuilder sb) {
+        sb.append('<').append(signature(element)).append('>');
+        final List<?> children = element.getChildren();
+        if (children.isEmpty()) {
+            sb.append(element.getTextNormalize().replace("<", "&lt;"));
+        } else {
+            for (Object child : children) {
+                canonical((Element) child, sb);
+            }
+        }
+        sb.append("</>");
+    }
+
+    /**
+     * Projects the server representation onto the shape of the outgoing
+     * document: for each outgoing element, the n-th server element having the
+     * same name and attributes is kept (the repeated elements, i.e. list
+     * items, are paired by order); missing elements are left out, so they
+     * change the hash, unless sent empty. Elements the server has beyond the
+     * outgoing ones are ignored, but in references (elements holding atom
+     * links), which are compared as a whole.
+     */
+    static Element project(Element outgoing, Element current) {
+        final Element projection = new Element(current.getName(), current.getNamespace());
+        for (Object o : current.getAttributes()) {
+            projection.setAttribute((Attribute) ((Attribute) o).clone());
+        }
+        final List<?> outgoingChildren = outgoing.getChildren();
+        final List<?> currentChildren = current.getChildren();
+        if (outgoingChildren.isEmpty()) {
+            final List<Element> content = content(current);
+            final Element name = current.getChild("name");
+            final Element workspace = current.getChild("workspace");
+            if (name != null && content.size() == 1) {
+                // a reference sent by name, i.e. <defaultStyle>point</defaultStyle>
+                // answered as <defaultStyle><name>point</name><atom:link .../></defaultStyle>
+                projection.setText(name.getText());
+            } else if (name != null && workspace != null && content.size() == 2) {
+                // a reference to a workspace object only matches a prefixed name
+                final String text = name.getTextTrim();
+                projection.setText(text.indexOf(':') >= 0 ? text : workspace.getTextTrim() + ":"
+                        + text);
+            } else if (!currentChildren.isEmpty()) {
+                // the server has a structure where a plain value is sent
+                for (Object child : currentChildren) {
+                    projection.addContent((Element) ((Element) child).clone());
+                }
+            } else {
+                projection.setText(current.getText());
+            }
+            return projection;
+        }
+        final Map<String, List<Element>> bySignature = new HashMap<String, List<Element>>();
+        for (Object child : currentChildren) {
+            final Element element = (Element) child;
+            final String signature = signature(element);
+            List<Element> list = bySignature.get(signature);
+            if (list == null) {
+                list = new ArrayList<Element>();
+                bySignature.put(signature, list);
+            }
+            list.add(element);
+        }
+        final Map<String, Integer> seen = new HashMap<String, Integer>();
+        for (Object child : outgoingChildren) {
+            final Element element = (Element) child;
+            final String signature = signature(element);
+            final Integer n = seen.get(signature);
+            final int index = n == null ? 0 : n;
+            seen.put(signature, index + 1);
+            final List<Element> matches = bySignature.get(signature);
+            final Element match = matches != null && index < matches.size() ? matches.get(index)
+                    : null;
+            if (isEmpty(element) && (match == null || isEmpty(match))) {
+                // nothing to clear
+                projection.addContent((Element) element.clone());
+            } else if (match != null) {
+                projection.addContent(project(element, match));
+            }
+        }
+        // items only known by the server (i.e. a list the encoder shortens),
+        // any other element of a reference
+        final boolean reference = content(current).size() < currentChildren.size();
+        for (Map.Entry<String, List<Element>> entry : bySignature.entrySet()) {
+            final Integer n = seen.get(entry.getKey());
+            if (n != null ? entry.getValue().size() > n : reference
+                    && !isLink(entry.getValue().get(0))) {
+                projection.addContent(new Element("extra").setText(entry.getKey()));
+            }
+        }
+        return projection;
+    }
+
+    public String get(String url, String username, String pw) {
+        return delegate.get(url, username, pw);
+    }
+
+    public <T> T get(String url, String username, String pw, HTTPResponseHandler<T> handler) {
+        return delegate.get(url, username, pw, handler);
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync(String url, String username, String pw,
+            Executor executor) {
+        return delegate.getAsync(url, username, pw, executor);
+    }
+
+    public String put(String url, File file, String contentType, String username, String pw) {
+        return delegate.put(url, file, contentType, username, pw);
+    }
+
+    public String put(String url, String content, String contentType, String username, String pw) {
+        if (!isXml(contentType)) {
+            return send(url, content, contentType, username, pw);
+        }
+        return putIfChanged(url, content, contentType, username, pw);
+    }
+
+    public String putXml(String url, String content, String username, String pw) {
+        return putIfChanged(url, content, "text/xml", username, pw);
+    }
+
+    @Override
+    public String putXmlUnconditionally(String url, String content, String username, String pw) {
+        SKIPPED.remove();
+        sent.incrementAndGet();
+        return delegate.putXmlUnconditionally(url, content, username, pw);
+    }
+
+    public String post(String url, File file, String contentType, String username, String pw) {
+        return delegate.post(url, file, contentType, username, pw);
+    }
+
+    public String post(String url, String content, String contentType, String username, String pw) {
+        return delegate.post(url, content, contentType, username, pw);
+    }
+
+    public String postXml(String url, String content, String username, String pw) {
+        return delegate.postXml(url, content, username, pw);
+    }
+
+    public boolean delete(String url, String username, String pw) {
+        return delegate.delete(url, username, pw);
+    }
+
+    public boolean httpPing(String url, String username, String pw) {
+        return delegate.httpPing(url, username, pw);
+    }
+
+    public boolean exists(String url, String username, String pw) {
+        return delegate.exists(url, username, pw);
+    }
+
+    public HTTPTransportMetrics getMetrics() {
+        return delegate.getMetrics();
+    }
+
+    public void shutdown() {
+        delegate.shutdown();
+    }
+}
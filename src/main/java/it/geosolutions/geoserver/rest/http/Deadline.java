@@ -0,0 +1,146 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.net.SocketTimeoutException;
+
+/**
+ * An absolute time limit shared by all the REST calls issued by the current
+ * thread while the deadline is open, so that a high level operation (i.e.
+ * {@link it.geosolutions.geoserver.rest.GeoServerRESTPublisher#publishShp}
+ * which creates the store, uploads the data and configures the layer) can be
+ * bounded as a whole:
+ * 
+ * <PRE>
+ * try (Deadline deadline = Deadline.start(60000)) {
+ *     publisher.publishShp(...);
+ * }
+ * </PRE>
+ * 
+ * The transports bound the connection and read timeouts of each call (and the
+ * retry delays) to the remaining time, failing the call with a
+ * {@link SocketTimeoutException} once the deadline is expired. Note that the
+ * read timeout bounds each single socket read, not the whole response: a
+ * response whose bytes keep arriving may complete after the deadline, the
+ * following calls then failing immediately.<BR>
+ * Deadlines can be nested, the inner one never extending the outer one.
+ * <P>
+ * Deadlines are bound to the thread, they are not propagated to the
+ * asynchronous calls completed by other threads.
+ */
+public final class Deadline implements AutoCloseable {
+
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<Deadline>();
+
+    private final long expiresAt;
+
+    private final Deadline previous;
+
+    private Deadline(long expiresAt, Deadline previous) {
+        this.expiresAt = expiresAt;
+        this.previous = previous;
+    }
+
+    /**
+     * Opens a deadline for the current thread.
+     * 
+     * @param timeout the time (ms) granted to the calls issued until the
+     *        deadline is closed
+     * @return the deadline, to be closed when the operation completes
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public static Deadline start(long timeout) throws IllegalArgumentException {
+        if (timeout < 0)
+            throw new IllegalArgumentException("Unable to start a deadline using timeout " + timeout);
+        final Deadline current = CURRENT.get();
+        long expiresAt = System.currentTimeMillis() + timeout;
+        if (current != null && current.expiresAt < expiresAt) {
+            expiresAt = current.expiresAt;
+        }
+        final Deadline deadline = new Deadline(expiresAt, current);
+        CURRENT.set(deadline);
+        return deadline;
+    }
+
+    /**
+     * @return the deadline open on the current thread, <TT>null</TT> if none
+     */
+    public static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * @return the remaining time (ms), 0 if expired
+     */
+    public long remaining() {
+        return Math.max(0, expiresAt - System.currentTimeMillis());
+    }
+
+    public boolean isExpired() {
+        return remaining() == 0;
+    }
+
+    /**
+     * Restores the deadline (if any) open before this one.
+     */
+    public void close() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @param timeout the timeout (ms) configured for a call, 0 meaning no timeout
+     * @return the timeout bounded to the remaining time of the current
+     *         deadline, if any
+     * @throws SocketTimeoutException if the current deadline is expired
+     */
+    static int bound(int timeout) throws SocketTimeoutException {
+        final Deadline deadline = CURRENT.get();
+        if (deadline == null) {
+            return timeout;
+        }
+        final long remaining = deadline.remaining();
+        if (remaining == 0) {
+            throw new SocketTimeoutException("Deadline exceeded");
+        }
+        return (int) (timeout > 0 ? Math.min(timeout, remaining) : Math.min(Integer.MAX_VALUE, remaining));
+    }
+
+    /**
+     * @param delay a retry delay (ms)
+     * @throws SocketTimeoutException if the delay exceeds the remaining time
+     *         of the current deadline
+     */
+    static void checkDelay(long delay) throws SocketTimeoutException {
+        final Deadline deadline = CURRENT.get();
+        if (deadline != null && delay >= deadline.remaining()) {
+            throw new SocketTimeoutException("Deadline exceeded, not retrying");
+        }
+    }
+}
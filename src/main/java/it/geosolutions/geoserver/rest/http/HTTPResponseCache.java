@@ -0,0 +1,220 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded (LRU) cache of the responses returned by GeoServer along with
+ * their validators (<TT>ETag</TT>, <TT>Last-Modified</TT>), used by the
+ * transports to issue conditional GETs.
+ * <P>
+ * When a cached entry exists for a URL (and user) the transport sends
+ * <TT>If-None-Match</TT> / <TT>If-Modified-Since</TT>; on a
+ * <TT>304 Not Modified</TT> answer the previously decoded object is returned
+ * without downloading nor parsing the document again. If the cached object
+ * was produced by a handler which can't share it (i.e. another decoder, see
+ * {@link HTTPResponseHandler}) the cached body is decoded again, still
+ * avoiding the download.<BR>
+ * Decoded objects are shared by the callers, which should treat them as read
+ * only.
+ * <P>
+ * Only responses carrying at least one validator are cached.
+ *
+ * @see CommonsHTTPTransport#setResponseCache(HTTPResponseCache)
+ */
+public class HTTPResponseCache {
+
+    /** Default max number of cached responses. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /**
+     * A cached response.
+     */
+    public static final class Entry {
+        private final String etag;
+
+        private final String lastModified;
+
+        private final byte[] body;
+
+        /** See {@link HandlerIdentity}. */
+        private final Object handler;
+
+        private final Object value;
+
+        Entry(String etag, String lastModified, byte[] body, Object handler, Object value) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.body = body;
+            this.handler = handler;
+            this.value = value;
+        }
+
+        /**
+         * @return the <TT>ETag</TT> to send as <TT>If-None-Match</TT>, may be null
+         */
+        public String getETag() {
+            return etag;
+        }
+
+        /**
+         * @return the <TT>Last-Modified</TT> date to send as <TT>If-Modified-Since</TT>, may be null
+         */
+        public String getLastModified() {
+            return lastModified;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    public HTTPResponseCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param maxEntries max number of cached responses, the least recently
+     *        used ones are evicted first
+     */
+    public HTTPResponseCache(final int maxEntries) {
+        if (maxEntries <= 0)
+            throw new IllegalArgumentException("Unable to create the cache using size " + maxEntries);
+        entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, HTTPResponseCache.Entry> eldest) {
+                if (size() > maxEntries) {
+                    statistics.evicted();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return the cached entry for the given URL and user, <TT>null</TT> if
+     *         no such entry exists
+     */
+    public Entry lookup(String url, String username) {
+        synchronized (entries) {
+            return entries.get(key(url, username));
+        }
+    }
+
+    /**
+     * Called by the transports on a <TT>304 Not Modified</TT> answer.
+     *
+     * @return the previously decoded object, or the cached body decoded by the
+     *         given handler if the object was produced by a handler which
+     *         can't share it
+     * @throws IOException if the handler fails decoding the cached body
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T revalidated(String url, String username, Entry entry, HTTPResponseHandler<T> handler)
+            throws IOException {
+        statistics.hit();
+        final Object identity = HandlerIdentity.of(handler);
+        if (entry.handler.equals(identity)) {
+            return (T) entry.value;
+        }
+        final T value = handler.handleResponse(new ByteArrayInputStream(entry.body));
+        if (value != null) {
+            put(key(url, username), new Entry(entry.etag, entry.lastModified, entry.body,
+                    identity, value));
+        }
+        return value;
+    }
+
+    /**
+     * Called by the transports on a <TT>200 OK</TT> answer: decodes the body
+     * using the given handler and, if at least one validator is given, caches
+     * it.
+     *
+     * @return the value returned by the handler
+     * @throws IOException if the handler fails decoding the body
+     */
+    public <T> T store(String url, String username, String etag, String lastModified, byte[] body,
+            HTTPResponseHandler<T> handler) throws IOException {
+        statistics.miss();
+        final String key = key(url, username);
+        final T value = handler.handleResponse(new ByteArrayInputStream(body));
+        if (value == null || (etag == null && lastModified == null)) {
+            synchronized (entries) {
+                entries.remove(key);
+            }
+        } else {
+            put(key, new Entry(etag, lastModified, body, HandlerIdentity.of(handler), value));
+        }
+        return value;
+    }
+
+    /**
+     * Removes the cached response for the given URL, for all the users.
+     */
+    public void invalidate(String url) {
+        final String prefix = url + '\u0000';
+        synchronized (entries) {
+            entries.keySet().removeIf(key -> key.startsWith(prefix));
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * @return hits (304 answers served from the cache), misses (full
+     *         downloads) and evictions
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    private void put(String key, Entry entry) {
+        synchronized (entries) {
+            entries.put(key, entry);
+        }
+    }
+
+    private static String key(String url, String username) {
+        return url + '\u0000' + (username == null ? "" : username);
+    }
+}
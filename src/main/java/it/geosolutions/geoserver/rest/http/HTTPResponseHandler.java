@@ -0,0 +1,63 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Consumes the body of a successful HTTP response while it is read from the
+ * connection, so that the decoders can parse it without buffering the whole
+ * payload.
+ * <P>
+ * Decoders can be used directly as handlers, i.e.
+ * <TT>transport.get(url, user, pw, RESTLayerList::build)</TT>.
+ * <P>
+ * The transports caching or sharing decoded values (see
+ * {@link HTTPResponseCache}, {@link CachingHTTPTransport} and
+ * {@link CoalescingHTTPTransport}) hand the value decoded by a handler to
+ * another one only when:
+ * <UL>
+ * <LI>both are of the same class and the class has no instance fields (i.e.
+ * method references to static decoders, or lambdas capturing nothing): the
+ * value only depends on the response</LI>
+ * <LI>or, for the other handlers (i.e. lambdas capturing a value), when they
+ * are {@link Object#equals(Object) equal}, by default when they are the same
+ * instance</LI>
+ * </UL>
+ *
+ * @param <T> the type of the decoded response
+ */
+public interface HTTPResponseHandler<T> {
+
+    /**
+     * @param body the response body; it is closed by the transport once this
+     *        method returns
+     * @return the decoded response
+     * @throws IOException on read errors
+     */
+    T handleResponse(InputStream body) throws IOException;
+}
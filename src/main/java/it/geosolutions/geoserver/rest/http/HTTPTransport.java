@@ -0,0 +1,218 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Transport used by the {@link it.geosolutions.geoserver.rest.GeoServerRESTReader reader},
+ * the {@link it.geosolutions.geoserver.rest.GeoServerRESTPublisher publisher} and the
+ * GeoServerREST<i>Foo</i>Manager classes to talk to GeoServer.
+ * <P>
+ * Implementations must be thread safe, since a single instance is usually
+ * shared by all the components talking to the same GeoServer.<BR>
+ * On each call basic auth is used if both username and pw are not null.
+ * <P>
+ * Available implementations:
+ * <UL>
+ * <LI>{@link CommonsHTTPTransport}: commons-httpclient 3.1 based, the
+ * default one</LI>
+ * <LI><TT>JavaHTTPTransport</TT>: JDK 11+ <TT>java.net.http</TT> based,
+ * supporting HTTP/2; only available when built with JDK 11 or later</LI>
+ * <LI>{@link CircuitBreakerTransport}: fails fast when a GeoServer does not
+ * answer, decorating one of the above</LI>
+ * <LI>{@link CachingHTTPTransport}: caches the decoded catalog objects,
+ * decorating one of the above</LI>
+ * <LI>{@link CoalescingHTTPTransport}: shares the result of identical
+ * concurrent GETs, decorating one of the above</LI>
+ * <LI>{@link ConfigureIfChangedTransport}: skips the XML PUTs matching the
+ * server state, decorating one of the above</LI>
+ * </UL>
+ */
+public interface HTTPTransport {
+
+    /** Default connection timeout (ms). */
+    int DEFAULT_CONNECTION_TIMEOUT = 5000;
+
+    /** Timeout (ms) used by {@link #httpPing(String, String, String)} and {@link #exists(String, String, String)}. */
+    int PING_TIMEOUT = 2000;
+
+    /**
+     * Performs an HTTP GET on the given URL.
+     * 
+     * @param url The URL where to connect to.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @return The HTTP response as a String if the HTTP response code was 200
+     *         (OK), <TT>null</TT> otherwise.
+     */
+    String get(String url, String username, String pw);
+
+    /**
+     * Performs an HTTP GET on the given URL, passing the response body to the
+     * given handler as it is read from the connection.
+     * 
+     * @param url The URL where to connect to.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @param handler the handler decoding the response body
+     * @return the value returned by the handler if the HTTP response code was
+     *         200 (OK), <TT>null</TT> otherwise or on errors.
+     */
+    <T> T get(String url, String username, String pw, HTTPResponseHandler<T> handler);
+
+    /**
+     * Asynchronous version of {@link #get(String, String, String)}.
+     * <P>
+     * The default implementation runs the blocking call on the given executor;
+     * implementations supporting non blocking I/O should override it so that a
+     * few threads can keep many requests in flight.
+     * 
+     * @param url The URL where to connect to.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @param executor the executor used to run (or complete) the request
+     * @return a future completed with the HTTP response as a String if the
+     *         HTTP response code was 200 (OK), with <TT>null</TT> otherwise.
+     */
+    default CompletableFuture<String> getAsync(final String url, final String username,
+            final String pw, Executor executor) {
+        return CompletableFuture.supplyAsync(() -> get(url, username, pw), executor);
+    }
+
+    /**
+     * PUTs a File to the given URL.
+     * 
+     * @param url The URL where to connect to.
+     * @param file The File to be sent.
+     * @param contentType The content-type to advert in the PUT.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @return the HTTP response or <TT>null</TT> on errors.
+     */
+    String put(String url, File file, String contentType, String username, String pw);
+
+    /**
+     * PUTs a String to the given URL.
+     * 
+     * @param url The URL where to connect to.
+     * @param content The content to be sent as a String.
+     * @param contentType The content-type to advert in the PUT.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @return the HTTP response or <TT>null</TT> on errors.
+     */
+    String put(String url, String content, String contentType, String username, String pw);
+
+    /**
+     * PUTs a String representing an XML document to the given URL.
+     * 
+     * @see #put(String, String, String, String, String)
+     */
+    String putXml(String url, String content, String username, String pw);
+
+    /**
+     * PUTs an XML document which has to reach GeoServer even if it matches
+     * the current server state (i.e. a store reload): the decorators which
+     * skip or merge writes send it as is.
+     * 
+     * @see #putXml(String, String, String, String)
+     */
+    default String putXmlUnconditionally(String url, String content, String username, String pw) {
+        return putXml(url, content, username, pw);
+    }
+
+    /**
+     * POSTs a File to the given URL.
+     * 
+     * @param url The URL where to connect to.
+     * @param file The File to be sent.
+     * @param contentType The content-type to advert in the POST.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @return the HTTP response or <TT>null</TT> on errors.
+     */
+    String post(String url, File file, String contentType, String username, String pw);
+
+    /**
+     * POSTs a String to the given URL.
+     * 
+     * @param url The URL where to connect to.
+     * @param content The content to be sent as a String.
+     * @param contentType The content-type to advert in the POST.
+     * @param username Basic auth credential. No basic auth if null.
+     * @param pw Basic auth credential. No basic auth if null.
+     * @return the HTTP response or <TT>null</TT> on errors.
+     */
+    String post(String url, String content, String contentType, String username, String pw);
+
+    /**
+     * POSTs a String representing an XML document to the given URL.
+     * 
+     * @see #post(String, String, String, String, String)
+     */
+    String postXml(String url, String content, String username, String pw);
+
+    /**
+     * Performs an HTTP DELETE on the given URL.
+     * 
+     * @return true if the server response was an HTTP_OK
+     */
+    boolean delete(String url, String username, String pw);
+
+    /**
+     * @return true if the server response was an HTTP_OK
+     */
+    boolean httpPing(String url, String username, String pw);
+
+    /**
+     * Used to query for REST resources.
+     * <P>
+     * Implementations should avoid downloading the resource representation,
+     * i.e. using a HEAD request where the server supports it.
+     * 
+     * @param url The URL of the REST resource to query about.
+     * @param username
+     * @param pw
+     * @return true on 200, false on 404.
+     * @throws RuntimeException on unhandled status or exceptions.
+     */
+    boolean exists(String url, String username, String pw);
+
+    /**
+     * @return the traffic counters of this transport, also used to register
+     *         {@link HTTPTransportListener listeners}
+     */
+    HTTPTransportMetrics getMetrics();
+
+    /**
+     * Releases the resources (i.e. pooled connections) held by this transport,
+     * which can't be used after this call.
+     */
+    void shutdown();
+}
@@ -0,0 +1,52 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+/**
+ * Notified by the transports about the outcome of each request sent to
+ * GeoServer.
+ *
+ * @see HTTPTransportMetrics#addListener(HTTPTransportListener)
+ */
+public interface HTTPTransportListener {
+
+    /**
+     * Called when GeoServer answered (with any status below 500).
+     *
+     * @param url the requested URL
+     */
+    void requestSucceeded(String url);
+
+    /**
+     * Called when GeoServer could not be reached or answered with a server
+     * error, once retries (if any) are exhausted.
+     *
+     * @param url the requested URL
+     * @param status the response status, -1 if no response was received
+     * @param cause the exception raised, null if a response was received
+     */
+    void requestFailed(String url, int status, Throwable cause);
+}
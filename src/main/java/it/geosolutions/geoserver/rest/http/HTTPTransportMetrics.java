@@ -0,0 +1,196 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.input.CountingInputStream;
+
+/**
+ * Traffic counters of a {@link HTTPTransport}.
+ * <P>
+ * Also takes care of decoding the compressed (<TT>gzip</TT> or
+ * <TT>deflate</TT>) responses negotiated by the transports through the
+ * <TT>Accept-Encoding</TT> header, counting the bytes read from the wire
+ * against the decoded ones.
+ * <P>
+ * The requests sent again by the {@link RetryPolicy} and the failed ones are
+ * counted too; failures and successes are also notified to the registered
+ * {@link HTTPTransportListener listeners}.
+ */
+public class HTTPTransportMetrics {
+
+    /** Value of the <TT>Accept-Encoding</TT> header sent by the transports. */
+    public static final String ACCEPT_ENCODING = "gzip, deflate";
+
+    private final AtomicLong compressedResponses = new AtomicLong();
+
+    private final AtomicLong compressedBytes = new AtomicLong();
+
+    private final AtomicLong decodedBytes = new AtomicLong();
+
+    private final AtomicLong retries = new AtomicLong();
+
+    private final AtomicLong failures = new AtomicLong();
+
+    private final List<HTTPTransportListener> listeners = new CopyOnWriteArrayList<HTTPTransportListener>();
+
+    /**
+     * Wraps a response body so that it is decompressed while it is read.
+     * <P>
+     * The bytes are accounted once the returned stream is closed.
+     *
+     * @param body the response body as read from the connection
+     * @param contentEncoding the <TT>Content-Encoding</TT> response header, may be null
+     * @return the decoded stream, or the passed one if the body is not compressed
+     * @throws IOException if the compressed stream header can't be read
+     */
+    public InputStream decode(InputStream body, String contentEncoding) throws IOException {
+        if (body == null || contentEncoding == null) {
+            return body;
+        }
+        final String encoding = contentEncoding.trim().toLowerCase();
+        final CountingInputStream wire = new CountingInputStream(body);
+        final InputStream decoded;
+        if (encoding.equals("gzip") || encoding.equals("x-gzip")) {
+            decoded = new GZIPInputStream(wire);
+        } else if (encoding.equals("deflate")) {
+            decoded = new InflaterInputStream(wire);
+        } else {
+            return body;
+        }
+        return new CountingInputStream(decoded) {
+            private boolean closed;
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (!closed) {
+                        closed = true;
+                        record(wire.getByteCount(), getByteCount());
+                    }
+                }
+            }
+        };
+    }
+
+    private void record(long compressed, long decoded) {
+        compressedResponses.incrementAndGet();
+        compressedBytes.addAndGet(compressed);
+        decodedBytes.addAndGet(decoded);
+    }
+
+    public void addListener(HTTPTransportListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(HTTPTransportListener listener) {
+        listeners.remove(listener);
+    }
+
+    void succeeded(String url) {
+        for (HTTPTransportListener listener : listeners) {
+            listener.requestSucceeded(url);
+        }
+    }
+
+    void failed(String url, int status, Throwable cause) {
+        failures.incrementAndGet();
+        for (HTTPTransportListener listener : listeners) {
+            listener.requestFailed(url, status, cause);
+        }
+    }
+
+    /**
+     * @return the number of requests which could not reach GeoServer or got
+     *         a server error
+     */
+    public long getFailureCount() {
+        return failures.get();
+    }
+
+    void retried() {
+        retries.incrementAndGet();
+    }
+
+    /**
+     * @return the number of requests sent again after a failure
+     */
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    /**
+     * @return the number of compressed responses received
+     */
+    public long getCompressedResponseCount() {
+        return compressedResponses.get();
+    }
+
+    /**
+     * @return the bytes of the compressed responses, as read from the wire
+     */
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    /**
+     * @return the bytes of the compressed responses, once decoded
+     */
+    public long getDecodedBytes() {
+        return decodedBytes.get();
+    }
+
+    /**
+     * @return the bytes not transferred thanks to compression
+     */
+    public long getBytesSaved() {
+        return decodedBytes.get() - compressedBytes.get();
+    }
+
+    public void reset() {
+        compressedResponses.set(0);
+        compressedBytes.set(0);
+        decodedBytes.set(0);
+        retries.set(0);
+        failures.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "compressedResponses=" + compressedResponses.get() + " compressedBytes="
+                + compressedBytes.get() + " decodedBytes=" + decodedBytes.get() + " retries=" + retries.get()
+                + " failures=" + failures.get();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.apache.commons.httpclient.util.DateParseException;
+import org.apache.commons.httpclient.util.DateUtil;
+
+/**
+ * Tells the transports whether (and after how long) a failed request has to
+ * be sent again.
+ * <P>
+ * A request is retried when it fails with an <TT>IOException</TT> (i.e. a
+ * connection reset) or when the server answers with one of the transient
+ * statuses returned by proxies and load balancers (502, 503, 504).<BR>
+ * Only idempotent methods (GET, HEAD, PUT, DELETE) are retried. POSTs are
+ * retried only when sent within a {@link RetryablePost} scope, opting in for
+ * each call, or when the policy is created opting in for all of them (off by
+ * default, since most POSTs create an object and may be applied twice).
+ * <P>
+ * The delay between attempts grows exponentially from the initial delay, and
+ * is randomized (half of it is jitter) so that many clients failing together
+ * do not retry together. A <TT>Retry-After</TT> header returned by the server
+ * is honoured, giving up if it asks to wait longer than the max delay.
+ */
+public class RetryPolicy {
+
+    /** A policy which never retries. */
+    public static final RetryPolicy NONE = new RetryPolicy(1, 0, 0, false);
+
+    /** Default max number of attempts (including the first one). */
+    public static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    /** Default delay (ms) before the first retry. */
+    public static final long DEFAULT_INITIAL_DELAY = 250;
+
+    /** Default max delay (ms) between two attempts. */
+    public static final long DEFAULT_MAX_DELAY = 10000;
+
+    private final int maxAttempts;
+
+    private final long initialDelay;
+
+    private final long maxDelay;
+
+    private final boolean retryPost;
+
+    /**
+     * Creates a policy using the default settings, not retrying POSTs.
+     */
+    public RetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_INITIAL_DELAY, DEFAULT_MAX_DELAY, false);
+    }
+
+    /**
+     * @param maxAttempts max number of attempts, including the first one
+     * @param initialDelay delay (ms) before the first retry
+     * @param maxDelay max delay (ms) between two attempts
+     * @param retryPost whether all the POST requests are retried too, not only
+     *        the ones sent within a {@link RetryablePost} scope
+     * @throws IllegalArgumentException if maxAttempts is less than 1 or a delay is negative
+     */
+    public RetryPolicy(int maxAttempts, long initialDelay, long maxDelay, boolean retryPost)
+            throws IllegalArgumentException {
+        if (maxAttempts < 1 || initialDelay < 0 || maxDelay < 0) {
+            throw new IllegalArgumentException("Unable to create the retry policy using attempts "
+                    + maxAttempts + " and delays " + initialDelay + "/" + maxDelay);
+        }
+        this.maxAttempts = maxAttempts;
+        this.initialDelay = initialDelay;
+        this.maxDelay = maxDelay;
+        this.retryPost = retryPost;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getInitialDelay() {
+        return initialDelay;
+    }
+
+    public long getMaxDelay() {
+        return maxDelay;
+    }
+
+    public boolean isRetryPost() {
+        return retryPost;
+    }
+
+    /**
+     * @param method the HTTP method name
+     * @param attempt the number of attempts already done
+     * @return true if another attempt is allowed; POSTs are retried when
+     *         allowed by the policy or by a {@link RetryablePost} scope open
+     *         on the current thread
+     */
+    public boolean canRetry(String method, int attempt) {
+        if (attempt >= maxAttempts) {
+            return false;
+        }
+        return "GET".equals(method) || "HEAD".equals(method) || "PUT".equals(method)
+                || "DELETE".equals(method)
+                || ((retryPost || RetryablePost.isOpen()) && "POST".equals(method));
+    }
+
+    /**
+     * @return true if the status is a transient failure worth retrying
+     */
+    public boolean isRetryable(int status) {
+        return status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * @param attempt the number of attempts already done (&gt;= 1)
+     * @param retryAfter the <TT>Retry-After</TT> response header, may be null
+     * @return the time (ms) to wait before the next attempt, or -1 if the
+     *         server asks to wait longer than the max delay
+     */
+    public long getDelay(int attempt, String retryAfter) {
+        final long backoff = Math.min(maxDelay, initialDelay << Math.min(attempt - 1, 30));
+        final long half = backoff / 2;
+        long delay = half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+        final long requested = parseRetryAfter(retryAfter);
+        if (requested > maxDelay) {
+            return -1;
+        }
+        return Math.max(delay, requested);
+    }
+
+    /**
+     * @return the delay (ms) requested by a <TT>Retry-After</TT> header
+     *         (seconds or HTTP date), 0 if missing or not parsable
+     */
+    static long parseRetryAfter(String retryAfter) {
+        if (retryAfter == null || retryAfter.trim().length() == 0) {
+            return 0;
+        }
+        final String value = retryAfter.trim();
+        try {
+            return Math.max(0, Long.parseLong(value) * 1000);
+        } catch (NumberFormatException e) {
+            try {
+                final Date date = DateUtil.parseDate(value);
+                return Math.max(0, date.getTime() - System.currentTimeMillis());
+            } catch (DateParseException pe) {
+                return 0;
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "RetryPolicy[maxAttempts=" + maxAttempts + ", initialDelay=" + initialDelay
+                + ", maxDelay=" + maxDelay + ", retryPost=" + retryPost + "]";
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package it.geosolutions.geoserver.rest.http;
+
+/**
+ * Marks the POSTs issued by the current thread while open as safe to send
+ * again, so that the transports retry them as they do for the idempotent
+ * methods (see {@link RetryPolicy}):
+ * 
+ * <PRE>
+ * try (RetryablePost scope = RetryablePost.open()) {
+ *     publisher.createWorkspace("topp");
+ * }
+ * </PRE>
+ * 
+ * Only open it around calls whose POST can't create duplicates when sent
+ * twice (i.e. creating a named object, which fails with a conflict the
+ * second time), since a POST may have been applied even if its response
+ * was lost.<BR>
+ * Scopes can be nested; like {@link Deadline}s they are bound to the thread,
+ * so the retries of asynchronous calls completed by other threads do not see
+ * them.
+ */
+public final class RetryablePost implements AutoCloseable {
+
+    private static final ThreadLocal<RetryablePost> CURRENT = new ThreadLocal<RetryablePost>();
+
+    private final RetryablePost previous;
+
+    private RetryablePost(RetryablePost previous) {
+        this.previous = previous;
+    }
+
+    /**
+     * Opens a scope for the current thread.
+     * 
+     * @return the scope, to be closed once the POSTs are sent
+     */
+    public static RetryablePost open() {
+        final RetryablePost scope = new RetryablePost(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    /**
+     * @return true if a scope is open on the current thread
+     */
+    public static boolean isOpen() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Restores the scope (if any) open before this one.
+     */
+    public void close() {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+}
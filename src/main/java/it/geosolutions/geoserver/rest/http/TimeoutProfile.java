@@ -0,0 +1,175 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.net.SocketTimeoutException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * The read (socket) and connection timeouts used by the transports for each
+ * class of operation.
+ * <P>
+ * A connection timeout of 0 means the one the transport was created with;
+ * by default only pings and existence checks use a shorter one
+ * ({@link HTTPTransport#PING_TIMEOUT}). The overall time granted to a
+ * sequence of calls is controlled by a {@link Deadline}.<BR>
+ * Instances are immutable, use {@link #with(Operation, int)} to derive a
+ * customized profile.
+ */
+public final class TimeoutProfile {
+
+    /**
+     * The classes of operation.
+     */
+    public enum Operation {
+        /** GETs of catalog resources. */
+        METADATA_READ,
+        /** PUT, POST and DELETE of catalog resources. */
+        METADATA_WRITE,
+        /** File uploads (i.e. publishing a GeoTIFF or an ImageMosaic). */
+        BULK_UPLOAD,
+        /** Pings and existence checks. */
+        PING
+    }
+
+    /** Default read timeout (ms) of {@link Operation#METADATA_READ}. */
+    public static final int DEFAULT_METADATA_READ_TIMEOUT = 30000;
+
+    /** Default read timeout (ms) of {@link Operation#METADATA_WRITE}. */
+    public static final int DEFAULT_METADATA_WRITE_TIMEOUT = 60000;
+
+    /** Default read timeout (ms) of {@link Operation#BULK_UPLOAD}. */
+    public static final int DEFAULT_BULK_UPLOAD_TIMEOUT = 30 * 60000;
+
+    /** The default profile. */
+    public static final TimeoutProfile DEFAULT = new TimeoutProfile(DEFAULT_METADATA_READ_TIMEOUT,
+            DEFAULT_METADATA_WRITE_TIMEOUT, DEFAULT_BULK_UPLOAD_TIMEOUT, HTTPTransport.PING_TIMEOUT)
+            .withConnectTimeout(Operation.PING, HTTPTransport.PING_TIMEOUT);
+
+    private final Map<Operation, Integer> readTimeouts = new EnumMap<Operation, Integer>(Operation.class);
+
+    private final Map<Operation, Integer> connectTimeouts = new EnumMap<Operation, Integer>(Operation.class);
+
+    /**
+     * @param metadataRead read timeout (ms) of catalog reads, 0 meaning no timeout
+     * @param metadataWrite read timeout (ms) of catalog writes, 0 meaning no timeout
+     * @param bulkUpload read timeout (ms) of file uploads, 0 meaning no timeout
+     * @param ping read timeout (ms) of pings and existence checks, 0 meaning no timeout
+     * @throws IllegalArgumentException if a timeout is negative
+     * @see #withConnectTimeout(Operation, int)
+     */
+    public TimeoutProfile(int metadataRead, int metadataWrite, int bulkUpload, int ping)
+            throws IllegalArgumentException {
+        set(Operation.METADATA_READ, metadataRead);
+        set(Operation.METADATA_WRITE, metadataWrite);
+        set(Operation.BULK_UPLOAD, bulkUpload);
+        set(Operation.PING, ping);
+        for (Operation operation : Operation.values()) {
+            connectTimeouts.put(operation, 0);
+        }
+    }
+
+    private TimeoutProfile(TimeoutProfile profile) {
+        readTimeouts.putAll(profile.readTimeouts);
+        connectTimeouts.putAll(profile.connectTimeouts);
+    }
+
+    private void set(Operation operation, int readTimeout) {
+        if (readTimeout < 0)
+            throw new IllegalArgumentException("Unable to set the " + operation + " timeout to "
+                    + readTimeout);
+        readTimeouts.put(operation, readTimeout);
+    }
+
+    /**
+     * @return the read timeout (ms) of the given class of operation, 0 meaning no timeout
+     */
+    public int getReadTimeout(Operation operation) {
+        return readTimeouts.get(operation);
+    }
+
+    /**
+     * @return a copy of this profile using the given read timeout (ms) for
+     *         the given class of operation
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public TimeoutProfile with(Operation operation, int readTimeout) throws IllegalArgumentException {
+        final TimeoutProfile profile = new TimeoutProfile(this);
+        profile.set(operation, readTimeout);
+        return profile;
+    }
+
+    /**
+     * @return the connection timeout (ms) of the given class of operation, 0
+     *         meaning the one of the transport
+     */
+    public int getConnectTimeout(Operation operation) {
+        return connectTimeouts.get(operation);
+    }
+
+    /**
+     * @return a copy of this profile using the given connection timeout (ms)
+     *         for the given class of operation, 0 meaning the one of the
+     *         transport
+     * @throws IllegalArgumentException if the timeout is negative
+     */
+    public TimeoutProfile withConnectTimeout(Operation operation, int connectTimeout)
+            throws IllegalArgumentException {
+        if (connectTimeout < 0)
+            throw new IllegalArgumentException("Unable to set the " + operation
+                    + " connection timeout to " + connectTimeout);
+        final TimeoutProfile profile = new TimeoutProfile(this);
+        profile.connectTimeouts.put(operation, connectTimeout);
+        return profile;
+    }
+
+    /**
+     * @return the read timeout (ms) to use for a call of the given class,
+     *         bounded by the current {@link Deadline}
+     * @throws SocketTimeoutException if the current deadline is expired
+     */
+    int getTimeout(Operation operation) throws SocketTimeoutException {
+        return Deadline.bound(getReadTimeout(operation));
+    }
+
+    /**
+     * @param transportTimeout the connection timeout (ms) of the transport
+     * @return the connection timeout (ms) to use for a call of the given
+     *         class, bounded by the current {@link Deadline}
+     * @throws SocketTimeoutException if the current deadline is expired
+     */
+    int getConnectTimeout(Operation operation, int transportTimeout)
+            throws SocketTimeoutException {
+        final int timeout = getConnectTimeout(operation);
+        return Deadline.bound(timeout > 0 ? timeout : transportTimeout);
+    }
+
+    @Override
+    public String toString() {
+        return "TimeoutProfile[read=" + readTimeouts + ", connect=" + connectTimeouts + "]";
+    }
+}
@@ -26,6 +26,7 @@ package it.geosolutions.geoserver.rest.manager;
 
 import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.Format;
 import it.geosolutions.geoserver.rest.HTTPUtils;
+import it.geosolutions.geoserver.rest.http.HTTPTransport;
 import it.geosolutions.geoserver.rest.encoder.GSAbstractStoreEncoder;
 import it.geosolutions.geoserver.rest.encoder.datastore.GSAbstractDatastoreEncoder;
 
@@ -56,6 +57,18 @@ public class GeoServerRESTStoreManager extends GeoServerRESTAbstractManager {
         super(restURL, username, password);
     }
 
+    /**
+     * @param restURL GeoServer REST API endpoint
+     * @param username GeoServer REST API authorized username
+     * @param password GeoServer REST API password for the former username
+     * @param transport the (shared) transport used for all the REST calls
+     * @throws IllegalArgumentException
+     */
+    public GeoServerRESTStoreManager(URL restURL, String username, String password,
+            HTTPTransport transport) throws IllegalArgumentException {
+        super(restURL, username, password, transport);
+    }
+
     /**
      * Create a store.
      * 
@@ -70,7 +83,7 @@ public class GeoServerRESTStoreManager extends GeoServerRESTAbstractManager {
     public boolean create(String workspace, GSAbstractStoreEncoder store) {
         String sUrl = HTTPUtils.append(gsBaseUrl, "/rest/workspaces/", workspace, "/", store.getStoreType().toString(),".",Format.XML.toString()).toString();
         String xml = store.toString();
-        String result = HTTPUtils.postXml(sUrl, xml, gsuser, gspass);
+        String result = transport.postXml(sUrl, xml, gsuser, gspass);
         return result != null;
     }
 
@@ -87,7 +100,7 @@ public class GeoServerRESTStoreManager extends GeoServerRESTAbstractManager {
         String sUrl = HTTPUtils.append(gsBaseUrl, "/rest/workspaces/", workspace,"/", store.getStoreType().toString(),"/",
                 store.getName(),".",Format.XML.toString()).toString();
         String xml = store.toString();
-        String result = HTTPUtils.putXml(sUrl, xml, gsuser, gspass);
+        String result = transport.putXml(sUrl, xml, gsuser, gspass);
         return result != null;
     }
     
@@ -112,7 +125,7 @@ public class GeoServerRESTStoreManager extends GeoServerRESTAbstractManager {
                 url.append("?recurse=true");
             final URL deleteStore = new URL(url.toString());
 
-            boolean deleted = HTTPUtils.delete(deleteStore.toExternalForm(), gsuser, gspass);
+            boolean deleted = transport.delete(deleteStore.toExternalForm(), gsuser, gspass);
 //            if (!deleted) {
 //                LOGGER.warn("Could not delete CoverageStore " + workspace + ":" + storename);
 //            } else {
@@ -26,6 +26,7 @@ package it.geosolutions.geoserver.rest.manager;
 
 import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.UploadMethod;
 import it.geosolutions.geoserver.rest.HTTPUtils;
+import it.geosolutions.geoserver.rest.http.HTTPTransport;
 import it.geosolutions.geoserver.rest.decoder.RESTStructuredCoverageGranulesList;
 import it.geosolutions.geoserver.rest.decoder.RESTStructuredCoverageIndexSchema;
 
@@ -81,6 +82,18 @@ public class GeoServerRESTStructuredGridCoverageReaderManager extends GeoServerR
             String password) throws IllegalArgumentException {
         super(restURL, username, password);
     }
+
+    /**
+     * @param restURL GeoServer REST API endpoint
+     * @param username GeoServer REST API authorized username
+     * @param password GeoServer REST API password for the former username
+     * @param transport the (shared) transport used for all the REST calls
+     * @throws IllegalArgumentException
+     */
+    public GeoServerRESTStructuredGridCoverageReaderManager(URL restURL, String username, String password,
+            HTTPTransport transport) throws IllegalArgumentException {
+        super(restURL, username, password, transport);
+    }
     
     /**
      * Create a new ImageMosaic with the provided configuration provided as a zip file.
@@ -156,7 +169,7 @@ public class GeoServerRESTStructuredGridCoverageReaderManager extends GeoServerR
         String sUrl = ss.toString();
 
         // POST request
-        String result = HTTPUtils.put(sUrl, zipFile, "application/zip", gsuser, gspass);
+        String result = transport.put(sUrl, zipFile, "application/zip", gsuser, gspass);
         return result != null;
     }
     
@@ -184,7 +197,7 @@ public class GeoServerRESTStructuredGridCoverageReaderManager extends GeoServerR
                 coverageStore, "/", UploadMethod.EXTERNAL.toString(), ".", format).toString();
 
         // POST request
-        String result = HTTPUtils.post(sUrl, "file://" + path, "text/plain", gsuser, gspass);
+        String result = transport.post(sUrl, "file://" + path, "text/plain", gsuser, gspass);
         return result != null;
     }
 
@@ -254,7 +267,7 @@ public class GeoServerRESTStructuredGridCoverageReaderManager extends GeoServerR
         String sUrl = HTTPUtils.append(gsBaseUrl, "/rest/workspaces/", workspace, "/coveragestores",
                 "/", coverageStore, "/coverages/", coverage, "/index/granules?filter=",
                 URLEncoder.encode(filter, "UTF-8")).toString();
-        if (!HTTPUtils.delete(sUrl, gsuser, gspass)) {
+        if (!transport.delete(sUrl, gsuser, gspass)) {
             return false;
         }
 
@@ -325,7 +338,7 @@ public class GeoServerRESTStructuredGridCoverageReaderManager extends GeoServerR
         String sUrl = HTTPUtils.append(gsBaseUrl, "/rest/workspaces/", workspace, "/coveragestores",
                 "/", coverageStore, "/coverages/", coverage, "/index/granules/", granuleId)
                 .toString();
-        if (!HTTPUtils.delete(sUrl, gsuser, gspass)) {
+        if (!transport.delete(sUrl, gsuser, gspass)) {
             return false;
         }
 
@@ -374,11 +387,7 @@ public class GeoServerRESTStructuredGridCoverageReaderManager extends GeoServerR
         // create URL and then call it
         String sUrl = HTTPUtils.append(gsBaseUrl, "/rest/workspaces/", workspace, "/coveragestores/",
                 coverageStore, "/coverages/", coverage, "/index.xml").toString();
-        String result = HTTPUtils.get(sUrl, gsuser, gspass);
-        if (result != null) {
-            return RESTStructuredCoverageIndexSchema.build(result);
-        }
-        return null;
+        return transport.get(sUrl, gsuser, gspass, RESTStructuredCoverageIndexSchema::build);
     }
 
     /**
@@ -450,11 +459,7 @@ public class GeoServerRESTStructuredGridCoverageReaderManager extends GeoServerR
                     .toString();
             append = true;
         }
-        String result = HTTPUtils.get(sUrl, gsuser, gspass);
-        if (result != null) {
-            return RESTStructuredCoverageGranulesList.build(result);
-        }
-        return null;
+        return transport.get(sUrl, gsuser, gspass, RESTStructuredCoverageGranulesList::build);
     }
 
     /**
@@ -490,10 +495,6 @@ public class GeoServerRESTStructuredGridCoverageReaderManager extends GeoServerR
         // method
         String sUrl = HTTPUtils.append(gsBaseUrl, "/rest/workspaces/", workspace, "/coveragestores/",
                 coverageStore, "/coverages/", coverage, "/index/granules/", id, ".xml").toString();
-        String result = HTTPUtils.get(sUrl, gsuser, gspass);
-        if (result != null) {
-            return RESTStructuredCoverageGranulesList.build(result);
-        }
-        return null;
+        return transport.get(sUrl, gsuser, gspass, RESTStructuredCoverageGranulesList::build);
     }
 }
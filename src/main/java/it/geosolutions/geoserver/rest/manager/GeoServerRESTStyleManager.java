@@ -26,6 +26,7 @@ package it.geosolutions.geoserver.rest.manager;
 
 import it.geosolutions.geoserver.rest.GeoServerRESTPublisher;
 import it.geosolutions.geoserver.rest.HTTPUtils;
+import it.geosolutions.geoserver.rest.http.HTTPTransport;
 import it.geosolutions.geoserver.rest.Util;
 import it.geosolutions.geoserver.rest.decoder.RESTStyle;
 import it.geosolutions.geoserver.rest.decoder.RESTStyleList;
@@ -50,6 +51,11 @@ import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
 /**
+ * Reads and publishes the GeoServer styles.
+ * <P>
+ * The not found answers of the <TT>existsStyle</TT> methods can be cached
+ * using a {@link it.geosolutions.geoserver.rest.http.CachingHTTPTransport
+ * CachingHTTPTransport} shared with the publisher.
  *
  * @author ETj (etj at geo-solutions.it)
  */
@@ -69,6 +75,18 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
         super(restURL, username, password);
     }
 
+    /**
+     * @param restURL GeoServer REST API endpoint
+     * @param username GeoServer REST API authorized username
+     * @param password GeoServer REST API password for the former username
+     * @param transport the (shared) transport used for all the REST calls
+     * @throws IllegalArgumentException
+     */
+    public GeoServerRESTStyleManager(URL restURL, String username, String password,
+            HTTPTransport transport) throws IllegalArgumentException {
+        super(restURL, username, password, transport);
+    }
+
     /**
      * Check if a Style exists in the configured GeoServer instance.
      * @param name the name of the style to check for.
@@ -89,7 +107,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
    public boolean existsStyle(String name, boolean quietOnNotFound) {
        String url = buildXmlUrl(null, name);
        String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-       return HTTPUtils.exists(composed , gsuser, gspass);
+       return transport.exists(composed , gsuser, gspass);
    }
 
     /**
@@ -103,8 +121,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             LOGGER.debug("### Retrieving Styles list from " + url);
         }
 
-        String response = HTTPUtils.get(gsBaseUrl + url, gsuser, gspass);
-        return RESTStyleList.build(response);
+        return transport.get(gsBaseUrl + url, gsuser, gspass, RESTStyleList::build);
     }
 
     public RESTStyle getStyle(String name) {
@@ -113,8 +130,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             LOGGER.debug("### Retrieving Style " + name + " from " + url);
         }
 
-        String response = HTTPUtils.get(url, gsuser, gspass);
-        return RESTStyle.build(response);
+        return transport.get(url, gsuser, gspass, RESTStyle::build);
     }
 
     /**
@@ -125,7 +141,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving SLD body from " + url);
         }
-        return HTTPUtils.get( url, gsuser, gspass);
+        return transport.get( url, gsuser, gspass);
     }
 
 
@@ -148,7 +164,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
    public boolean existsStyle(String workspace, String name, boolean quietOnNotFound) {
        String url = buildXmlUrl(workspace, name);
        String composed = Util.appendQuietOnNotFound(quietOnNotFound, url);
-       return HTTPUtils.exists(composed , gsuser, gspass);
+       return transport.exists(composed , gsuser, gspass);
    }
 
     /**
@@ -163,8 +179,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             LOGGER.debug("### Retrieving Styles list from " + url);
         }
 
-        String response = HTTPUtils.get(gsBaseUrl + url, gsuser, gspass);
-        return RESTStyleList.build(response);
+        return transport.get(gsBaseUrl + url, gsuser, gspass, RESTStyleList::build);
     }
 
     /**
@@ -177,8 +192,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             LOGGER.debug("### Retrieving Style " + name + " from " + url);
         }
 
-        String response = HTTPUtils.get(url, gsuser, gspass);
-        return RESTStyle.build(response);
+        return transport.get(url, gsuser, gspass, RESTStyle::build);
     }
 
     /**
@@ -190,7 +204,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
         if (LOGGER.isDebugEnabled()) {
             LOGGER.debug("### Retrieving SLD body from " + url);
         }
-        return HTTPUtils.get(url, gsuser, gspass);
+        return transport.get(url, gsuser, gspass);
     }
 
     //=========================================================================
@@ -244,7 +258,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
 
         String sUrl = buildPostUrl(null, name);
 
-        final String result = HTTPUtils.post(sUrl, sldBody, "application/vnd.ogc.sld+xml", gsuser, gspass);
+        final String result = transport.post(sUrl, sldBody, "application/vnd.ogc.sld+xml", gsuser, gspass);
         return result != null;
     }
 
@@ -270,7 +284,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
     public boolean publishStyle(File sldFile, String name) {
         String sUrl = buildPostUrl(null, name);
         LOGGER.debug("POSTing new style " + name + " to " + sUrl);
-        String result = HTTPUtils.post(sUrl, sldFile, GeoServerRESTPublisher.Format.SLD.getContentType(), gsuser, gspass);
+        String result = transport.post(sUrl, sldFile, GeoServerRESTPublisher.Format.SLD.getContentType(), gsuser, gspass);
         return result != null;
     }
     
@@ -302,7 +316,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             contentType = GeoServerRESTPublisher.Format.SLD_1_1_0.getContentType();
         }
         LOGGER.debug("POSTing new style " + name + " to " + sUrl + " using version: " + contentType);
-        String result = HTTPUtils.post(sUrl.toString(), sldBody, contentType, gsuser, gspass);
+        String result = transport.post(sUrl.toString(), sldBody, contentType, gsuser, gspass);
         return result != null;
     }
     
@@ -330,7 +344,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             contentType = GeoServerRESTPublisher.Format.SLD_1_1_0.getContentType();
         }
         LOGGER.debug("POSTing new style " + name + " to " + sUrl + " using version: " + contentType);
-        String result = HTTPUtils.post(sUrl.toString(), sldFile, contentType, gsuser, gspass);
+        String result = transport.post(sUrl.toString(), sldFile, contentType, gsuser, gspass);
         return result != null;
     }
     
@@ -365,7 +379,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             contentType = GeoServerRESTPublisher.Format.SLD_1_1_0.getContentType();
         }
         LOGGER.debug("PUTting style " + name + " to " + sUrl + " using version: " + contentType);
-        String result = HTTPUtils.put(sUrl.toString(), sldFile, contentType, gsuser, gspass);
+        String result = transport.put(sUrl.toString(), sldFile, contentType, gsuser, gspass);
         return result != null;
     }
     
@@ -400,7 +414,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             contentType = GeoServerRESTPublisher.Format.SLD_1_1_0.getContentType();
         }
         LOGGER.debug("PUTting style " + name + " to " + sUrl + " using version: " + contentType);
-        String result = HTTPUtils.put(sUrl.toString(), sldBody, contentType, gsuser, gspass);
+        String result = transport.put(sUrl.toString(), sldBody, contentType, gsuser, gspass);
         return result != null;
     }
 
@@ -429,7 +443,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
 
         final String sUrl = buildUrl(null, name, null);
 
-        final String result = HTTPUtils.put(sUrl, sldBody, "application/vnd.ogc.sld+xml", gsuser, gspass);
+        final String result = transport.put(sUrl, sldBody, "application/vnd.ogc.sld+xml", gsuser, gspass);
         return result != null;
     }
 
@@ -453,7 +467,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
 
         final String sUrl = buildUrl(null, name, null);
 
-        final String result = HTTPUtils.put(sUrl, sldFile,
+        final String result = transport.put(sUrl, sldFile,
                 "application/vnd.ogc.sld+xml", gsuser, gspass);
         return result != null;
 
@@ -491,7 +505,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             sUrl += "?purge=true";
         }
 
-        return HTTPUtils.delete(sUrl, gsuser, gspass);
+        return transport.delete(sUrl, gsuser, gspass);
     }
 
     /**
@@ -554,7 +568,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             throw new IllegalArgumentException("The style body may not be null or empty");
         }
         String sUrl = buildPostUrl(workspace, name);
-        final String result = HTTPUtils.post(sUrl, sldBody, "application/vnd.ogc.sld+xml", gsuser, gspass);
+        final String result = transport.post(sUrl, sldBody, "application/vnd.ogc.sld+xml", gsuser, gspass);
         return result != null;
     }
 
@@ -582,7 +596,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
     public boolean publishStyleInWorkspace(final String workspace, File sldFile, String name) {
         String sUrl = buildPostUrl(workspace, name);
         LOGGER.debug("POSTing new style " + name + " to " + sUrl);
-        String result = HTTPUtils.post(sUrl, sldFile, GeoServerRESTPublisher.Format.SLD.getContentType(), gsuser, gspass);
+        String result = transport.post(sUrl, sldFile, GeoServerRESTPublisher.Format.SLD.getContentType(), gsuser, gspass);
         return result != null;
     }
 
@@ -606,7 +620,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
 
         final String sUrl = buildUrl(workspace, name, null);
 
-        final String result = HTTPUtils.put(sUrl, sldBody,
+        final String result = transport.put(sUrl, sldBody,
                 "application/vnd.ogc.sld+xml", gsuser, gspass);
         return result != null;
     }
@@ -632,7 +646,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
 
         final String sUrl = buildUrl(workspace, name, null);
 
-        final String result = HTTPUtils.put(sUrl, sldFile,
+        final String result = transport.put(sUrl, sldFile,
                 "application/vnd.ogc.sld+xml", gsuser, gspass);
         return result != null;
     }
@@ -668,7 +682,7 @@ public class GeoServerRESTStyleManager extends GeoServerRESTAbstractManager {
             sUrl += "?purge=true";
         }
 
-        return HTTPUtils.delete(sUrl, gsuser, gspass);
+        return transport.delete(sUrl, gsuser, gspass);
     }
 
     /**
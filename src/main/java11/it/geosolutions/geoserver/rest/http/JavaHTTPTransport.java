@@ -0,0 +1,697 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import it.geosolutions.geoserver.rest.http.TimeoutProfile.Operation;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandler;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.charset.Charset;
+import java.time.Duration;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.commons.io.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * {@link HTTPTransport} implementation backed by the JDK 11+
+ * {@link HttpClient java.net.http.HttpClient}.
+ * <P>
+ * HTTP/2 is negotiated when the server (or the reverse proxy in front of
+ * GeoServer) supports it, so many concurrent calls get multiplexed on a single
+ * connection; HTTP/1.1 connections are pooled by the JDK client.<BR>
+ * GET responses are requested compressed (<TT>gzip</TT> or <TT>deflate</TT>)
+ * and decoded while they are read, see {@link #getMetrics()}.<BR>
+ * Failed requests are retried according to the {@link #getRetryPolicy() retry
+ * policy}; the request timeouts depend on the class of operation (see
+ * {@link #getTimeoutProfile()}) and on the current {@link Deadline}, if any,
+ * and also bound each read of the streamed GET responses.<BR>
+ * Basic auth credentials are always sent preemptively, as GeoServer requires
+ * authentication on the REST API by default.
+ * <P>
+ * This class is only compiled when building with JDK 11 or later.
+ */
+public class JavaHTTPTransport implements HTTPTransport {
+    private static final Logger LOGGER = LoggerFactory.getLogger(JavaHTTPTransport.class);
+
+    private final HttpClient client;
+
+    private final ExecutorService executor;
+
+    /** Closes the response streams whose reads exceed the read timeout. */
+    private final ScheduledExecutorService watchdog;
+
+    private final HTTPTransportMetrics metrics = new HTTPTransportMetrics();
+
+    private volatile HTTPResponseCache responseCache;
+
+    private volatile RetryPolicy retryPolicy = new RetryPolicy();
+
+    private volatile TimeoutProfile timeoutProfile = TimeoutProfile.DEFAULT;
+
+    /**
+     * Creates a transport negotiating HTTP/2 with the default connection timeout.
+     */
+    public JavaHTTPTransport() {
+        this(HttpClient.Version.HTTP_2, DEFAULT_CONNECTION_TIMEOUT);
+    }
+
+    /**
+     * @param version the preferred HTTP version
+     * @param connectionTimeout connection timeout (ms)
+     */
+    public JavaHTTPTransport(HttpClient.Version version, int connectionTimeout) {
+        if (version == null)
+            throw new IllegalArgumentException("Unable to create the transport using a null version");
+        executor = Executors.newCachedThreadPool(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "geoserver-manager-http");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "geoserver-manager-http-watchdog");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        client = HttpClient.newBuilder().version(version)
+                .connectTimeout(Duration.ofMillis(connectionTimeout))
+                .followRedirects(HttpClient.Redirect.NEVER).executor(executor).build();
+    }
+
+    /**
+     * @return the underlying JDK client
+     */
+    protected HttpClient getClient() {
+        return client;
+    }
+
+    /**
+     * @return the traffic counters of this transport
+     */
+    public HTTPTransportMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return the policy used to retry the failed requests
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * @param retryPolicy the policy used to retry the failed requests, use
+     *        {@link RetryPolicy#NONE} to disable retries
+     * @throws IllegalArgumentException if the policy is null
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) throws IllegalArgumentException {
+        if (retryPolicy == null)
+            throw new IllegalArgumentException("Unable to use a null retry policy");
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * @return the timeouts used for each class of operation
+     */
+    public TimeoutProfile getTimeoutProfile() {
+        return timeoutProfile;
+    }
+
+    /**
+     * @param timeoutProfile the timeouts to use for each class of operation,
+     *        applied as request timeouts (time to receive the response
+     *        headers); the connection timeouts are ignored, the JDK client
+     *        has a single one
+     * @throws IllegalArgumentException if the profile is null
+     */
+    public void setTimeoutProfile(TimeoutProfile timeoutProfile) throws IllegalArgumentException {
+        if (timeoutProfile == null)
+            throw new IllegalArgumentException("Unable to use a null timeout profile");
+        this.timeoutProfile = timeoutProfile;
+    }
+
+    /**
+     * @return the cache used to revalidate GET responses, <TT>null</TT> if
+     *         responses are not cached
+     */
+    public HTTPResponseCache getResponseCache() {
+        return responseCache;
+    }
+
+    /**
+     * Enables (or disables, passing <TT>null</TT>) the conditional GET of
+     * the resources already downloaded.
+     *
+     * @param responseCache the cache to use, may be null
+     */
+    public void setResponseCache(HTTPResponseCache responseCache) {
+        this.responseCache = responseCache;
+    }
+
+    public String get(String url, String username, String pw) {
+        return get(url, username, pw, TO_STRING);
+    }
+
+    private static final HTTPResponseHandler<String> TO_STRING = body -> {
+        String response = IOUtils.toString(body);
+        if (response.trim().length() == 0) { // sometime gs rest fails
+            LOGGER.warn("ResponseBody is empty");
+            return null;
+        }
+        return response;
+    };
+
+    public <T> T get(String url, String username, String pw, HTTPResponseHandler<T> handler) {
+        try {
+            final HTTPResponseCache cache = responseCache;
+            final HTTPResponseCache.Entry cached = cache != null ? cache.lookup(url, username) : null;
+            HttpResponse<InputStream> response = execute(url,
+                    getRequest(url, username, pw, cached), BodyHandlers.ofInputStream(),
+                    Operation.METADATA_READ);
+            // the request timeout only bounds the wait for the headers
+            return handle(url, username, cache, cached, response,
+                    new TimeoutInputStream(response.body(), Operation.METADATA_READ), handler);
+        } catch (ConnectException e) {
+            LOGGER.info("Couldn't connect to [" + url + "]");
+        } catch (IOException e) {
+            LOGGER.info("Error talking to [" + url + "]", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.info("Interrupted while talking to [" + url + "]");
+        }
+        return null;
+    }
+
+    /**
+     * @return a GET request accepting a compressed response, conditional when
+     *         a cached response is given
+     */
+    private HttpRequest.Builder getRequest(String url, String username, String pw,
+            HTTPResponseCache.Entry cached) {
+        final HttpRequest.Builder builder = request(url, username, pw)
+                .header("Accept-Encoding", HTTPTransportMetrics.ACCEPT_ENCODING);
+        if (cached != null) {
+            if (cached.getETag() != null)
+                builder.header("If-None-Match", cached.getETag());
+            if (cached.getLastModified() != null)
+                builder.header("If-Modified-Since", cached.getLastModified());
+        }
+        return builder.GET();
+    }
+
+    /**
+     * Bounds each read of a streamed response body by the read timeout of its
+     * class of operation (and by the current {@link Deadline}), as the socket
+     * timeout does for {@link CommonsHTTPTransport}: a read still blocked once
+     * the timeout elapses closes the stream and fails with a
+     * {@link SocketTimeoutException}.
+     */
+    private final class TimeoutInputStream extends FilterInputStream {
+        private final Operation operation;
+
+        private volatile boolean expired;
+
+        TimeoutInputStream(InputStream in, Operation operation) {
+            super(in);
+            this.operation = operation;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final ScheduledFuture<?> timer = start();
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw expired ? timeout() : e;
+            } finally {
+                stop(timer);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            final ScheduledFuture<?> timer = start();
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                throw expired ? timeout() : e;
+            } finally {
+                stop(timer);
+            }
+        }
+
+        private ScheduledFuture<?> start() throws IOException {
+            if (expired)
+                throw timeout();
+            final int timeout = timeoutProfile.getTimeout(operation);
+            if (timeout <= 0)
+                return null;
+            return watchdog.schedule(() -> {
+                expired = true;
+                IOUtils.closeQuietly(in);
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        private void stop(ScheduledFuture<?> timer) throws IOException {
+            if (timer != null && !timer.cancel(false) && expired)
+                throw timeout();
+        }
+
+        private SocketTimeoutException timeout() {
+            return new SocketTimeoutException("Read timed out");
+        }
+    }
+
+    /**
+     * Decodes the body of a GET response, using (or updating) the cached
+     * response if any.
+     * 
+     * @return the handled response, <TT>null</TT> if the status is not 200
+     *         (or 304 for a cached response)
+     */
+    private <T> T handle(String url, String username, HTTPResponseCache cache,
+            HTTPResponseCache.Entry cached, HttpResponse<?> response, InputStream is,
+            HTTPResponseHandler<T> handler) throws IOException {
+        try {
+            final int status = response.statusCode();
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("Not modified, using the cached response -- " + url);
+                return cache.revalidated(url, username, cached, handler);
+            } else if (status == HttpURLConnection.HTTP_OK) {
+                is = metrics.decode(is,
+                        response.headers().firstValue("Content-Encoding").orElse(null));
+                if (cache == null)
+                    return handler.handleResponse(is);
+                return cache.store(url, username,
+                        response.headers().firstValue("ETag").orElse(null),
+                        response.headers().firstValue("Last-Modified").orElse(null),
+                        IOUtils.toByteArray(is), handler);
+            } else {
+                LOGGER.info("(" + status + ") -- " + url);
+                return null;
+            }
+        } finally {
+            IOUtils.closeQuietly(is);
+        }
+    }
+
+    /**
+     * Sends the request with {@link HttpClient#sendAsync}, so no thread is
+     * blocked while waiting for the response; the given executor is only used
+     * to decode the response and complete the returned future.<BR>
+     * As {@link #get(String, String, String)}, a compressed response is
+     * requested, the {@link #getResponseCache() cached} responses are
+     * revalidated and failed requests are retried according to the
+     * {@link #getRetryPolicy() retry policy}, the delays being waited without
+     * blocking any thread.
+     */
+    public CompletableFuture<String> getAsync(final String url, final String username, String pw,
+            Executor executor) {
+        final HTTPResponseCache cache = responseCache;
+        final HTTPResponseCache.Entry cached = cache != null ? cache.lookup(url, username) : null;
+        return sendAsync(getRequest(url, username, pw, cached), BodyHandlers.ofByteArray(),
+                Operation.METADATA_READ, retryPolicy, 1).handleAsync((response, error) -> {
+                    if (error != null) {
+                        final Throwable cause = error instanceof CompletionException
+                                && error.getCause() != null ? error.getCause() : error;
+                        metrics.failed(url, -1, cause);
+                        if (cause instanceof ConnectException) {
+                            LOGGER.info("Couldn't connect to [" + url + "]");
+                        } else {
+                            LOGGER.info("Error talking to [" + url + "]", cause);
+                        }
+                        return null;
+                    }
+                    record(url, response.statusCode());
+                    try {
+                        return handle(url, username, cache, cached, response,
+                                new ByteArrayInputStream(response.body()), TO_STRING);
+                    } catch (IOException e) {
+                        LOGGER.info("Error talking to [" + url + "]", e);
+                        return null;
+                    }
+                }, executor);
+    }
+
+    public String put(String url, File file, String contentType, String username, String pw) {
+        try {
+            return send("PUT", url, BodyPublishers.ofFile(file.toPath()), contentType, username, pw,
+                    Operation.BULK_UPLOAD);
+        } catch (FileNotFoundException ex) {
+            LOGGER.error("Cannot PUT " + url, ex);
+            return null;
+        }
+    }
+
+    public String put(String url, String content, String contentType, String username, String pw) {
+        return send("PUT", url, ofString(content), contentType, username, pw,
+                Operation.METADATA_WRITE);
+    }
+
+    public String putXml(String url, String content, String username, String pw) {
+        return put(url, content, "text/xml", username, pw);
+    }
+
+    public String post(String url, File file, String contentType, String username, String pw) {
+        try {
+            return send("POST", url, BodyPublishers.ofFile(file.toPath()), contentType, username, pw,
+                    Operation.BULK_UPLOAD);
+        } catch (FileNotFoundException ex) {
+            LOGGER.error("Cannot POST " + url, ex);
+            return null;
+        }
+    }
+
+    public String post(String url, String content, String contentType, String username, String pw) {
+        return send("POST", url, ofString(content), contentType, username, pw,
+                Operation.METADATA_WRITE);
+    }
+
+    public String postXml(String url, String content, String username, String pw) {
+        return post(url, content, "text/xml", username, pw);
+    }
+
+    /**
+     * Send an HTTP request (PUT or POST) to a server. <BR>
+     * Only 200, 201 and 202 are accepted as successful codes; in these cases
+     * the response string will be returned.
+     * 
+     * @return the HTTP response or <TT>null</TT> on errors.
+     */
+    private String send(String method, String url, BodyPublisher body, String contentType,
+            String username, String pw, Operation operation) {
+        try {
+            HttpRequest.Builder builder = request(url, username, pw).method(method, body);
+            if (contentType != null)
+                builder.header("Content-Type", contentType);
+            HttpResponse<String> response = execute(url, builder, BodyHandlers.ofString(), operation);
+            final int status = response.statusCode();
+            switch (status) {
+            case HttpURLConnection.HTTP_OK:
+            case HttpURLConnection.HTTP_CREATED:
+            case HttpURLConnection.HTTP_ACCEPTED:
+                if (LOGGER.isInfoEnabled())
+                    LOGGER.info("HTTP " + status + ": " + response.body());
+                return response.body();
+            default:
+                LOGGER.warn("Bad response: code[" + status + "]" + " url[" + url + "]" + " method["
+                        + method + "]: " + response.body());
+                return null;
+            }
+        } catch (ConnectException e) {
+            LOGGER.info("Couldn't connect to [" + url + "]");
+            return null;
+        } catch (IOException e) {
+            LOGGER.error("Error talking to " + url + " : " + e.getLocalizedMessage());
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("Interrupted while talking to " + url);
+            return null;
+        }
+    }
+
+    public boolean delete(String url, String username, String pw) {
+        try {
+            HttpResponse<String> response = execute(url, request(url, username, pw).DELETE(),
+                    BodyHandlers.ofString(), Operation.METADATA_WRITE);
+            if (response.statusCode() == HttpURLConnection.HTTP_OK) {
+                if (LOGGER.isDebugEnabled())
+                    LOGGER.debug("(" + response.statusCode() + ") -- " + url);
+                return true;
+            } else {
+                LOGGER.info("(" + response.statusCode() + ") -- " + url);
+                LOGGER.info("Response: '" + response.body() + "'");
+            }
+        } catch (ConnectException e) {
+            LOGGER.info("Couldn't connect to [" + url + "]");
+        } catch (IOException e) {
+            LOGGER.info("Error talking to [" + url + "]", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.info("Interrupted while talking to [" + url + "]");
+        }
+        return false;
+    }
+
+    public boolean httpPing(String url, String username, String pw) {
+        try {
+            HttpResponse<Void> response = execute(url, request(url, username, pw).GET(),
+                    BodyHandlers.discarding(), Operation.PING, RetryPolicy.NONE);
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                LOGGER.warn("PING failed at '" + url + "': (" + response.statusCode() + ")");
+                return false;
+            } else {
+                return true;
+            }
+        } catch (ConnectException e) {
+            return false;
+        } catch (IOException e) {
+            LOGGER.error(e.getLocalizedMessage(), e);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Sends a HEAD request, falling back to GET only when the server does not
+     * support HEAD on the given resource (405 or 501).
+     */
+    public boolean exists(String url, String username, String pw) {
+        int status = probe("HEAD", url, username, pw);
+        if (status == HttpURLConnection.HTTP_BAD_METHOD || status == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+            if (LOGGER.isDebugEnabled())
+                LOGGER.debug("HEAD not supported at '" + url + "', falling back to GET");
+            status = probe("GET", url, username, pw);
+        }
+        switch (status) {
+        case HttpURLConnection.HTTP_OK:
+            return true;
+        case HttpURLConnection.HTTP_NOT_FOUND:
+            return false;
+        default:
+            throw new RuntimeException("Unhandled response status at '" + url + "': (" + status + ")");
+        }
+    }
+
+    private int probe(String method, String url, String username, String pw) {
+        try {
+            return execute(url, request(url, username, pw).method(method, BodyPublishers.noBody()),
+                    BodyHandlers.discarding(), Operation.PING).statusCode();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Sends the request with the timeout of the given class of operation,
+     * retrying it as allowed by the current {@link RetryPolicy}.
+     */
+    private <T> HttpResponse<T> execute(String url, HttpRequest.Builder builder,
+            BodyHandler<T> bodyHandler, Operation operation) throws IOException, InterruptedException {
+        return execute(url, builder, bodyHandler, operation, retryPolicy);
+    }
+
+    private <T> HttpResponse<T> execute(String url, HttpRequest.Builder builder,
+            BodyHandler<T> bodyHandler, Operation operation, RetryPolicy policy)
+            throws IOException, InterruptedException {
+        final HttpResponse<T> response;
+        try {
+            response = retry(builder, bodyHandler, operation, policy);
+        } catch (IOException e) {
+            metrics.failed(url, -1, e);
+            throw e;
+        }
+        record(url, response.statusCode());
+        return response;
+    }
+
+    private void record(String url, int status) {
+        if (status >= HttpURLConnection.HTTP_INTERNAL_ERROR) {
+            metrics.failed(url, status, null);
+        } else {
+            metrics.succeeded(url);
+        }
+    }
+
+    private <T> HttpResponse<T> retry(HttpRequest.Builder builder, BodyHandler<T> bodyHandler,
+            Operation operation, RetryPolicy policy) throws IOException, InterruptedException {
+        final TimeoutProfile profile = timeoutProfile;
+        for (int attempt = 1;; attempt++) {
+            // the deadline (if any) shrinks at each attempt
+            final int timeout = profile.getTimeout(operation);
+            if (timeout > 0)
+                builder.timeout(Duration.ofMillis(timeout));
+            final HttpRequest request = builder.build();
+            final HttpResponse<T> response;
+            try {
+                response = client.send(request, bodyHandler);
+            } catch (IOException e) {
+                if (!policy.canRetry(request.method(), attempt))
+                    throw e;
+                backoff(policy.getDelay(attempt, null), attempt, request, e.getLocalizedMessage());
+                continue;
+            }
+            final int status = response.statusCode();
+            if (!policy.isRetryable(status) || !policy.canRetry(request.method(), attempt))
+                return response;
+            final long delay = policy.getDelay(attempt,
+                    response.headers().firstValue("Retry-After").orElse(null));
+            if (delay < 0)
+                return response;
+            if (response.body() instanceof InputStream)
+                IOUtils.closeQuietly((InputStream) response.body());
+            backoff(delay, attempt, request, "(" + status + ")");
+        }
+    }
+
+    /**
+     * Asynchronous version of {@link #retry}: each attempt is sent with
+     * {@link HttpClient#sendAsync} and the next one is scheduled on the
+     * client executor once the delay has elapsed.
+     */
+    private <T> CompletableFuture<HttpResponse<T>> sendAsync(final HttpRequest.Builder builder,
+            final BodyHandler<T> bodyHandler, final Operation operation, final RetryPolicy policy,
+            final int attempt) {
+        try {
+            // the deadline (if any) only bounds the attempts sent by its thread
+            final int timeout = timeoutProfile.getTimeout(operation);
+            if (timeout > 0)
+                builder.timeout(Duration.ofMillis(timeout));
+        } catch (SocketTimeoutException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        final HttpRequest request = builder.build();
+        return client.sendAsync(request, bodyHandler).handle((response, error) -> {
+            final long delay;
+            final String cause;
+            if (error != null) {
+                final Throwable failure = error instanceof CompletionException
+                        && error.getCause() != null ? error.getCause() : error;
+                if (!(failure instanceof IOException) || !policy.canRetry(request.method(), attempt))
+                    return CompletableFuture.<HttpResponse<T>> failedFuture(failure);
+                delay = policy.getDelay(attempt, null);
+                cause = failure.getLocalizedMessage();
+            } else {
+                final int status = response.statusCode();
+                if (!policy.isRetryable(status) || !policy.canRetry(request.method(), attempt))
+                    return CompletableFuture.completedFuture(response);
+                delay = policy.getDelay(attempt,
+                        response.headers().firstValue("Retry-After").orElse(null));
+                if (delay < 0)
+                    return CompletableFuture.completedFuture(response);
+                cause = "(" + status + ")";
+            }
+            if (LOGGER.isInfoEnabled())
+                LOGGER.info("Attempt " + attempt + " failed at '" + request.uri() + "': " + cause
+                        + ", retrying in " + delay + "ms");
+            final Executor delayed = CompletableFuture.delayedExecutor(delay,
+                    TimeUnit.MILLISECONDS, executor);
+            return CompletableFuture.runAsync(metrics::retried, delayed).thenCompose(
+                    v -> sendAsync(builder, bodyHandler, operation, policy, attempt + 1));
+        }).thenCompose(Function.identity());
+    }
+
+    private void backoff(long delay, int attempt, HttpRequest request, String cause)
+            throws IOException, InterruptedException {
+        Deadline.checkDelay(delay);
+        if (LOGGER.isInfoEnabled())
+            LOGGER.info("Attempt " + attempt + " failed at '" + request.uri() + "': " + cause
+                    + ", retrying in " + delay + "ms");
+        Thread.sleep(delay);
+        metrics.retried();
+    }
+
+    /**
+     * Stops the threads used by the client; idle connections are released
+     * by the JDK once the client is no longer referenced.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        watchdog.shutdownNow();
+    }
+
+    /**
+     * @return a request builder for the given URL, carrying the (optional)
+     *         preemptive basic auth header
+     */
+    protected HttpRequest.Builder request(String url, String username, String pw) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url));
+        if (username != null && pw != null) {
+            final String token = Base64.getEncoder().encodeToString(
+                    (username + ":" + pw).getBytes(Charset.forName("UTF-8")));
+            builder.header("Authorization", "Basic " + token);
+        } else {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Not setting credentials to access to " + url);
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * Same encoding used by commons-httpclient when no charset is given.
+     */
+    private static BodyPublisher ofString(String content) {
+        return BodyPublishers.ofByteArray(content.getBytes());
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import it.geosolutions.geoserver.rest.ChangePlan.Change;
+import it.geosolutions.geoserver.rest.ChangePlanExecutor.Report;
+import it.geosolutions.geoserver.rest.ChangePlanExecutor.Status;
+import it.geosolutions.geoserver.rest.encoder.GSLayerEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSLayerGroupEncoder;
+import it.geosolutions.geoserver.rest.encoder.GSLayerGroupEncoder23;
+import it.geosolutions.geoserver.rest.encoder.GSWorkspaceEncoder;
+import it.geosolutions.geoserver.rest.encoder.datastore.GSShapefileDatastoreEncoder;
+import it.geosolutions.geoserver.rest.encoder.feature.GSFeatureTypeEncoder;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTestServer;
+import it.geosolutions.geoserver.rest.http.RetryPolicy;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see ChangePlanExecutor
+ */
+public class ChangePlanExecutorTest {
+
+    private HTTPTestServer server;
+
+    private CommonsHTTPTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CommonsHTTPTransport(8, 8, 1000, 0, true);
+        transport.setRetryPolicy(RetryPolicy.NONE);
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>2.8.1</Version></resource></about>");
+        server.bind("/rest/workspaces", "ws");
+        server.bind("/rest/workspaces/ws/datastores.xml", "ds");
+        server.bind("/rest/workspaces/ws/datastores/ds/featuretypes.xml", "ft");
+        server.bind("/rest/layers/ws:roads", "");
+        // ws:rivers is not bound: fails
+        server.bind("/rest/workspaces/ws/layergroups/", "group");
+        server.bind("/rest/layergroups/", "group");
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    private static GSFeatureTypeEncoder featureType(String name) {
+        final GSFeatureTypeEncoder fte = new GSFeatureTypeEncoder();
+        fte.setName(name);
+        return fte;
+    }
+
+    private static GSLayerEncoder layer() {
+        final GSLayerEncoder layer = new GSLayerEncoder();
+        layer.setEnabled(true);
+        return layer;
+    }
+
+    @Test
+    public void testExecute() throws Exception {
+        final ChangePlan plan = new ChangePlan();
+        // added in reverse order: sorted by the dependencies
+        // layer groups depend on their members
+        final GSLayerGroupEncoder all = new GSLayerGroupEncoder();
+        all.addLayer("roads");
+        all.addLayer("ws:rivers");
+        final Change group = plan.layerGroup("ws", "all", all);
+        final GSLayerGroupEncoder roadsOnly = new GSLayerGroupEncoder23();
+        roadsOnly.addLayer("ws:roads");
+        final Change global = plan.layerGroup(null, "roads", roadsOnly);
+        final Change roads = plan.layer("ws", "roads", layer());
+        final Change rivers = plan.layer("ws", "rivers", layer());
+        assertEquals(new HashSet<Change>(Arrays.asList(roads, rivers)), plan.getDependencies(group));
+        assertEquals(Collections.singleton(roads), plan.getDependencies(global));
+        final Change roadsType = plan.resource("ws", "ds", featureType("roads"));
+        final Change riversType = plan.resource("ws", "ds", featureType("rivers"));
+        final Change store = plan.store("ws", new GSShapefileDatastoreEncoder("ds", new URL(
+                "file:data/roads.shp")));
+        final Change ws = plan.workspace(new GSWorkspaceEncoder("ws"));
+
+        final List<List<Change>> levels = ChangePlanExecutor.sort(plan);
+        assertEquals(5, levels.size());
+        assertEquals(Arrays.asList(ws), levels.get(0));
+        assertEquals(Arrays.asList(store), levels.get(1));
+        assertEquals(Arrays.asList(roadsType, riversType), levels.get(2));
+        assertEquals(Arrays.asList(roads, rivers), levels.get(3));
+        assertEquals(Arrays.asList(group, global), levels.get(4));
+
+        final GeoServerRESTManager manager = new GeoServerRESTManager(new URL(server.getURL()),
+                "admin", "geoserver", transport);
+        final Report report = new ChangePlanExecutor(manager, 4).execute(plan);
+        assertFalse(report.isSuccessful());
+        assertEquals(Status.APPLIED, report.getStatus(roads));
+        assertEquals(Status.FAILED, report.getStatus(rivers));
+        // only the dependents of the failed change are skipped
+        assertEquals(Status.SKIPPED, report.getStatus(group));
+        assertEquals(Status.APPLIED, report.getStatus(global));
+        assertEquals(6, report.getChanges(Status.APPLIED).size());
+        assertFalse(server.getRequests().contains("POST /rest/workspaces/ws/layergroups/"));
+        assertTrue(server.getRequests().contains("POST /rest/layergroups/"));
+    }
+
+    @Test
+    public void testResourceMember() {
+        final ChangePlan plan = new ChangePlan();
+        final GSLayerGroupEncoder all = new GSLayerGroupEncoder();
+        all.addLayer("roads");
+        all.addLayer("ws:rivers");
+        final Change group = plan.layerGroup("ws", "all", all);
+        // no layer change: the layers are created along with the resources
+        final Change roadsType = plan.resource("ws", "ds", featureType("roads"));
+        final Change riversType = plan.resource("ws", "ds", featureType("rivers"));
+        final Change rivers = plan.layer("ws", "rivers", layer());
+        plan.resource("other", "ds", featureType("roads"));
+        assertEquals(new HashSet<Change>(Arrays.asList(roadsType, rivers)),
+                plan.getDependencies(group));
+
+        final List<List<Change>> levels = ChangePlanExecutor.sort(plan);
+        assertEquals(3, levels.size());
+        assertEquals(Arrays.asList(group), levels.get(2));
+        assertTrue(levels.get(0).contains(roadsType));
+        assertTrue(levels.get(0).contains(riversType));
+    }
+
+    @Test
+    public void testCycle() {
+        final ChangePlan plan = new ChangePlan();
+        final Change a = plan.layerGroup(null, "a", new GSLayerGroupEncoder());
+        final Change b = plan.layerGroup(null, "b", new GSLayerGroupEncoder());
+        final Change c = plan.layerGroup(null, "c", new GSLayerGroupEncoder());
+        a.dependsOn(b);
+        b.dependsOn(a);
+        try {
+            ChangePlanExecutor.sort(plan);
+            fail();
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("GROUP a"));
+            assertFalse(e.getMessage().contains("GROUP c"));
+        }
+        assertEquals(3, plan.size());
+        assertEquals(0, c.getDependencies().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicate() {
+        final ChangePlan plan = new ChangePlan();
+        plan.workspace(new GSWorkspaceEncoder("ws"));
+        plan.workspace(new GSWorkspaceEncoder("ws"));
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.decoder.about.GSVersionDecoder;
+import it.geosolutions.geoserver.rest.encoder.GSLayerEncoder21;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTestServer;
+import it.geosolutions.geoserver.rest.http.RetryPolicy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Collections;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see GeoServerCapabilities
+ */
+public class GeoServerCapabilitiesTest {
+
+    private HTTPTestServer server;
+
+    private CommonsHTTPTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CommonsHTTPTransport();
+        transport.setRetryPolicy(RetryPolicy.NONE);
+        InputStream is = getClass().getResourceAsStream("/testdata/layerExample.xml");
+        server.bind("/rest/layers/topp:tasmania_cities.xml", IOUtils.toString(is));
+        is.close();
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testFetchedOnce() throws Exception {
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>2.8.1</Version></resource></about>");
+        GeoServerRESTManager manager = new GeoServerRESTManager(new URL(server.getURL()), "admin",
+                "geoserver", transport);
+        GeoServerRESTReader reader = manager.getReader();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("tasmania_cities", reader.getLayer("topp", "tasmania_cities").getName());
+        }
+        assertEquals(GSVersionDecoder.VERSION.v28, reader.getGeoserverVersion().getVersion());
+        assertFalse(manager.getPublisher().getCapabilities().isLayer21());
+        assertSame(reader.getCapabilities(), manager.getPublisher().getCapabilities());
+        assertEquals(1, Collections.frequency(server.getRequests(), "GET /rest/about/version.xml"));
+        assertEquals(4, server.getRequestCount());
+
+        reader.refreshCapabilities();
+        reader.getCapabilities();
+        assertEquals(2, Collections.frequency(server.getRequests(), "GET /rest/about/version.xml"));
+    }
+
+    @Test
+    public void testGeoServer21() throws Exception {
+        GeoServerRESTReader reader = new GeoServerRESTReader(new URL(server.getURL()), "admin",
+                "geoserver", transport);
+        assertTrue(reader.getCapabilities().isLayer21());
+        assertTrue(reader.getCapabilities().createLayerEncoder() instanceof GSLayerEncoder21);
+        assertEquals(GSVersionDecoder.VERSION.UNRECOGNIZED, reader.getGeoserverVersion().getVersion());
+        assertEquals("tasmania_cities", reader.getLayer("topp", "tasmania_cities").getName());
+        // kept, as any other version
+        assertEquals(1, Collections.frequency(server.getRequests(), "GET /rest/about/version.xml"));
+
+        // i.e. after an upgrade
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>2.8.1</Version></resource></about>");
+        assertTrue(reader.getCapabilities().isLayer21());
+        reader.refreshCapabilities();
+        for (int i = 0; i < 2; i++) {
+            assertFalse(reader.getCapabilities().isLayer21());
+        }
+        assertEquals(2, Collections.frequency(server.getRequests(), "GET /rest/about/version.xml"));
+    }
+
+    @Test
+    public void testUnrecognizedVersion() throws Exception {
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>3.0.1</Version>"
+                        + "<Git-Revision>abc</Git-Revision></resource></about>");
+        GeoServerRESTReader reader = new GeoServerRESTReader(new URL(server.getURL()), "admin",
+                "geoserver", transport);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(GSVersionDecoder.VERSION.UNRECOGNIZED, reader.getCapabilities().getVersion());
+        }
+        assertEquals(1, Collections.frequency(server.getRequests(), "GET /rest/about/version.xml"));
+        // the whole about document
+        GSVersionDecoder decoder = reader.getGeoserverVersion();
+        assertEquals("GeoServer", decoder.getGeoServer().getName());
+        assertEquals("abc", decoder.getGeoServer().getRoot().getChildText("Git-Revision"));
+    }
+
+    @Test
+    public void testExpired() throws Exception {
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>2.8.1</Version></resource></about>");
+        GeoServerRESTAsyncReader reader = new GeoServerRESTAsyncReader(new URL(server.getURL()),
+                "admin", "geoserver", transport, ForkJoinPool.commonPool(), 4);
+        assertFalse(reader.getCapabilities().get().isLayer21());
+        assertSame(reader.getCapabilities().get(), reader.getCapabilities().get());
+        reader.setCapabilitiesTTL(1);
+        Thread.sleep(10);
+        reader.getCapabilities().get();
+        assertEquals(2, Collections.frequency(server.getRequests(), "GET /rest/about/version.xml"));
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import it.geosolutions.geoserver.rest.decoder.RESTCoverage;
+import it.geosolutions.geoserver.rest.decoder.RESTLayer;
+import it.geosolutions.geoserver.rest.decoder.RESTStyleList;
+import it.geosolutions.geoserver.rest.decoder.about.GSVersionDecoder;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTestServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * @see GeoServerRESTAsyncReader
+ */
+public class GeoServerRESTAsyncReaderTest {
+
+    private HTTPTestServer server;
+
+    private CommonsHTTPTransport transport;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CommonsHTTPTransport();
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testInFlightCap() throws Exception {
+        InputStream is = getClass().getResourceAsStream("/testdata/layerExample.xml");
+        final String layer = IOUtils.toString(is);
+        is.close();
+
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>2.8.1</Version></resource></about>");
+        server.bind("/rest/layers/topp:tasmania_cities.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                final int now = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), now));
+                }
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                HTTPTestServer.send(exchange, 200, layer);
+            }
+        });
+
+        GeoServerRESTAsyncReader reader = new GeoServerRESTAsyncReader(new URL(server.getURL()),
+                "admin", "geoserver", transport, executor, 2);
+        List<CompletableFuture<RESTLayer>> layers = new ArrayList<CompletableFuture<RESTLayer>>();
+        for (int i = 0; i < 12; i++) {
+            layers.add(reader.getLayer("topp", "tasmania_cities"));
+        }
+        for (CompletableFuture<RESTLayer> future : layers) {
+            assertEquals("tasmania_cities", future.get().getName());
+        }
+        assertTrue(maxRunning.get() <= 2);
+        assertEquals(0, reader.getPendingCount());
+    }
+
+    @Test
+    public void testNotFound() throws Exception {
+        GeoServerRESTAsyncReader reader = new GeoServerRESTAsyncReader(new URL(server.getURL()),
+                "admin", "geoserver", transport, executor, 4);
+        assertNull(reader.getCoverage("ws", "store", "missing").get());
+        RESTStyleList styles = reader.getStyles().get();
+        assertNull(styles);
+    }
+
+    @Test
+    public void testVersionFromCapabilities() throws Exception {
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>2.8.1</Version></resource></about>");
+        GeoServerRESTAsyncReader reader = new GeoServerRESTAsyncReader(new URL(server.getURL()),
+                "admin", "geoserver", transport, executor, 4);
+        assertEquals(GSVersionDecoder.VERSION.v28, reader.getCapabilities().get().getVersion());
+        assertEquals(GSVersionDecoder.VERSION.v28, reader.getGeoserverVersion().get().getVersion());
+        // negotiated once
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void testCoverageOfVectorLayer() throws Exception {
+        InputStream is = getClass().getResourceAsStream("/testdata/layerExample.xml");
+        final RESTLayer layer = RESTLayer.build(IOUtils.toString(is));
+        is.close();
+        GeoServerRESTAsyncReader reader = new GeoServerRESTAsyncReader(new URL(server.getURL()),
+                "admin", "geoserver", transport, executor, 4);
+        // not thrown: the future fails
+        final CompletableFuture<RESTCoverage> coverage = reader.getCoverage(layer);
+        assertTrue(coverage.isCompletedExceptionally());
+        try {
+            coverage.get();
+            fail("Not a raster layer");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getMessage().startsWith("Bad layer type"));
+        }
+        assertEquals(0, server.getRequestCount());
+    }
+}
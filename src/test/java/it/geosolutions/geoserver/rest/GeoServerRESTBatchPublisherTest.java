@@ -0,0 +1,169 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.GeoServerRESTBatchPublisher.Report;
+import it.geosolutions.geoserver.rest.GeoServerRESTBatchPublisher.Result;
+import it.geosolutions.geoserver.rest.GeoServerRESTBatchPublisher.Stage;
+import it.geosolutions.geoserver.rest.GeoServerRESTBatchPublisher.StageStatistics;
+import it.geosolutions.geoserver.rest.encoder.feature.GSFeatureTypeEncoder;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTestServer;
+import it.geosolutions.geoserver.rest.http.RetryPolicy;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * @see GeoServerRESTBatchPublisher
+ */
+public class GeoServerRESTBatchPublisherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HTTPTestServer server;
+
+    private CommonsHTTPTransport transport;
+
+    private final AtomicInteger uploading = new AtomicInteger();
+
+    private final AtomicInteger maxUploading = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CommonsHTTPTransport(16, 16, 1000, 0, true);
+        transport.setRetryPolicy(RetryPolicy.NONE);
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>2.8.1</Version></resource></about>");
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    private void bindShapefile(String store, String layer) {
+        server.bind("/rest/workspaces/ws/datastores/" + store + "/file.shp",
+                new HTTPTestServer.Response() {
+                    public void handle(HttpExchange exchange, byte[] requestBody)
+                            throws IOException {
+                        final int n = uploading.incrementAndGet();
+                        synchronized (maxUploading) {
+                            maxUploading.set(Math.max(maxUploading.get(), n));
+                        }
+                        try {
+                            Thread.sleep(20);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        uploading.decrementAndGet();
+                        HTTPTestServer.send(exchange, 201, "");
+                    }
+                });
+        server.bind("/rest/workspaces/ws/datastores/" + store + "/featuretypes.xml", layer);
+        server.bind("/rest/layers/ws:" + layer, "");
+    }
+
+    @Test
+    public void testPublish() throws Exception {
+        final File zip = folder.newFile("data.zip");
+        final List<PublishJob> jobs = new ArrayList<PublishJob>();
+        for (int i = 0; i < 12; i++) {
+            bindShapefile("s" + i, "l" + i);
+            jobs.add(PublishJob.shapefile("ws", "s" + i, "l" + i, zip, "EPSG:4326", "point"));
+        }
+        // no layer bound: fails at the last stage
+        server.bind("/rest/workspaces/ws/datastores/s12/file.shp", "");
+        server.bind("/rest/workspaces/ws/datastores/s12/featuretypes.xml", "l12");
+        jobs.add(PublishJob.shapefile("ws", "s12", "l12", zip, "EPSG:4326", null));
+        // a table of an existing store: no upload
+        final GSFeatureTypeEncoder fte = new GSFeatureTypeEncoder();
+        fte.setName("table");
+        server.bind("/rest/workspaces/ws/datastores/db/featuretypes.xml", "table");
+        server.bind("/rest/layers/ws:table", "");
+        jobs.add(PublishJob.dbLayer("ws", "db", fte, null));
+        // missing file: fails at the first stage
+        jobs.add(PublishJob.shapefile("ws", "s14", "l14", new File(folder.getRoot(), "missing.zip"),
+                "EPSG:4326", null));
+
+        final GeoServerRESTPublisher publisher = new GeoServerRESTPublisher(server.getURL(),
+                "admin", "geoserver", transport);
+        final Report report = new GeoServerRESTBatchPublisher(publisher, 2, 3, 3, 1)
+                .publish(jobs);
+
+        assertEquals(jobs.size(), report.getResults().size());
+        assertEquals(13, report.getPublishedCount());
+        for (int i = 0; i < jobs.size(); i++) {
+            assertSame(jobs.get(i), report.getResults().get(i).getJob());
+        }
+        final Result layerFailure = report.getResults().get(12);
+        assertEquals(Stage.LAYER, layerFailure.getFailedStage());
+        assertNull(layerFailure.getError());
+        final Result storeFailure = report.getResults().get(14);
+        assertEquals(Stage.STORE, storeFailure.getFailedStage());
+        assertTrue(storeFailure.getError() instanceof FileNotFoundException);
+        assertEquals(2, report.getFailures().size());
+
+        // the db job skips the store stage, the failed upload the others
+        final StageStatistics store = report.getStatistics(Stage.STORE);
+        assertEquals(14, store.getCount());
+        assertEquals(1, store.getFailures());
+        assertEquals(14, report.getStatistics(Stage.RESOURCE).getCount());
+        assertEquals(14, report.getStatistics(Stage.LAYER).getCount());
+        assertEquals(1, report.getStatistics(Stage.LAYER).getFailures());
+        assertTrue(store.getMeanLatency() >= 10);
+        assertTrue(store.getMaxLatency() >= store.getMeanLatency());
+        assertTrue(store.getThroughput() > 0);
+        // at most 2 concurrent uploads
+        assertTrue(maxUploading.get() <= 2);
+        assertEquals(2, maxUploading.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidThreads() {
+        new GeoServerRESTBatchPublisher(new GeoServerRESTPublisher(server.getURL(), "admin",
+                "geoserver", transport), 0, 1, 1, 1);
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.StoreType;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTestServer;
+import it.geosolutions.geoserver.rest.http.RetryPolicy;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see ReloadScope
+ */
+public class ReloadScopeTest {
+
+    private HTTPTestServer server;
+
+    private CommonsHTTPTransport transport;
+
+    private GeoServerRESTPublisher publisher;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CommonsHTTPTransport(4, 4, 1000, 0, true);
+        transport.setRetryPolicy(RetryPolicy.NONE);
+        for (String store : Arrays.asList("a", "b", "c")) {
+            server.bind("/rest/workspaces/ws/datastores/" + store + ".xml", "<dataStore><name>"
+                    + store + "</name><featureTypes>ft</featureTypes></dataStore>");
+        }
+        server.bind("/rest/reload", "");
+        publisher = new GeoServerRESTPublisher(server.getURL(), "admin", "geoserver", transport);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    private static List<String> sorted(List<String> requests) {
+        Collections.sort(requests);
+        return requests;
+    }
+
+    @Test
+    public void testStoreReloads() throws Exception {
+        final ReloadScope scope = publisher.deferReloads();
+        try {
+            for (int i = 0; i < 3; i++) {
+                assertTrue(publisher.reloadStore("ws", "a", StoreType.DATASTORES));
+            }
+            assertTrue(publisher.reloadStore("ws", "b", StoreType.DATASTORES));
+            assertTrue(publisher.reloadStore("ws", "missing", StoreType.DATASTORES));
+            assertEquals(0, server.getRequestCount());
+            assertEquals(5, scope.getRequestCount());
+            assertEquals(3, scope.getStores().size());
+        } finally {
+            scope.close();
+        }
+        assertEquals(Arrays.asList("GET /rest/workspaces/ws/datastores/a.xml",
+                "GET /rest/workspaces/ws/datastores/b.xml",
+                "GET /rest/workspaces/ws/datastores/missing.xml",
+                "PUT /rest/workspaces/ws/datastores/a.xml",
+                "PUT /rest/workspaces/ws/datastores/b.xml"), sorted(server.getRequests()));
+        assertEquals(1, scope.getFailures().size());
+        assertEquals("missing", scope.getFailures().get(0).getName());
+
+        // no longer deferred
+        assertTrue(publisher.reloadStore("ws", "a", StoreType.DATASTORES));
+        assertEquals(7, server.getRequestCount());
+    }
+
+    @Test
+    public void testGlobalReload() throws Exception {
+        try (ReloadScope scope = publisher.deferReloads()) {
+            scope.setGlobalThreshold(3);
+            for (String store : Arrays.asList("a", "b", "c", "a")) {
+                publisher.reloadStore("ws", store, StoreType.DATASTORES);
+            }
+        }
+        assertEquals(Arrays.asList("POST /rest/reload"), server.getRequests());
+
+        try (ReloadScope scope = publisher.deferReloads()) {
+            publisher.reloadStore("ws", "a", StoreType.DATASTORES);
+            assertTrue(publisher.reload());
+            assertTrue(scope.isGlobal());
+        }
+        assertEquals(Arrays.asList("POST /rest/reload", "POST /rest/reload"),
+                server.getRequests());
+    }
+
+    @Test
+    public void testNested() throws Exception {
+        final ReloadScope outer = publisher.deferReloads();
+        try (ReloadScope inner = publisher.deferReloads()) {
+            publisher.reloadStore("ws", "a", StoreType.DATASTORES);
+        }
+        publisher.reloadStore("ws", "a", StoreType.DATASTORES);
+        assertEquals(0, server.getRequestCount());
+        assertEquals(2, outer.getRequestCount());
+        outer.close();
+        assertEquals(2, server.getRequestCount());
+        assertTrue(outer.isSuccessful());
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.encoder.GSResourceEncoder.ProjectionPolicy;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTestServer;
+import it.geosolutions.geoserver.rest.http.RetryPolicy;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * @see UploadLedger
+ */
+public class UploadLedgerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private HTTPTestServer server;
+
+    private CommonsHTTPTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CommonsHTTPTransport(4, 4, 1000, 0, true);
+        transport.setRetryPolicy(RetryPolicy.NONE);
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>2.8.1</Version></resource></about>");
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    private File randomFile(String name, int size, long seed) throws IOException {
+        final byte[] bytes = new byte[size];
+        new Random(seed).nextBytes(bytes);
+        final File file = folder.newFile(name);
+        FileUtils.writeByteArrayToFile(file, bytes);
+        return file;
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        final UploadLedger ledger = new UploadLedger(folder.newFile("ledger.txt"), executor, 1000);
+        final File a = randomFile("a.bin", 10500, 1);
+        final File b = randomFile("b.bin", 10500, 1);
+        final File c = randomFile("c.bin", 10500, 2);
+        assertEquals(ledger.digest(a), ledger.digest(b));
+        assertFalse(ledger.digest(a).equals(ledger.digest(c)));
+        assertEquals(64, ledger.digest(a).length());
+        assertEquals(64, ledger.digest(folder.newFile("empty.bin")).length());
+        // chunked: not the plain SHA-256 of the file, and depends on the chunk size
+        final UploadLedger single = new UploadLedger(new File(folder.getRoot(), "single.txt"),
+                executor, 1 << 20);
+        assertFalse(ledger.digest(a).equals(single.digest(a)));
+        executor.shutdown();
+    }
+
+    @Test
+    public void testPersistence() throws Exception {
+        final File file = new File(folder.getRoot(), "ledger.txt");
+        UploadLedger ledger = new UploadLedger(file);
+        ledger.record("http://gs/rest/workspaces/ws/datastores/a/file.shp", "01");
+        ledger.record("http://gs/rest/workspaces/ws/datastores/ab/file.shp", "02");
+        ledger.record("http://gs/rest/workspaces/other/datastores/a/file.shp", "03");
+
+        ledger = new UploadLedger(file);
+        assertEquals(3, ledger.size());
+        assertTrue(ledger.contains("http://gs/rest/workspaces/ws/datastores/a/file.shp", "01"));
+        assertFalse(ledger.contains("http://gs/rest/workspaces/ws/datastores/a/file.shp", "02"));
+        assertEquals(1, ledger.forget("http://gs/rest/workspaces/ws/datastores/a/"));
+        assertEquals(2, new UploadLedger(file).size());
+
+        // saved with another chunk size: ignored
+        assertEquals(0, new UploadLedger(file, ForkJoinPool.commonPool(), 1024).size());
+    }
+
+    @Test
+    public void testRepublish() throws Exception {
+        final String store = "/rest/workspaces/ws/coveragestores/cs";
+        server.bind(store + "/file.geotiff", "");
+        server.bind(store + "/coverages.xml", "");
+        server.bind("/rest/layers/ws:dem", "");
+        final GeoServerRESTPublisher publisher = new GeoServerRESTPublisher(server.getURL(),
+                "admin", "geoserver", transport);
+        final UploadLedger ledger = new UploadLedger(new File(folder.getRoot(), "ledger.txt"));
+        publisher.setUploadLedger(ledger);
+        final File tiff = randomFile("dem.tif", 5000, 3);
+
+        assertTrue(publisher.publishGeoTIFF("ws", "cs", "dem", tiff, "EPSG:4326",
+                ProjectionPolicy.NONE, "raster", null));
+        assertEquals(Arrays.asList("PUT " + store + "/file.geotiff",
+                "POST " + store + "/coverages.xml", "GET /rest/about/version.xml",
+                "PUT /rest/layers/ws:dem"), server.getRequests());
+        assertEquals(1, ledger.size());
+
+        // unchanged: only the metadata are sent again
+        final AtomicBoolean exists = new AtomicBoolean(true);
+        server.bind(store + ".xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                HTTPTestServer.send(exchange, exists.get() ? 200 : 404, "<coverageStore/>");
+            }
+        });
+        server.bind(store + "/coverages/dem.xml", "<coverage><name>dem</name></coverage>");
+        assertTrue(publisher.publishGeoTIFF("ws", "cs", "dem", tiff, "EPSG:4326",
+                ProjectionPolicy.NONE, "raster", null));
+        assertEquals(Arrays.asList("HEAD " + store + ".xml",
+                "HEAD " + store + "/coverages/dem.xml", "PUT " + store + "/coverages/dem.xml",
+                "PUT /rest/layers/ws:dem"), server.getRequests().subList(4, 8));
+        assertEquals(1, Collections.frequency(server.getRequests(), "PUT " + store
+                + "/file.geotiff"));
+
+        // the coverage can't be checked: created
+        server.bind(store + "/coverages/dem.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                HTTPTestServer.send(exchange, 500, "");
+            }
+        });
+        assertTrue(publisher.publishGeoTIFF("ws", "cs", "dem", tiff, "EPSG:4326",
+                ProjectionPolicy.NONE, "raster", null));
+        assertEquals(Arrays.asList("HEAD " + store + ".xml",
+                "HEAD " + store + "/coverages/dem.xml", "POST " + store + "/coverages.xml",
+                "PUT /rest/layers/ws:dem"), server.getRequests().subList(8, 12));
+
+        // removed by another client: uploaded again
+        exists.set(false);
+        assertTrue(publisher.publishGeoTIFF("ws", "cs", "dem", tiff, "EPSG:4326",
+                ProjectionPolicy.NONE, "raster", null));
+        assertEquals(Arrays.asList("HEAD " + store + ".xml", "PUT " + store + "/file.geotiff",
+                "POST " + store + "/coverages.xml"), server.getRequests().subList(12, 15));
+        assertEquals(1, ledger.size());
+
+        // once the store is removed, uploaded again
+        server.bind(store, "");
+        assertTrue(publisher.removeCoverageStore("ws", "cs", true));
+        assertEquals(0, ledger.size());
+        publisher.publishGeoTIFF("ws", "cs", "dem", tiff, "EPSG:4326", ProjectionPolicy.NONE,
+                "raster", null);
+        assertEquals(3, Collections.frequency(server.getRequests(), "PUT " + store
+                + "/file.geotiff"));
+    }
+
+    @Test
+    public void testRepublishOtherCoverage() throws Exception {
+        final String store = "/rest/workspaces/ws/coveragestores/cs";
+        server.bind(store + "/file.geotiff", "");
+        server.bind(store + ".xml", "<coverageStore/>");
+        final AtomicBoolean exists = new AtomicBoolean(true);
+        server.bind(store + "/coverages/dem.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                HTTPTestServer.send(exchange, exists.get() ? 200 : 404, "<coverage/>");
+            }
+        });
+        server.bind(store + "/coverages/dsm.xml", "<coverage/>");
+        final GeoServerRESTPublisher publisher = new GeoServerRESTPublisher(server.getURL(),
+                "admin", "geoserver", transport);
+        final UploadLedger ledger = new UploadLedger(new File(folder.getRoot(), "ledger.txt"));
+        publisher.setUploadLedger(ledger);
+        final File tiff = randomFile("dem.tif", 5000, 4);
+
+        assertTrue(publisher.publishGeoTIFF("ws", "cs", "dem", tiff));
+        assertTrue(publisher.publishGeoTIFF("ws", "cs", "dem", tiff));
+        assertEquals(Arrays.asList("PUT " + store + "/file.geotiff", "HEAD " + store + ".xml",
+                "HEAD " + store + "/coverages/dem.xml"), server.getRequests());
+
+        // another coverage configured from the same file: uploaded again
+        assertTrue(publisher.publishGeoTIFF("ws", "cs", "dsm", tiff));
+        assertEquals(Arrays.asList("PUT " + store + "/file.geotiff"), server.getRequests()
+                .subList(3, 4));
+        assertEquals(2, ledger.size());
+
+        // coverage removed by another client, keeping the store: uploaded again
+        exists.set(false);
+        assertTrue(publisher.publishGeoTIFF("ws", "cs", "dem", tiff));
+        assertEquals(Arrays.asList("HEAD " + store + ".xml",
+                "HEAD " + store + "/coverages/dem.xml", "PUT " + store + "/file.geotiff"),
+                server.getRequests().subList(4, 7));
+    }
+
+    @Test
+    public void testJournal() throws Exception {
+        final File file = new File(folder.getRoot(), "ledger.txt");
+        UploadLedger ledger = new UploadLedger(file);
+        for (int i = 0; i < 3; i++) {
+            ledger.record("http://gs/rest/workspaces/ws/datastores/a/file.shp", "0" + i);
+        }
+        // appended, the last line winning
+        assertEquals(4, FileUtils.readLines(file, "UTF-8").size());
+        ledger = new UploadLedger(file);
+        assertTrue(ledger.contains("http://gs/rest/workspaces/ws/datastores/a/file.shp", "02"));
+        // compacted on load
+        assertEquals(2, FileUtils.readLines(file, "UTF-8").size());
+
+        ledger.record("http://gs/rest/workspaces/ws/datastores/b/file.shp", "03");
+        assertEquals(3, FileUtils.readLines(file, "UTF-8").size());
+        ledger.forget("http://gs/rest/workspaces/ws/datastores/a/");
+        assertEquals(2, FileUtils.readLines(file, "UTF-8").size());
+        assertEquals(1, new UploadLedger(file).size());
+    }
+}
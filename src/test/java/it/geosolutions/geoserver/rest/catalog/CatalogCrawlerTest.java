@@ -0,0 +1,241 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.GeoServerRESTReader;
+import it.geosolutions.geoserver.rest.catalog.CatalogDiff.Kind;
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+import it.geosolutions.geoserver.rest.http.CommonsHTTPTransport;
+import it.geosolutions.geoserver.rest.http.HTTPTestServer;
+import it.geosolutions.geoserver.rest.http.RetryPolicy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * @see CatalogCrawler
+ */
+public class CatalogCrawlerTest {
+
+    private HTTPTestServer server;
+
+    private CommonsHTTPTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CommonsHTTPTransport(4, 4, 1000, 0, true);
+        transport.setRetryPolicy(RetryPolicy.NONE);
+        server.bind("/rest/about/version.xml",
+                "<about><resource name=\"GeoServer\"><Version>2.8.1</Version></resource></about>");
+        server.bind("/rest/workspaces.xml", "<workspaces><workspace><name>topp</name></workspace></workspaces>");
+        server.bind("/rest/workspaces/topp/datastores.xml",
+                "<dataStores><dataStore><name>taz_shapes</name></dataStore></dataStores>");
+        server.bind("/rest/workspaces/topp/datastores/taz_shapes.xml",
+                "<dataStore><name>taz_shapes</name><type>Shapefile</type><enabled>true</enabled></dataStore>");
+        server.bind("/rest/workspaces/topp/datastores/taz_shapes/featuretypes.xml",
+                "<featureTypes><featureType><name>tasmania_cities</name></featureType></featureTypes>");
+        server.bind("/rest/workspaces/topp/datastores/taz_shapes/featuretypes/tasmania_cities.xml",
+                "<featureType><name>tasmania_cities</name><title>Cities</title><srs>EPSG:4326</srs>"
+                        + "<keywords><string>cities</string><string>tasmania</string></keywords>"
+                        + "<latLonBoundingBox><minx>145.0</minx><maxx>148.0</maxx><miny>-43.0</miny>"
+                        + "<maxy>-40.0</maxy><crs>EPSG:4326</crs></latLonBoundingBox></featureType>");
+        server.bind("/rest/workspaces/topp/coveragestores.xml", "<coverageStores/>");
+        server.bind("/rest/workspaces/topp/wmsstores.xml", "<wmsStores/>");
+        server.bind("/rest/workspaces/topp/styles.xml", "<styles/>");
+        // workspace layer groups are not bound: reported as an error
+        server.bind("/rest/styles.xml", "<styles><style><name>capitals</name></style>"
+                + "<style><name>green</name></style></styles>");
+        server.bind("/rest/layergroups.xml", "<layerGroups><layerGroup><name>tasmania</name></layerGroup></layerGroups>");
+        server.bind("/rest/layergroups/tasmania.xml", "<layerGroup><name>tasmania</name><publishables>"
+                + "<published type=\"layer\"><name>topp:tasmania_cities</name></published></publishables>"
+                + "<bounds><minx>143.8</minx><maxx>148.5</maxx><miny>-43.6</miny><maxy>-39.6</maxy>"
+                + "<crs>EPSG:4326</crs></bounds></layerGroup>");
+        server.bind("/rest/layers.xml", "<layers><layer><name>topp:tasmania_cities</name></layer></layers>");
+        InputStream is = getClass().getResourceAsStream("/testdata/layerExample.xml");
+        server.bind("/rest/layers/topp:tasmania_cities.xml", IOUtils.toString(is));
+        is.close();
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testCrawl() throws Exception {
+        GeoServerRESTReader reader = new GeoServerRESTReader(new URL(server.getURL()), "admin",
+                "geoserver", transport);
+        CatalogSnapshot snapshot = new CatalogCrawler(reader, 3).crawl();
+
+        assertEquals(7, snapshot.size());
+        CatalogNode ws = snapshot.get(Type.WORKSPACE, null, "topp");
+        CatalogNode ds = snapshot.get(Type.DATASTORE, "topp", "taz_shapes");
+        assertEquals("Shapefile", ds.getProperty(CatalogNode.TYPE_PROPERTY));
+        assertSame(ws, snapshot.getParent(ds));
+
+        CatalogNode ft = snapshot.getResource(Type.FEATURETYPE, "topp", "taz_shapes", "tasmania_cities");
+        assertSame(ds, snapshot.getParent(ft));
+        assertEquals("cities,tasmania", ft.getProperty(CatalogNode.KEYWORDS_PROPERTY));
+        assertEquals("EPSG:4326", ft.getProperty(CatalogNode.CRS_PROPERTY));
+        assertArrayEquals(new double[] { 145, -43, 148, -40 }, ft.getBoundingBox(), 0);
+
+        CatalogNode layer = snapshot.getByHref(server.getURL() + "/rest/layers/topp:tasmania_cities.xml");
+        assertNotNull(layer);
+        assertEquals("topp:tasmania_cities", layer.getQualifiedName());
+        assertSame(ws, snapshot.getParent(layer));
+        assertEquals(Arrays.asList(layer, ds), snapshot.getChildren(ws));
+        // the resource and the default style; green and blue are styles not in the snapshot
+        assertEquals(Arrays.asList(ft, snapshot.get(Type.STYLE, null, "capitals"),
+                snapshot.get(Type.STYLE, null, "green")), snapshot.getReferences(layer));
+
+        CatalogNode group = snapshot.get(Type.LAYERGROUP, null, "tasmania");
+        assertEquals(Arrays.asList(layer), snapshot.getReferences(group));
+        assertEquals(143.8, group.getBoundingBox()[0], 0);
+
+        CrawlReport report = snapshot.getReport();
+        assertEquals(7, report.getNodeCount());
+        assertEquals(1, report.getErrors().size());
+        assertEquals("/rest/workspaces/topp/layergroups", report.getErrors().get(0).getHref());
+        assertEquals(14, report.getRequestCount());
+    }
+
+    @Test
+    public void testSync() throws Exception {
+        GeoServerRESTReader reader = new GeoServerRESTReader(new URL(server.getURL()), "admin",
+                "geoserver", transport);
+        CatalogCrawler crawler = new CatalogCrawler(reader, 3);
+        CatalogSnapshot previous = crawler.crawl();
+
+        server.bind("/rest/styles.xml", "<styles><style><name>capitals</name></style></styles>");
+        server.bind("/rest/workspaces/topp/datastores/taz_shapes/featuretypes/tasmania_cities.xml",
+                "<featureType><name>tasmania_cities</name><title>Tasmanian cities</title></featureType>");
+        server.bind("/rest/workspaces/topp/datastores/taz_shapes/featuretypes.xml",
+                "<featureTypes><featureType><name>tasmania_cities</name></featureType>"
+                        + "<featureType><name>tasmania_roads</name></featureType></featureTypes>");
+        server.bind("/rest/workspaces/topp/datastores/taz_shapes/featuretypes/tasmania_roads.xml",
+                "<featureType><name>tasmania_roads</name></featureType>");
+
+        CatalogDiff diff = crawler.sync(previous);
+        assertEquals(2, diff.getChanges().size());
+        assertEquals(Kind.REMOVED, diff.getChanges().get(0).getKind());
+        assertEquals("/rest/styles/green", diff.getChanges().get(0).getNode().getHref());
+        assertEquals(Kind.ADDED, diff.getChanges().get(1).getKind());
+        assertEquals("tasmania_roads", diff.getChanges().get(1).getAfter().getName());
+        CrawlReport report = diff.getSnapshot().getReport();
+        // the 10 lists and the new feature type
+        assertEquals(11, report.getRequestCount());
+        assertEquals(4, report.getReusedCount());
+
+        diff = crawler.sync(diff.getSnapshot(), Type.FEATURETYPE);
+        assertEquals(1, diff.getChanges().size());
+        assertEquals(Kind.MODIFIED, diff.getChanges().get(0).getKind());
+        assertEquals("Tasmanian cities", diff.getChanges().get(0).getAfter().getProperty(CatalogNode.TITLE_PROPERTY));
+
+        // failing lists do not remove their content
+        server.bind("/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                HTTPTestServer.send(exchange, 500, "");
+            }
+        });
+        diff = crawler.sync(diff.getSnapshot());
+        assertTrue(diff.isEmpty());
+        assertNotNull(diff.getSnapshot().get(Type.LAYER, "topp", "tasmania_cities"));
+        assertEquals(2, diff.getSnapshot().getReport().getErrors().size());
+    }
+
+    @Test
+    public void testSyncDigest() throws Exception {
+        GeoServerRESTReader reader = new GeoServerRESTReader(new URL(server.getURL()), "admin",
+                "geoserver", transport);
+        CatalogCrawler crawler = new CatalogCrawler(reader, 3);
+        CatalogSnapshot previous = crawler.crawl();
+        assertNotNull(previous.get(Type.LAYER, "topp", "tasmania_cities").getDigest());
+
+        // unchanged representations are not decoded again
+        CatalogDiff diff = crawler.sync(previous, Type.FEATURETYPE, Type.LAYER);
+        assertTrue(diff.isEmpty());
+        assertSame(previous.get(Type.LAYER, "topp", "tasmania_cities"),
+                diff.getSnapshot().get(Type.LAYER, "topp", "tasmania_cities"));
+        assertEquals(4, diff.getSnapshot().getReport().getReusedCount());
+
+        server.bind("/rest/workspaces/topp/datastores/taz_shapes/featuretypes/tasmania_cities.xml",
+                "<featureType><name>tasmania_cities</name><title>Tasmanian cities</title></featureType>");
+        diff = crawler.sync(diff.getSnapshot(), Type.FEATURETYPE, Type.LAYER);
+        assertEquals(1, diff.getChanges().size());
+        assertEquals(Kind.MODIFIED, diff.getChanges().get(0).getKind());
+        assertEquals("tasmania_cities", diff.getChanges().get(0).getAfter().getName());
+        assertTrue(!previous.getResource(Type.FEATURETYPE, "topp", "taz_shapes", "tasmania_cities").getDigest()
+                .equals(diff.getChanges().get(0).getAfter().getDigest()));
+        assertEquals(3, diff.getSnapshot().getReport().getReusedCount());
+    }
+
+    @Test
+    public void testWorkspaceStyles() throws Exception {
+        server.bind("/rest/workspaces/topp/styles.xml", "<styles><style><name>point</name></style></styles>");
+        server.bind("/rest/layers/topp:tasmania_cities.xml", "<layer><name>tasmania_cities</name>"
+                + "<type>VECTOR</type><defaultStyle><name>capitals</name></defaultStyle>"
+                + "<styles><style><name>point</name><workspace>topp</workspace></style></styles>"
+                + "<resource class=\"featureType\"><name>tasmania_cities</name>"
+                + "<atom:link xmlns:atom=\"http://www.w3.org/2005/Atom\" rel=\"alternate\" href=\""
+                + server.getURL() + "/rest/workspaces/topp/datastores/taz_shapes/featuretypes/"
+                + "tasmania_cities.xml\" type=\"application/xml\"/></resource>"
+                + "<enabled>true</enabled></layer>");
+        GeoServerRESTReader reader = new GeoServerRESTReader(new URL(server.getURL()), "admin",
+                "geoserver", transport);
+        CatalogSnapshot snapshot = new CatalogCrawler(reader, 3).crawl();
+
+        CatalogNode layer = snapshot.get(Type.LAYER, "topp", "tasmania_cities");
+        assertEquals(Arrays.asList(snapshot.getResource(Type.FEATURETYPE, "topp",
+                "taz_shapes", "tasmania_cities"), snapshot.get(Type.STYLE, null, "capitals"), snapshot.get(Type.STYLE, "topp", "point")),
+                snapshot.getReferences(layer));
+    }
+
+    @Test
+    public void testHrefs() {
+        assertEquals("/rest/workspaces/topp/styles/point", CatalogCrawler.styleHref(null, "topp:point"));
+        assertEquals("/rest/styles/point", CatalogCrawler.styleHref(null, "point"));
+        assertEquals("/rest/workspaces/topp/layergroups/g", CatalogCrawler.layerGroupHref("topp:g"));
+        assertEquals("/rest/workspaces/topp",
+                CatalogSnapshot.toHref("http://localhost:8080/geoserver/rest/workspaces/topp.xml?quietOnNotFound=true"));
+        assertEquals("/rest/layers/topp:roads.shp", CatalogSnapshot.toHref("/rest/layers/topp:roads.shp"));
+    }
+}
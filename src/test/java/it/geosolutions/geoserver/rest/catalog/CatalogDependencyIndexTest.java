@@ -0,0 +1,72 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @see CatalogDependencyIndex
+ */
+public class CatalogDependencyIndexTest {
+
+    @Test
+    public void testDependents() {
+        CatalogSnapshot snapshot = new TestCatalog()
+                .workspace("topp", 10, 40, "roads", "rivers")
+                .workspace("sf", -120, 35, "streams")
+                .add(TestCatalog.references(TestCatalog.node(Type.LAYERGROUP, null, "base", "/rest/layergroups/base",
+                        null, null), "/rest/layers/topp:roads", "/rest/layers/sf:streams"))
+                .add(TestCatalog.references(TestCatalog.node(Type.LAYERGROUP, null, "all", "/rest/layergroups/all",
+                        null, null), "/rest/layergroups/base", "/rest/layers/topp:rivers"))
+                .build();
+        CatalogDependencyIndex index = new CatalogDependencyIndex(snapshot);
+
+        CatalogNode point = snapshot.get(Type.STYLE, null, "point");
+        assertEquals(3, index.getDependents(point, Type.LAYER).size());
+        assertEquals(3, index.getDependents("http://localhost:8080/geoserver/rest/styles/point.xml").size());
+
+        CatalogNode roads = snapshot.get(Type.LAYER, "topp", "roads");
+        assertEquals(Arrays.asList(snapshot.get(Type.LAYERGROUP, null, "base")), index.getDependents(roads));
+
+        // store -> feature types -> layers -> groups
+        CatalogNode shapes = snapshot.get(Type.DATASTORE, "topp", "shapes");
+        List<CatalogNode> impact = index.getImpact(shapes);
+        assertEquals(6, impact.size());
+        assertEquals(Type.FEATURETYPE, impact.get(0).getType());
+        assertTrue(impact.contains(snapshot.get(Type.LAYERGROUP, null, "all")));
+        assertEquals(Type.LAYERGROUP, impact.get(impact.size() - 1).getType());
+
+        assertTrue(index.getDependents("/rest/styles/missing").isEmpty());
+        assertTrue(index.getImpact(snapshot.get(Type.LAYERGROUP, null, "all")).isEmpty());
+    }
+}
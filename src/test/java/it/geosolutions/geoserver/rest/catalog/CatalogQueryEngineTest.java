@@ -0,0 +1,88 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+import it.geosolutions.geoserver.rest.catalog.CatalogQuery.Attribute;
+
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see CatalogQueryEngine
+ */
+public class CatalogQueryEngineTest {
+
+    private CatalogQueryEngine engine;
+
+    @Before
+    public void setUp() {
+        final String csHref = "/rest/workspaces/topp/coveragestores/dem";
+        final String covHref = csHref + "/coverages/dem";
+        CatalogSnapshot snapshot = new TestCatalog()
+                .workspace("topp", 10, 40, "roads", "rivers")
+                .workspace("sf", -120, 35, "streams")
+                .add(TestCatalog.node(Type.COVERAGESTORE, "topp", "dem", csHref, "/rest/workspaces/topp", null,
+                        CatalogNode.TYPE_PROPERTY, "GeoTIFF"))
+                .add(TestCatalog.node(Type.COVERAGE, "topp", "dem", covHref, csHref, null,
+                        CatalogNode.CRS_PROPERTY, "EPSG:3857", CatalogNode.KEYWORDS_PROPERTY, "elevation,Roads"))
+                .add(TestCatalog.references(TestCatalog.node(Type.LAYER, "topp", "dem", "/rest/layers/topp:dem",
+                        "/rest/workspaces/topp", null, CatalogNode.TYPE_PROPERTY, "RASTER",
+                        CatalogNode.ENABLED_PROPERTY, "false"), covHref))
+                .build();
+        engine = new CatalogQueryEngine(snapshot);
+    }
+
+    @Test
+    public void testFind() {
+        assertEquals(4, engine.count(new CatalogQuery()));
+        assertEquals(3, engine.count(new CatalogQuery().type("vector").enabled(true)));
+        assertEquals(2, engine.count(new CatalogQuery().workspace("topp").type("VECTOR")));
+        assertEquals(3, engine.count(new CatalogQuery().workspace("topp", "sf").storeType("Shapefile")));
+
+        List<CatalogNode> dem = engine.find(new CatalogQuery().keyword("roads").crs("epsg:3857"));
+        assertEquals(1, dem.size());
+        assertEquals("topp:dem", dem.get(0).getQualifiedName());
+        assertTrue(engine.find(new CatalogQuery().keyword("roads").enabled(true)).isEmpty());
+
+        List<CatalogNode> topp = engine.find(new CatalogQuery().keyword("features", "topp").crs("EPSG:4326"));
+        assertEquals(2, topp.size());
+        assertEquals("rivers", topp.get(0).getName());
+        assertTrue(engine.find(new CatalogQuery().keyword("missing")).isEmpty());
+        assertTrue(engine.find(new CatalogQuery().storeType("PostGIS")).isEmpty());
+    }
+
+    @Test
+    public void testValues() {
+        assertEquals(Integer.valueOf(3), engine.getValues(Attribute.STORE_TYPE).get("shapefile"));
+        assertEquals(Integer.valueOf(1), engine.getValues(Attribute.STORE_TYPE).get("geotiff"));
+        assertEquals(Integer.valueOf(3), engine.getValues(Attribute.KEYWORD).get("features"));
+    }
+}
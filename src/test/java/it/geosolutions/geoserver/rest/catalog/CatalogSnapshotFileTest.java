@@ -0,0 +1,85 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * @see CatalogSnapshotFile
+ */
+public class CatalogSnapshotFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        CatalogSnapshot snapshot = new TestCatalog().workspace("topp", 10, 40, "roads", "rivers")
+                .workspace("sf", -120, 35, "archsites", "bugsites", "restricted", "streams")
+                .add(TestCatalog.node(Type.STYLE, "topp", "\u00e9tat", "/rest/workspaces/topp/styles/\u00e9tat",
+                        "/rest/workspaces/topp", null).withDigest("2c26b46b68ffc68f")).build();
+        File file = new File(folder.getRoot(), "catalog.bin");
+        CatalogSnapshotFile.write(snapshot, file);
+        CatalogSnapshot loaded = CatalogSnapshotFile.read(file);
+
+        assertEquals(new ArrayList<CatalogNode>(snapshot.getNodes()), new ArrayList<CatalogNode>(loaded.getNodes()));
+        assertTrue(CatalogDiff.compare(snapshot, loaded).isEmpty());
+        assertEquals(snapshot.getReport().getStartTime(), loaded.getReport().getStartTime());
+        assertEquals(snapshot.getReport().getRequestCount(), loaded.getReport().getRequestCount());
+        assertEquals("2c26b46b68ffc68f", loaded.get(Type.STYLE, "topp", "\u00e9tat").getDigest());
+        assertEquals("/rest/workspaces/broken", loaded.getReport().getErrors().get(0).getHref());
+        assertEquals(loaded.getByHref("/rest/styles/point"),
+                loaded.getReferences(loaded.get(Type.LAYER, "sf", "streams")).get(1));
+
+        // overwritten atomically
+        CatalogSnapshotFile.write(new TestCatalog().build(), file);
+        assertEquals(1, CatalogSnapshotFile.read(file).size());
+    }
+
+    @Test
+    public void testNotASnapshot() throws IOException {
+        File file = folder.newFile("catalog.bin");
+        FileUtils.writeStringToFile(file, "<catalog/>");
+        try {
+            CatalogSnapshotFile.read(file);
+            fail("Not a snapshot");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+/**
+ * @see CatalogSpatialIndex
+ */
+public class CatalogSpatialIndexTest {
+
+    @Test
+    public void testLayersUseTheirResourceBox() {
+        CatalogSnapshot snapshot = new TestCatalog().workspace("topp", 10, 40, "roads", "rivers").build();
+        CatalogSpatialIndex index = new CatalogSpatialIndex(snapshot);
+        // 2 feature types and their layers
+        assertEquals(4, index.size());
+
+        Set<String> found = hrefs(index.intersects(10.5, 40.5, 10.6, 40.6));
+        assertEquals(2, found.size());
+        assertTrue(found.contains("/rest/layers/topp:roads"));
+
+        List<CatalogNode> nearest = index.nearest(13, 43, 1);
+        assertEquals("rivers", nearest.get(0).getName());
+        assertTrue(index.intersects(-10, -10, -5, -5).isEmpty());
+    }
+
+    @Test
+    public void testAgainstScan() {
+        final Random random = new Random(42);
+        final TestCatalog catalog = new TestCatalog();
+        final List<CatalogNode> nodes = new ArrayList<CatalogNode>();
+        for (int i = 0; i < 2000; i++) {
+            double x = random.nextDouble() * 350 - 180;
+            double y = random.nextDouble() * 170 - 85;
+            CatalogNode node = TestCatalog.node(Type.COVERAGE, "ws", "c" + i,
+                    "/rest/workspaces/ws/coveragestores/cs/coverages/c" + i, null,
+                    new double[] { x, y, x + random.nextDouble() * 10, y + random.nextDouble() * 5 });
+            catalog.add(node);
+            nodes.add(node);
+        }
+        CatalogSpatialIndex index = new CatalogSpatialIndex(catalog.build(), 8);
+        assertEquals(2000, index.size());
+
+        for (int q = 0; q < 200; q++) {
+            double x = random.nextDouble() * 360 - 180;
+            double y = random.nextDouble() * 180 - 90;
+            double w = random.nextDouble() * 30;
+            Set<String> expected = new HashSet<String>();
+            for (CatalogNode node : nodes) {
+                double[] b = node.getBoundingBox();
+                if (b[0] <= x + w && b[1] <= y + w && b[2] >= x && b[3] >= y) {
+                    expected.add(node.getHref());
+                }
+            }
+            assertEquals(expected, hrefs(index.intersects(x, y, x + w, y + w)));
+
+            List<CatalogNode> nearest = index.nearest(x, y, 5);
+            assertEquals(5, nearest.size());
+            double last = 0;
+            for (CatalogNode node : nearest) {
+                double d = distance(node, x, y);
+                assertTrue(d >= last);
+                last = d;
+            }
+            int closer = 0;
+            for (CatalogNode node : nodes) {
+                if (distance(node, x, y) < last) {
+                    closer++;
+                }
+            }
+            assertTrue(closer < 5);
+        }
+    }
+
+    private static double distance(CatalogNode node, double x, double y) {
+        double[] b = node.getBoundingBox();
+        double dx = Math.max(0, Math.max(b[0] - x, x - b[2]));
+        double dy = Math.max(0, Math.max(b[1] - y, y - b[3]));
+        return dx * dx + dy * dy;
+    }
+
+    private static Set<String> hrefs(List<CatalogNode> nodes) {
+        Set<String> hrefs = new HashSet<String>();
+        for (CatalogNode node : nodes) {
+            hrefs.add(node.getHref());
+        }
+        return hrefs;
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.catalog;
+
+import it.geosolutions.geoserver.rest.catalog.CatalogNode.Type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds small catalog snapshots for the catalog tests.
+ */
+class TestCatalog {
+
+    private final List<CatalogNode> nodes = new ArrayList<CatalogNode>();
+
+    static CatalogNode node(Type type, String ws, String name, String href, String parent,
+            double[] bbox, String... properties) {
+        final Map<String, String> map = new HashMap<String, String>();
+        for (int i = 0; i < properties.length; i += 2) {
+            map.put(properties[i], properties[i + 1]);
+        }
+        return new CatalogNode(type, ws, name, href, parent, map, Collections.<String> emptyList(), bbox);
+    }
+
+    static CatalogNode references(CatalogNode node, String... references) {
+        return new CatalogNode(node.getType(), node.getWorkspace(), node.getName(), node.getHref(),
+                node.getParentHref(), node.getProperties(), Arrays.asList(references),
+                node.getBoundingBox());
+    }
+
+    TestCatalog add(CatalogNode node) {
+        nodes.add(node);
+        return this;
+    }
+
+    /**
+     * Adds a workspace with a shapefile store, one feature type per given name
+     * (with a bbox around the given x, y) and the layers publishing them with
+     * the <TT>point</TT> style.
+     */
+    TestCatalog workspace(String ws, double x, double y, String... featureTypes) {
+        final String wsHref = "/rest/workspaces/" + ws;
+        final String dsHref = wsHref + "/datastores/shapes";
+        add(node(Type.WORKSPACE, null, ws, wsHref, null, null));
+        add(node(Type.DATASTORE, ws, "shapes", dsHref, wsHref, null, CatalogNode.TYPE_PROPERTY, "Shapefile"));
+        for (int i = 0; i < featureTypes.length; i++) {
+            final String ftHref = dsHref + "/featuretypes/" + featureTypes[i];
+            add(node(Type.FEATURETYPE, ws, featureTypes[i], ftHref, dsHref,
+                    new double[] { x + i, y + i, x + i + 1, y + i + 1 }, CatalogNode.TITLE_PROPERTY,
+                    "The " + featureTypes[i], CatalogNode.KEYWORDS_PROPERTY, ws + ",features",
+                    CatalogNode.CRS_PROPERTY, "EPSG:4326"));
+            add(references(node(Type.LAYER, ws, featureTypes[i], "/rest/layers/" + ws + ":" + featureTypes[i],
+                    wsHref, null, CatalogNode.TYPE_PROPERTY, "VECTOR", CatalogNode.ENABLED_PROPERTY, "true"), ftHref,
+                    "/rest/styles/point"));
+        }
+        return this;
+    }
+
+    CatalogSnapshot build() {
+        add(node(Type.STYLE, null, "point", "/rest/styles/point", null, null));
+        return new CatalogSnapshot(nodes, new CrawlReport(1000, 20, nodes.size() * 2, nodes.size(), 0,
+                Arrays.asList(new CrawlReport.Error("/rest/workspaces/broken", "Unable to read"))));
+    }
+}
@@ -1,5 +1,6 @@
 package it.geosolutions.geoserver.rest.decoder;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.List;
@@ -47,4 +48,15 @@ public class RESTFeatureTypeListTest {
 		assertArrayEquals(new String[]{"states", "tasmania_cities", "tasmania_roads", "tasmania_state_boundaries", "tasmania_water_bodies"}
 				, list.toArray());
 	}
+
+	@Test
+	public void testBuildFromStream() throws IOException {
+		InputStream is = RESTFeatureTypeListTest.class.getResourceAsStream("/testdata/featureTypeListExample.xml");
+		RESTFeatureTypeList result = RESTFeatureTypeList.build(is);
+		is.close();
+
+		assertArrayEquals(new String[]{"states", "tasmania_cities", "tasmania_roads", "tasmania_state_boundaries", "tasmania_water_bodies"}
+				, result.getNames().toArray());
+		assertNull(RESTFeatureTypeList.build(new ByteArrayInputStream(new byte[0])));
+	}
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.decoder.RESTLayerList;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * @see CachingHTTPTransport
+ */
+public class CachingHTTPTransportTest {
+
+    private HTTPTestServer server;
+
+    private CachingHTTPTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CachingHTTPTransport(new CommonsHTTPTransport(2, 4, 1000, 0, true), 2, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testReadThroughAndEviction() {
+        server.bind("/rest/layers.xml", "<layers><layer><name>roads</name></layer></layers>");
+        server.bind("/rest/styles.xml", "<styles/>");
+        server.bind("/rest/workspaces.xml", "<workspaces/>");
+        final String url = server.getURL();
+        final HTTPResponseHandler<RESTLayerList> decoder = RESTLayerList::build;
+
+        RESTLayerList layers = transport.get(url + "/rest/layers.xml", "admin", "geoserver", decoder);
+        assertSame(layers, transport.get(url + "/rest/layers.xml", "admin", "geoserver", decoder));
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, transport.getStatistics().getHitCount());
+        assertEquals(1, transport.getStatistics().getMissCount());
+
+        transport.get(url + "/rest/styles.xml", "admin", "geoserver");
+        transport.get(url + "/rest/workspaces.xml", "admin", "geoserver");
+        assertEquals(2, transport.size());
+        assertEquals(1, transport.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void testCredentials() {
+        server.bind("/rest/styles.xml", "<styles/>");
+        final String url = server.getURL() + "/rest/styles.xml";
+        transport.get(url, "admin", "geoserver");
+        // same user, another password: asked to the server
+        transport.get(url, "admin", "revoked");
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, transport.getStatistics().getHitCount());
+        transport.get(url, "admin", "geoserver");
+        assertEquals(1, transport.getStatistics().getHitCount());
+    }
+
+    @Test
+    public void testCapturingHandlers() {
+        server.bind("/rest/styles.xml", "<styles/>");
+        final String url = server.getURL() + "/rest/styles.xml";
+        // same lambda class, capturing different values: not shared
+        for (String prefix : Arrays.asList("a:", "b:")) {
+            assertEquals(prefix + "<styles/>", transport.get(url, "admin", "geoserver",
+                    in -> prefix + IOUtils.toString(in, "UTF-8")));
+        }
+        assertEquals(0, transport.getStatistics().getHitCount());
+    }
+
+    @Test
+    public void testWriteInvalidation() {
+        server.bind("/rest/workspaces/ws/datastores/ds.xml", "<dataStore/>");
+        server.bind("/rest/workspaces/ws/datastores/ds/featuretypes.xml", "<featureTypes/>");
+        final String url = server.getURL();
+        transport.get(url + "/rest/workspaces/ws/datastores/ds.xml", "admin", "geoserver");
+        transport.get(url + "/rest/workspaces/ws/datastores/ds/featuretypes.xml", "admin", "geoserver");
+        assertEquals(2, transport.size());
+
+        transport.delete(url + "/rest/workspaces/ws/datastores/ds?recurse=true", "admin", "geoserver");
+        assertEquals(0, transport.size());
+    }
+
+    @Test
+    public void testNegativeCache() {
+        final String url = server.getURL();
+        final String ws = url + "/rest/workspaces/ws.xml";
+        assertFalse(transport.exists(ws + "?quietOnNotFound=true", "admin", "geoserver"));
+        assertFalse(transport.exists(ws, "admin", "geoserver"));
+        assertEquals(1, server.getRequestCount());
+
+        // creating the namespace creates the workspace as well
+        server.bind("/rest/workspaces/ws.xml", "<workspace/>");
+        transport.postXml(url + "/rest/namespaces", "<namespace/>", "admin", "geoserver");
+        assertTrue(transport.exists(ws, "admin", "geoserver"));
+        assertEquals(3, server.getRequestCount());
+
+        transport.setNegativeTTL(0);
+        assertFalse(transport.exists(url + "/rest/styles/missing.xml", "admin", "geoserver"));
+        assertFalse(transport.exists(url + "/rest/styles/missing.xml", "admin", "geoserver"));
+        assertEquals(5, server.getRequestCount());
+    }
+
+    @Test
+    public void testInvalidationPrefixes() {
+        final String gs = "http://localhost:8080/geoserver";
+        assertEquals(Arrays.asList(gs + "/rest/workspaces/ws/datastores/ds/featuretypes",
+                gs + "/rest/workspaces/ws/datastores.", gs + "/rest/workspaces/ws/featuretypes",
+                gs + "/rest/workspaces/ws/coverages", gs + "/rest/namespaces/ws",
+                gs + "/rest/layers", gs + "/rest/layergroups"),
+                CachingHTTPTransport.invalidationPrefixes(gs
+                        + "/rest/workspaces/ws/datastores/ds/featuretypes/roads.xml"));
+        // file upload
+        assertEquals(Arrays.asList(gs + "/rest/workspaces/ws/datastores/ds",
+                gs + "/rest/workspaces/ws/datastores.", gs + "/rest/workspaces/ws/featuretypes",
+                gs + "/rest/workspaces/ws/coverages", gs + "/rest/namespaces/ws",
+                gs + "/rest/layers", gs + "/rest/layergroups"),
+                CachingHTTPTransport.invalidationPrefixes(gs
+                        + "/rest/workspaces/ws/datastores/ds/file.shp?configure=all"));
+        // resource creation
+        assertEquals(Arrays.asList(gs + "/rest/workspaces/ws/coveragestores/dem",
+                gs + "/rest/workspaces/ws/coveragestores.", gs + "/rest/workspaces/ws/featuretypes",
+                gs + "/rest/workspaces/ws/coverages", gs + "/rest/namespaces/ws",
+                gs + "/rest/layers", gs + "/rest/layergroups"),
+                CachingHTTPTransport.invalidationPrefixes(gs
+                        + "/rest/workspaces/ws/coveragestores/dem/coverages.xml"));
+        // recursive store delete
+        assertEquals(Arrays.asList(gs + "/rest/workspaces/ws/datastores",
+                gs + "/rest/workspaces/ws/datastores.", gs + "/rest/workspaces/ws/featuretypes",
+                gs + "/rest/workspaces/ws/coverages", gs + "/rest/namespaces/ws",
+                gs + "/rest/layers", gs + "/rest/layergroups"),
+                CachingHTTPTransport.invalidationPrefixes(gs
+                        + "/rest/workspaces/ws/datastores/ds?recurse=true"));
+        assertEquals(Arrays.asList(gs + "/rest/workspaces/ws/styles", gs + "/rest/namespaces/ws",
+                gs + "/rest/layers", gs + "/rest/layergroups"),
+                CachingHTTPTransport.invalidationPrefixes(gs + "/rest/workspaces/ws/styles/point"));
+        assertEquals(Arrays.asList(gs + "/rest/styles"),
+                CachingHTTPTransport.invalidationPrefixes(gs + "/rest/styles/point"));
+        assertEquals(Arrays.asList(gs + "/rest/layers"),
+                CachingHTTPTransport.invalidationPrefixes(gs + "/rest/layers/topp:roads.xml"));
+        assertTrue(CachingHTTPTransport.invalidationPrefixes(gs + "/rest/reload").isEmpty());
+    }
+}
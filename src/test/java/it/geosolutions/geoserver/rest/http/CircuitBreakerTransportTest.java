@@ -0,0 +1,164 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * @see CircuitBreakerTransport
+ */
+public class CircuitBreakerTransportTest {
+
+    private HTTPTestServer server;
+
+    private CircuitBreakerTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        CommonsHTTPTransport delegate = new CommonsHTTPTransport(2, 4, 1000, 0, true);
+        delegate.setRetryPolicy(RetryPolicy.NONE);
+        transport = new CircuitBreakerTransport(delegate, 2, 100);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testOpenAndRecover() throws InterruptedException {
+        server.bind("/geoserver/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                HTTPTestServer.send(exchange, 503, "reloading");
+            }
+        });
+        final String url = server.getURL() + "/geoserver/rest/layers.xml";
+        // 404 is not a failure, and resets the count
+        assertNull(transport.get(url, "admin", "geoserver"));
+        assertNull(transport.get(server.getURL() + "/geoserver/rest/missing.xml", "admin", "geoserver"));
+        assertNull(transport.get(url, "admin", "geoserver"));
+        assertEquals(CircuitBreakerTransport.State.CLOSED, transport.getState(url));
+        assertNull(transport.get(url, "admin", "geoserver"));
+        assertEquals(CircuitBreakerTransport.State.OPEN, transport.getState(url));
+
+        final int requests = server.getRequestCount();
+        try {
+            transport.get(url, "admin", "geoserver");
+            fail("Circuit should be open");
+        } catch (CircuitOpenException e) {
+            assertEquals(server.getURL() + "/geoserver", e.getBaseURL());
+        }
+        assertEquals(requests, server.getRequestCount());
+
+        // probe fails (no /rest/ bound): open again
+        Thread.sleep(150);
+        try {
+            transport.get(url, "admin", "geoserver");
+            fail("Circuit should be open");
+        } catch (CircuitOpenException e) {
+        }
+        assertEquals(CircuitBreakerTransport.State.OPEN, transport.getState(url));
+
+        server.bind("/geoserver/rest/", "ok");
+        server.bind("/geoserver/rest/layers.xml", "<layers/>");
+        Thread.sleep(150);
+        assertEquals("<layers/>", transport.get(url, "admin", "geoserver"));
+        assertEquals(CircuitBreakerTransport.State.CLOSED, transport.getState(url));
+    }
+
+    @Test
+    public void testServerErrors() {
+        server.bind("/geoserver/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                HTTPTestServer.send(exchange, 500, "bad request");
+            }
+        });
+        final String url = server.getURL() + "/geoserver/rest/layers.xml";
+        // the node answers: not a failure
+        for (int i = 0; i < 3; i++) {
+            assertNull(transport.get(url, "admin", "geoserver"));
+        }
+        assertEquals(CircuitBreakerTransport.State.CLOSED, transport.getState(url));
+
+        assertTrue(CircuitBreakerTransport.isNodeFailure(-1));
+        assertTrue(CircuitBreakerTransport.isNodeFailure(504));
+        assertFalse(CircuitBreakerTransport.isNodeFailure(501));
+    }
+
+    @Test
+    public void testProbeThrowing() throws InterruptedException {
+        final AtomicBoolean broken = new AtomicBoolean(true);
+        final CommonsHTTPTransport delegate = new CommonsHTTPTransport(2, 4, 1000, 0, true) {
+            @Override
+            public boolean httpPing(String url, String username, String pw) {
+                if (broken.get())
+                    throw new IllegalStateException("shut down");
+                return super.httpPing(url, username, pw);
+            }
+        };
+        delegate.setRetryPolicy(RetryPolicy.NONE);
+        final CircuitBreakerTransport breaker = new CircuitBreakerTransport(delegate, 1, 100);
+        final String url = server.getURL() + "/geoserver/rest/layers.xml";
+        server.bind("/geoserver/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                HTTPTestServer.send(exchange, 503, "reloading");
+            }
+        });
+        assertNull(breaker.get(url, "admin", "geoserver"));
+        assertEquals(CircuitBreakerTransport.State.OPEN, breaker.getState(url));
+
+        // the probe throws: open again, not stuck half open
+        Thread.sleep(150);
+        try {
+            breaker.get(url, "admin", "geoserver");
+            fail("Probe should throw");
+        } catch (IllegalStateException e) {
+        }
+        assertEquals(CircuitBreakerTransport.State.OPEN, breaker.getState(url));
+
+        broken.set(false);
+        server.bind("/geoserver/rest/", "ok");
+        server.bind("/geoserver/rest/layers.xml", "<layers/>");
+        Thread.sleep(150);
+        assertEquals("<layers/>", breaker.get(url, "admin", "geoserver"));
+        breaker.shutdown();
+    }
+}
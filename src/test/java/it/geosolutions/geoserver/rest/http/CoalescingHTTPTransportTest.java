@@ -0,0 +1,148 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * @see CoalescingHTTPTransport
+ */
+public class CoalescingHTTPTransportTest {
+
+    private static final int THREADS = 8;
+
+    private HTTPTestServer server;
+
+    private CoalescingHTTPTransport transport;
+
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CoalescingHTTPTransport(new CommonsHTTPTransport(THREADS, THREADS, 1000, 0, true));
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testConcurrentGets() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        server.bind("/rest/workspaces.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                HTTPTestServer.send(exchange, 200, "<workspaces/>");
+            }
+        });
+        final String url = server.getURL() + "/rest/workspaces.xml";
+        final HTTPResponseHandler<String> handler = in -> IOUtils.toString(in, "UTF-8");
+
+        final List<Future<String>> results = new ArrayList<Future<String>>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(executor.submit(() -> transport.get(url, "admin", "geoserver", handler)));
+        }
+        final long timeout = System.currentTimeMillis() + 10000;
+        while (transport.getCoalescedCount() < THREADS - 1 && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        final String first = results.get(0).get(10, TimeUnit.SECONDS);
+        assertEquals("<workspaces/>", first);
+        for (Future<String> result : results) {
+            assertSame(first, result.get(10, TimeUnit.SECONDS));
+        }
+        assertEquals(1, server.getRequestCount());
+        assertEquals(THREADS - 1, transport.getCoalescedCount());
+        assertEquals(0, transport.getInFlightCount());
+
+        // completed requests are not reused
+        assertEquals("<workspaces/>", transport.get(url, "admin", "geoserver"));
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void testCapturingHandlers() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        server.bind("/rest/workspaces.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                HTTPTestServer.send(exchange, 200, "<workspaces/>");
+            }
+        });
+        final String url = server.getURL() + "/rest/workspaces.xml";
+
+        // same lambda class, capturing different values: not coalesced
+        final List<Future<String>> results = new ArrayList<Future<String>>();
+        for (String prefix : Arrays.asList("a:", "b:")) {
+            results.add(executor.submit(() -> transport.get(url, "admin", "geoserver",
+                    in -> prefix + IOUtils.toString(in, "UTF-8"))));
+        }
+        final long timeout = System.currentTimeMillis() + 10000;
+        while (server.getRequestCount() + transport.getCoalescedCount() < 2
+                && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+
+        assertEquals("a:<workspaces/>", results.get(0).get(10, TimeUnit.SECONDS));
+        assertEquals("b:<workspaces/>", results.get(1).get(10, TimeUnit.SECONDS));
+        assertEquals(2, server.getRequestCount());
+        assertEquals(0, transport.getCoalescedCount());
+    }
+}
@@ -0,0 +1,317 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import it.geosolutions.geoserver.rest.decoder.RESTLayerList;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * @see CommonsHTTPTransport
+ */
+public class CommonsHTTPTransportTest {
+
+    private HTTPTestServer server;
+
+    private CommonsHTTPTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new CommonsHTTPTransport(2, 4, 1000, 0, true);
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testConnectionsAreReused() {
+        server.bind("/rest/layers.xml", "<layers/>");
+        for (int i = 0; i < 10; i++) {
+            assertEquals("<layers/>", transport.get(server.getURL() + "/rest/layers.xml", "admin", "geoserver"));
+        }
+        assertEquals(10, server.getRequestCount());
+        assertEquals(1, server.getClientPortCount());
+    }
+
+    @Test
+    public void testDefaultNotShutDown() {
+        server.bind("/rest/layers.xml", "<layers/>");
+        final CommonsHTTPTransport shared = CommonsHTTPTransport.getDefault();
+        shared.shutdown();
+        assertSame(shared, CommonsHTTPTransport.getDefault());
+        assertEquals("<layers/>", shared.get(server.getURL() + "/rest/layers.xml", "admin",
+                "geoserver"));
+    }
+
+    @Test
+    public void testGetPutDelete() {
+        server.bind("/rest/workspaces.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                if ("POST".equals(exchange.getRequestMethod())) {
+                    HTTPTestServer.send(exchange, 201, new String(requestBody, "UTF-8"));
+                } else {
+                    HTTPTestServer.send(exchange, 405, "");
+                }
+            }
+        });
+        server.bind("/rest/workspaces/ws", "");
+
+        final String url = server.getURL();
+        assertEquals("<workspace/>", transport.postXml(url + "/rest/workspaces.xml", "<workspace/>", "admin", "geoserver"));
+        assertNull(transport.putXml(url + "/rest/workspaces.xml", "<workspace/>", "admin", "geoserver"));
+        assertTrue(transport.delete(url + "/rest/workspaces/ws", "admin", "geoserver"));
+        assertFalse(transport.delete(url + "/rest/workspaces/missing", "admin", "geoserver"));
+        // empty bodies are not valid GET responses
+        assertNull(transport.get(url + "/rest/workspaces/ws", null, null));
+    }
+
+    @Test
+    public void testExistsAndPing() {
+        server.bind("/rest/", "ok");
+        server.bind("/rest/styles/point.xml", "<style/>");
+
+        final String url = server.getURL();
+        assertTrue(transport.httpPing(url + "/rest/", null, null));
+        assertTrue(transport.exists(url + "/rest/styles/point.xml", null, null));
+        assertFalse(transport.exists(url + "/rest/styles/line.xml", null, null));
+        assertFalse(transport.httpPing(url + "/missing", null, null));
+    }
+
+    @Test
+    public void testExistsUsesHead() {
+        server.bind("/rest/workspaces/ws.xml", "<workspace/>");
+        server.bind("/rest/styles/point.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    exchange.sendResponseHeaders(405, -1);
+                } else {
+                    HTTPTestServer.send(exchange, 200, "<style/>");
+                }
+            }
+        });
+
+        final String url = server.getURL();
+        assertTrue(transport.exists(url + "/rest/workspaces/ws.xml", "admin", "geoserver"));
+        assertFalse(transport.exists(url + "/rest/workspaces/missing.xml", "admin", "geoserver"));
+        assertTrue(transport.exists(url + "/rest/styles/point.xml", "admin", "geoserver"));
+        assertEquals(Arrays.asList("HEAD /rest/workspaces/ws.xml", "HEAD /rest/workspaces/missing.xml",
+                "HEAD /rest/styles/point.xml", "GET /rest/styles/point.xml"), server.getRequests());
+    }
+
+    @Test
+    public void testStreamingGet() {
+        server.bind("/rest/layers.xml", "<layers><layer><name>roads</name></layer></layers>");
+        final String url = server.getURL();
+        RESTLayerList layers = transport.get(url + "/rest/layers.xml", "admin", "geoserver",
+                RESTLayerList::build);
+        assertEquals(1, layers.size());
+        assertEquals("roads", layers.get(0).getName());
+        assertNull(transport.get(url + "/rest/missing.xml", "admin", "geoserver",
+                RESTLayerList::build));
+    }
+
+    @Test
+    public void testConditionalGet() {
+        final String[] version = { "\"1\"" };
+        server.bind("/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                if (version[0].equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().add("ETag", version[0]);
+                HTTPTestServer.send(exchange, 200, "<layers><layer><name>roads" + version[0].charAt(1)
+                        + "</name></layer></layers>");
+            }
+        });
+        final HTTPResponseCache cache = new HTTPResponseCache(10);
+        transport.setResponseCache(cache);
+        final String url = server.getURL() + "/rest/layers.xml";
+
+        final HTTPResponseHandler<RESTLayerList> decoder = RESTLayerList::build;
+        RESTLayerList first = transport.get(url, "admin", "geoserver", decoder);
+        assertEquals("roads1", first.get(0).getName());
+        assertSame(first, transport.get(url, "admin", "geoserver", decoder));
+        // a different handler decodes the cached body
+        assertTrue(transport.get(url, "admin", "geoserver").contains("roads1"));
+        assertEquals(2, cache.getStatistics().getHitCount());
+        assertEquals(1, cache.getStatistics().getMissCount());
+
+        version[0] = "\"2\"";
+        RESTLayerList changed = transport.get(url, "admin", "geoserver", decoder);
+        assertEquals("roads2", changed.get(0).getName());
+        assertEquals(2, cache.getStatistics().getMissCount());
+        assertEquals(4, server.getRequestCount());
+    }
+
+    @Test
+    public void testConditionalGetCapturingHandler() {
+        server.bind("/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                if ("\"1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                    exchange.sendResponseHeaders(304, -1);
+                    return;
+                }
+                exchange.getResponseHeaders().add("ETag", "\"1\"");
+                HTTPTestServer.send(exchange, 200, "<layers/>");
+            }
+        });
+        transport.setResponseCache(new HTTPResponseCache(10));
+        final String url = server.getURL() + "/rest/layers.xml";
+
+        // same lambda class, capturing different values: not shared
+        for (String prefix : Arrays.asList("a:", "b:")) {
+            assertEquals(prefix + "<layers/>", transport.get(url, "admin", "geoserver",
+                    body -> prefix + IOUtils.toString(body, "UTF-8")));
+        }
+        final HTTPResponseHandler<String> decoder = body -> "c:" + IOUtils.toString(body, "UTF-8");
+        final String value = transport.get(url, "admin", "geoserver", decoder);
+        assertEquals("c:<layers/>", value);
+        assertSame(value, transport.get(url, "admin", "geoserver", decoder));
+    }
+
+    @Test
+    public void testCompressedGet() {
+        final StringBuilder xml = new StringBuilder("<layers>");
+        for (int i = 0; i < 100; i++) {
+            xml.append("<layer><name>layer").append(i).append("</name></layer>");
+        }
+        final String content = xml.append("</layers>").toString();
+        server.bindCompressed("/rest/layers.xml", content);
+        RESTLayerList layers = transport.get(server.getURL() + "/rest/layers.xml", "admin",
+                "geoserver", RESTLayerList::build);
+        assertEquals(100, layers.size());
+        assertEquals(content, transport.get(server.getURL() + "/rest/layers.xml", "admin", "geoserver"));
+
+        final HTTPTransportMetrics metrics = transport.getMetrics();
+        assertEquals(2, metrics.getCompressedResponseCount());
+        assertEquals(2 * content.length(), metrics.getDecodedBytes());
+        assertTrue(metrics.getBytesSaved() > content.length());
+    }
+
+    @Test
+    public void testRetry() {
+        final AtomicInteger failures = new AtomicInteger(2);
+        server.bind("/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    exchange.getResponseHeaders().add("Retry-After", "0");
+                    HTTPTestServer.send(exchange, 503, "busy");
+                } else {
+                    HTTPTestServer.send(exchange, 200, "<layers/>");
+                }
+            }
+        });
+        transport.setRetryPolicy(new RetryPolicy(3, 10, 100, false));
+        final String url = server.getURL() + "/rest/layers.xml";
+        assertEquals("<layers/>", transport.get(url, "admin", "geoserver"));
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, transport.getMetrics().getRetryCount());
+
+        // POST is retried only opting in, for a call or for all of them
+        failures.set(1);
+        assertNull(transport.postXml(url, "<layer/>", "admin", "geoserver"));
+        failures.set(1);
+        try (RetryablePost scope = RetryablePost.open()) {
+            assertEquals("<layers/>", transport.postXml(url, "<layer/>", "admin", "geoserver"));
+        }
+        assertEquals(3, transport.getMetrics().getRetryCount());
+        failures.set(1);
+        assertNull(transport.postXml(url, "<layer/>", "admin", "geoserver"));
+        failures.set(1);
+        transport.setRetryPolicy(new RetryPolicy(3, 10, 100, true));
+        assertEquals("<layers/>", transport.postXml(url, "<layer/>", "admin", "geoserver"));
+        assertEquals(4, transport.getMetrics().getRetryCount());
+    }
+
+    @Test
+    public void testTimeouts() throws InterruptedException {
+        server.bind("/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                try {
+                    Thread.sleep(500);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                HTTPTestServer.send(exchange, 200, "<layers/>");
+            }
+        });
+        server.bind("/rest/styles.xml", "<styles/>");
+        transport.setRetryPolicy(RetryPolicy.NONE);
+        final String url = server.getURL();
+        transport.setTimeoutProfile(TimeoutProfile.DEFAULT.with(TimeoutProfile.Operation.METADATA_READ, 100));
+        assertNull(transport.get(url + "/rest/layers.xml", "admin", "geoserver"));
+        transport.setTimeoutProfile(TimeoutProfile.DEFAULT);
+
+        try (Deadline deadline = Deadline.start(100)) {
+            assertNull(transport.get(url + "/rest/layers.xml", "admin", "geoserver"));
+            // the deadline is shared with the following calls
+            final int requests = server.getRequestCount();
+            assertNull(transport.get(url + "/rest/styles.xml", "admin", "geoserver"));
+            assertEquals(requests, server.getRequestCount());
+            // nested deadlines can't extend the outer one
+            try (Deadline nested = Deadline.start(10000)) {
+                assertTrue(nested.isExpired());
+            }
+            assertSame(deadline, Deadline.current());
+        }
+        assertNull(Deadline.current());
+        assertEquals("<styles/>", transport.get(url + "/rest/styles.xml", "admin", "geoserver"));
+
+        // connection timeouts: pings use a shorter one by default
+        assertEquals(HTTPTransport.PING_TIMEOUT,
+                TimeoutProfile.DEFAULT.getConnectTimeout(TimeoutProfile.Operation.PING));
+        assertEquals(0, TimeoutProfile.DEFAULT.getConnectTimeout(TimeoutProfile.Operation.METADATA_READ));
+        transport.setTimeoutProfile(TimeoutProfile.DEFAULT.withConnectTimeout(
+                TimeoutProfile.Operation.METADATA_READ, 1000));
+        assertEquals("<styles/>", transport.get(url + "/rest/styles.xml", "admin", "geoserver"));
+        assertTrue(transport.exists(url + "/rest/styles.xml", "admin", "geoserver"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadPoolSize() {
+        new CommonsHTTPTransport(0, 1, 1000, 0, true);
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher;
+import it.geosolutions.geoserver.rest.GeoServerRESTPublisher.StoreType;
+import it.geosolutions.geoserver.rest.ReloadScope;
+import it.geosolutions.geoserver.rest.encoder.GSLayerEncoder;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * @see ConfigureIfChangedTransport
+ */
+public class ConfigureIfChangedTransportTest {
+
+    private static final String LAYER = "<layer><name>a</name><type>VECTOR</type>"
+            + "<defaultStyle><name>point</name><atom:link xmlns:atom=\"http://www.w3.org/2005/Atom\""
+            + " rel=\"alternate\" href=\"http://localhost/rest/styles/point.xml\"/></defaultStyle>"
+            + "<styles><style><name>line</name></style><style><name>polygon</name></style></styles>"
+            + "<enabled>true</enabled></layer>";
+
+    private HTTPTestServer server;
+
+    private ConfigureIfChangedTransport transport;
+
+    private volatile String layer = LAYER;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        final CommonsHTTPTransport delegate = new CommonsHTTPTransport(4, 4, 1000, 0, true);
+        delegate.setRetryPolicy(RetryPolicy.NONE);
+        transport = new ConfigureIfChangedTransport(delegate);
+        server.bind("/rest/layers/ws:a.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                HTTPTestServer.send(exchange, 200, layer);
+            }
+        });
+        server.bind("/rest/layers/ws:a", "");
+        server.bind("/rest/styles/point.sld", "<StyledLayerDescriptor version=\"1.0.0\">\n"
+                + "  <NamedLayer>\n    <Name>point</Name>\n  </NamedLayer>\n</StyledLayerDescriptor>");
+        server.bind("/rest/styles/point", "");
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testReloadStore() throws Exception {
+        server.bind("/rest/workspaces/ws/datastores/ds.xml",
+                "<dataStore><name>ds</name><featureTypes>ft</featureTypes></dataStore>");
+        final GeoServerRESTPublisher publisher = new GeoServerRESTPublisher(server.getURL(),
+                "admin", "geoserver", transport);
+
+        // the body sent back matches the store representation: sent anyway
+        for (int i = 0; i < 2; i++) {
+            assertTrue(publisher.reloadStore("ws", "ds", StoreType.DATASTORES));
+        }
+        try (ReloadScope scope = publisher.deferReloads()) {
+            assertTrue(publisher.reloadStore("ws", "ds", StoreType.DATASTORES));
+        }
+        assertEquals(Arrays.asList("GET /rest/workspaces/ws/datastores/ds.xml",
+                "PUT /rest/workspaces/ws/datastores/ds.xml",
+                "GET /rest/workspaces/ws/datastores/ds.xml",
+                "PUT /rest/workspaces/ws/datastores/ds.xml",
+                "GET /rest/workspaces/ws/datastores/ds.xml",
+                "PUT /rest/workspaces/ws/datastores/ds.xml"), server.getRequests());
+        assertEquals(0, transport.getSkippedCount());
+
+        // the other PUTs are still compared
+        final GSLayerEncoder encoder = encoder("point");
+        assertEquals(layer, transport.putXml(server.getURL() + "/rest/layers/ws:a",
+                encoder.toString(), "admin", "geoserver"));
+        assertEquals(1, transport.getSkippedCount());
+    }
+
+    /**
+     * @return the encoder of the {@link #LAYER} with the given default style
+     */
+    private static GSLayerEncoder encoder(String defaultStyle) {
+        final GSLayerEncoder encoder = new GSLayerEncoder();
+        encoder.setEnabled(true);
+        encoder.setDefaultStyle(defaultStyle);
+        encoder.addStyle("line");
+        encoder.addStyle("polygon");
+        return encoder;
+    }
+
+    @Test
+    public void testWorkspaceReference() {
+        final String url = server.getURL() + "/rest/layers/ws:a";
+        layer = LAYER.replace("<name>point</name>", "<name>point</name><workspace>ws</workspace>");
+        // ws:point switched to the global point: sent
+        assertNotNull(transport.putXml(url, encoder("point").toString(), "admin", "geoserver"));
+        assertEquals(1, transport.getSentCount());
+        assertEquals(layer, transport.putXml(url, encoder("ws:point").toString(), "admin",
+                "geoserver"));
+        assertEquals(1, transport.getSkippedCount());
+        // a reference sent as a structure is compared as a whole
+        assertNotNull(transport.putXml(url, "<layer><defaultStyle><name>point</name>"
+                + "</defaultStyle></layer>", "admin", "geoserver"));
+        assertEquals(2, transport.getSentCount());
+    }
+
+    @Test
+    public void testClearList() {
+        final String url = server.getURL() + "/rest/layers/ws:a";
+        final GSLayerEncoder encoder = new GSLayerEncoder();
+        encoder.setEnabled(true);
+        encoder.setDefaultStyle("point");
+        // <styles /> clears the styles of the server: sent
+        assertNotNull(transport.putXml(url, encoder.toString(), "admin", "geoserver"));
+        assertEquals(1, transport.getSentCount());
+        // nothing to clear: skipped
+        layer = LAYER.replaceAll("<styles>.*</styles>", "<styles/>");
+        transport.putXml(url, encoder.toString(), "admin", "geoserver");
+        layer = LAYER.replaceAll("<styles>.*</styles>", "");
+        transport.putXml(url, encoder.toString(), "admin", "geoserver");
+        assertEquals(2, transport.getSkippedCount());
+    }
+
+    @Test
+    public void testUnchanged() {
+        final GSLayerEncoder encoder = encoder("point");
+        final String url = server.getURL() + "/rest/layers/ws:a";
+
+        // the server has more elements than the encoder sends: answered in place of the PUT
+        assertEquals(layer, transport.putXml(url, encoder.toString(), "admin", "geoserver"));
+        assertTrue(ConfigureIfChangedTransport.wasSkipped());
+        assertEquals(Arrays.asList("GET /rest/layers/ws:a.xml"), server.getRequests());
+        assertEquals(1, transport.getSkippedCount());
+
+        // same answer: read again, skipped
+        assertEquals(layer, transport.putXml(url, encoder.toString(), "admin", "geoserver"));
+        assertEquals(2, server.getRequestCount());
+        assertEquals(2, transport.getSkippedCount());
+
+        // a different style: sent
+        encoder.setDefaultStyle("line");
+        assertNotNull(transport.putXml(url, encoder.toString(), "admin", "geoserver"));
+        assertFalse(ConfigureIfChangedTransport.wasSkipped());
+        assertEquals("PUT /rest/layers/ws:a", server.getRequests().get(3));
+        assertEquals(1, transport.getSentCount());
+
+        // once applied by the server: skipped
+        layer = LAYER.replace("<name>point</name>", "<name>line</name>");
+        transport.putXml(url, encoder.toString(), "admin", "geoserver");
+        assertEquals(5, server.getRequestCount());
+        assertEquals(3, transport.getSkippedCount());
+    }
+
+    @Test
+    public void testChangedByAnotherClient() {
+        final GSLayerEncoder encoder = encoder("point");
+        final String url = server.getURL() + "/rest/layers/ws:a";
+
+        assertEquals(layer, transport.putXml(url, encoder.toString(), "admin", "geoserver"));
+        assertEquals(1, transport.getSkippedCount());
+
+        // an admin switches the default style: the same PUT is sent to restore it
+        layer = LAYER.replace("<name>point</name>", "<name>line</name>");
+        assertNotNull(transport.putXml(url, encoder.toString(), "admin", "geoserver"));
+        assertFalse(ConfigureIfChangedTransport.wasSkipped());
+        assertEquals(1, transport.getSentCount());
+        assertEquals(Arrays.asList("GET /rest/layers/ws:a.xml", "GET /rest/layers/ws:a.xml",
+                "PUT /rest/layers/ws:a"), server.getRequests());
+    }
+
+    @Test
+    public void testLists() {
+        final String url = server.getURL() + "/rest/layers/ws:a";
+        // same items, in the same order: unchanged
+        transport.putXml(url, "<layer><styles><style><name>line</name></style>"
+                + "<style><name>polygon</name></style></styles></layer>", "admin", "geoserver");
+        assertEquals(1, transport.getSkippedCount());
+        // a shorter list removes an item: sent
+        transport.putXml(url, "<layer><styles><style><name>line</name></style></styles></layer>",
+                "admin", "geoserver");
+        assertEquals(1, transport.getSentCount());
+        // a value the server does not have: sent
+        transport.putXml(url, "<layer><queryable>true</queryable></layer>", "admin", "geoserver");
+        assertEquals(2, transport.getSentCount());
+    }
+
+    @Test
+    public void testWriteInvalidation() {
+        final String url = server.getURL() + "/rest/layers/ws:a";
+        final String xml = "<layer><enabled>true</enabled></layer>";
+        transport.putXml(url, xml, "admin", "geoserver");
+        assertEquals(1, transport.getSkippedCount());
+        // changed by a DELETE sent through the transport: read again
+        transport.delete(url, "admin", "geoserver");
+        layer = "<layer><enabled>false</enabled></layer>";
+        transport.putXml(url, xml, "admin", "geoserver");
+        assertEquals(1, transport.getSentCount());
+        assertEquals(Arrays.asList("GET /rest/layers/ws:a.xml", "DELETE /rest/layers/ws:a",
+                "GET /rest/layers/ws:a.xml", "PUT /rest/layers/ws:a"), server.getRequests());
+    }
+
+    @Test
+    public void testStyle() {
+        final String url = server.getURL() + "/rest/styles/point";
+        transport.put(url, "<StyledLayerDescriptor version=\"1.0.0\"><NamedLayer><Name>point</Name>"
+                + "</NamedLayer></StyledLayerDescriptor>", "application/vnd.ogc.sld+xml", "admin",
+                "geoserver");
+        assertEquals(1, transport.getSkippedCount());
+        transport.put(url, "<StyledLayerDescriptor version=\"1.0.0\"><NamedLayer><Name>points</Name>"
+                + "</NamedLayer></StyledLayerDescriptor>", "application/vnd.ogc.sld+xml", "admin",
+                "geoserver");
+        assertEquals(1, transport.getSentCount());
+        // not XML: always sent
+        transport.put(url, "point", "text/plain", "admin", "geoserver");
+        assertEquals(2, transport.getSentCount());
+        assertEquals(Collections.frequency(server.getRequests(), "PUT /rest/styles/point"), 2);
+    }
+}
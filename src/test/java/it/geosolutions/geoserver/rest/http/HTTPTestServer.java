@@ -0,0 +1,191 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.IOUtils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Minimal in-process HTTP server used to unit test the transports without a
+ * running GeoServer.
+ * <P>
+ * Each path is bound to a {@link Response}; unknown paths answer 404. The
+ * server records the number of requests and the client ports it has seen, so
+ * tests can check connection reuse.
+ */
+public class HTTPTestServer {
+
+    /**
+     * Builds the response for a given request.
+     */
+    public interface Response {
+        void handle(HttpExchange exchange, byte[] requestBody) throws IOException;
+    }
+
+    private final HttpServer server;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Map<String, Response> responses = new ConcurrentHashMap<String, Response>();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private final List<String> log = Collections.synchronizedList(new ArrayList<String>());
+
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<Integer>());
+
+    public HTTPTestServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                requests.incrementAndGet();
+                log.add(exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath());
+                clientPorts.add(exchange.getRemoteAddress().getPort());
+                final InputStream in = exchange.getRequestBody();
+                final byte[] body = IOUtils.toByteArray(in);
+                in.close();
+                Response response = responses.get(exchange.getRequestURI().getPath());
+                if (response == null) {
+                    exchange.sendResponseHeaders(404, -1);
+                } else {
+                    response.handle(exchange, body);
+                }
+                exchange.close();
+            }
+        });
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    /**
+     * @return the base URL of the server, without trailing slash
+     */
+    public String getURL() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public void bind(String path, Response response) {
+        responses.put(path, response);
+    }
+
+    /**
+     * Binds a path to a fixed 200 response.
+     */
+    public void bind(String path, final String content) {
+        bind(path, new Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                send(exchange, 200, content);
+            }
+        });
+    }
+
+    /**
+     * Binds a path to a fixed 200 response, compressed as negotiated by the
+     * client <TT>Accept-Encoding</TT> header (gzip first).
+     */
+    public void bindCompressed(String path, final String content) {
+        bind(path, new Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                final String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                final OutputStream encoder;
+                if (accept != null && accept.contains("gzip")) {
+                    exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                    encoder = new GZIPOutputStream(bytes);
+                } else if (accept != null && accept.contains("deflate")) {
+                    exchange.getResponseHeaders().add("Content-Encoding", "deflate");
+                    encoder = new DeflaterOutputStream(bytes);
+                } else {
+                    encoder = bytes;
+                }
+                encoder.write(content.getBytes("UTF-8"));
+                encoder.close();
+                exchange.sendResponseHeaders(200, bytes.size());
+                final OutputStream out = exchange.getResponseBody();
+                bytes.writeTo(out);
+                out.close();
+            }
+        });
+    }
+
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    /**
+     * @return the received requests, as <TT>METHOD path</TT>
+     */
+    public List<String> getRequests() {
+        synchronized (log) {
+            return new ArrayList<String>(log);
+        }
+    }
+
+    public int getClientPortCount() {
+        return clientPorts.size();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    /**
+     * Sends the given content (or an empty body for HEAD requests).
+     */
+    public static void send(HttpExchange exchange, int status, String content) throws IOException {
+        final byte[] bytes = content.getBytes("UTF-8");
+        if ("HEAD".equals(exchange.getRequestMethod())) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(status, bytes.length);
+        final OutputStream out = exchange.getResponseBody();
+        out.write(bytes);
+        out.close();
+    }
+}
@@ -0,0 +1,244 @@
+/*
+ *  GeoServer-Manager - Simple Manager Library for GeoServer
+ *
+ *  Copyright (C) 2007,2016 GeoSolutions S.A.S.
+ *  http://www.geo-solutions.it
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package it.geosolutions.geoserver.rest.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import it.geosolutions.geoserver.rest.decoder.RESTLayerList;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+
+/**
+ * @see JavaHTTPTransport
+ */
+public class JavaHTTPTransportTest {
+
+    private HTTPTestServer server;
+
+    private JavaHTTPTransport transport;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new HTTPTestServer();
+        transport = new JavaHTTPTransport();
+    }
+
+    @After
+    public void tearDown() {
+        transport.shutdown();
+        server.stop();
+    }
+
+    @Test
+    public void testGet() {
+        server.bind("/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                final String auth = exchange.getRequestHeaders().getFirst("Authorization");
+                HTTPTestServer.send(exchange, 200, auth == null ? "<anonymous/>" : "<layers/>");
+            }
+        });
+        final String url = server.getURL() + "/rest/layers.xml";
+        assertEquals("<layers/>", transport.get(url, "admin", "geoserver"));
+        assertEquals("<anonymous/>", transport.get(url, null, null));
+        assertNull(transport.get(server.getURL() + "/rest/missing.xml", "admin", "geoserver"));
+    }
+
+    @Test
+    public void testGetAsync() throws Exception {
+        server.bind("/rest/styles.xml", "<styles/>");
+        final String url = server.getURL();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            CompletableFuture<String> found = transport.getAsync(url + "/rest/styles.xml", "admin",
+                    "geoserver", executor);
+            CompletableFuture<String> missing = transport.getAsync(url + "/rest/missing.xml",
+                    "admin", "geoserver", executor);
+            assertEquals("<styles/>", found.get());
+            assertNull(missing.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSendAndDelete() {
+        server.bind("/rest/workspaces.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                final String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+                HTTPTestServer.send(exchange, 201, exchange.getRequestMethod() + " " + contentType + " "
+                        + new String(requestBody, "UTF-8"));
+            }
+        });
+        server.bind("/rest/workspaces/ws", "");
+
+        final String url = server.getURL();
+        assertEquals("POST text/xml <workspace/>",
+                transport.postXml(url + "/rest/workspaces.xml", "<workspace/>", "admin", "geoserver"));
+        assertEquals("PUT text/plain ws",
+                transport.put(url + "/rest/workspaces.xml", "ws", "text/plain", "admin", "geoserver"));
+        assertTrue(transport.delete(url + "/rest/workspaces/ws", "admin", "geoserver"));
+        assertFalse(transport.delete(url + "/rest/workspaces/missing", "admin", "geoserver"));
+    }
+
+    @Test
+    public void testCompressedGet() throws Exception {
+        final StringBuilder xml = new StringBuilder("<layers>");
+        for (int i = 0; i < 100; i++) {
+            xml.append("<layer><name>layer").append(i).append("</name></layer>");
+        }
+        final String content = xml.append("</layers>").toString();
+        server.bindCompressed("/rest/layers.xml", content);
+        RESTLayerList layers = transport.get(server.getURL() + "/rest/layers.xml", "admin",
+                "geoserver", RESTLayerList::build);
+        assertEquals(100, layers.size());
+        assertEquals(content, transport.get(server.getURL() + "/rest/layers.xml", "admin", "geoserver"));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(content, transport.getAsync(server.getURL() + "/rest/layers.xml",
+                    "admin", "geoserver", executor).get());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        final HTTPTransportMetrics metrics = transport.getMetrics();
+        assertEquals(3, metrics.getCompressedResponseCount());
+        assertEquals(3 * content.length(), metrics.getDecodedBytes());
+        assertTrue(metrics.getBytesSaved() > content.length());
+    }
+
+    @Test
+    public void testRetry() {
+        final AtomicInteger failures = new AtomicInteger(2);
+        server.bind("/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    exchange.getResponseHeaders().add("Retry-After", "0");
+                    HTTPTestServer.send(exchange, 503, "busy");
+                } else {
+                    HTTPTestServer.send(exchange, 200, "<layers/>");
+                }
+            }
+        });
+        transport.setRetryPolicy(new RetryPolicy(3, 10, 100, false));
+        final String url = server.getURL() + "/rest/layers.xml";
+        assertEquals("<layers/>", transport.get(url, "admin", "geoserver"));
+        assertEquals(3, server.getRequestCount());
+        assertEquals(2, transport.getMetrics().getRetryCount());
+
+        // POST is retried only opting in
+        failures.set(1);
+        assertNull(transport.postXml(url, "<layer/>", "admin", "geoserver"));
+        failures.set(1);
+        transport.setRetryPolicy(new RetryPolicy(3, 10, 100, true));
+        assertEquals("<layers/>", transport.postXml(url, "<layer/>", "admin", "geoserver"));
+        assertEquals(3, transport.getMetrics().getRetryCount());
+    }
+
+    @Test
+    public void testStalledBody() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        server.bind("/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                exchange.sendResponseHeaders(200, 100);
+                final OutputStream out = exchange.getResponseBody();
+                out.write("<layers>".getBytes("UTF-8"));
+                out.flush();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                exchange.close();
+            }
+        });
+        transport.setTimeoutProfile(TimeoutProfile.DEFAULT.with(TimeoutProfile.Operation.METADATA_READ, 200));
+        try {
+            final long start = System.currentTimeMillis();
+            // the headers arrived in time, the body did not
+            assertNull(transport.get(server.getURL() + "/rest/layers.xml", "admin", "geoserver",
+                    RESTLayerList::build));
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void testRetryAsync() throws Exception {
+        final AtomicInteger failures = new AtomicInteger(2);
+        server.bind("/rest/layers.xml", new HTTPTestServer.Response() {
+            public void handle(HttpExchange exchange, byte[] requestBody) throws IOException {
+                if (failures.getAndDecrement() > 0) {
+                    HTTPTestServer.send(exchange, 503, "busy");
+                } else {
+                    HTTPTestServer.send(exchange, 200, "<layers/>");
+                }
+            }
+        });
+        transport.setRetryPolicy(new RetryPolicy(3, 10, 100, false));
+        final String url = server.getURL() + "/rest/layers.xml";
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals("<layers/>", transport.getAsync(url, "admin", "geoserver", executor).get());
+            assertEquals(3, server.getRequestCount());
+            assertEquals(2, transport.getMetrics().getRetryCount());
+
+            // attempts exhausted
+            failures.set(3);
+            assertNull(transport.getAsync(url, "admin", "geoserver", executor).get());
+            assertEquals(6, server.getRequestCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testExistsAndPing() {
+        server.bind("/rest/", "ok");
+        final String url = server.getURL();
+        assertTrue(transport.httpPing(url + "/rest/", null, null));
+        assertTrue(transport.exists(url + "/rest/", null, null));
+        assertFalse(transport.exists(url + "/rest/styles/line.xml", null, null));
+        assertTrue(server.getRequests().contains("HEAD /rest/"));
+    }
+}